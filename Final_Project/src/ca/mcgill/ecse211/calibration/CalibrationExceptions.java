@@ -0,0 +1,14 @@
+package ca.mcgill.ecse211.calibration;
+
+/**
+ * This class is used to handle errors in calibration files and logs, and calibrations that cannot be solved
+ *
+ */
+
+@SuppressWarnings("serial")
+public class CalibrationExceptions extends Exception {
+
+	public CalibrationExceptions(String Error) {
+		super(Error);
+	}
+}
@@ -0,0 +1,429 @@
+package ca.mcgill.ecse211.calibration;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.localization.LightLocalization;
+import ca.mcgill.ecse211.odometry.IntegrationScheme;
+
+/**
+ * This class fits the kinematic parameters of the robot to a CrossingLog by batch least squares. The path is dead
+ * reckoned from the tacho counts and a known starting pose, and every line crossing gives a residual: the distance
+ * from the light sensor to the grid line it crossed, which is zero for the right parameters. The parameters are the
+ * wheel radii, the track, and the distance the sensors move past a line before LineDetector reports it. The sum of
+ * squared residuals is minimized with Levenberg-Marquardt iterations and numerical derivatives; crossings are
+ * associated with the nearest line the sensor moved across, and crossings left more than OUTLIER away are dropped
+ * before solving again.
+ * <p>
+ * A few percent of error on the track is tens of degrees after a few spins, so that the crossings at the end of
+ * the log could not be associated with the right lines from the initial parameters. The log is therefore solved
+ * in STAGES growing parts, each associated with the parameters solved from the previous one.
+ * <p>
+ * The correction angles of LightLocalization are then found by replaying it on the spins of the log: every four
+ * successive crossings of the right sensor during a spin on an intersection are a localization starting in the
+ * quadrant of the first one, and the angle it computes from the dead reckoned headings is the opposite of its
+ * correction angle, since these headings are right.
+ *
+ * @author Matthew
+ *
+ */
+public class CalibrationSolver {
+
+	private static final int LEFT_RADIUS = 0, RIGHT_RADIUS = 1, TRACK = 2, LAG = 3, PARAMETERS = 4;
+	private static final double[] STEPS = { 1e-5, 1e-5, 1e-4, 1e-4 };	//cm, for numerical derivatives
+	private static final int ITERATIONS = 50;
+	private static final int STAGES = 10;	//growing parts of the log solved in turn
+	private static final int ROUNDS = 2;	//associations per stage, each dropping the outliers of the previous one
+	private static final double OUTLIER = 2.0;	//cm
+	private static final double MIN_CROSSING = 0.3;	//cosine between the motion of a sensor and a line it crosses
+	private static final double SPIN_RADIUS = 3.0;	//cm from an intersection for a spin to count as a localization
+
+	private final CrossingLog log;
+	private final double startX;
+	private final double startY;
+	private final double startTheta;
+
+	//per crossing, in the order of the log
+	private final int crossings;
+	private final int[] axis;	//0 if the sensor crossed a line of constant x, 1 of constant y, -1 if unused
+	private final double[] line;	//coordinate of the line
+	private final boolean[] used;
+	private final int[] sample;	//index in the log
+	private final boolean[] right;	//crossed by the right sensor
+	private final boolean[] spinning;	//turning counterclockwise within SPIN_RADIUS of an intersection
+	private final double[] headings;	//dead reckoned heading in degrees
+	private final int[][] intersection;	//grid intersection closest to the centre of the robot
+	private final double[][] position;	//position of the sensor in cm, less the lag
+
+	private final double[] residuals;
+	private double initialRms = Double.NaN;
+	private double rms = Double.NaN;
+	private int usedCrossings;
+	private double lag;
+
+	/**
+	 * Constructor for the CalibrationSolver class
+	 *
+	 * @param log tacho counts and crossings logged while driving
+	 * @param x x position of the robot at the first sample in cm
+	 * @param y y position of the robot at the first sample in cm
+	 * @param theta heading of the robot at the first sample in degrees
+	 */
+	public CalibrationSolver(CrossingLog log, double x, double y, double theta) {
+		this.log = log;
+		this.startX = x;
+		this.startY = y;
+		this.startTheta = theta;
+		int count = 0;
+		for (int i = 0; i < log.size(); i++) {
+			int entered = log.getCrossings(i);
+			count += (entered & CrossingLog.LEFT) != 0 ? 1 : 0;
+			count += (entered & CrossingLog.RIGHT) != 0 ? 1 : 0;
+		}
+		crossings = count;
+		axis = new int[count];
+		line = new double[count];
+		used = new boolean[count];
+		sample = new int[count];
+		right = new boolean[count];
+		spinning = new boolean[count];
+		headings = new double[count];
+		intersection = new int[count][2];
+		position = new double[count][2];
+		residuals = new double[count];
+	}
+
+	/**
+	 * Solves for the parameters
+	 *
+	 * @param initial calibration to start from, e.g. the one in use
+	 * @return calibration fitting the log
+	 * @throws CalibrationExceptions if too few crossings are left to solve
+	 */
+	public RobotCalibration solve(RobotCalibration initial) throws CalibrationExceptions {
+		double[] parameters = { initial.getLeftRadius(), initial.getRightRadius(), initial.getTrack(), 0 };
+		trace(parameters, true);
+		int associated = select(log.size(), false);
+		initialRms = Math.sqrt(cost(parameters) / associated);
+		for (int stage = 1; stage <= STAGES; stage++) {
+			for (int round = 0; round < ROUNDS; round++) {
+				trace(parameters, true);
+				if (select(log.size() * stage / STAGES, stage > 1 || round > 0) > PARAMETERS)
+					minimize(parameters);
+			}
+		}
+		if (usedCrossings <= PARAMETERS)
+			throw new CalibrationExceptions("only " + usedCrossings + " line crossings to solve");
+		rms = Math.sqrt(cost(parameters) / usedCrossings);
+		lag = parameters[LAG];
+		trace(parameters, false);
+		return new RobotCalibration(parameters[LEFT_RADIUS], parameters[RIGHT_RADIUS], parameters[TRACK],
+				correctionAngles(initial.getCorrectionAngles()));
+	}
+
+	/**
+	 * Selects the crossings in use
+	 *
+	 * @param end index of the first sample of the log left out
+	 * @param gate whether to leave out crossings more than OUTLIER from their lines
+	 * @return number of crossings in use
+	 */
+	private int select(int end, boolean gate) {
+		usedCrossings = 0;
+		for (int c = 0; c < crossings; c++) {
+			used[c] = axis[c] >= 0 && sample[c] < end && (!gate || Math.abs(residuals[c]) <= OUTLIER);
+			usedCrossings += used[c] ? 1 : 0;
+		}
+		return usedCrossings;
+	}
+
+	/**
+	 * Levenberg-Marquardt iterations on the crossings in use
+	 */
+	private void minimize(double[] parameters) {
+		double[][] jacobian = new double[crossings][PARAMETERS];
+		double[] r = new double[crossings];
+		double[][] normal = new double[PARAMETERS][PARAMETERS];
+		double[] gradient = new double[PARAMETERS];
+		double[] trial = new double[PARAMETERS];
+		double damping = 1e-3;
+		double cost = cost(parameters);
+		for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+			cost(parameters);
+			System.arraycopy(residuals, 0, r, 0, crossings);
+			for (int j = 0; j < PARAMETERS; j++) {
+				System.arraycopy(parameters, 0, trial, 0, PARAMETERS);
+				trial[j] += STEPS[j];
+				trace(trial, false);
+				for (int c = 0; c < crossings; c++) {
+					jacobian[c][j] = used[c] ? (residuals[c] - r[c]) / STEPS[j] : 0;
+				}
+			}
+			for (int j = 0; j < PARAMETERS; j++) {
+				gradient[j] = 0;
+				for (int k = 0; k < PARAMETERS; k++) {
+					normal[j][k] = 0;
+				}
+				for (int c = 0; c < crossings; c++) {
+					if (!used[c])
+						continue;
+					gradient[j] += jacobian[c][j] * r[c];
+					for (int k = 0; k < PARAMETERS; k++) {
+						normal[j][k] += jacobian[c][j] * jacobian[c][k];
+					}
+				}
+			}
+			boolean improved = false;
+			while (!improved && damping < 1e6) {
+				double[][] damped = new double[PARAMETERS][];
+				for (int j = 0; j < PARAMETERS; j++) {
+					damped[j] = normal[j].clone();
+					damped[j][j] *= 1 + damping;
+				}
+				double[] step = solveLinear(damped, gradient);
+				for (int j = 0; j < PARAMETERS; j++) {
+					trial[j] = parameters[j] - step[j];
+				}
+				double trialCost = cost(trial);
+				if (trialCost < cost) {
+					improved = true;
+					damping /= 10;
+					double change = cost - trialCost;
+					System.arraycopy(trial, 0, parameters, 0, PARAMETERS);
+					cost = trialCost;
+					if (change < 1e-12 * (1 + cost))
+						return;
+				} else
+					damping *= 10;
+			}
+			if (!improved)
+				break;
+		}
+		cost(parameters);	//leaves the residuals of the solution
+	}
+
+	/**
+	 * @return sum of the squared residuals of the crossings in use, which are left in residuals
+	 */
+	private double cost(double[] parameters) {
+		trace(parameters, false);
+		double sum = 0;
+		for (int c = 0; c < crossings; c++) {
+			if (used[c])
+				sum += residuals[c] * residuals[c];
+		}
+		return sum;
+	}
+
+	/**
+	 * Dead reckons the log with some parameters and computes the residual of every crossing
+	 *
+	 * @param parameters
+	 * @param associate whether to associate each crossing with the nearest line the sensor moved across
+	 */
+	private void trace(double[] parameters, boolean associate) {
+		double x = startX, y = startY, heading = Math.toRadians(startTheta);
+		double[] dxy = new double[2];
+		double[] lastX = new double[2], lastY = new double[2];
+		double[] directionX = new double[2], directionY = { 1, 1 };
+		int c = 0;
+		for (int i = 0; i < log.size(); i++) {
+			int turning = 0;	//-1 counterclockwise in place
+			if (i > 0) {
+				int tachoL = log.getTachoL(i) - log.getTachoL(i - 1);
+				int tachoR = log.getTachoR(i) - log.getTachoR(i - 1);
+				double distL = Math.PI * parameters[LEFT_RADIUS] * tachoL / 180;
+				double distR = Math.PI * parameters[RIGHT_RADIUS] * tachoR / 180;
+				double turn = (distL - distR) / parameters[TRACK];
+				IntegrationScheme.EXACT_ARC.displacement(heading, (distL + distR) / 2, turn, dxy);
+				x += dxy[0];
+				y += dxy[1];
+				heading += turn;
+				turning = tachoL < 0 && tachoR > 0 ? -1 : 0;
+			}
+			double sin = Math.sin(heading), cos = Math.cos(heading);
+			int entered = log.getCrossings(i);
+			for (int s = 0; s < 2; s++) {
+				double side = (s == 0 ? -1 : 1) * RingChallenge.LS_WIDTH / 2;
+				double sensorX = x - RingChallenge.LS_L_DISTANCE * sin + side * cos;
+				double sensorY = y - RingChallenge.LS_L_DISTANCE * cos - side * sin;
+				double moveX = sensorX - lastX[s], moveY = sensorY - lastY[s];
+				double move = Math.sqrt(moveX * moveX + moveY * moveY);
+				if (i > 0 && move > 1e-6) {
+					directionX[s] = moveX / move;
+					directionY[s] = moveY / move;
+				}
+				lastX[s] = sensorX;
+				lastY[s] = sensorY;
+				if ((entered & (s == 0 ? CrossingLog.LEFT : CrossingLog.RIGHT)) == 0)
+					continue;
+
+				double px = sensorX - parameters[LAG] * directionX[s];
+				double py = sensorY - parameters[LAG] * directionY[s];
+				if (associate)
+					associate(c, px, py, directionX[s], directionY[s]);
+				residuals[c] = axis[c] < 0 ? 0 : (axis[c] == 0 ? px : py) - line[c];
+				position[c][0] = px;
+				position[c][1] = py;
+				right[c] = s == 1;
+				sample[c] = i;
+				headings[c] = (Math.toDegrees(heading) % 360 + 360) % 360;
+				intersection[c][0] = (int) Math.round(x / RingChallenge.TILE_SIZE);
+				intersection[c][1] = (int) Math.round(y / RingChallenge.TILE_SIZE);
+				double offX = x - intersection[c][0] * RingChallenge.TILE_SIZE;
+				double offY = y - intersection[c][1] * RingChallenge.TILE_SIZE;
+				spinning[c] = turning < 0 && offX * offX + offY * offY <= SPIN_RADIUS * SPIN_RADIUS;
+				c++;
+			}
+		}
+	}
+
+	/**
+	 * Associates a crossing with the nearest grid line that the sensor was moving across
+	 */
+	private void associate(int c, double px, double py, double directionX, double directionY) {
+		axis[c] = -1;
+		double best = Double.MAX_VALUE;
+		double[] coordinates = { px, py };
+		double[] directions = { directionX, directionY };
+		for (int a = 0; a < 2; a++) {
+			if (Math.abs(directions[a]) < MIN_CROSSING)
+				continue;
+			double nearest = Math.round(coordinates[a] / RingChallenge.TILE_SIZE) * RingChallenge.TILE_SIZE;
+			if (Math.abs(coordinates[a] - nearest) < best) {
+				best = Math.abs(coordinates[a] - nearest);
+				axis[c] = a;
+				line[c] = nearest;
+			}
+		}
+	}
+
+	/**
+	 * Replays LightLocalization on the spins of the log
+	 *
+	 * @param initial angles kept for the quadrants that no spin starts in
+	 * @return mean correction angle for each starting quadrant, in degrees
+	 */
+	private double[] correctionAngles(double[] initial) {
+		//order in which the right sensor crosses the lines of a counterclockwise spin: y below, x right, y above, x left
+		int[] types = new int[crossings];
+		int[] order = new int[crossings];	//crossings of the right sensor during spins
+		int n = 0;
+		for (int c = 0; c < crossings; c++) {
+			if (!right[c] || !spinning[c] || axis[c] < 0)
+				continue;
+			double centerX = intersection[c][0] * RingChallenge.TILE_SIZE;
+			double centerY = intersection[c][1] * RingChallenge.TILE_SIZE;
+			if (axis[c] == 0 && line[c] == centerX)
+				types[c] = position[c][1] < centerY ? 0 : 2;
+			else if (axis[c] == 1 && line[c] == centerY)
+				types[c] = position[c][0] > centerX ? 1 : 3;
+			else
+				continue;
+			order[n++] = c;
+		}
+
+		double angleOffset = Math.atan(RingChallenge.LS_WIDTH / 2 / RingChallenge.LS_L_DISTANCE);
+		double[] sums = new double[4];
+		int[] counts = new int[4];
+		for (int k = 0; k + 3 < n; k++) {
+			int quadrant = types[order[k]];
+			double angleYn = 0, angleYp = 0;
+			boolean window = true;
+			for (int j = 0; j < 4 && window; j++) {
+				int c = order[k + j];
+				window = types[c] == (quadrant + j) % 4 && intersection[c][0] == intersection[order[k]][0]
+						&& intersection[c][1] == intersection[order[k]][1];
+				if (types[c] == 0)
+					angleYn = headings[c];
+				else if (types[c] == 2)
+					angleYp = headings[c];
+			}
+			if (!window)
+				continue;
+			sums[quadrant] -= LightLocalization.getHeadingError(angleYn, angleYp, angleOffset);
+			counts[quadrant]++;
+		}
+		double[] angles = initial.clone();
+		for (int q = 0; q < 4; q++) {
+			if (counts[q] > 0)
+				angles[q] = sums[q] / counts[q];
+		}
+		return angles;
+	}
+
+	/**
+	 * Solves a small linear system by Gaussian elimination with partial pivoting
+	 *
+	 * @param a matrix, overwritten
+	 * @param b right-hand side
+	 * @return solution
+	 */
+	private static double[] solveLinear(double[][] a, double[] b) {
+		int n = b.length;
+		double[] x = b.clone();
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+			for (int row = col + 1; row < n; row++) {
+				if (Math.abs(a[row][col]) > Math.abs(a[pivot][col]))
+					pivot = row;
+			}
+			double[] swap = a[col];
+			a[col] = a[pivot];
+			a[pivot] = swap;
+			double t = x[col];
+			x[col] = x[pivot];
+			x[pivot] = t;
+			if (a[col][col] == 0)
+				continue;
+			for (int row = col + 1; row < n; row++) {
+				double factor = a[row][col] / a[col][col];
+				for (int k = col; k < n; k++) {
+					a[row][k] -= factor * a[col][k];
+				}
+				x[row] -= factor * x[col];
+			}
+		}
+		for (int row = n - 1; row >= 0; row--) {
+			double sum = x[row];
+			for (int k = row + 1; k < n; k++) {
+				sum -= a[row][k] * x[k];
+			}
+			x[row] = a[row][row] == 0 ? 0 : sum / a[row][row];
+		}
+		return x;
+	}
+
+	/**
+	 * @return root mean square residual of the crossings in use with the initial parameters, in cm
+	 */
+	public double getInitialRms() {
+		return initialRms;
+	}
+
+	/**
+	 * @return root mean square residual of the crossings in use with the solved parameters, in cm
+	 */
+	public double getRms() {
+		return rms;
+	}
+
+	/**
+	 * @return number of crossings used in the solution
+	 */
+	public int getUsedCrossings() {
+		return usedCrossings;
+	}
+
+	/**
+	 * @return number of crossings in the log
+	 */
+	public int getCrossings() {
+		return crossings;
+	}
+
+	/**
+	 * @return distance moved past a line before it is detected, in cm
+	 */
+	public double getLag() {
+		return lag;
+	}
+}
@@ -0,0 +1,178 @@
+package ca.mcgill.ecse211.calibration;
+
+import java.io.IOException;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.localization.Navigation;
+import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.odometry.OdometerExceptions;
+import ca.mcgill.ecse211.sensor.LightPoller;
+import ca.mcgill.ecse211.sensor.SensorBus;
+import ca.mcgill.ecse211.sensor.SensorController;
+import ca.mcgill.ecse211.sensor.SensorExceptions;
+import ca.mcgill.ecse211.sensor.UltrasonicPoller;
+
+import lejos.hardware.Button;
+
+/**
+ * This class measures the calibration of the robot. The robot is placed by hand with its centre on the
+ * intersection START_X, START_Y, facing up, and drives known patterns while a CrossingLog records the tacho counts
+ * at every light sample:
+ * <ol>
+ * <li>SPINS counterclockwise turns in place, like LightLocalization</li>
+ * <li>a square of SIDE tiles with clockwise turns, like SquareDriver in Lab2</li>
+ * <li>the same square with counterclockwise turns, which separates the wheel radii from the track</li>
+ * <li>SPINS counterclockwise turns in place again</li>
+ * </ol>
+ * CalibrationSolver then fits the wheel radii, the track and the correction angles of LightLocalization to the
+ * crossings, and the result is written to RingChallenge.ROBOT_CALIBRATION_FILE, which is loaded at the next start.
+ * The log is saved as well, to be solved again on a computer: Calibrator solve [log file].
+ *
+ * @author Matthew
+ *
+ */
+public class Calibrator {
+
+	public static final String LOG_FILE = "crossings.log";
+	public static final int START_X = 1;	//grid intersection
+	public static final int START_Y = 1;
+
+	private static final int FORWARD_SPEED = 150;
+	private static final int ROTATE_SPEED = 120;	//same as LightLocalization
+	private static final int SIDE = 3;	//tiles
+	private static final int SPINS = 2;
+
+	private final DriveMotor leftMotor;
+	private final DriveMotor rightMotor;
+
+	/**
+	 * Constructor for the Calibrator class
+	 *
+	 * @param leftMotor
+	 * @param rightMotor
+	 */
+	public Calibrator(DriveMotor leftMotor, DriveMotor rightMotor) {
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+	}
+
+	/**
+	 * Drives the calibration patterns, from START_X, START_Y facing up, back to the same pose
+	 */
+	public void drivePatterns() {
+		spin(SPINS * 360);
+		for (int i = 0; i < 4; i++) {	//clockwise square, up first
+			forward(SIDE * RingChallenge.TILE_SIZE);
+			turn(90);
+		}
+		turn(90);
+		for (int i = 0; i < 4; i++) {	//counterclockwise square, right first
+			forward(SIDE * RingChallenge.TILE_SIZE);
+			turn(-90);
+		}
+		turn(-90);
+		spin(SPINS * 360);
+	}
+
+	/**
+	 * Drives straight
+	 *
+	 * @param distance in cm
+	 */
+	private void forward(double distance) {
+		Navigation.setMotorSpeeds(FORWARD_SPEED, leftMotor, rightMotor, RingChallenge.L_WHEEL_RAD,
+				RingChallenge.R_WHEEL_RAD);
+		leftMotor.rotate(Navigation.convertDistance(RingChallenge.L_WHEEL_RAD, distance), true);
+		rightMotor.rotate(Navigation.convertDistance(RingChallenge.R_WHEEL_RAD, distance), false);
+	}
+
+	/**
+	 * Turns in place
+	 *
+	 * @param angle in degrees, clockwise
+	 */
+	private void turn(double angle) {
+		Navigation.setMotorSpeeds(ROTATE_SPEED, leftMotor, rightMotor, RingChallenge.L_WHEEL_RAD,
+				RingChallenge.R_WHEEL_RAD);
+		leftMotor.rotate(Navigation.convertAngle(RingChallenge.L_WHEEL_RAD, RingChallenge.TRACK, angle), true);
+		rightMotor.rotate(-Navigation.convertAngle(RingChallenge.R_WHEEL_RAD, RingChallenge.TRACK, angle), false);
+	}
+
+	/**
+	 * Turns in place counterclockwise, like LightLocalization
+	 *
+	 * @param angle in degrees
+	 */
+	private void spin(double angle) {
+		turn(-angle);
+	}
+
+	/**
+	 * Solves a log driven from the starting pose and prints the result
+	 *
+	 * @param log
+	 * @return calibration fitting the log
+	 * @throws CalibrationExceptions if the log cannot be solved
+	 */
+	public static RobotCalibration solve(CrossingLog log) throws CalibrationExceptions {
+		CalibrationSolver solver = new CalibrationSolver(log, START_X * RingChallenge.TILE_SIZE,
+				START_Y * RingChallenge.TILE_SIZE, 0);
+		RobotCalibration calibration = solver.solve(RingChallenge.CALIBRATION);
+		System.out.println(String.format("%d of %d crossings, rms %.2f cm before, %.2f cm after, lag %.2f cm",
+				solver.getUsedCrossings(), solver.getCrossings(), solver.getInitialRms(), solver.getRms(),
+				solver.getLag()));
+		System.out.println(calibration);
+		return calibration;
+	}
+
+	/**
+	 * Drives the patterns and writes the calibration on the robot, or solves a saved log on a computer
+	 *
+	 * @param args nothing on the robot, or solve [log file]
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 * @throws CalibrationExceptions
+	 * @throws IOException
+	 */
+	public static void main(String[] args) throws OdometerExceptions, SensorExceptions, CalibrationExceptions,
+			IOException {
+		if (args.length > 0 && args[0].equals("solve")) {
+			RobotCalibration calibration = solve(CrossingLog.load(args.length > 1 ? args[1] : LOG_FILE));
+			calibration.save(RingChallenge.ROBOT_CALIBRATION_FILE, "Solved by Calibrator from a saved log");
+			return;
+		}
+
+		Hardware hardware = Hardware.createLejos();
+		hardware.install();
+		DriveMotor leftMotor = hardware.leftMotor;
+		DriveMotor rightMotor = hardware.rightMotor;
+		Odometer.getOdometer(leftMotor, rightMotor, RingChallenge.TRACK, RingChallenge.L_WHEEL_RAD,
+				RingChallenge.R_WHEEL_RAD);
+		LightPoller lightPoller = new LightPoller(hardware.leftLineSensor, hardware.rightLineSensor);
+		SensorController sensorController = SensorController.getSensorController(lightPoller,
+				new LightPoller(hardware.colorSensor), new UltrasonicPoller(hardware.ultrasonicSensor));
+		sensorController.setMotors(leftMotor, rightMotor);
+
+		CrossingLog log = new CrossingLog();
+		SensorBus bus = sensorController.getSensorBus();
+		bus.subscribeLight(log, 1);
+		bus.select(1);
+		sensorController.unpauseLightPoller();
+		new Thread(lightPoller).start();
+
+		System.out.println("Place the robot on (" + START_X + ", " + START_Y + ") facing up and press a button");
+		Button.waitForAnyPress();
+		log.setRecording(true);
+		new Calibrator(leftMotor, rightMotor).drivePatterns();
+		log.setRecording(false);
+		log.save(LOG_FILE);
+
+		RobotCalibration calibration = solve(log);
+		calibration.save(RingChallenge.ROBOT_CALIBRATION_FILE, "Measured by Calibrator from " + log.size()
+				+ " light samples");
+		Button.waitForAnyPress();
+		System.exit(0);
+	}
+}
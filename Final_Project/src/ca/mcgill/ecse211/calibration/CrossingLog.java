@@ -0,0 +1,172 @@
+package ca.mcgill.ecse211.calibration;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+import ca.mcgill.ecse211.sensor.LineDetector;
+
+/**
+ * This class logs the tacho counts of every light sample while the Calibrator drives, and which light sensors
+ * entered a line at each sample. The counts between the crossings give the path driven, which CalibrationSolver
+ * needs to place the sensors at each crossing. Lines are detected like in OdometryCorrection.
+ * <p>
+ * The log can be saved and loaded to solve it again, one sample per line: left count, right count and crossings
+ * (bit 0 for the left sensor, bit 1 for the right sensor).
+ *
+ * @author Matthew
+ *
+ */
+public class CrossingLog implements TimedLightSensorUser {
+
+	public static final int LEFT = 1;
+	public static final int RIGHT = 2;
+
+	//same detection as OdometryCorrection
+	private static final int THRESHOLD = 30;
+	private static final int WINDOW_SIZE = 5;
+
+	private int[] tachoL = new int[1024];
+	private int[] tachoR = new int[1024];
+	private byte[] crossings = new byte[1024];
+	private int size = 0;
+	private volatile boolean recording = false;
+
+	private final LineDetector[] detectors = { new LineDetector(WINDOW_SIZE, THRESHOLD),
+			new LineDetector(WINDOW_SIZE, THRESHOLD) };
+	private final boolean[] inLine = new boolean[2];
+
+	/**
+	 * Starts or stops recording
+	 *
+	 * @param recording
+	 */
+	public void setRecording(boolean recording) {
+		this.recording = recording;
+	}
+
+	@Override
+	public synchronized void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+		int entered = 0;
+		for (int i = 0; i < 2; i++) {
+			boolean detected = detectors[i].lineCrossed(light[i]);
+			if (detected && !inLine[i])
+				entered |= i == 0 ? LEFT : RIGHT;
+			inLine[i] = detected;
+		}
+		if (recording)
+			add(tachoL, tachoR, entered);
+	}
+
+	/**
+	 * Appends a sample
+	 *
+	 * @param left left motor tacho count
+	 * @param right right motor tacho count
+	 * @param entered LEFT and RIGHT bits of the sensors that entered a line
+	 */
+	public synchronized void add(int left, int right, int entered) {
+		if (size == tachoL.length) {
+			int length = 2 * size;
+			int[] newL = new int[length];
+			int[] newR = new int[length];
+			byte[] newCrossings = new byte[length];
+			System.arraycopy(tachoL, 0, newL, 0, size);
+			System.arraycopy(tachoR, 0, newR, 0, size);
+			System.arraycopy(crossings, 0, newCrossings, 0, size);
+			tachoL = newL;
+			tachoR = newR;
+			crossings = newCrossings;
+		}
+		tachoL[size] = left;
+		tachoR[size] = right;
+		crossings[size] = (byte) entered;
+		size++;
+	}
+
+	/**
+	 * @return number of samples
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	/**
+	 * @param i sample index
+	 * @return left motor tacho count
+	 */
+	public synchronized int getTachoL(int i) {
+		return tachoL[i];
+	}
+
+	/**
+	 * @param i sample index
+	 * @return right motor tacho count
+	 */
+	public synchronized int getTachoR(int i) {
+		return tachoR[i];
+	}
+
+	/**
+	 * @param i sample index
+	 * @return LEFT and RIGHT bits of the sensors that entered a line
+	 */
+	public synchronized int getCrossings(int i) {
+		return crossings[i];
+	}
+
+	/**
+	 * Writes the log
+	 *
+	 * @param fileName path to the log file
+	 * @throws IOException if the file cannot be written
+	 */
+	public synchronized void save(String fileName) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(fileName));
+		try {
+			writer.println("# left tacho, right tacho, crossings (1 = left, 2 = right)");
+			for (int i = 0; i < size; i++) {
+				writer.println(tachoL[i] + " " + tachoR[i] + " " + crossings[i]);
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * Loads a log
+	 *
+	 * @param fileName path to the log file
+	 * @return log
+	 * @throws IOException if the file cannot be read
+	 * @throws CalibrationExceptions if the file is not a valid log
+	 */
+	public static CrossingLog load(String fileName) throws IOException, CalibrationExceptions {
+		CrossingLog log = new CrossingLog();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] tokens = line.split("\\s+");
+				if (tokens.length != 3)
+					throw new CalibrationExceptions(fileName + ":" + lineNumber + ": expected 3 numbers");
+				try {
+					log.add(Integer.parseInt(tokens[0]), Integer.parseInt(tokens[1]), Integer.parseInt(tokens[2]));
+				} catch (NumberFormatException e) {
+					throw new CalibrationExceptions(fileName + ":" + lineNumber + ": invalid number");
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return log;
+	}
+}
@@ -0,0 +1,192 @@
+package ca.mcgill.ecse211.calibration;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+/**
+ * This class holds the kinematic parameters of the robot: the wheel radii, the track, and the angles that
+ * LightLocalization adds to its heading depending on the quadrant it starts in. They are loaded at startup into
+ * the constants of RingChallenge, which the Odometer, Navigation and LightLocalization use. Calibrator measures them
+ * and writes the file. Lines starting with # are comments:
+ * <pre>
+ * leftRadius &lt;cm&gt;
+ * rightRadius &lt;cm&gt;
+ * track &lt;cm&gt;
+ * correctionAngles &lt;deg&gt; &lt;deg&gt; &lt;deg&gt; &lt;deg&gt;
+ * </pre>
+ * Parameters missing from the file keep their default values.
+ *
+ * @author Matthew
+ *
+ */
+public class RobotCalibration {
+
+	private final double leftRadius;
+	private final double rightRadius;
+	private final double track;
+	private final double[] correctionAngles;
+
+	/**
+	 * Constructor for the RobotCalibration class
+	 *
+	 * @param leftRadius left wheel radius in cm
+	 * @param rightRadius right wheel radius in cm
+	 * @param track distance between the wheels in cm
+	 * @param correctionAngles angles added by LightLocalization in degrees, for quadrants 0 to 3
+	 */
+	public RobotCalibration(double leftRadius, double rightRadius, double track, double[] correctionAngles) {
+		this.leftRadius = leftRadius;
+		this.rightRadius = rightRadius;
+		this.track = track;
+		this.correctionAngles = correctionAngles.clone();
+	}
+
+	/**
+	 * Creates the calibration measured by hand on the competition robot
+	 *
+	 * @return default calibration
+	 */
+	public static RobotCalibration createDefault() {
+		return new RobotCalibration(2.1, 2.1, 14.6, new double[] { -9, -9, -8, -6 });	//track was 14.74 before
+	}
+
+	/**
+	 * Loads a calibration if its file exists, and the default calibration otherwise
+	 *
+	 * @param fileName path to the calibration file
+	 * @return calibration
+	 */
+	public static RobotCalibration loadOrDefault(String fileName) {
+		if (!new File(fileName).exists())
+			return createDefault();
+		try {
+			return load(fileName);
+		} catch (IOException e) {
+			System.out.println("Could not read " + fileName + "; using default calibration");
+		} catch (CalibrationExceptions e) {
+			System.out.println(e.getMessage() + "; using default calibration");
+		}
+		return createDefault();
+	}
+
+	/**
+	 * Loads a calibration file
+	 *
+	 * @param fileName path to the calibration file
+	 * @return calibration described by the file, with default values for missing parameters
+	 * @throws IOException if the file cannot be read
+	 * @throws CalibrationExceptions if the file is not a valid calibration file
+	 */
+	public static RobotCalibration load(String fileName) throws IOException, CalibrationExceptions {
+		RobotCalibration defaults = createDefault();
+		double leftRadius = defaults.leftRadius;
+		double rightRadius = defaults.rightRadius;
+		double track = defaults.track;
+		double[] correctionAngles = defaults.correctionAngles;
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] tokens = line.split("\\s+");
+				try {
+					if (tokens[0].equals("leftRadius") && tokens.length == 2)
+						leftRadius = positive(tokens[1]);
+					else if (tokens[0].equals("rightRadius") && tokens.length == 2)
+						rightRadius = positive(tokens[1]);
+					else if (tokens[0].equals("track") && tokens.length == 2)
+						track = positive(tokens[1]);
+					else if (tokens[0].equals("correctionAngles") && tokens.length == 5) {
+						correctionAngles = new double[4];
+						for (int i = 0; i < 4; i++) {
+							correctionAngles[i] = Double.parseDouble(tokens[1 + i]);
+						}
+					} else
+						throw new CalibrationExceptions("unexpected " + tokens[0]);
+				} catch (NumberFormatException e) {
+					throw new CalibrationExceptions(fileName + ":" + lineNumber + ": invalid number");
+				} catch (CalibrationExceptions e) {
+					throw new CalibrationExceptions(fileName + ":" + lineNumber + ": " + e.getMessage());
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return new RobotCalibration(leftRadius, rightRadius, track, correctionAngles);
+	}
+
+	/**
+	 * @return a length parsed from a token
+	 * @throws CalibrationExceptions if it is not positive
+	 */
+	private static double positive(String token) throws CalibrationExceptions {
+		double value = Double.parseDouble(token);
+		if (!(value > 0))
+			throw new CalibrationExceptions("length must be positive");
+		return value;
+	}
+
+	/**
+	 * Writes the calibration file
+	 *
+	 * @param fileName path to the calibration file
+	 * @param comment first comment line, e.g. how the calibration was measured
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(String fileName, String comment) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(fileName));
+		try {
+			writer.println("# " + comment);
+			writer.println(String.format("leftRadius %.4f", leftRadius));
+			writer.println(String.format("rightRadius %.4f", rightRadius));
+			writer.println(String.format("track %.3f", track));
+			writer.println(String.format("correctionAngles %.2f %.2f %.2f %.2f", correctionAngles[0],
+					correctionAngles[1], correctionAngles[2], correctionAngles[3]));
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @return left wheel radius in cm
+	 */
+	public double getLeftRadius() {
+		return leftRadius;
+	}
+
+	/**
+	 * @return right wheel radius in cm
+	 */
+	public double getRightRadius() {
+		return rightRadius;
+	}
+
+	/**
+	 * @return distance between the wheels in cm
+	 */
+	public double getTrack() {
+		return track;
+	}
+
+	/**
+	 * @return angles added by LightLocalization in degrees, for quadrants 0 to 3
+	 */
+	public double[] getCorrectionAngles() {
+		return correctionAngles.clone();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("left radius %.4f cm, right radius %.4f cm, track %.3f cm, correction angles "
+				+ "%.2f %.2f %.2f %.2f deg", leftRadius, rightRadius, track, correctionAngles[0], correctionAngles[1],
+				correctionAngles[2], correctionAngles[3]);
+	}
+}
@@ -0,0 +1,65 @@
+package ca.mcgill.ecse211.config;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This class keeps the last game parameters obtained from another source in a file, so that a restart of the
+ * program during a game reuses them instead of waiting for the server again. A cache file older than the
+ * maximum age is considered to be from a previous game and is ignored.
+ * 
+ * @author Matthew
+ *
+ */
+public class CachedConfigSource implements GameConfigSource {
+
+	private final GameConfigSource source;
+	private final File cacheFile;
+	private final long maxAge;
+
+	/**
+	 * Constructor for the CachedConfigSource class
+	 * @param source source used when the cache is missing or too old
+	 * @param fileName path to the cache file
+	 * @param maxAge age in ms after which the cache is ignored, 0 to always use it
+	 */
+	public CachedConfigSource(GameConfigSource source, String fileName, long maxAge) {
+		this.source = source;
+		this.cacheFile = new File(fileName);
+		this.maxAge = maxAge;
+	}
+
+	@Override
+	public GameConfig fetch() throws IOException {
+		if (isFresh()) {
+			try {
+				return GameConfig.load(cacheFile.getPath());
+			} catch (IOException e) {
+				System.out.println("Ignoring cache: " + e.getMessage());
+			}
+		}
+		GameConfig config = source.fetch();
+		try {
+			config.save(cacheFile.getPath());
+		} catch (IOException e) {
+			System.out.println("Could not cache game parameters: " + e.getMessage());
+		}
+		return config;
+	}
+
+	/**
+	 * Deletes the cache, so that the next fetch uses the source
+	 */
+	public void clear() {
+		cacheFile.delete();
+	}
+
+	/**
+	 * @return whether the cache file exists and is recent enough to be used
+	 */
+	private boolean isFresh() {
+		if (!cacheFile.isFile())
+			return false;
+		return maxAge <= 0 || System.currentTimeMillis() - cacheFile.lastModified() <= maxAge;
+	}
+}
@@ -0,0 +1,151 @@
+package ca.mcgill.ecse211.config;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Map;
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
+
+/**
+ * This class is a local stand-in for the game server. It speaks the protocol of WifiConnection on the same port:
+ * the robot sends a REQ with its team number, the server answers with a RESP holding the game parameters (or a
+ * bad status if the team is not playing), and the robot acknowledges with an ACK. It serves the same parameters
+ * to every request until it is stopped, so a robot or the simulator can be tested without the real server.
+ * <p>
+ * Usage: ConfigServer layout.xml
+ *
+ * @author Matthew
+ *
+ */
+public class ConfigServer implements Runnable {
+
+	public static final int PORT = 49287;	//port WifiConnection connects to
+
+	private final GameConfig config;
+	private final ServerSocket serverSocket;
+	private volatile int served = 0;
+
+	/**
+	 * Constructor for the ConfigServer class. The socket is bound immediately.
+	 * @param config game parameters to serve
+	 * @param port port to listen on, PORT for WifiConnection clients, 0 for any free port
+	 * @throws IOException if the port cannot be bound
+	 */
+	public ConfigServer(GameConfig config, int port) throws IOException {
+		this.config = config;
+		this.serverSocket = new ServerSocket(port);
+	}
+
+	/**
+	 * Answers requests one at a time until the server is stopped
+	 */
+	@Override
+	public void run() {
+		while (!serverSocket.isClosed()) {
+			try {
+				Socket socket = serverSocket.accept();
+				try {
+					serve(socket);
+				} catch (IOException e) {
+					System.out.println("Request failed: " + e.getMessage());
+				} finally {
+					socket.close();
+				}
+			} catch (IOException e) {
+				//socket closed by stop
+			}
+		}
+	}
+
+	/**
+	 * Stops the server
+	 */
+	public void stop() {
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			//already closed
+		}
+	}
+
+	/**
+	 * @return port the server listens on
+	 */
+	public int getPort() {
+		return serverSocket.getLocalPort();
+	}
+
+	/**
+	 * @return number of requests answered with the game parameters
+	 */
+	public int getServed() {
+		return served;
+	}
+
+	/**
+	 * Handles one connection: REQ, RESP, ACK
+	 * @param socket connection to a client
+	 * @throws IOException if the connection fails or the client does not follow the protocol
+	 */
+	@SuppressWarnings("unchecked")
+	private void serve(Socket socket) throws IOException {
+		BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+		PrintWriter writer = new PrintWriter(socket.getOutputStream(), true);
+
+		Object request = JSONValue.parse(readLine(reader));
+		if (!(request instanceof JSONObject) || !"REQ".equals(((JSONObject) request).get("Type")))
+			throw new IOException("Expected a request");
+		Object team = ((JSONObject) request).get("Team Number");
+
+		JSONObject response = new JSONObject();
+		response.put("Type", "RESP");
+		if (!(team instanceof Number) || (((Number) team).intValue() != config.get("RedTeam")
+				&& ((Number) team).intValue() != config.get("GreenTeam"))) {
+			response.put("Status", "Invalid team number " + team);
+			writer.println(response.toJSONString());
+			return;
+		}
+		response.put("Status", "OK");
+		for (Map.Entry<String, Long> entry : config.toMap().entrySet()) {
+			response.put(entry.getKey(), entry.getValue());
+		}
+		writer.println(response.toJSONString());
+
+		Object ack = JSONValue.parse(readLine(reader));
+		if (!(ack instanceof JSONObject) || !"ACK".equals(((JSONObject) ack).get("Type")))
+			throw new IOException("Expected an acknowledgement");
+		served++;
+	}
+
+	/**
+	 * @param reader connection to read from
+	 * @return next line
+	 * @throws IOException if the connection was closed
+	 */
+	private static String readLine(BufferedReader reader) throws IOException {
+		String line = reader.readLine();
+		if (line == null)
+			throw new IOException("Connection closed");
+		return line;
+	}
+
+	/**
+	 * Serves a layout file until the program is killed
+	 * @param args layout file
+	 * @throws IOException if the file cannot be read or the port cannot be bound
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length != 1) {
+			System.out.println("Usage: ConfigServer layout.xml");
+			return;
+		}
+		ConfigServer server = new ConfigServer(GameConfig.load(args[0]), PORT);
+		System.out.println("Serving " + args[0] + " on port " + server.getPort());
+		server.run();
+	}
+}
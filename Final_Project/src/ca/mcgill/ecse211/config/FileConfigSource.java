@@ -0,0 +1,28 @@
+package ca.mcgill.ecse211.config;
+
+import java.io.IOException;
+
+/**
+ * This class reads the game parameters from a layout file in the server's format (server/*.xml), as an
+ * offline stand-in for the server
+ * 
+ * @author Matthew
+ *
+ */
+public class FileConfigSource implements GameConfigSource {
+
+	private final String fileName;
+
+	/**
+	 * Constructor for the FileConfigSource class
+	 * @param fileName path to the layout file
+	 */
+	public FileConfigSource(String fileName) {
+		this.fileName = fileName;
+	}
+
+	@Override
+	public GameConfig fetch() throws IOException {
+		return GameConfig.load(fileName);
+	}
+}
@@ -0,0 +1,177 @@
+package ca.mcgill.ecse211.config;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * This class holds the game parameters sent by the server before the start of a game (team numbers, corners,
+ * zones, island, tunnels and trees). It is immutable, so it can be shared by any thread once received.
+ * <p>
+ * The parameters can be read from and written to files in the format of the server's layouts
+ * (server/*.xml), one &lt;value key="..."&gt;n&lt;/value&gt; element per parameter.
+ *
+ * @author Matthew
+ *
+ */
+public final class GameConfig {
+
+	private static final String[] KEYS = { "RedTeam", "RedCorner", "GreenTeam", "GreenCorner", "Red_LL_x",
+			"Red_LL_y", "Red_UR_x", "Red_UR_y", "Green_LL_x", "Green_LL_y", "Green_UR_x", "Green_UR_y", "Island_LL_x",
+			"Island_LL_y", "Island_UR_x", "Island_UR_y", "TNR_LL_x", "TNR_LL_y", "TNR_UR_x", "TNR_UR_y", "TNG_LL_x",
+			"TNG_LL_y", "TNG_UR_x", "TNG_UR_y", "TR_x", "TR_y", "TG_x", "TG_y" };
+	private static final Pattern VALUE = Pattern.compile("<value\\s+key=\"(\\w+)\">\\s*(-?\\d+)\\s*</value>");
+
+	private final int[] values;
+
+	/**
+	 * Constructor for the GameConfig class
+	 *
+	 * @param values values of the parameters, in the order of KEYS
+	 */
+	private GameConfig(int[] values) {
+		this.values = values;
+	}
+
+	/**
+	 * Creates a configuration from game data, such as the map returned by the server. Other keys are ignored.
+	 *
+	 * @param data map from parameter names to numbers
+	 * @return the configuration
+	 * @throws IllegalArgumentException if a parameter is missing or not a number
+	 */
+	public static GameConfig fromMap(Map<?, ?> data) {
+		int[] values = new int[KEYS.length];
+		for (int i = 0; i < KEYS.length; i++) {
+			Object value = data.get(KEYS[i]);
+			if (!(value instanceof Number))
+				throw new IllegalArgumentException("Missing or invalid game parameter " + KEYS[i]);
+			values[i] = ((Number) value).intValue();
+		}
+		return new GameConfig(values);
+	}
+
+	/**
+	 * Reads a configuration from a file in the format of the server's layouts
+	 *
+	 * @param fileName path to the file
+	 * @return the configuration
+	 * @throws IOException if the file cannot be read or a parameter is missing
+	 */
+	public static GameConfig load(String fileName) throws IOException {
+		Map<String, Long> data = new LinkedHashMap<String, Long>();
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Matcher matcher = VALUE.matcher(line);
+				while (matcher.find()) {
+					data.put(matcher.group(1), Long.valueOf(matcher.group(2)));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		try {
+			return fromMap(data);
+		} catch (IllegalArgumentException e) {
+			throw new IOException(fileName + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the configuration to a file in the format of the server's layouts
+	 *
+	 * @param fileName path to the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(String fileName) throws IOException {
+		PrintWriter writer = new PrintWriter(new FileWriter(fileName));
+		try {
+			writer.println("<xml>");
+			for (int i = 0; i < KEYS.length; i++) {
+				writer.println("\t<value key=\"" + KEYS[i] + "\">" + values[i] + "</value>");
+			}
+			writer.println("</xml>");
+			if (writer.checkError())
+				throw new IOException("Could not write " + fileName);
+		} finally {
+			writer.close();
+		}
+	}
+
+	/**
+	 * @param key name of the parameter, as sent by the server
+	 * @return value of the parameter
+	 * @throws IllegalArgumentException if the key is not a game parameter
+	 */
+	public int get(String key) {
+		return values[index(key)];
+	}
+
+	/**
+	 * Returns a copy of this configuration with one parameter changed
+	 *
+	 * @param key name of the parameter, as sent by the server
+	 * @param value new value of the parameter
+	 * @return the new configuration
+	 * @throws IllegalArgumentException if the key is not a game parameter
+	 */
+	public GameConfig with(String key, int value) {
+		int[] newValues = values.clone();
+		newValues[index(key)] = value;
+		return new GameConfig(newValues);
+	}
+
+	/**
+	 * @return the parameters as a map from names to Long values, like the data returned by the server
+	 */
+	public Map<String, Long> toMap() {
+		Map<String, Long> data = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < KEYS.length; i++) {
+			data.put(KEYS[i], Long.valueOf(values[i]));
+		}
+		return data;
+	}
+
+	/**
+	 * @return names of the game parameters
+	 */
+	public static String[] getKeys() {
+		return KEYS.clone();
+	}
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof GameConfig && Arrays.equals(values, ((GameConfig) other).values);
+	}
+
+	@Override
+	public int hashCode() {
+		return Arrays.hashCode(values);
+	}
+
+	@Override
+	public String toString() {
+		return toMap().toString();
+	}
+
+	/**
+	 * @param key name of a parameter
+	 * @return index of the parameter in KEYS
+	 */
+	private static int index(String key) {
+		for (int i = 0; i < KEYS.length; i++) {
+			if (KEYS[i].equals(key))
+				return i;
+		}
+		throw new IllegalArgumentException("Unknown game parameter " + key);
+	}
+}
@@ -0,0 +1,22 @@
+package ca.mcgill.ecse211.config;
+
+import java.io.IOException;
+
+/**
+ * This interface represents a place the game parameters can be obtained from: the server over WiFi, a layout
+ * file, or a cache of a previous fetch
+ * 
+ * @author Matthew
+ *
+ */
+public interface GameConfigSource {
+
+	/**
+	 * Obtains the game parameters, blocking until they are available
+	 * 
+	 * @return the game parameters
+	 * @throws IOException if the parameters cannot be obtained
+	 */
+	public GameConfig fetch() throws IOException;
+
+}
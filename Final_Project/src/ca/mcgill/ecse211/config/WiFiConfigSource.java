@@ -0,0 +1,47 @@
+package ca.mcgill.ecse211.config;
+
+import java.io.IOException;
+import java.util.Map;
+
+import ca.mcgill.ecse211.WiFiClient.WifiConnection;
+
+/**
+ * This class gets the game parameters from the server (or a ConfigServer standing in for it) with the
+ * WifiConnection client. The fetch blocks until the server sends the data, and can be cancelled with the
+ * escape button.
+ * 
+ * @author Matthew
+ *
+ */
+public class WiFiConfigSource implements GameConfigSource {
+
+	private final String serverIP;
+	private final int teamNumber;
+	private final boolean debugPrint;
+
+	/**
+	 * Constructor for the WiFiConfigSource class
+	 * @param serverIP IP address of the server
+	 * @param teamNumber our team number
+	 * @param debugPrint whether the connection prints debug information
+	 */
+	public WiFiConfigSource(String serverIP, int teamNumber, boolean debugPrint) {
+		this.serverIP = serverIP;
+		this.teamNumber = teamNumber;
+		this.debugPrint = debugPrint;
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public GameConfig fetch() throws IOException {
+		WifiConnection conn = new WifiConnection(serverIP, teamNumber, debugPrint);
+		try {
+			Map data = conn.getData();
+			return GameConfig.fromMap(data);
+		} catch (IOException e) {
+			throw e;
+		} catch (Exception e) {	//parse errors and invalid data
+			throw new IOException("Invalid data from server: " + e.getMessage());
+		}
+	}
+}
@@ -2,11 +2,15 @@ package ca.mcgill.ecse211.game;
 
 import java.util.ArrayList;
 
-import ca.mcgill.ecse211.interfaces.*;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedUltrasonicUser;
 import ca.mcgill.ecse211.localization.*;
 import ca.mcgill.ecse211.odometry.*;
+import ca.mcgill.ecse211.planning.ArenaModel;
+import ca.mcgill.ecse211.sensor.SensorBus;
 import ca.mcgill.ecse211.sensor.SensorController;
-import lejos.hardware.Sound;
+import ca.mcgill.ecse211.sensor.SensorSubscription;
 
 /**
  * This class contains the state machine. Each change in state pauses or resumes
@@ -25,8 +29,15 @@ public class GameController implements Runnable {
 	private RingSearcher ringSearcher;
 	private OdometryCorrection odoCorrection;
 	private Odometer odometer;
+	private SensorSubscription[] subscriptions;
+	private ParticleLocalizer particleLocalizer;
+	private PoseFusion poseFusion;
 
 	public static GameState state;
+	
+	//uncertainty of the pose after a light localization, from which the particle localizer starts
+	private static final double TRACKING_SIGMA_XY = 1.0;	//cm
+	private static final double TRACKING_SIGMA_THETA = 2.0;	//deg
 
 	public GameController(SensorController sensorController, LightLocalization lsLocalization,
 			UltrasonicLocalization usLocalization, RingSearcher ringSearcher,
@@ -38,6 +49,86 @@ public class GameController implements Runnable {
 		this.odoCorrection = odoCorrection;
 		this.gameNav = gameNav;
 		this.odometer = odometer;
+		
+		//each sensor user is subscribed once, and only receives data in the states of its mask
+		SensorBus sensorBus = sensorController.getSensorBus();
+		subscriptions = new SensorSubscription[] {
+				sensorBus.subscribeUltrasonic(usLocalization, GameState.USLOCALIZATION.mask()),
+				sensorBus.subscribeLight(lsLocalization.getSampleBatcher(), GameState.LSLOCALIZATION.mask()),
+				sensorBus.subscribeLight(odoCorrection, GameState.NAVIGATION.mask()),
+				sensorBus.subscribeColor(ringSearcher, GameState.TOWERSEARCH.mask()) };
+	}
+	
+	/**
+	 * Sets the particle localizer that tracks the pose during navigation, and is used instead of the light
+	 * localization spin when the robot has to be localized again on the island
+	 * 
+	 * @param particleLocalizer
+	 */
+	public void setParticleLocalizer(ParticleLocalizer particleLocalizer) {
+		this.particleLocalizer = particleLocalizer;
+		subscribeWhileNavigating(particleLocalizer, particleLocalizer);
+	}
+	
+	/**
+	 * Sets the pose fusion that corrects the odometer (see RingChallenge.POSE_CORRECTION), so that it receives the
+	 * light and ultrasonic samples while the robot navigates
+	 * 
+	 * @param poseFusion
+	 */
+	public void setPoseFusion(PoseFusion poseFusion) {
+		this.poseFusion = poseFusion;
+		subscribeWhileNavigating(poseFusion, poseFusion);
+	}
+	
+	/**
+	 * Subscribes light and ultrasonic sensor users for the navigation and tower search states
+	 * 
+	 * @param lightUser
+	 * @param ultrasonicUser
+	 */
+	private void subscribeWhileNavigating(TimedLightSensorUser lightUser, TimedUltrasonicUser ultrasonicUser) {
+		SensorBus sensorBus = sensorController.getSensorBus();
+		int mask = GameState.NAVIGATION.mask() | GameState.TOWERSEARCH.mask();
+		SensorSubscription[] newSubscriptions = new SensorSubscription[subscriptions.length + 2];
+		System.arraycopy(subscriptions, 0, newSubscriptions, 0, subscriptions.length);
+		newSubscriptions[subscriptions.length] = sensorBus.subscribeLight(lightUser, mask);
+		newSubscriptions[subscriptions.length + 1] = sensorBus.subscribeUltrasonic(ultrasonicUser, mask);
+		subscriptions = newSubscriptions;
+	}
+	
+	/**
+	 * Unsubscribes the sensor users of this controller from the sensor bus, so that another controller
+	 * (e.g. for the next simulated game) can subscribe its own
+	 */
+	public void unsubscribe() {
+		for (SensorSubscription subscription : subscriptions)
+			subscription.unsubscribe();
+		if(particleLocalizer != null)
+			particleLocalizer.stop();
+	}
+	
+	/**
+	 * Starts the particle localizer from the pose of the odometer, right after a light localization
+	 */
+	private void startTracking() {
+		if(particleLocalizer == null)
+			return;
+		double[] XYT = odometer.getXYT();
+		particleLocalizer.reset(XYT[0], XYT[1], XYT[2], TRACKING_SIGMA_XY, TRACKING_SIGMA_THETA);
+	}
+	
+	/**
+	 * Localizes the robot with the particle localizer if its particles agree on a pose
+	 * 
+	 * @return true if the odometer was set from the particle localizer
+	 */
+	private boolean recoverPose() {
+		double[] XYT = new double[3];
+		if(particleLocalizer == null || !particleLocalizer.getXYT(XYT))
+			return false;
+		odometer.setXYT(XYT[0], XYT[1], XYT[2]);
+		return true;
 	}
 
 	@Override
@@ -61,8 +152,9 @@ public class GameController implements Runnable {
 		lsLocalization.lightLocalization(WiFi.localizeX, WiFi.localizeY, WiFi.corner);
 		Navigation.travelTo(WiFi.localizeX, WiFi.localizeY, false);
 		for (int i = 0; i < 3; i++)
-			Sound.beep();
+			Hardware.getSpeaker().beep();
 		
+		startTracking();
 		System.out.println("Done Localization");
 		System.out.println(odometer.getXYT()[0]);
 		System.out.println(odometer.getXYT()[1]);
@@ -71,26 +163,30 @@ public class GameController implements Runnable {
 		
 		// Travel to Tunnel
 		changeState(GameState.NAVIGATION);
-		int tunnelOrientation = GameNavigation.getTunnelOrientation(true);
-		gameNav.navToTunnel(tunnelOrientation);
+		ArenaModel arena = WiFi.getArena();
+		gameNav.navToTunnel(arena.getTunnelOrientation(true));
 		
 		System.out.println("At Tunnel");
 		System.out.println(odometer.getXYT()[0]);
 		System.out.println(odometer.getXYT()[1]);
 
 		// Traverse Tunnel
-		int[][] obstacles = GameNavigation.getIslandObstacles();
-		GameNavigation.navInTunnelToIsland(tunnelOrientation, obstacles);
+		GameNavigation.navInTunnelToIsland(arena);
 
 		// Travel to Tower (avoiding obstacles)
 		int[] tunnelCoordinates = Navigation.getClosestCoordinates(odometer.getXYT()[0], odometer.getXYT()[1]);
-		ArrayList<Integer> availableSides = RingSearcher.checkSidesAvailable();
+		ArrayList<Integer> availableSides = arena.getAvailableSides();
 		System.out.println(availableSides.size());
-		boolean localizationNeeded = GameNavigation.tunnelToTree(tunnelCoordinates, obstacles, availableSides);
-		if(localizationNeeded) {
+		boolean localizationNeeded = GameNavigation.tunnelToTree(tunnelCoordinates, arena, availableSides);
+		if(localizationNeeded && recoverPose()) {
+			System.out.println("Localized by the particle filter");
+			Navigation.travelTo(tunnelCoordinates[0], tunnelCoordinates[1], false);
+		}
+		else if(localizationNeeded) {
 			this.changeState(GameState.LSLOCALIZATION);
 			lsLocalization.lightLocalization(tunnelCoordinates[0], tunnelCoordinates[1], Navigation.getQuadrant(odometer.getXYT()[2]));
 			Navigation.travelTo(tunnelCoordinates[0], tunnelCoordinates[1], false);
+			startTracking();
 		}
 		else {
 			int[] treeCoords = Navigation.getClosestCoordinates(odometer.getXYT()[0], odometer.getXYT()[1]);
@@ -99,35 +195,35 @@ public class GameController implements Runnable {
 		}
 		
 		for (int i = 0; i < 3; i++)
-			Sound.beep();
+			Hardware.getSpeaker().beep();
 		
 		int navigationTime = TimeKeeper.getNavigationTime();
 		System.out.println("Need " + navigationTime + " seconds to get back");
 
-		// Search Tower
+		// Search Tower, in the order that fits the most sides in the time left before heading back
 		do {
 			this.changeState(GameState.NAVIGATION);
-			int side = gameNav.navAroundTree(obstacles, availableSides);
+			int budget = (RingChallenge.GAME_TIME - TimeKeeper.getTime() - navigationTime) * 1000;
+			int side = gameNav.navAroundTree(arena, availableSides, tunnelCoordinates,
+					RingChallenge.MAX_RINGS - ringSearcher.getCount(), budget);
 			if (side != -1) {
 				this.changeState(GameState.TOWERSEARCH);
 				ringSearcher.searchSide(side);
 			}
 			else {
-				System.out.println("All remaining sides inaccessible; going back");
+				System.out.println("No remaining side can be searched in time; going back");
 				break;
 			}
-		} while (RingChallenge.GAME_TIME - TimeKeeper.getTime() > navigationTime + 45 && ringSearcher.getCount() < 3);
-		if(RingChallenge.GAME_TIME - TimeKeeper.getTime() <= navigationTime + 45)
-			System.out.println("Ran out of time; going back");
-		else
+		} while (ringSearcher.getCount() < RingChallenge.MAX_RINGS && !ringSearcher.isFull());
+		if(ringSearcher.getCount() >= RingChallenge.MAX_RINGS || ringSearcher.isFull())
 			System.out.println("Got all of the rings can carry; going back");
 
 		// Travel back to Tunnel
 		changeState(GameState.NAVIGATION);
-		GameNavigation.treeToTunnel(tunnelCoordinates, obstacles);
+		GameNavigation.treeToTunnel(tunnelCoordinates, arena);
 
 		// Traverse Tunnel
-		GameNavigation.navInTunnelFromIsland(tunnelOrientation, obstacles);
+		GameNavigation.navInTunnelFromIsland(arena);
 
 		// Travel to start
 		GameNavigation.tunnelToStart();
@@ -136,8 +232,10 @@ public class GameController implements Runnable {
 		ringSearcher.unload();
 		
 		for (int i = 0; i < 5; i++)
-			Sound.beep();
+			Hardware.getSpeaker().beep();
 		
+		changeState(GameState.DONE);
+		WiFi.gameCompleted();
 		GameNavigation.weirdFlexButOk();
 	}
 
@@ -148,9 +246,6 @@ public class GameController implements Runnable {
 	 */
 	public void changeState(GameState newState) {
 		state = newState;
-		ArrayList<UltrasonicUser> currentUltrasonicUsers = new ArrayList<UltrasonicUser>();
-		ArrayList<LightSensorUser> currentLightSensorUsers = new ArrayList<LightSensorUser>();
-		ArrayList<ColorSensorUser> currentColorSensorUsers = new ArrayList<ColorSensorUser>();
 		switch (state) {
 		case INSTRUCTIONS:
 			sensorController.pauseUltrasonicPoller();
@@ -163,20 +258,20 @@ public class GameController implements Runnable {
 			sensorController.unpauseColorPoller();
 			break;
 		case USLOCALIZATION:
-			currentUltrasonicUsers.add(usLocalization);
 			sensorController.unpauseUltrasonicPoller();
 			sensorController.pauseLightPoller();
 			sensorController.pauseColorPoller();
 			break;
 		case LSLOCALIZATION:
-			currentLightSensorUsers.add(lsLocalization);
 			sensorController.pauseUltrasonicPoller();
 			sensorController.unpauseLightPoller();
 			sensorController.pauseColorPoller();
 			break;
 		case NAVIGATION:
-			currentLightSensorUsers.add(odoCorrection);
-			sensorController.pauseUltrasonicPoller();
+			if(particleLocalizer != null || poseFusion != null)	//the walls keep the estimates in place
+				sensorController.unpauseUltrasonicPoller();
+			else
+				sensorController.pauseUltrasonicPoller();
 			sensorController.unpauseLightPoller();
 			sensorController.pauseColorPoller();
 			break;
@@ -186,7 +281,6 @@ public class GameController implements Runnable {
 			sensorController.pauseColorPoller();
 			break;
 		case TOWERSEARCH:
-			currentColorSensorUsers.add(ringSearcher);
 			sensorController.pauseUltrasonicPoller();
 			sensorController.unpauseLightPoller();
 			sensorController.unpauseColorPoller();
@@ -197,8 +291,6 @@ public class GameController implements Runnable {
 			sensorController.pauseColorPoller();
 			break;
 		}
-		sensorController.setCurrentUltrasonicUsers(currentUltrasonicUsers);
-		sensorController.setCurrentLeftLightSensorUsers(currentLightSensorUsers);
-		sensorController.setCurrentColorSensorUsers(currentColorSensorUsers);
+		sensorController.getSensorBus().select(state.mask());
 	}
 }
@@ -2,9 +2,15 @@ package ca.mcgill.ecse211.game;
 
 import java.util.ArrayList;
 
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.hardware.Speaker;
+import ca.mcgill.ecse211.localization.MotionHandle;
+import ca.mcgill.ecse211.localization.MotionProfile;
 import ca.mcgill.ecse211.localization.Navigation;
 import ca.mcgill.ecse211.odometry.Odometer;
-import lejos.hardware.Sound;
+import ca.mcgill.ecse211.planning.ArenaModel;
+import ca.mcgill.ecse211.planning.PathPlanner;
+import ca.mcgill.ecse211.planning.TourPlanner;
 
 /**
  * This class contains higher-level navigation methods, such as methods that
@@ -18,6 +24,8 @@ import lejos.hardware.Sound;
 public class GameNavigation {
 
 	private static Odometer odometer;
+	private static final PathPlanner planner = PathPlanner.createDefault();
+	private static final TourPlanner tourPlanner = new TourPlanner(RingChallenge.SIDE_SEARCH_TIME);
 
 	
 	/**
@@ -35,29 +43,7 @@ public class GameNavigation {
 	 * 3 = horizontal & LL on starting island, 4 = horizontal && LL on island
 	 */
 	public static int getTunnelOrientation(boolean ourTunnel) {
-		int LL_x, LL_y, UR_x, UR_y;
-		if(ourTunnel) {
-			LL_x = WiFi.LL_x;
-			LL_y = WiFi.LL_y;
-			UR_x = WiFi.UR_x;
-			UR_y = WiFi.UR_y;
-		}
-		else {
-			LL_x = WiFi.opp_LL_x;
-			LL_y = WiFi.opp_LL_y;
-			UR_x = WiFi.opp_UR_x;
-			UR_y = WiFi.opp_UR_y;
-		}
-		//The island can either be completely above, below, right of, or left of the starting island, but never a combination of these.
-		//The relative position of islands also indicates whether the bridge is vertical or horizontal.
-		if(Math.max(LL_y, UR_y) <= Math.min(WiFi.Island_LL_y, WiFi.Island_UR_y))	//island above starting island?
-			return 1;
-		else if(Math.min(LL_y, UR_y) >= Math.max(WiFi.Island_LL_y, WiFi.Island_UR_y))	//island below starting island?
-			return 2;
-		else if(Math.max(LL_x, UR_x) <= Math.min(WiFi.Island_LL_x, WiFi.Island_UR_x))	//island right of starting island?
-			return 3;
-		else
-			return 4;
+		return WiFi.getArena().getTunnelOrientation(ourTunnel);
 	}
 	
 	
@@ -103,45 +89,29 @@ public class GameNavigation {
 	/**
 	 * Navigates the robot from 0.4 tiles from the entrance to the tunnel to 0.6 tiles out of the exit of the tunnel,
 	 * then to the one of the two closest grid intersections (favouring the one that does not have an obstacle)
-	 * @param tunnelOrientation 1 = vertical & LL on starting island, 2 = vertical & LL on island, 
-	 * 3 = horizontal & LL on starting island, 4 = horizontal && LL on island
-	 * @param obstacles list of coordinates that the robot cannot travel on
+	 * @param arena map of the field
 	 */
-	public static void navInTunnelToIsland(int tunnelOrientation, int[][] obstacles) {
-		switch(tunnelOrientation) {
+	public static void navInTunnelToIsland(ArenaModel arena) {
+		switch(arena.getTunnelOrientation(true)) {
 		case 1:
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
-					(WiFi.TunUR_y + 0.6) * RingChallenge.TILE_SIZE, false);
-			if(!hasObstacle(WiFi.TunLL_x, WiFi.TunUR_y + 1, obstacles))
-				Navigation.travelTo(WiFi.TunLL_x, WiFi.TunUR_y + 1, false);
-			else
-				Navigation.travelTo(WiFi.TunLL_x + 1, WiFi.TunUR_y + 1, false);
+					(WiFi.TunUR_y + 0.6) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		case 2:
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
-					(WiFi.TunLL_y - 0.6) * RingChallenge.TILE_SIZE, false);
-			if(!hasObstacle(WiFi.TunLL_x, WiFi.TunLL_y - 1, obstacles))
-				Navigation.travelTo(WiFi.TunLL_x, WiFi.TunLL_y - 1, false);
-			else
-				Navigation.travelTo(WiFi.TunLL_x + 1, WiFi.TunLL_y - 1, false);
+					(WiFi.TunLL_y - 0.6) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		case 3:
 			Navigation.travelTo((WiFi.TunUR_x + 0.6) * RingChallenge.TILE_SIZE,
-					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false);
-			if(!hasObstacle(WiFi.TunUR_x + 1, WiFi.TunLL_y, obstacles))
-				Navigation.travelTo(WiFi.TunUR_x + 1, WiFi.TunLL_y, false);
-			else
-				Navigation.travelTo(WiFi.TunUR_x + 1, WiFi.TunLL_y + 1, false);
+					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		case 4:
 			Navigation.travelTo((WiFi.TunLL_x - 0.6) * RingChallenge.TILE_SIZE,
-					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false);
-			if(!hasObstacle(WiFi.TunLL_x - 1, WiFi.TunLL_y, obstacles))
-				Navigation.travelTo(WiFi.TunLL_x - 1, WiFi.TunLL_y, false);
-			else
-				Navigation.travelTo(WiFi.TunLL_x - 1, WiFi.TunLL_y + 1, false);
+					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		}
+		int exit = arena.getTunnelExit();
+		Navigation.travelTo(PathPlanner.getX(exit), PathPlanner.getY(exit), false);
 	}
 	
 	
@@ -151,67 +121,7 @@ public class GameNavigation {
 	 * @return list of obstacle coordinates
 	 */
 	public static int[][] getIslandObstacles(){
-		int tunnelOrientation = getTunnelOrientation(true);
-		int opp_tunnelOrientation = getTunnelOrientation(false);
-		int[][] obstacles = new int[6][2];
-		switch(tunnelOrientation) {
-		case 1:
-			obstacles[0][0] = WiFi.TunUR_x;
-			obstacles[0][1] = WiFi.TunUR_y;
-			obstacles[1][0] = WiFi.TunLL_x;
-			obstacles[1][1] = WiFi.TunUR_y;
-			break;
-		case 2:
-			obstacles[0][0] = WiFi.TunUR_x;
-			obstacles[0][1] = WiFi.TunLL_y;
-			obstacles[1][0] = WiFi.TunLL_x;
-			obstacles[1][1] = WiFi.TunLL_y;
-			break;
-		case 3:
-			obstacles[0][0] = WiFi.TunUR_x;
-			obstacles[0][1] = WiFi.TunUR_y;
-			obstacles[1][0] = WiFi.TunUR_x;
-			obstacles[1][1] = WiFi.TunLL_y;
-			break;
-		case 4:
-			obstacles[0][0] = WiFi.TunLL_x;
-			obstacles[0][1] = WiFi.TunUR_y;
-			obstacles[1][0] = WiFi.TunLL_x;
-			obstacles[1][1] = WiFi.TunLL_y;
-			break;
-		}
-		switch(opp_tunnelOrientation) {
-		case 1:
-			obstacles[2][0] = WiFi.opp_TunUR_x;
-			obstacles[2][1] = WiFi.opp_TunUR_y;
-			obstacles[3][0] = WiFi.opp_TunLL_x;
-			obstacles[3][1] = WiFi.opp_TunUR_y;
-			break;
-		case 2:
-			obstacles[2][0] = WiFi.opp_TunUR_x;
-			obstacles[2][1] = WiFi.opp_TunLL_y;
-			obstacles[3][0] = WiFi.opp_TunLL_x;
-			obstacles[3][1] = WiFi.opp_TunLL_y;
-			break;
-		case 3:
-			obstacles[2][0] = WiFi.opp_TunUR_x;
-			obstacles[2][1] = WiFi.opp_TunUR_y;
-			obstacles[3][0] = WiFi.opp_TunUR_x;
-			obstacles[3][1] = WiFi.opp_TunLL_y;
-			break;
-		case 4:
-			obstacles[2][0] = WiFi.opp_TunLL_x;
-			obstacles[2][1] = WiFi.opp_TunUR_y;
-			obstacles[3][0] = WiFi.opp_TunLL_x;
-			obstacles[3][1] = WiFi.opp_TunLL_y;
-			break;
-		}
-		obstacles[4][0] = WiFi.Tr_x;
-		obstacles[4][1] = WiFi.Tr_y;
-		obstacles[5][0] = WiFi.opp_Tr_x;
-		obstacles[5][1] = WiFi.opp_Tr_y;
-		
-		return obstacles;
+		return WiFi.getArena().getObstacles();
 	}
 	
 	/**
@@ -233,6 +143,35 @@ public class GameNavigation {
 	}
 	
 	
+	/**
+	 * Returns the fastest path along the grid to get from one point to another on the main island, counting the time the robot
+	 * takes to turn at each corner from its current heading
+	 * @param x1 starting x coordinate
+	 * @param y1 starting y coordinate
+	 * @param x2 destination x coordinate
+	 * @param y2 destination y coordinate
+	 * @param arena map of the field
+	 * @return packed coordinates (PathPlanner.getX, PathPlanner.getY) of the adjacent intersections that form the path, excluding
+	 * the start, or null if the destination cannot be reached
+	 */
+	public static int[] planPath(int x1, int y1, int x2, int y2, ArenaModel arena) {
+		int heading = odometer == null ? PathPlanner.UNKNOWN_HEADING : PathPlanner.getHeading(odometer.getXYT()[2]);
+		return arena.planPath(planner, x1, y1, heading, x2, y2);
+	}
+	
+	/**
+	 * Follows a path, without stopping at each intersection if CONTINUOUS_PATHS is set
+	 * @param path packed coordinates of adjacent intersections
+	 */
+	private static void followPath(int[] path) {
+		if(RingChallenge.CONTINUOUS_PATHS) {
+			Navigation.followPath(path, true);
+			return;
+		}
+		for(int point : path)
+			Navigation.travelTo(PathPlanner.getX(point), PathPlanner.getY(point), true);
+	}
+	
 	/**
 	 * Returns a point by point path along the grid to get from one point to another on the main island. This method assumes that the end point is
 	 * reachable, i.e. the path to it or the end point itself are not completely obstructed by obstacles; checking for this is
@@ -244,7 +183,8 @@ public class GameNavigation {
 	 * @param obstacles list of coordinates which the robot cannot travel on
 	 * @param visited This is a 2d boolean array which indicates which parts of the island have already been visited. The array must be
 	 * (island width - 1) x (island height - 1) in size. If no array has been made, the first call generates an empty one automatically.
-	 * @return list of adjacent coordinates that form the shortest obstacle free path
+	 * @return list of adjacent coordinates that form an obstacle free path; this is the first path found by a depth-first search,
+	 * not necessarily the shortest, and planPath should be used instead (kept as the reference of PathBenchmark)
 	 */
 	public static ArrayList<int[]> getShortestPath(int x1, int y1, int x2, int y2, int[][] obstacles, boolean[][] visited) {
 		if(x1 == x2 && y1 == y2) {
@@ -337,94 +277,97 @@ public class GameNavigation {
 	
 
 	/**
-	 * This method navigates the robot to the closest available side on the tree (1 grid away).
+	 * This method navigates the robot to the first side of the tree (1 grid away) of the fastest search order.
 	 * @param startCoords where the robot is when the method is called
-	 * @param obstacles list of coordinates which the robot cannot travel on
+	 * @param arena map of the field
 	 * @param availableSides list of side of the tree (1 = north, 2 = east, 3 = south, 4 = west) that are accessible
 	 * @return a boolean indicating if the robot made it to the tree immediately after exiting the tunnel, meaning localization is
 	 * required to get it back on the grid
 	 */
-	public static boolean tunnelToTree(int[] startCoords, int[][] obstacles, ArrayList<Integer> availableSides) {
-		ArrayList<int[]> path = new ArrayList<int[]>();
-		
-		for(int i = 0; i < availableSides.size(); i++) {
-			int closestSide = RingSearcher.getClosestSide(availableSides);
-			int[] endCoords = RingSearcher.getSideCoordinates(closestSide);
-			path = getShortestPath(startCoords[0], startCoords[1], endCoords[0], endCoords[1], obstacles, null);
-			if(path != null)
-				break;
-			availableSides.remove(availableSides.indexOf(closestSide));
-			if(i == availableSides.size() - 1)	//tree inaccessible
-				return true;
-		}
+	public static boolean tunnelToTree(int[] startCoords, ArenaModel arena, ArrayList<Integer> availableSides) {
+		int side = planNextSide(arena, availableSides, startCoords, RingChallenge.MAX_RINGS, Integer.MAX_VALUE);
+		if(side == -1)	//tree inaccessible
+			return true;
 		
-		for(int[] waypoint : path)
-			Navigation.travelTo(waypoint[0], waypoint[1], true);
+		int sideCoords = arena.getSideCoordinates(side);
+		int[] path = planPath(startCoords[0], startCoords[1], PathPlanner.getX(sideCoords), PathPlanner.getY(sideCoords), arena);
+		followPath(path);
 		
-		return path.size() == 0;
+		return path.length == 0;
 	}
 	
 	/**
-	 * Navigates to the nearest accessible tree side. 
-	 * @param obstacles list of coordinates which the robot cannot travel on
-	 * @param availableSides list of side of the tree (1 = north, 2 = east, 3 = south, 4 = west) that are accessible
-	 * @return side that the tree navigated to, and -1 if no side was available
+	 * Navigates to the next side of the tree to search. The order of the remaining sides is planned again from where the robot
+	 * is, so that an empty side does not count against the rings the robot can still carry.
+	 * @param arena map of the field
+	 * @param availableSides list of side of the tree (1 = north, 2 = east, 3 = south, 4 = west) that are accessible and have not
+	 * been searched yet
+	 * @param tunnelCoordinates intersection the robot goes back to after searching
+	 * @param capacity number of rings the robot can still carry
+	 * @param budget time left to search and get back to tunnelCoordinates (ms)
+	 * @return side that the tree navigated to, and -1 if no side can be searched in time
 	 */
-	public int navAroundTree(int[][] obstacles, ArrayList<Integer> availableSides) {
+	public int navAroundTree(ArenaModel arena, ArrayList<Integer> availableSides, int[] tunnelCoordinates, int capacity, int budget) {
+		int side = planNextSide(arena, availableSides, tunnelCoordinates, capacity, budget);
+		if(side == -1)
+			return side;
+		
 		double[] XYT = odometer.getXYT();
 		int[] startCoords = Navigation.getClosestCoordinates(XYT[0], XYT[1]);
+		int sideCoords = arena.getSideCoordinates(side);
+		followPath(planPath(startCoords[0], startCoords[1], PathPlanner.getX(sideCoords), PathPlanner.getY(sideCoords), arena));
 		
-		ArrayList<int[]> path = new ArrayList<int[]>();
-		
-		int closestSide = -1;
-		
-		for(int i = 0; i < availableSides.size(); i++) {
-			closestSide = RingSearcher.getClosestSide(availableSides);
-			int[] endCoords = RingSearcher.getSideCoordinates(closestSide);
-			path = getShortestPath(startCoords[0], startCoords[1], endCoords[0], endCoords[1], obstacles, null);
-			if(path != null)
-				break;
-			if(i == availableSides.size() - 1)	//tree inaccessible
-				return -1;
-		}
-		if(closestSide == -1)	//availableSides is empty
-			return closestSide;
-		
-		for(int[] waypoint : path)
-			Navigation.travelTo(waypoint[0], waypoint[1], true);
-		
-		availableSides.remove(availableSides.indexOf(closestSide));
-		return closestSide;
+		availableSides.remove(availableSides.indexOf(side));
+		return side;
+	}
+	
+	/**
+	 * Plans the order in which to search the remaining sides of the tree from where the robot is
+	 * @param arena map of the field
+	 * @param availableSides sides that have not been searched yet
+	 * @param tunnelCoordinates intersection the robot goes back to after searching
+	 * @param capacity number of rings the robot can still carry
+	 * @param budget time left to search and get back to tunnelCoordinates (ms)
+	 * @return first side of the plan, -1 if no side can be searched in time
+	 */
+	private static int planNextSide(ArenaModel arena, ArrayList<Integer> availableSides, int[] tunnelCoordinates, int capacity,
+			int budget) {
+		double[] XYT = odometer.getXYT();
+		int[] startCoords = Navigation.getClosestCoordinates(XYT[0], XYT[1]);
+		int[][] times = TourPlanner.getTravelTimes(arena, planner, startCoords[0], startCoords[1], PathPlanner.getHeading(XYT[2]),
+				tunnelCoordinates[0], tunnelCoordinates[1]);
+		int side = tourPlanner.plan(times, availableSides, capacity, budget);
+		if(side != -1)
+			System.out.println("Searching " + tourPlanner.getLength() + " sides in " + tourPlanner.getTime() / 1000 + " s");
+		return side;
 	}
 
 	/**
 	 * Navigates from the tree to the tunnel.
 	 * @param destination grid coordinates of the robot after executing navInTunnelToIsland
-	 * @param obstacles list of coordinates which the robot cannot travel on
+	 * @param arena map of the field
 	 */
-	public static void treeToTunnel(int[] destination, int[][] obstacles) {
+	public static void treeToTunnel(int[] destination, ArenaModel arena) {
 		int[] startCoords = Navigation.getClosestCoordinates(odometer.getXYT()[0], odometer.getXYT()[1]);
-		ArrayList<int[]> path = getShortestPath(startCoords[0], startCoords[1], destination[0], destination[1], obstacles, null);
-		for(int[] waypoint : path)
-			Navigation.travelTo(waypoint[0], waypoint[1], true);
+		int[] path = planPath(startCoords[0], startCoords[1], destination[0], destination[1], arena);
+		if(path != null)
+			followPath(path);
 	}
 	
 	/**
 	 * Navigates from a grid intersection near the entrance of the tunnel to the front of the tunnel, then to the main island
 	 * through the tunnel, ending up 1 grid away from the exit
-	 * @param tunnelOrientation 1 = vertical & LL on starting island, 2 = vertical & LL on island, 
-	 * 3 = horizontal & LL on starting island, 4 = horizontal && LL on island
-	 * @param obstacles list of coordinates which the robot cannot travel on
+	 * @param arena map of the field
 	 */
-	public static void navInTunnelFromIsland(int tunnelOrientation, int[][] obstacles) {
-		switch(tunnelOrientation) {
+	public static void navInTunnelFromIsland(ArenaModel arena) {
+		switch(arena.getTunnelOrientation(true)) {
 		case 1:
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
 					(WiFi.TunUR_y + 1) * RingChallenge.TILE_SIZE, true);
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
 					(WiFi.TunUR_y + 0.4) * RingChallenge.TILE_SIZE, true);
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
-					(WiFi.TunLL_y - 1) * RingChallenge.TILE_SIZE, false);
+					(WiFi.TunLL_y - 1) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		case 2:
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
@@ -432,7 +375,7 @@ public class GameNavigation {
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
 					(WiFi.TunLL_y - 0.4) * RingChallenge.TILE_SIZE, true);
 			Navigation.travelTo((WiFi.TunLL_x + 0.5) * RingChallenge.TILE_SIZE,
-					(WiFi.TunUR_y + 1) * RingChallenge.TILE_SIZE, false);
+					(WiFi.TunUR_y + 1) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		case 3:
 			Navigation.travelTo((WiFi.TunUR_x + 1) * RingChallenge.TILE_SIZE,
@@ -440,7 +383,7 @@ public class GameNavigation {
 			Navigation.travelTo((WiFi.TunUR_x + 0.4) * RingChallenge.TILE_SIZE,
 					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, true);
 			Navigation.travelTo((WiFi.TunLL_x - 1) * RingChallenge.TILE_SIZE,
-					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false);
+					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		case 4:
 			Navigation.travelTo((WiFi.TunLL_x - 1) * RingChallenge.TILE_SIZE,
@@ -448,7 +391,7 @@ public class GameNavigation {
 			Navigation.travelTo((WiFi.TunLL_x - 0.4) * RingChallenge.TILE_SIZE,
 					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, true);
 			Navigation.travelTo((WiFi.TunUR_x + 1) * RingChallenge.TILE_SIZE,
-					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false);
+					(WiFi.TunLL_y + 0.5) * RingChallenge.TILE_SIZE, false, MotionProfile.TUNNEL);
 			break;
 		}
 	}
@@ -458,19 +401,34 @@ public class GameNavigation {
 	 * starting island
 	 */
 	public static void tunnelToStart() {
-		Navigation.taxiTravelTo(WiFi.localizeX, WiFi.localizeY, true, true);
+		MotionHandle home = Navigation.taxiTravelToAsync(WiFi.localizeX * RingChallenge.TILE_SIZE,
+				WiFi.localizeY * RingChallenge.TILE_SIZE, true, true);
 		switch(WiFi.corner) {
 		case 0:
-			Navigation.turnTo(225);
+			Navigation.turnToAsync(225);
 			break;
 		case 1:
-			Navigation.turnTo(135);
+			Navigation.turnToAsync(135);
 			break;
 		case 2:
-			Navigation.turnTo(45);
+			Navigation.turnToAsync(45);
 			break;
 		case 3:
-			Navigation.turnTo(315);
+			Navigation.turnToAsync(315);
+		}
+		
+		MotionHandle last = Navigation.getLastMotion();	//the turn, or home if there is none
+		
+		//stop wherever the robot is when the time is up; home may be done already, with the turn still running
+		try {
+			if(!last.await(Math.max(0, TimeKeeper.getTimeLeft()))) {
+				System.out.println("Out of time on the way to the start");
+				home.cancel();
+				last.cancel();
+			}
+		} catch (InterruptedException e) {
+			home.cancel();
+			last.cancel();
 		}
 	}
 	
@@ -482,6 +440,8 @@ public class GameNavigation {
 	@SuppressWarnings("unused")
 	public static void weirdFlexButOk() {
 		
+		Speaker speaker = Hardware.getSpeaker();
+		
 		int c =261;
 		int d =294;
 		int e =329;
@@ -503,99 +463,99 @@ public class GameNavigation {
 		int aH =880;
 		
 		while (true) {
-			Sound.playTone(a, 500);
-		    Sound.playTone(a, 500);
-		    Sound.playTone(a, 500);
-		    Sound.playTone(f, 350);
-		    Sound.playTone(cH, 150);
-		    Sound.playTone(a, 500);
-		    Sound.playTone(f, 350);
-		    Sound.playTone(cH, 150);
-		    Sound.playTone(a, 650);
+			speaker.playTone(a, 500);
+		    speaker.playTone(a, 500);
+		    speaker.playTone(a, 500);
+		    speaker.playTone(f, 350);
+		    speaker.playTone(cH, 150);
+		    speaker.playTone(a, 500);
+		    speaker.playTone(f, 350);
+		    speaker.playTone(cH, 150);
+		    speaker.playTone(a, 650);
 		 
-		    Sound.playTone(100000, 150);
+		    speaker.playTone(100000, 150);
 		    //end of first bit
 		 
-		    Sound.playTone(eH, 500);
-		    Sound.playTone(eH, 500);
-		    Sound.playTone(eH, 500);
-		    Sound.playTone(fH, 350);
-		    Sound.playTone(cH, 150);
-		    Sound.playTone(gS, 500);
-		    Sound.playTone(f, 350);
-		    Sound.playTone(cH, 150);
-		    Sound.playTone(a, 650);
+		    speaker.playTone(eH, 500);
+		    speaker.playTone(eH, 500);
+		    speaker.playTone(eH, 500);
+		    speaker.playTone(fH, 350);
+		    speaker.playTone(cH, 150);
+		    speaker.playTone(gS, 500);
+		    speaker.playTone(f, 350);
+		    speaker.playTone(cH, 150);
+		    speaker.playTone(a, 650);
 		 
-		    Sound.playTone(100000, 150);
+		    speaker.playTone(100000, 150);
 		    //end of second bit...
 		 
-		    Sound.playTone(aH, 500);
-		    Sound.playTone(a, 300);
-		    Sound.playTone(a, 150);
-		    Sound.playTone(aH, 400);
-		    Sound.playTone(gSH, 200);
-		    Sound.playTone(gH, 200);
-		    Sound.playTone(fSH, 125);
-		    Sound.playTone(fH, 125);
-		    Sound.playTone(fSH, 250);
+		    speaker.playTone(aH, 500);
+		    speaker.playTone(a, 300);
+		    speaker.playTone(a, 150);
+		    speaker.playTone(aH, 400);
+		    speaker.playTone(gSH, 200);
+		    speaker.playTone(gH, 200);
+		    speaker.playTone(fSH, 125);
+		    speaker.playTone(fH, 125);
+		    speaker.playTone(fSH, 250);
 		 
-		    Sound.playTone(1000000, 250);
+		    speaker.playTone(1000000, 250);
 		 
-		    Sound.playTone(aS, 250);
-		    Sound.playTone(dSH, 400);
-		    Sound.playTone(dH, 200);
-		    Sound.playTone(cSH, 200);
-		    Sound.playTone(cH, 125);
-		    Sound.playTone(b, 125);
-		    Sound.playTone(cH, 250);
+		    speaker.playTone(aS, 250);
+		    speaker.playTone(dSH, 400);
+		    speaker.playTone(dH, 200);
+		    speaker.playTone(cSH, 200);
+		    speaker.playTone(cH, 125);
+		    speaker.playTone(b, 125);
+		    speaker.playTone(cH, 250);
 		 
-		    Sound.playTone(10000000, 250);
+		    speaker.playTone(10000000, 250);
 		 
-		    Sound.playTone(f, 125);
-		    Sound.playTone(gS, 500);
-		    Sound.playTone(f, 375);
-		    Sound.playTone(a, 125);
-		    Sound.playTone(cH, 500);
-		    Sound.playTone(a, 375);
-		    Sound.playTone(cH, 125);
-		    Sound.playTone(eH, 650);
+		    speaker.playTone(f, 125);
+		    speaker.playTone(gS, 500);
+		    speaker.playTone(f, 375);
+		    speaker.playTone(a, 125);
+		    speaker.playTone(cH, 500);
+		    speaker.playTone(a, 375);
+		    speaker.playTone(cH, 125);
+		    speaker.playTone(eH, 650);
 		 
 		    //end of third bit... (Though it doesn't play well)
 		    //let's repeat it
 		 
-		    Sound.playTone(aH, 500);
-		    Sound.playTone(a, 300);
-		    Sound.playTone(a, 150);
-		    Sound.playTone(aH, 400);
-		    Sound.playTone(gSH, 200);
-		    Sound.playTone(gH, 200);
-		    Sound.playTone(fSH, 125);
-		    Sound.playTone(fH, 125);
-		    Sound.playTone(fSH, 250);
+		    speaker.playTone(aH, 500);
+		    speaker.playTone(a, 300);
+		    speaker.playTone(a, 150);
+		    speaker.playTone(aH, 400);
+		    speaker.playTone(gSH, 200);
+		    speaker.playTone(gH, 200);
+		    speaker.playTone(fSH, 125);
+		    speaker.playTone(fH, 125);
+		    speaker.playTone(fSH, 250);
 		 
-		    Sound.playTone(10000000, 250);
+		    speaker.playTone(10000000, 250);
 		 
-		    Sound.playTone(aS, 250);
-		    Sound.playTone(dSH, 400);
-		    Sound.playTone(dH, 200);
-		    Sound.playTone(cSH, 200);
-		    Sound.playTone(cH, 125);
-		    Sound.playTone(b, 125);
-		    Sound.playTone(cH, 250);
+		    speaker.playTone(aS, 250);
+		    speaker.playTone(dSH, 400);
+		    speaker.playTone(dH, 200);
+		    speaker.playTone(cSH, 200);
+		    speaker.playTone(cH, 125);
+		    speaker.playTone(b, 125);
+		    speaker.playTone(cH, 250);
 		 
-		    Sound.playTone(100000000, 250);
+		    speaker.playTone(100000000, 250);
 		 
-		    Sound.playTone(f, 250);
-		    Sound.playTone(gS, 500);
-		    Sound.playTone(f, 375);
-		    Sound.playTone(cH, 125);
-		    Sound.playTone(a, 500);
-		    Sound.playTone(f, 375);
-		    Sound.playTone(cH, 125);
-		    Sound.playTone(a, 650);
+		    speaker.playTone(f, 250);
+		    speaker.playTone(gS, 500);
+		    speaker.playTone(f, 375);
+		    speaker.playTone(cH, 125);
+		    speaker.playTone(a, 500);
+		    speaker.playTone(f, 375);
+		    speaker.playTone(cH, 125);
+		    speaker.playTone(a, 650);
 		    //end of the song
 		    
-		    Sound.playTone(10000, 2000);
+		    speaker.playTone(10000, 2000);
 		}
 	}
 	
@@ -16,4 +16,11 @@ public enum GameState {
 	TOWERSEARCH, 
 	DONE, 
 	TESTING;
+	
+	/**
+	 * @return bit of this state, used in sensor bus enable masks
+	 */
+	public int mask() {
+		return 1 << ordinal();
+	}
 }
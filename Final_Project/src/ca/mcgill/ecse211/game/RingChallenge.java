@@ -1,29 +1,39 @@
 package ca.mcgill.ecse211.game;
 
-import lejos.hardware.Button;
-import lejos.hardware.Sound;
-import lejos.hardware.ev3.LocalEV3;
-import lejos.hardware.lcd.TextLCD;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
-import lejos.hardware.port.Port;
-import lejos.hardware.sensor.EV3ColorSensor;
-import lejos.hardware.sensor.EV3UltrasonicSensor;
-import lejos.hardware.sensor.SensorModes;
-import lejos.robotics.SampleProvider;
+import java.io.File;
+import java.io.IOException;
+
+import ca.mcgill.ecse211.calibration.RobotCalibration;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.hardware.Hardware;
 import ca.mcgill.ecse211.localization.LightLocalization;
 import ca.mcgill.ecse211.localization.Navigation;
+import ca.mcgill.ecse211.localization.ParticleFilter;
+import ca.mcgill.ecse211.localization.ParticleLocalizer;
 import ca.mcgill.ecse211.localization.UltrasonicLocalization;
+import ca.mcgill.ecse211.math.Arithmetic;
+import ca.mcgill.ecse211.odometry.IntegrationScheme;
 import ca.mcgill.ecse211.odometry.Odometer;
 import ca.mcgill.ecse211.odometry.OdometerExceptions;
 import ca.mcgill.ecse211.odometry.OdometryCorrection;
+import ca.mcgill.ecse211.odometry.PoseCorrection;
+import ca.mcgill.ecse211.odometry.PoseFusion;
+import ca.mcgill.ecse211.planning.ArenaModel;
+import ca.mcgill.ecse211.scheduling.CyclicExecutive;
+import ca.mcgill.ecse211.scheduling.ExecutionMode;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.ColorClassifier;
+import ca.mcgill.ecse211.sensor.ColorLookupTable;
 import ca.mcgill.ecse211.sensor.LightPoller;
 import ca.mcgill.ecse211.sensor.SensorController;
 import ca.mcgill.ecse211.sensor.SensorExceptions;
 import ca.mcgill.ecse211.sensor.UltrasonicPoller;
 
+import lejos.hardware.Button;
+
 /**
  * The RingChallenge class contains the main method of the program. It initializes all the
- * motors, ports, sensors, and pollers. It also starts all the threads. It contains useful constant 
+ * motors, sensors, and pollers. It also starts all the threads. It contains useful constant 
  * values like motor speed, wheel radius, track, tile size, etc.
  *  
  * @author Romain, Matthew
@@ -31,32 +41,48 @@ import ca.mcgill.ecse211.sensor.UltrasonicPoller;
  */
 public class RingChallenge {
 
-	// Declare the different robots motors
-	public static final EV3LargeRegulatedMotor leftMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("A"));
-	public static final EV3LargeRegulatedMotor rightMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("D"));
-	public static final EV3LargeRegulatedMotor armMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("B"));
-	public static final EV3LargeRegulatedMotor colorMotor = new EV3LargeRegulatedMotor(LocalEV3.get().getPort("C"));
-
-	// Declare the different sensors around the robot
-	private static final Port usPort = LocalEV3.get().getPort("S3");
-	private static final Port leftLinePort = LocalEV3.get().getPort("S1");
-	private static final Port rightLinePort = LocalEV3.get().getPort("S2");
-	private static final Port colorPort = LocalEV3.get().getPort("S4");
-
-	// Declare the LCD Display on the EV3 Brick
-	public static final TextLCD lcd = LocalEV3.get().getTextLCD();
-
 	// Declare different design and environment variables
 	public static final int MOTOR_SPEED = 200;
-	public static final double L_WHEEL_RAD = 2.1;
-	public static final double R_WHEEL_RAD = 2.1;
-	public static final double TRACK = 14.6;// was 14.74 before
+	
+	// Wheel radii, track and light localization angles, measured by Calibrator; the defaults are used if the file is absent
+	public static final String ROBOT_CALIBRATION_FILE = "robot.cal";
+	public static final RobotCalibration CALIBRATION = RobotCalibration.loadOrDefault(ROBOT_CALIBRATION_FILE);
+	public static final double L_WHEEL_RAD = CALIBRATION.getLeftRadius();
+	public static final double R_WHEEL_RAD = CALIBRATION.getRightRadius();
+	public static final double TRACK = CALIBRATION.getTrack();
+	
 	public static final double TILE_SIZE = 30.48;
 	public static final double LS_WIDTH = 11.9;
 	public static final double LS_L_DISTANCE = 12.8;
 	public static final int GAME_GRID_X = 15;
 	public static final int GAME_GRID_Y = 9;
 	public static final int GAME_TIME = 300;	//seconds
+	public static final int MAX_RINGS = 3;	//rings the arm can carry
+	public static final boolean CACHE_GAME_PARAMETERS = false;	//reuse the server's parameters after a restart until the game is completed
+	public static final int SIDE_SEARCH_TIME = 12000;	//ms, time taken by RingSearcher.searchSide
+	public static final boolean CONTINUOUS_PATHS = true;	//follow island paths without stopping at each intersection
+	public static final boolean DRIVE_THROUGH_CORRECTION = true;	//correct taxiTravelTo legs on every line without stopping
+	public static final boolean PARTICLE_RECOVERY = false;	//track the pose with a particle filter instead of relocalizing by a spin, not yet timed on the brick
+	public static final int PARTICLES = 256;	//most particles of the single-threaded filter on the brick
+	public static final double PARTICLE_BUDGET = 5;	//ms of filter work per ODOMETER_PERIOD, particles are dropped to stay within it
+	
+	// Color classifier calibration, uses the default calibration if the file is absent
+	public static final String COLOR_CALIBRATION_FILE = "colors.cal";
+	public static final boolean USE_COLOR_LOOKUP_TABLE = false;	//classify colors with a table built from the calibration, see ColorBenchmark
+	public static final String COLOR_LOOKUP_FILE = "colors.lut";	//cached table, rebuilt when the classifier changes
+	public static final int COLOR_LOOKUP_BITS = 7;	//bits per channel, the table takes 4^bits bytes
+	
+	// Declare how the odometer and sensor pollers are executed
+	public static final ExecutionMode EXECUTION_MODE = ExecutionMode.THREADED;
+	public static final int EXECUTIVE_PERIOD = 25;	//ms, cyclic mode tick
+	public static final int ODOMETER_PERIOD = 50;	//ms, a multiple of EXECUTIVE_PERIOD, see OdometryStudy
+	public static final IntegrationScheme ODOMETRY_INTEGRATION = IntegrationScheme.EXACT_ARC;
+	public static final PoseCorrection POSE_CORRECTION = PoseCorrection.SNAP;	//KALMAN_FILTER fuses lines and ranges with PoseFusion, see PoseBenchmark
+	public static final Arithmetic ARITHMETIC = Arithmetic.DOUBLE;	//FIXED_POINT for odometry, navigation and color math without the FPU, see FixedPointBenchmark
+	public static final int ODOMETER_DIVISOR = ODOMETER_PERIOD / EXECUTIVE_PERIOD;	//ticks between runs of each task in cyclic mode
+	public static final int LINE_DIVISOR = 1;
+	public static final int COLOR_DIVISOR = 2;
+	public static final int US_DIVISOR = 2;
 	
 	/**
 	 * Main method for the robot
@@ -67,40 +93,27 @@ public class RingChallenge {
 	 */
 	public static void main(String[] args) throws InterruptedException, OdometerExceptions, SensorExceptions {
 
+		// Create the robot's motors, sensors and speaker
+		Hardware hardware = Hardware.createLejos();
+		hardware.install();
+		DriveMotor leftMotor = hardware.leftMotor;
+		DriveMotor rightMotor = hardware.rightMotor;
+		
 		// Create an Odometer Object and SensorController null pointer
 		Odometer odometer = Odometer.getOdometer(leftMotor, rightMotor, TRACK, L_WHEEL_RAD, R_WHEEL_RAD);
 		
 		//Get Odometer's Odometry Correction object
 		OdometryCorrection odoCorrection = odometer.getOdometryCorrection();
 		
-		// Create an instance of all sensors and their corresponding SampleProviders,
-		@SuppressWarnings("resource")
-		SensorModes usSensor = new EV3UltrasonicSensor(usPort);
-		SampleProvider usDistance = usSensor.getMode("Distance");
-		float[] usData = new float[usDistance.sampleSize()];
-
-		@SuppressWarnings("resource")
-		EV3ColorSensor leftLineSensor = new EV3ColorSensor(leftLinePort);
-		SampleProvider leftLineSP = leftLineSensor.getRedMode();
-		float[] leftLineData = new float[leftLineSP.sampleSize()];
-
-		@SuppressWarnings("resource")
-		EV3ColorSensor rightLineSensor = new EV3ColorSensor(rightLinePort);
-		SampleProvider rightLineSP = rightLineSensor.getRedMode();
-		float[] rightLineData = new float[rightLineSP.sampleSize()];
-
-		@SuppressWarnings("resource")
-		EV3ColorSensor colorSensor = new EV3ColorSensor(colorPort);
-		SampleProvider colorSP = colorSensor.getRGBMode();
-		float[] colorData = new float[colorSP.sampleSize()];
-
 		//create pollers
-		UltrasonicPoller usPoller = new UltrasonicPoller(usDistance, usData);
-		LightPoller lightPoller = new LightPoller(leftLineSP, leftLineData, rightLineSP, rightLineData);
-		LightPoller colorPoller = new LightPoller(colorSP, colorData);
+		UltrasonicPoller usPoller = new UltrasonicPoller(hardware.ultrasonicSensor);
+		LightPoller lightPoller = new LightPoller(hardware.leftLineSensor, hardware.rightLineSensor);
+		LightPoller colorPoller = new LightPoller(hardware.colorSensor);
 		
 		//create Sensor Controller
 		SensorController sensorController = SensorController.getSensorController(lightPoller, colorPoller, usPoller);
+		sensorController.setMotors(leftMotor, rightMotor);
+		setupColorClassification(sensorController);
 		
 		//create Localization objects
 		LightLocalization lsLocalization = new LightLocalization(odometer, leftMotor, rightMotor, TRACK, L_WHEEL_RAD, R_WHEEL_RAD, LS_WIDTH,
@@ -110,10 +123,11 @@ public class RingChallenge {
 		//Navigation class is completely static, so no object construction necessary
 		
 		//create RingSearcher object
-		RingSearcher ringSearcher = new RingSearcher(leftMotor, rightMotor, armMotor, colorMotor);
+		RingSearcher ringSearcher = new RingSearcher(leftMotor, rightMotor, hardware.armMotor, hardware.colorMotor);
 		
-		//set navigation odometer
+		//set navigation odometer and motors
 		Navigation.setOdometer(odometer);
+		Navigation.setMotors(leftMotor, rightMotor);
 		
 		//create GameNavigation object
 		GameNavigation gameNav = new GameNavigation(odometer);
@@ -122,27 +136,109 @@ public class RingChallenge {
 		GameController game = new GameController(sensorController, lsLocalization, usLocalization, ringSearcher,
 				odoCorrection, gameNav, odometer);
 		
-		Thread odoThread = new Thread(odometer);
-		Thread usThread = new Thread(usPoller);
-		Thread lsThread = new Thread(lightPoller);
-		Thread colorLsThread = new Thread(colorPoller);
 		Thread gameThread = new Thread(game);
 		
-		Sound.setVolume(Sound.VOL_MAX);
+		hardware.speaker.setVolume(100);
 		
 		//get parameters from server using Wifi class
 		WiFi.wifi();
 		
+		// The particle filter needs the walls of the field, which come with the parameters; without them the robot
+		// relocalizes by a spin
+		ParticleLocalizer particleLocalizer = null;
+		ArenaModel arena = WiFi.getArena();
+		if (PARTICLE_RECOVERY && arena != null) {
+			particleLocalizer = new ParticleLocalizer(new ParticleFilter(PARTICLES, 1, TRACK, arena.getWalls(), 211),
+					leftMotor, rightMotor);
+			particleLocalizer.setTimeBudget(PARTICLE_BUDGET);
+			game.setParticleLocalizer(particleLocalizer);
+		}
+		else if (PARTICLE_RECOVERY) {
+			System.out.println("No game parameters; particle recovery disabled");
+		}
+		
+		// Correct the odometer with the Kalman filter instead of snapping it on lines
+		PoseFusion poseFusion = null;
+		if (POSE_CORRECTION == PoseCorrection.KALMAN_FILTER) {
+			poseFusion = new PoseFusion(leftMotor, rightMotor, TRACK, L_WHEEL_RAD, R_WHEEL_RAD);
+			odometer.setPoseFusion(poseFusion);
+			game.setPoseFusion(poseFusion);
+		}
+		
 		// Start the timer
 		TimeKeeper.startTimer();
 		
-		odoThread.start();
-		usThread.start();
-		lsThread.start();
-		colorLsThread.start();
+		if (EXECUTION_MODE == ExecutionMode.CYCLIC) {
+			// one thread: odometry first, then sensing and dispatch (including correction) every tick
+			CyclicExecutive executive = new CyclicExecutive(EXECUTIVE_PERIOD);
+			executive.add(odometer.getTask(), ODOMETER_DIVISOR);
+			executive.add(lightPoller.getTask(), LINE_DIVISOR);
+			executive.add(colorPoller.getTask(), COLOR_DIVISOR);
+			executive.add(usPoller.getTask(), US_DIVISOR);
+			if (particleLocalizer != null)
+				executive.add(particleLocalizer.getTask(), ODOMETER_DIVISOR);
+			if (poseFusion != null)
+				executive.add(poseFusion.getTask(), ODOMETER_DIVISOR);
+			new Thread(executive).start();
+		} else {
+			new Thread(odometer).start();
+			new Thread(usPoller).start();
+			new Thread(lightPoller).start();
+			new Thread(colorPoller).start();
+			if (particleLocalizer != null)
+				new Thread(particleLocalizer.getTask()).start();
+			if (poseFusion != null)
+				new Thread(poseFusion.getTask()).start();
+		}
 		gameThread.start();
 		
 		while (Button.waitForAnyPress() != Button.ID_ESCAPE);
+		TaskScheduler.printStatistics();
 		System.exit(0);
 	}
+	
+	/**
+	 * Loads the color calibration and, if enabled, the color lookup table. The table is built and cached
+	 * on the first run and whenever the classifier changes (its calibration, model, arithmetic or code version).
+	 * @param sensorController
+	 */
+	private static void setupColorClassification(SensorController sensorController) {
+		ColorClassifier classifier = ColorClassifier.createDefault();
+		if (new File(COLOR_CALIBRATION_FILE).exists()) {
+			try {
+				classifier = ColorClassifier.load(COLOR_CALIBRATION_FILE);
+			} catch (IOException e) {
+				System.out.println("Could not read " + COLOR_CALIBRATION_FILE + "; using default colors");
+			} catch (SensorExceptions e) {
+				System.out.println(e.getMessage() + "; using default colors");
+			}
+		}
+		classifier.setArithmetic(ARITHMETIC);
+		sensorController.setColorClassifier(classifier);
+		
+		if (!USE_COLOR_LOOKUP_TABLE)
+			return;
+		ColorLookupTable table = null;
+		File tableFile = new File(COLOR_LOOKUP_FILE);
+		if (tableFile.exists()) {
+			try {
+				table = ColorLookupTable.load(COLOR_LOOKUP_FILE);
+				if (table.getBits() != COLOR_LOOKUP_BITS || !table.isBuiltFrom(classifier))
+					table = null;
+			} catch (IOException e) {
+				table = null;
+			} catch (SensorExceptions e) {
+				table = null;
+			}
+		}
+		if (table == null) {
+			table = ColorLookupTable.build(classifier, COLOR_LOOKUP_BITS);
+			try {
+				table.save(COLOR_LOOKUP_FILE);
+			} catch (IOException e) {
+				System.out.println("Could not write " + COLOR_LOOKUP_FILE);
+			}
+		}
+		sensorController.setColorLookupTable(table);
+	}
 }
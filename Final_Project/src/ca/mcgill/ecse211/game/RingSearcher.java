@@ -2,12 +2,16 @@ package ca.mcgill.ecse211.game;
 
 import java.util.ArrayList;
 
-import ca.mcgill.ecse211.interfaces.ColorSensorUser;
+import ca.mcgill.ecse211.hardware.ArmMotor;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.interfaces.TimedColorSensorUser;
 import ca.mcgill.ecse211.localization.Navigation;
 import ca.mcgill.ecse211.odometry.Odometer;
 import ca.mcgill.ecse211.odometry.OdometerExceptions;
-import lejos.hardware.Sound;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import ca.mcgill.ecse211.scheduling.LatencyMonitor;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.SequentialColorDetector;
 
 /**
  * Contains methods to control the arm of the robot when searching the tower for
@@ -16,27 +20,34 @@ import lejos.hardware.motor.EV3LargeRegulatedMotor;
  * 
  * @author Romain, Matthew
  */
-public class RingSearcher implements ColorSensorUser {
+public class RingSearcher implements TimedColorSensorUser {
 
 	private static final int UPPER_LEVEL_DETECT = 310;
 	private static final int LOWER_LEVEL_DETECT = 360;
+	private static final double DETECTION_ERROR_RATE = 0.01;	//probability of deciding the wrong color
+	private static final double COLOR_SENSOR_ACCURACY = 0.9;	//probability of a single sample being right
+	private static final double RING_ZERO_RATE = 0.5;	//probability of reading no color with a ring in front
+	private static final int MAX_DETECTION_TIME = 1000;	//ms
 
 	private int currentArmAngle = 180;	//0 to 360
 	private int currentColorAngle = 0;
-	private int colorDetected = 0;
+	private volatile int colorDetected = 0;
 	private double distanceFromOrigin = 0;
 	private double offset = 0;
-	private boolean detecting = false;
-	private int count = 0;
+	private SequentialColorDetector detector = new SequentialColorDetector(DETECTION_ERROR_RATE, COLOR_SENSOR_ACCURACY,
+			RING_ZERO_RATE);
+	private LatencyMonitor detectionTime = TaskScheduler.createLatencyMonitor("ring detection");
+	private int count = 0;	//rings whose color was detected
+	private int slot = 0;	//next position of the arm, taken by every grab whether a ring was detected or not
 
 	private static Odometer odometer;
-	private EV3LargeRegulatedMotor leftMotor;
-	private EV3LargeRegulatedMotor rightMotor;
-	private EV3LargeRegulatedMotor armMotor;
-	private EV3LargeRegulatedMotor colorMotor;
+	private DriveMotor leftMotor;
+	private DriveMotor rightMotor;
+	private ArmMotor armMotor;
+	private ArmMotor colorMotor;
 
-	public RingSearcher(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor,
-			EV3LargeRegulatedMotor armMotor, EV3LargeRegulatedMotor colorMotor) throws OdometerExceptions {
+	public RingSearcher(DriveMotor leftMotor, DriveMotor rightMotor,
+			ArmMotor armMotor, ArmMotor colorMotor) throws OdometerExceptions {
 		this.leftMotor = leftMotor;
 		this.rightMotor = rightMotor;
 		this.armMotor = armMotor;
@@ -51,6 +62,13 @@ public class RingSearcher implements ColorSensorUser {
 	public int getCount() {
 		return count;
 	}
+	
+	/**
+	 * @return whether every position of the arm has been used by a grab, so no other ring can be carried
+	 */
+	public boolean isFull() {
+		return slot >= RingChallenge.MAX_RINGS;
+	}
 
 	/**
 	 * This method controls the logic for the robot to find and grab a ring off a
@@ -74,7 +92,7 @@ public class RingSearcher implements ColorSensorUser {
 	public void searchSide(int side) {
 
 		colorMotor.setSpeed(RingChallenge.MOTOR_SPEED);
-		Navigation.setMotorSpeeds(RingChallenge.MOTOR_SPEED, RingChallenge.leftMotor, RingChallenge.rightMotor,
+		Navigation.setMotorSpeeds(RingChallenge.MOTOR_SPEED, leftMotor, rightMotor,
 				RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD);
 		
 		// Reset all variables
@@ -107,7 +125,7 @@ public class RingSearcher implements ColorSensorUser {
 		
 		syncForwardTo(7 + offset);
 		
-		switch(count) {
+		switch(slot) {
 		case 0:
 			turnArmTo(200, false);
 			break;
@@ -119,7 +137,10 @@ public class RingSearcher implements ColorSensorUser {
 			break;
 		}
 		
-		count++;
+		//a ring may have been grabbed even if its color was not detected, so the position is used either way
+		slot++;
+		if(colorDetected != 0)
+			count++;
 		
 		syncForwardTo(0);
 	}
@@ -134,11 +155,12 @@ public class RingSearcher implements ColorSensorUser {
 	public static int getClosestSide(ArrayList<Integer> availableSides) {
 		int closestSide = -1;
 		double lowestDistance = -1;
+		double[] XYT = odometer.getXYT();
 
 		for (int side : availableSides) {
 			int[] coords = getSideCoordinates(side);
-			double x = coords[0] * RingChallenge.TILE_SIZE - odometer.getXYT()[0];
-			double y = coords[1] * RingChallenge.TILE_SIZE - odometer.getXYT()[1];
+			double x = coords[0] * RingChallenge.TILE_SIZE - XYT[0];
+			double y = coords[1] * RingChallenge.TILE_SIZE - XYT[1];
 			double distance = Math.sqrt(x * x + y * y);
 			if (lowestDistance == -1 || lowestDistance > distance) {
 				lowestDistance = distance;
@@ -204,7 +226,7 @@ public class RingSearcher implements ColorSensorUser {
 	public void unload() {
 		armMotor.setSpeed(RingChallenge.MOTOR_SPEED);
 		turnArmTo(0, true);
-		RingChallenge.armMotor.rotate(-360);
+		armMotor.rotate(-360);
 	}
 
 	/**
@@ -243,10 +265,10 @@ public class RingSearcher implements ColorSensorUser {
 	private static void colorBeep(int colorDetected) {
 		System.out.println(colorDetected);
 		while (colorDetected != 0) {
-			Sound.beep();
+			Hardware.getSpeaker().beep();
 			colorDetected--;
 			try {
-				Thread.sleep(50);
+				TaskScheduler.getClock().sleep(50);
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
@@ -254,16 +276,17 @@ public class RingSearcher implements ColorSensorUser {
 	}
 
 	/**
-	 * helper method that waits a second for the colour sensor to detect a colour
+	 * helper method that waits until the colour sensor samples taken from now on establish the colour in front
+	 * of it, or no ring, for at most MAX_DETECTION_TIME
 	 */
 	private void detect() {
-		detecting = true;
+		detector.start(TaskScheduler.getClock().nanoTime());
 		try {
-			Thread.sleep(1000);
+			colorDetected = detector.awaitDecision(MAX_DETECTION_TIME);
 		} catch (InterruptedException e) {
 			e.printStackTrace();
 		}
-		detecting = false;
+		detectionTime.record(detector.getDecisionTime());
 	}
 	
 	/**
@@ -272,135 +295,21 @@ public class RingSearcher implements ColorSensorUser {
 	 */
 	private void syncForwardTo(double distance) {
 		double dDistance = distance - distanceFromOrigin;
-		leftMotor.rotate(Navigation.convertDistance(RingChallenge.L_WHEEL_RAD, dDistance), true);
-		rightMotor.rotate(Navigation.convertDistance(RingChallenge.R_WHEEL_RAD, dDistance), false);
+		Navigation.travelDistance(dDistance);
 		distanceFromOrigin = distance;
 	}
 	
-	/**
-	 * This method checks which sides of the tree are accessible depending on its
-	 * position on the island. If the tree is on a corner, then none of the sides
-	 * are available. If it is on an edge but not a corner, then one side is
-	 * available. If it is one square off from the corner, then two sides are
-	 * available. If it is one square off from the edge, then there are three sides
-	 * available. If it is sufficiently far from all edges and corners, then all
-	 * sides are available for searching. It also calculates which sides of the tree
-	 * are the ones available, ie the north, west, south or east sides.
-	 *
-	 * @return Arraylist of available sides, as a list of integers north = 1, east =
-	 *         2, south = 3, west = 4
-	 */
-	public static ArrayList<Integer> checkSidesAvailable() {
-		int treeX = WiFi.Tr_x;
-		int treeY = WiFi.Tr_y;
-
-		int oppTreeX = WiFi.opp_Tr_x;
-		int oppTreeY = WiFi.opp_Tr_y;
-
-		int islandLL_x = WiFi.Island_LL_x;
-		int islandLL_y = WiFi.Island_LL_y;
-		int islandUR_x = WiFi.Island_UR_x;
-		int islandUR_y = WiFi.Island_UR_y;
-
-		int BRR_LL_x = WiFi.TunLL_x;
-		int BRR_LL_y = WiFi.TunLL_y;
-		int BRR_UR_x = WiFi.TunUR_x;
-		int BRR_UR_y = WiFi.TunUR_y;
-
-		int BRG_LL_x = WiFi.opp_TunLL_x;
-		int BRG_LL_y = WiFi.opp_TunLL_y;
-		int BRG_UR_x = WiFi.opp_TunUR_x;
-		int BRG_UR_y = WiFi.opp_TunUR_y;
-
-		ArrayList<Integer> sides = new ArrayList<Integer>();
-
-		// Check side 1
-		if (islandUR_y == treeY + 1) {
-		} else if (islandUR_x == treeX || islandLL_x == treeX) {
-			System.out.println("Side 1 not available due to island size (X)");
-		} else if ((BRR_LL_y == (treeY + 1)) && (BRR_LL_x == treeX - 1 || BRR_LL_x == treeX)) {
-			System.out.println("Side 1 not available due to bridge restriction (BRR_LL)");
-		} else if (BRG_LL_y == treeY + 1 && (BRG_LL_x == treeX - 1 || BRG_LL_x == treeX)) {
-			System.out.println("Side 1 not available due to bridge restriction (BRG_LL)");
-		} else if (BRR_UR_y == treeY + 2 && (BRR_UR_x == treeX && BRR_UR_x == treeX + 1)) {
-			System.out.println("Side 1 not available due to bridge restriction (BRR_UR)");
-		} else if (BRG_UR_y == treeY + 2 && (BRG_UR_x == treeX && BRG_UR_x == treeX + 1)) {
-			System.out.println("Side 1 not available due to bridge restriction (BRG_UR)");
-		} else if (oppTreeX == treeX && oppTreeY == treeY + 1) {
-			System.out.println("Side 1 not available due to opponents tree");
-		} else {
-			sides.add(1);
-		}
-
-		// Check side 2
-		if (islandUR_y == treeY || islandLL_y == treeY) {
-			System.out.println("Side 2 not available due to island size (Y)");
-		} else if (islandUR_x == treeX + 1) {
-			System.out.println("Side 2 not available due to island size (X)");
-		} else if (BRR_LL_x == treeX + 1 && (BRR_LL_y == treeY - 1 || BRR_LL_y == treeY)) {
-			System.out.println("Side 2 not available due to bridge restriction (BRR_LL)");
-		} else if (BRG_LL_x == treeX + 1 && (BRG_LL_y == treeY - 1 || BRG_LL_y == treeY)) {
-			System.out.println("Side 2 not available due to bridge restriction (BRG_LL)");
-		} else if (BRR_UR_x == treeX + 2 && (BRR_UR_y == treeY && BRR_UR_y == treeY + 1)) {
-			System.out.println("Side 2 not available due to bridge restriction (BRR_UR)");
-		} else if (BRG_UR_x == treeX + 2 && (BRG_UR_y == treeY && BRG_UR_y == treeY + 1)) {
-			System.out.println("Side 2 not available due to bridge restriction (BRG_UR)");
-		} else if (oppTreeX == treeX + 1 && oppTreeY == treeY) {
-			System.out.println("Side 2 not available due to opponents tree");
-		} else {
-			sides.add(2);
-		}
-
-		// Check side 3
-		if (islandLL_y == treeY - 1) {
-			System.out.println("Side 3 not available due to island size (Y)");
-		} else if (islandLL_x == treeX || islandUR_x == treeX) {
-			System.out.println("Side 3 not available due to island size (X)");
-		} else if (BRR_LL_y == treeY - 2 && (BRR_LL_x == treeX - 1 || BRR_LL_x == treeX)) {
-			System.out.println("Side 3 not available due to bridge restriction (BRR_LL)");
-		} else if (BRG_LL_y == treeY - 2 && (BRG_LL_x == treeX - 1 || BRG_LL_x == treeX)) {
-			System.out.println("Side 3 not available due to bridge restriction (BRG_LL)");
-		} else if (BRR_UR_y == treeY - 1 && (BRR_UR_x == treeX && BRR_UR_x == treeX + 1)) {
-			System.out.println("Side 3 not available due to bridge restriction (BRR_UR)");
-		} else if (BRG_UR_y == treeY - 1 && (BRG_UR_x == treeX && BRG_UR_x == treeX + 1)) {
-			System.out.println("Side 3 not available due to bridge restriction (BRG_UR)");
-		} else if (oppTreeX == treeX && oppTreeY == treeY - 1) {
-			System.out.println("Side 3 not available due to opponents tree");
-		} else {
-			sides.add(3);
-		}
-
-		// Check side 4
-		if (islandUR_y == treeY || islandLL_y == treeY) {
-			System.out.println("Side 4 not available due to island size (Y)");
-		} else if (islandLL_x == treeX - 1) {
-			System.out.println("Side 4 not available due to island size (X)");
-		} else if (BRR_LL_x == treeX - 2 && (BRR_LL_y == treeY - 1 || BRR_LL_y == treeY)) {
-			System.out.println("Side 4 not available due to bridge restriction (BRR_LL)");
-		} else if (BRG_LL_x == treeX - 2 && (BRG_LL_y == treeY - 1 || BRG_LL_y == treeY)) {
-			System.out.println("Side 4 not available due to bridge restriction (BRG_LL)");
-		} else if (BRR_UR_x == treeX - 1 && (BRR_UR_y == treeY && BRR_UR_y == treeY + 1)) {
-			System.out.println("Side 4 not available due to bridge restriction (BRR_UR)");
-		} else if (BRG_UR_x == treeX - 1 && (BRG_UR_y == treeY && BRG_UR_y == treeY + 1)) {
-			System.out.println("Side 4 not available due to bridge restriction (BRG_UR)");
-		} else if (oppTreeX == treeX - 1 && oppTreeY == treeY) {
-			System.out.println("Side 4 not available due to opponents tree");
-		} else {
-			sides.add(4);
-		}
-
-		return sides;
-	}
-
 	/**
 	 *colour data receiving method
 	 *@param color colour detected by colour sensor
+	 *@param timestamp clock nanoTime() at which the sample was fetched
+	 *@param sequence sequence number of the sample
+	 *@param tachoL left motor tacho count when the sample was fetched
+	 *@param tachoR right motor tacho count when the sample was fetched
 	 */
 	@Override
-	public void processColorData(int color) {
-		if (color != 0 && detecting) {
-			this.colorDetected = color;
-		}
+	public void processColorData(int color, long timestamp, int sequence, int tachoL, int tachoR) {
+		detector.addSample(color, timestamp);
 	}
 
 }
@@ -1,7 +1,9 @@
 package ca.mcgill.ecse211.game;
 
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
 /**
- * This class keeps track of time for the duration of the challenge. 
+ * This class keeps track of time for the duration of the challenge, on the clock of the TaskScheduler.
  * 
  * @author Romain
  *
@@ -15,11 +17,11 @@ public class TimeKeeper {
 	 * Records the time at which the robot starts working
 	 */
 	public static void startTimer() {
-		TimeKeeper.startTime = System.currentTimeMillis();
+		TimeKeeper.startTime = TaskScheduler.getClock().currentTimeMillis();
 	}
 	
 	public static void startNavigationTimer() {
-		TimeKeeper.navigationStartTime = System.currentTimeMillis();
+		TimeKeeper.navigationStartTime = TaskScheduler.getClock().currentTimeMillis();
 	}
 	
 	
@@ -29,11 +31,20 @@ public class TimeKeeper {
 	 * @return the number of seconds since start of operation
 	 */
 	public static int getTime() {
-		return (int)((System.currentTimeMillis() - TimeKeeper.startTime) / 1000); 
+		return (int)((TaskScheduler.getClock().currentTimeMillis() - TimeKeeper.startTime) / 1000); 
+	}
+	
+	/**
+	 * Returns the time left before the end of the challenge
+	 * 
+	 * @return the number of ms left, negative once the time is up
+	 */
+	public static long getTimeLeft() {
+		return RingChallenge.GAME_TIME * 1000L - (TaskScheduler.getClock().currentTimeMillis() - TimeKeeper.startTime);
 	}
 	
 	public static int getNavigationTime() {
-		return (int)((System.currentTimeMillis() - TimeKeeper.navigationStartTime) / 1000); 
+		return (int)((TaskScheduler.getClock().currentTimeMillis() - TimeKeeper.navigationStartTime) / 1000); 
 	}
 	
 }
@@ -1,12 +1,21 @@
 package ca.mcgill.ecse211.game;
 
-import java.util.Map;
-import ca.mcgill.ecse211.WiFiClient.WifiConnection;
+import java.io.IOException;
+
+import ca.mcgill.ecse211.config.CachedConfigSource;
+import ca.mcgill.ecse211.config.FileConfigSource;
+import ca.mcgill.ecse211.config.GameConfig;
+import ca.mcgill.ecse211.config.GameConfigSource;
+import ca.mcgill.ecse211.config.WiFiConfigSource;
+import ca.mcgill.ecse211.planning.ArenaModel;
 
 /**
  * This class contains the data that will be fetched from the server before
  * the start of the game. It uses the Wifi connection class to fetch data 
- * from the server 
+ * from the server, or reads it from a layout file when testing offline. If
+ * RingChallenge.CACHE_GAME_PARAMETERS is set, the last data received from the
+ * server is cached until the game is completed, so a restart during a game
+ * does not wait for the server again.
  * 
  * Based off example written by Michael Smith and Tharsan Ponnampalam
 
@@ -17,11 +26,23 @@ public class WiFi {
 
 	//set at the beginning
 	private static final String SERVER_IP = "192.168.2.2";//"192.168.2.42";//"192.168.2.2"; //for demo 192.168.2.3
-	private static final int TEAM_NUMBER = 8;
+	public static final int TEAM_NUMBER = 8;
 
 	// Enable/disable printing of debug info from the WiFi class
 	private static final boolean ENABLE_DEBUG_WIFI_PRINT = true;
 	
+	// Layout file (server/*.xml format) read instead of the server when not empty
+	private static final String LAYOUT_FILE = "";
+	
+	// Cache of the last data received from the server, ignored once older than a game
+	private static final String CACHE_FILE = "game.xml";
+	private static final long CACHE_MAX_AGE = 15 * 60 * 1000;	//ms
+	private static CachedConfigSource cache;
+	
+	// Data loaded last, and the map of the field computed from it
+	private static GameConfig config;
+	private static ArenaModel arena;
+	
 	//Team numbers
 	private static int redTeam = 0, greenTeam = 0;
 	
@@ -54,94 +75,141 @@ public class WiFi {
 	
 	public static int opp_corner, opp_localizeX, opp_localizeY, opp_LL_x, opp_LL_y, opp_UR_x, opp_UR_y, opp_TunLL_x, opp_TunLL_y, opp_TunUR_x, opp_TunUR_y, opp_Tr_x, opp_Tr_y;
 	
-	@SuppressWarnings("rawtypes")
+	/**
+	 * Gets the data from the server, the cache or the layout file, and sets the parameters
+	 */
 	public static void wifi()
 	{
 		System.out.println("Running..");
 
-		// Initialize WifiConnection class
-		WifiConnection conn = new WifiConnection(SERVER_IP, TEAM_NUMBER, ENABLE_DEBUG_WIFI_PRINT);
-
-		// Connect to server and get the data, catching any errors that might occur
+		GameConfigSource source;
+		if(!LAYOUT_FILE.isEmpty())
+			source = new FileConfigSource(LAYOUT_FILE);	//read every time, so changes to the file are seen
+		else if(RingChallenge.CACHE_GAME_PARAMETERS) {
+			cache = new CachedConfigSource(new WiFiConfigSource(SERVER_IP, TEAM_NUMBER, ENABLE_DEBUG_WIFI_PRINT),
+					CACHE_FILE, CACHE_MAX_AGE);
+			source = cache;
+		}
+		else
+			source = new WiFiConfigSource(SERVER_IP, TEAM_NUMBER, ENABLE_DEBUG_WIFI_PRINT);
+		load(source);
+		
+		System.out.println("Complete!");
+	}
+	
+	/**
+	 * Deletes the cached data once the game is completed, so that the next start waits for the server
+	 */
+	public static void gameCompleted()
+	{
+		if(cache != null)
+			cache.clear();
+	}
+	
+	/**
+	 * Gets the data from a source and sets the parameters. getData() of the WiFi connection will connect to
+	 * the server and wait until the user/TA presses the "Start" button in the GUI on their laptop with the data
+	 * filled in. Once it's waiting, you can kill it by pressing the upper left hand corner button (back/escape)
+	 * on the EV3. It throws exceptions if it can't connect to the server (e.g. wrong IP address, server not
+	 * running on laptop, not connected to WiFi router, etc.), receives corrupted data or a message from the
+	 * server saying something went wrong (e.g. an invalid team number).
+	 * 
+	 * @param source where to get the data from
+	 * @return whether the data was obtained
+	 */
+	public static boolean load(GameConfigSource source) {
 		try {
-			/*
-			 * getData() will connect to the server and wait until the user/TA presses the "Start" button
-			 * in the GUI on their laptop with the data filled in. Once it's waiting, you can kill it by
-			 * pressing the upper left hand corner button (back/escape) on the EV3. getData() will throw
-			 * exceptions if it can't connect to the server (e.g. wrong IP address, server not running on
-			 * laptop, not connected to WiFi router, etc.). It will also throw an exception if it connects
-			 * but receives corrupted data or a message from the server saying something went wrong. For
-			 * example, if TEAM_NUMBER is set to 1 above but the server expects teams 17 and 5, this robot
-			 * will receive a message saying an invalid team number was specified and getData() will throw
-			 * an exception letting you know.
-			 */
-			Map data = conn.getData();
-//			System.out.println("Map:\n" + data);
-			
-			//team numbers
-			redTeam = ((Long) data.get("RedTeam")).intValue();
-			greenTeam = ((Long) data.get("GreenTeam")).intValue();
-			
-			//corners
-			R = ((Long) data.get("RedCorner")).intValue();
-			G = ((Long) data.get("GreenCorner")).intValue();
-			
-			//red zone
-			Red_LL_x = ((Long) data.get("Red_LL_x")).intValue();
-			Red_LL_y = ((Long) data.get("Red_LL_y")).intValue();
-			Red_UR_x = ((Long) data.get("Red_UR_x")).intValue();
-			Red_UR_y = ((Long) data.get("Red_UR_y")).intValue();
-			
-			//green zone
-			Green_LL_x = ((Long) data.get("Green_LL_x")).intValue();
-			Green_LL_y = ((Long) data.get("Green_LL_y")).intValue();
-			Green_UR_x = ((Long) data.get("Green_UR_x")).intValue();
-			Green_UR_y = ((Long) data.get("Green_UR_y")).intValue();
-			
-			//island
-			Island_LL_x = ((Long) data.get("Island_LL_x")).intValue();
-			Island_LL_y = ((Long) data.get("Island_LL_y")).intValue();
-			Island_UR_x = ((Long) data.get("Island_UR_x")).intValue();
-			Island_UR_y = ((Long) data.get("Island_UR_y")).intValue();
-			
-			//red tunnel
-			BRR_LL_x = ((Long) data.get("TNR_LL_x")).intValue();
-			BRR_LL_y = ((Long) data.get("TNR_LL_y")).intValue();
-			BRR_UR_x = ((Long) data.get("TNR_UR_x")).intValue();
-			BRR_UR_y = ((Long) data.get("TNR_UR_y")).intValue();
-			
-			//green tunnel
-			BRG_LL_x = ((Long) data.get("TNG_LL_x")).intValue();
-			BRG_LL_y = ((Long) data.get("TNG_LL_y")).intValue();
-			BRG_UR_x = ((Long) data.get("TNG_UR_x")).intValue();
-			BRG_UR_y = ((Long) data.get("TNG_UR_y")).intValue();
-			
-			//red tree
-			TR_x = ((Long) data.get("TR_x")).intValue();
-			TR_y = ((Long) data.get("TR_y")).intValue();
-			
-			//green tree
-			TG_x = ((Long) data.get("TG_x")).intValue();
-			TG_y = ((Long) data.get("TG_y")).intValue();
-			
-			if(redTeam == TEAM_NUMBER)
-			{
-				assignTeamColor(0);
-			}
-			else if(greenTeam == TEAM_NUMBER)
-			{
-				assignTeamColor(1);
-			}
-			else
-			{
-				System.out.println("Team number error");
-			}
-
-		} catch (Exception e) {
+			load(source.fetch());
+			return true;
+		} catch (IOException e) {
 			System.err.println("Error: " + e.getMessage());
+			return false;
 		}
+	}
+	
+	/**
+	 * Sets the parameters from the game data sent by the server, or obtained elsewhere (e.g. by the simulator)
+	 * 
+	 * @param data game parameters
+	 */
+	public static void load(GameConfig data) {
+		config = data;
 		
-		System.out.println("Complete!");
+		//team numbers
+		redTeam = data.get("RedTeam");
+		greenTeam = data.get("GreenTeam");
+		
+		//corners
+		R = data.get("RedCorner");
+		G = data.get("GreenCorner");
+		
+		//red zone
+		Red_LL_x = data.get("Red_LL_x");
+		Red_LL_y = data.get("Red_LL_y");
+		Red_UR_x = data.get("Red_UR_x");
+		Red_UR_y = data.get("Red_UR_y");
+		
+		//green zone
+		Green_LL_x = data.get("Green_LL_x");
+		Green_LL_y = data.get("Green_LL_y");
+		Green_UR_x = data.get("Green_UR_x");
+		Green_UR_y = data.get("Green_UR_y");
+		
+		//island
+		Island_LL_x = data.get("Island_LL_x");
+		Island_LL_y = data.get("Island_LL_y");
+		Island_UR_x = data.get("Island_UR_x");
+		Island_UR_y = data.get("Island_UR_y");
+		
+		//red tunnel
+		BRR_LL_x = data.get("TNR_LL_x");
+		BRR_LL_y = data.get("TNR_LL_y");
+		BRR_UR_x = data.get("TNR_UR_x");
+		BRR_UR_y = data.get("TNR_UR_y");
+		
+		//green tunnel
+		BRG_LL_x = data.get("TNG_LL_x");
+		BRG_LL_y = data.get("TNG_LL_y");
+		BRG_UR_x = data.get("TNG_UR_x");
+		BRG_UR_y = data.get("TNG_UR_y");
+		
+		//red tree
+		TR_x = data.get("TR_x");
+		TR_y = data.get("TR_y");
+		
+		//green tree
+		TG_x = data.get("TG_x");
+		TG_y = data.get("TG_y");
+		
+		if(redTeam == TEAM_NUMBER)
+		{
+			assignTeamColor(0);
+			arena = new ArenaModel(data, TEAM_NUMBER);
+		}
+		else if(greenTeam == TEAM_NUMBER)
+		{
+			assignTeamColor(1);
+			arena = new ArenaModel(data, TEAM_NUMBER);
+		}
+		else
+		{
+			System.out.println("Team number error");
+			arena = null;
+		}
+	}
+	
+	/**
+	 * @return the game parameters loaded last, null if none were
+	 */
+	public static GameConfig getConfig() {
+		return config;
+	}
+	
+	/**
+	 * @return the map of the field for the game parameters loaded last, null if none were or our team is not playing
+	 */
+	public static ArenaModel getArena() {
+		return arena;
 	}
 	
 	/**
@@ -0,0 +1,56 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This interface contains the methods of a motor that is only rotated by set angles, such as the motors of
+ * the ring arm and of the color sensor arm
+ * 
+ * @author Matthew
+ *
+ */
+public interface ArmMotor {
+
+	/**
+	 * @param speed speed in degrees per second
+	 */
+	public void setSpeed(int speed);
+
+	/**
+	 * @return speed in degrees per second
+	 */
+	public int getSpeed();
+
+	/**
+	 * Rotates by the given angle and waits until the rotation is complete
+	 * @param angle angle in degrees
+	 */
+	public void rotate(int angle);
+
+	/**
+	 * Rotates by the given angle
+	 * @param angle angle in degrees
+	 * @param immediateReturn whether to return before the rotation is complete
+	 */
+	public void rotate(int angle, boolean immediateReturn);
+
+	/**
+	 * Stops the motor
+	 * @param immediateReturn whether to return before the motor has stopped
+	 */
+	public void stop(boolean immediateReturn);
+
+	/**
+	 * @return whether the motor is moving
+	 */
+	public boolean isMoving();
+
+	/**
+	 * Waits until the current movement is complete
+	 */
+	public void waitComplete();
+
+	/**
+	 * @return rotation of the motor since it was created, in degrees
+	 */
+	public int getTachoCount();
+
+}
@@ -0,0 +1,17 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This interface contains the methods of a color sensor measuring RGB values, used to identify rings
+ * 
+ * @author Matthew
+ *
+ */
+public interface ColorSensor {
+
+	/**
+	 * Fetches a sample
+	 * @param rgb array receiving the red, green and blue values, from 0 to 1
+	 */
+	public void fetchRGB(float[] rgb);
+
+}
@@ -0,0 +1,26 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This interface contains the methods of a wheel motor, which can also turn continuously
+ * 
+ * @author Matthew
+ *
+ */
+public interface DriveMotor extends ArmMotor {
+
+	/**
+	 * Turns forward until stopped
+	 */
+	public void forward();
+
+	/**
+	 * Turns backward until stopped
+	 */
+	public void backward();
+
+	/**
+	 * @param acceleration acceleration in degrees per second squared
+	 */
+	public void setAcceleration(int acceleration);
+
+}
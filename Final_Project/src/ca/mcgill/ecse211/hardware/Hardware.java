@@ -0,0 +1,89 @@
+package ca.mcgill.ecse211.hardware;
+
+import lejos.hardware.ev3.LocalEV3;
+
+/**
+ * This class holds the motors, sensors and speaker of the robot. The robot runs on the EV3 devices, and the
+ * same code runs headless on a computer with in-memory stand-ins for them. The speaker is also available
+ * statically, so that any class can beep without having it passed in.
+ * 
+ * @author Matthew
+ *
+ */
+public class Hardware {
+
+	private static Speaker installedSpeaker = new VirtualSpeaker();
+
+	public final DriveMotor leftMotor;
+	public final DriveMotor rightMotor;
+	public final ArmMotor armMotor;
+	public final ArmMotor colorMotor;
+	public final RangeSensor ultrasonicSensor;
+	public final LightSensor leftLineSensor;
+	public final LightSensor rightLineSensor;
+	public final ColorSensor colorSensor;
+	public final Speaker speaker;
+
+	/**
+	 * Constructor for the Hardware class
+	 */
+	public Hardware(DriveMotor leftMotor, DriveMotor rightMotor, ArmMotor armMotor, ArmMotor colorMotor,
+			RangeSensor ultrasonicSensor, LightSensor leftLineSensor, LightSensor rightLineSensor,
+			ColorSensor colorSensor, Speaker speaker) {
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+		this.armMotor = armMotor;
+		this.colorMotor = colorMotor;
+		this.ultrasonicSensor = ultrasonicSensor;
+		this.leftLineSensor = leftLineSensor;
+		this.rightLineSensor = rightLineSensor;
+		this.colorSensor = colorSensor;
+		this.speaker = speaker;
+	}
+
+	/**
+	 * Creates the devices of the robot on the EV3 brick. Motors: left A, right D, arm B, color arm C.
+	 * Sensors: left line S1, right line S2, ultrasonic S3, color S4.
+	 * 
+	 * @return the robot's hardware
+	 */
+	public static Hardware createLejos() {
+		LocalEV3 ev3 = LocalEV3.get();
+		return new Hardware(new LejosMotor(ev3.getPort("A")), new LejosMotor(ev3.getPort("D")),
+				new LejosMotor(ev3.getPort("B")), new LejosMotor(ev3.getPort("C")),
+				new LejosRangeSensor(ev3.getPort("S3")), new LejosLightSensor(ev3.getPort("S1")),
+				new LejosLightSensor(ev3.getPort("S2")), new LejosColorSensor(ev3.getPort("S4")), new LejosSpeaker());
+	}
+
+	/**
+	 * Creates in-memory stand-ins for the devices of the robot
+	 * 
+	 * @return virtual hardware
+	 */
+	public static Hardware createVirtual() {
+		return new Hardware(new VirtualMotor(), new VirtualMotor(), new VirtualMotor(), new VirtualMotor(),
+				new VirtualRangeSensor(), new VirtualLightSensor(), new VirtualLightSensor(), new VirtualColorSensor(),
+				new VirtualSpeaker());
+	}
+
+	/**
+	 * Makes this hardware's speaker the one returned by getSpeaker
+	 */
+	public void install() {
+		setSpeaker(speaker);
+	}
+
+	/**
+	 * @return speaker of the installed hardware, a silent one if none is installed
+	 */
+	public static synchronized Speaker getSpeaker() {
+		return installedSpeaker;
+	}
+
+	/**
+	 * @param speaker speaker returned by getSpeaker
+	 */
+	public static synchronized void setSpeaker(Speaker speaker) {
+		Hardware.installedSpeaker = speaker;
+	}
+}
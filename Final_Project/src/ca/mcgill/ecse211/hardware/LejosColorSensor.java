@@ -0,0 +1,35 @@
+package ca.mcgill.ecse211.hardware;
+
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3ColorSensor;
+import lejos.robotics.SampleProvider;
+
+/**
+ * This class is a color sensor backed by an EV3 color sensor in RGB mode
+ * 
+ * @author Matthew
+ *
+ */
+public class LejosColorSensor implements ColorSensor {
+
+	private final SampleProvider sampleProvider;
+	private final float[] data;
+
+	/**
+	 * Constructor for the LejosColorSensor class
+	 * @param port port the sensor is plugged into
+	 */
+	@SuppressWarnings("resource")
+	public LejosColorSensor(Port port) {
+		this.sampleProvider = new EV3ColorSensor(port).getRGBMode();
+		this.data = new float[sampleProvider.sampleSize()];
+	}
+
+	@Override
+	public void fetchRGB(float[] rgb) {
+		sampleProvider.fetchSample(data, 0);
+		rgb[0] = data[0];
+		rgb[1] = data[1];
+		rgb[2] = data[2];
+	}
+}
@@ -0,0 +1,33 @@
+package ca.mcgill.ecse211.hardware;
+
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3ColorSensor;
+import lejos.robotics.SampleProvider;
+
+/**
+ * This class is a light sensor backed by an EV3 color sensor in red mode
+ * 
+ * @author Matthew
+ *
+ */
+public class LejosLightSensor implements LightSensor {
+
+	private final SampleProvider sampleProvider;
+	private final float[] data;
+
+	/**
+	 * Constructor for the LejosLightSensor class
+	 * @param port port the sensor is plugged into
+	 */
+	@SuppressWarnings("resource")
+	public LejosLightSensor(Port port) {
+		this.sampleProvider = new EV3ColorSensor(port).getRedMode();
+		this.data = new float[sampleProvider.sampleSize()];
+	}
+
+	@Override
+	public float fetchIntensity() {
+		sampleProvider.fetchSample(data, 0);
+		return data[0];
+	}
+}
@@ -0,0 +1,78 @@
+package ca.mcgill.ecse211.hardware;
+
+import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import lejos.hardware.port.Port;
+
+/**
+ * This class is a drive or arm motor backed by an EV3 large regulated motor
+ * 
+ * @author Matthew
+ *
+ */
+public class LejosMotor implements DriveMotor {
+
+	private final EV3LargeRegulatedMotor motor;
+
+	/**
+	 * Constructor for the LejosMotor class
+	 * @param port port the motor is plugged into
+	 */
+	public LejosMotor(Port port) {
+		this.motor = new EV3LargeRegulatedMotor(port);
+	}
+
+	@Override
+	public void setSpeed(int speed) {
+		motor.setSpeed(speed);
+	}
+
+	@Override
+	public int getSpeed() {
+		return motor.getSpeed();
+	}
+
+	@Override
+	public void rotate(int angle) {
+		motor.rotate(angle);
+	}
+
+	@Override
+	public void rotate(int angle, boolean immediateReturn) {
+		motor.rotate(angle, immediateReturn);
+	}
+
+	@Override
+	public void stop(boolean immediateReturn) {
+		motor.stop(immediateReturn);
+	}
+
+	@Override
+	public boolean isMoving() {
+		return motor.isMoving();
+	}
+
+	@Override
+	public void waitComplete() {
+		motor.waitComplete();
+	}
+
+	@Override
+	public int getTachoCount() {
+		return motor.getTachoCount();
+	}
+
+	@Override
+	public void forward() {
+		motor.forward();
+	}
+
+	@Override
+	public void backward() {
+		motor.backward();
+	}
+
+	@Override
+	public void setAcceleration(int acceleration) {
+		motor.setAcceleration(acceleration);
+	}
+}
@@ -0,0 +1,33 @@
+package ca.mcgill.ecse211.hardware;
+
+import lejos.hardware.port.Port;
+import lejos.hardware.sensor.EV3UltrasonicSensor;
+import lejos.robotics.SampleProvider;
+
+/**
+ * This class is a range sensor backed by an EV3 ultrasonic sensor in distance mode
+ * 
+ * @author Matthew
+ *
+ */
+public class LejosRangeSensor implements RangeSensor {
+
+	private final SampleProvider sampleProvider;
+	private final float[] data;
+
+	/**
+	 * Constructor for the LejosRangeSensor class
+	 * @param port port the sensor is plugged into
+	 */
+	@SuppressWarnings("resource")
+	public LejosRangeSensor(Port port) {
+		this.sampleProvider = new EV3UltrasonicSensor(port).getMode("Distance");
+		this.data = new float[sampleProvider.sampleSize()];
+	}
+
+	@Override
+	public float fetchDistance() {
+		sampleProvider.fetchSample(data, 0);
+		return data[0];
+	}
+}
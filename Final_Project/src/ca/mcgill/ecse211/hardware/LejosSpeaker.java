@@ -0,0 +1,27 @@
+package ca.mcgill.ecse211.hardware;
+
+import lejos.hardware.Sound;
+
+/**
+ * This class is the speaker of the EV3 brick
+ * 
+ * @author Matthew
+ *
+ */
+public class LejosSpeaker implements Speaker {
+
+	@Override
+	public void beep() {
+		Sound.beep();
+	}
+
+	@Override
+	public void playTone(int frequency, int duration) {
+		Sound.playTone(frequency, duration);
+	}
+
+	@Override
+	public void setVolume(int volume) {
+		Sound.setVolume(volume);
+	}
+}
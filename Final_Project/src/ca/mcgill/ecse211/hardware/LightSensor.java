@@ -0,0 +1,17 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This interface contains the methods of a light sensor measuring reflected red light, used to detect lines
+ * 
+ * @author Matthew
+ *
+ */
+public interface LightSensor {
+
+	/**
+	 * Fetches a sample
+	 * @return reflected light intensity, from 0 to 1
+	 */
+	public float fetchIntensity();
+
+}
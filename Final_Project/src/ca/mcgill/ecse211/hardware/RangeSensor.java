@@ -0,0 +1,17 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This interface contains the methods of a distance sensor, such as the ultrasonic sensor
+ * 
+ * @author Matthew
+ *
+ */
+public interface RangeSensor {
+
+	/**
+	 * Fetches a sample
+	 * @return distance in m
+	 */
+	public float fetchDistance();
+
+}
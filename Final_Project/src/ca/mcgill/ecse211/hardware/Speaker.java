@@ -0,0 +1,28 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This interface contains the methods of the speaker of the brick
+ * 
+ * @author Matthew
+ *
+ */
+public interface Speaker {
+
+	/**
+	 * Plays a beep
+	 */
+	public void beep();
+
+	/**
+	 * Plays a tone and waits until it is over
+	 * @param frequency frequency in Hz
+	 * @param duration duration in ms
+	 */
+	public void playTone(int frequency, int duration);
+
+	/**
+	 * @param volume volume in percent
+	 */
+	public void setVolume(int volume);
+
+}
@@ -0,0 +1,31 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This class is an in-memory color sensor returning the last RGB values it was given
+ * 
+ * @author Matthew
+ *
+ */
+public class VirtualColorSensor implements ColorSensor {
+
+	private float[] rgb = new float[3];
+
+	/**
+	 * Sets the values returned by the following samples
+	 * @param r red, from 0 to 1
+	 * @param g green
+	 * @param b blue
+	 */
+	public synchronized void setRGB(float r, float g, float b) {
+		rgb[0] = r;
+		rgb[1] = g;
+		rgb[2] = b;
+	}
+
+	@Override
+	public synchronized void fetchRGB(float[] rgb) {
+		rgb[0] = this.rgb[0];
+		rgb[1] = this.rgb[1];
+		rgb[2] = this.rgb[2];
+	}
+}
@@ -0,0 +1,24 @@
+package ca.mcgill.ecse211.hardware;
+
+/**
+ * This class is an in-memory light sensor returning the last intensity it was given
+ * 
+ * @author Matthew
+ *
+ */
+public class VirtualLightSensor implements LightSensor {
+
+	private volatile float intensity = 0.5f;
+
+	/**
+	 * @param intensity intensity returned by the following samples, from 0 to 1
+	 */
+	public void setIntensity(float intensity) {
+		this.intensity = intensity;
+	}
+
+	@Override
+	public float fetchIntensity() {
+		return intensity;
+	}
+}
@@ -0,0 +1,141 @@
+package ca.mcgill.ecse211.hardware;
+
+import ca.mcgill.ecse211.scheduling.Condition;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
+/**
+ * This class is an in-memory motor that turns at its set speed, with no acceleration and no load. Its angle is
+ * computed from the time of the TaskScheduler clock elapsed since the last command, so it needs no thread of its
+ * own and turns in simulated time when the clock is virtual.
+ * 
+ * @author Matthew
+ *
+ */
+public class VirtualMotor implements DriveMotor {
+
+	private int speed = 360;	//deg/s
+	private double startAngle = 0;	//angle at startTime
+	private long startTime = TaskScheduler.getClock().nanoTime();
+	private int direction = 0;	//1 forward, -1 backward, 0 stopped
+	private boolean hasTarget = false;	//whether the motor stops at targetAngle
+	private double targetAngle;
+
+	private final Condition stopped = new Condition() {
+		public boolean isMet() {
+			return !isMoving();
+		}
+	};
+
+	@Override
+	public synchronized void setSpeed(int speed) {
+		settle();
+		this.speed = Math.abs(speed);
+	}
+
+	@Override
+	public synchronized int getSpeed() {
+		return speed;
+	}
+
+	@Override
+	public void rotate(int angle) {
+		rotate(angle, false);
+	}
+
+	@Override
+	public void rotate(int angle, boolean immediateReturn) {
+		synchronized (this) {
+			settle();
+			targetAngle = startAngle + angle;
+			hasTarget = true;
+			direction = Integer.signum(angle);
+		}
+		if (!immediateReturn)
+			waitComplete();
+	}
+
+	@Override
+	public synchronized void forward() {
+		move(1);
+	}
+
+	@Override
+	public synchronized void backward() {
+		move(-1);
+	}
+
+	@Override
+	public synchronized void stop(boolean immediateReturn) {
+		settle();
+		direction = 0;
+		hasTarget = false;
+	}
+
+	@Override
+	public synchronized boolean isMoving() {
+		settle();
+		return direction != 0;
+	}
+
+	@Override
+	public void waitComplete() {
+		try {
+			TaskScheduler.getClock().waitFor(stopped);
+		} catch (InterruptedException e) {
+			return;
+		}
+	}
+
+	@Override
+	public synchronized int getTachoCount() {
+		return (int) getAngle();
+	}
+
+	/**
+	 * @return exact angle of the motor in degrees, of which the tacho count is the integer part
+	 */
+	public synchronized double getAngle() {
+		return angleAt(TaskScheduler.getClock().nanoTime());
+	}
+
+	@Override
+	public void setAcceleration(int acceleration) {
+		//a virtual motor reaches its speed instantly
+	}
+
+	/**
+	 * Starts turning continuously
+	 * @param direction 1 forward, -1 backward
+	 */
+	private void move(int direction) {
+		settle();
+		this.direction = direction;
+		hasTarget = false;
+	}
+
+	/**
+	 * Moves the start of the current movement to now, stopping the motor if it reached its target
+	 */
+	private void settle() {
+		long now = TaskScheduler.getClock().nanoTime();
+		startAngle = angleAt(now);
+		startTime = now;
+		if (hasTarget && startAngle == targetAngle) {
+			direction = 0;
+			hasTarget = false;
+		}
+	}
+
+	/**
+	 * @param time clock nanoTime()
+	 * @return angle of the motor at the given time
+	 */
+	private double angleAt(long time) {
+		if (direction == 0)
+			return startAngle;
+		double angle = startAngle + direction * speed * (time - startTime) / 1e9;
+		if (hasTarget && (direction > 0 ? angle >= targetAngle : angle <= targetAngle))
+			return targetAngle;
+		return angle;
+	}
+}
@@ -0,0 +1,49 @@
+package ca.mcgill.ecse211.hardware;
+
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
+/**
+ * This class is a silent speaker that counts the sounds it is asked to play. Beeps return immediately, and
+ * tones wait for their duration on the TaskScheduler clock, like the blocking tones of the EV3.
+ * 
+ * @author Matthew
+ *
+ */
+public class VirtualSpeaker implements Speaker {
+
+	private volatile int beeps = 0;
+	private volatile int tones = 0;
+
+	@Override
+	public void beep() {
+		beeps++;
+	}
+
+	@Override
+	public void playTone(int frequency, int duration) {
+		tones++;
+		try {
+			TaskScheduler.getClock().sleep(duration);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void setVolume(int volume) {
+	}
+
+	/**
+	 * @return number of beeps played
+	 */
+	public int getBeeps() {
+		return beeps;
+	}
+
+	/**
+	 * @return number of tones played
+	 */
+	public int getTones() {
+		return tones;
+	}
+}
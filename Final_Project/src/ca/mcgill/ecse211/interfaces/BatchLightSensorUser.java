@@ -0,0 +1,22 @@
+package ca.mcgill.ecse211.interfaces;
+
+/**
+ * This interface contains methods that must be implemented by classes that
+ * process light sensor samples in batches, at a lower rate than they are polled
+ * 
+ * @author Matthew
+ *
+ */
+public interface BatchLightSensorUser {
+	
+	/**
+	 * Receives all samples collected since the previous batch, oldest first. The arrays are reused
+	 * after the call returns.
+	 * @param left left light intensities
+	 * @param right right light intensities
+	 * @param ts clock nanoTime() at which each sample was fetched
+	 * @param n number of valid samples in the arrays
+	 */
+	public void processLSBatch(int[] left, int[] right, long[] ts, int n);
+	
+}
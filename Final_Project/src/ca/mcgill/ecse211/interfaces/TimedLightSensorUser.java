@@ -0,0 +1,21 @@
+package ca.mcgill.ecse211.interfaces;
+
+/**
+ * This interface contains methods that must be implemented by classes that
+ * use the light sensors and need to know when each sample was taken
+ * 
+ * @author Matthew
+ *
+ */
+public interface TimedLightSensorUser {
+	
+	/**
+	 * @param light light intensities [left, right]
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 * @param sequence sequence number of the sample on the light channel
+	 * @param tachoL left motor tacho count when the sample was fetched
+	 * @param tachoR right motor tacho count when the sample was fetched
+	 */
+	public void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR);
+	
+}
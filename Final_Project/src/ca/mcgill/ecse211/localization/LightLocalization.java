@@ -1,26 +1,32 @@
 package ca.mcgill.ecse211.localization;
 
 import ca.mcgill.ecse211.game.RingChallenge;
-import ca.mcgill.ecse211.interfaces.LightSensorUser;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.interfaces.BatchLightSensorUser;
 import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.LightSampleBatcher;
 import ca.mcgill.ecse211.sensor.LineDetector;
-import lejos.hardware.Sound;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
 
 /**
  * This class contains methods that allow the robot to perform light localization. It also implements the 
- * LightSensorUser interface, therefore there is the processLSData method. 
+ * BatchLightSensorUser interface, therefore there is the processLSBatch method. The samples are collected by a
+ * LightSampleBatcher subscribed to the sensor bus, and processed in the thread that localizes while the robot
+ * turns, so the light poller is never held up. 
  * 
  * @author Matthew, Romain
  *
  */
-public class LightLocalization implements LightSensorUser {
+public class LightLocalization implements BatchLightSensorUser {
 	
 	private static final int THRESHOLD = 30;
 	private static final int WINDOW_SIZE = 5;
 	private static final int ROTATE_SPEED = 120;
+	private static final int BATCH_PERIOD = 50;	//ms between two flushes while turning
+	private static final int BATCH_CAPACITY = 32;	//light samples, over 1 s of line poller samples
 	
-	private static final int[] CORRECTION_ANGLES = {-9, -9, -8, -6};
+	private static final double[] CORRECTION_ANGLES = RingChallenge.CALIBRATION.getCorrectionAngles();	//see Calibrator
 	
 	private static double TRACK;
 	private static double L_WHEEL_RAD;
@@ -28,20 +34,22 @@ public class LightLocalization implements LightSensorUser {
 	private static double LS_W_DISTANCE;
 	private static double LS_L_DISTANCE;
 	
-	private double angleXp;
-	private double angleXn;
-	private double angleYp;
-	private double angleYn;
+	private volatile double angleXp;
+	private volatile double angleXn;
+	private volatile double angleYp;
+	private volatile double angleYn;
 	
-	private EV3LargeRegulatedMotor leftMotor;
-	private EV3LargeRegulatedMotor rightMotor;
+	private DriveMotor leftMotor;
+	private DriveMotor rightMotor;
 	private Odometer odometer;
 	
-	private int lineCounter;
+	private volatile int lineCounter;
 	private boolean inLine;
-	private boolean localizing = false;
+	private volatile boolean localizing = false;
 	
 	private LineDetector lineDetector = new LineDetector(WINDOW_SIZE, THRESHOLD);
+	private double[] sampledPose = new double[3];	//pose when the current sample was fetched
+	private final LightSampleBatcher batcher = new LightSampleBatcher(this, BATCH_CAPACITY);
 	
 	
 	/**
@@ -54,7 +62,7 @@ public class LightLocalization implements LightSensorUser {
 	 * @param LS_W_DISTANCE width distance from the robot centre to the right light sensor
 	 * @param LS_L_DISTANCE length distance from the robot centre to the light sensors
 	 */
-	public LightLocalization(Odometer odometer, EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor, double TRACK,
+	public LightLocalization(Odometer odometer, DriveMotor leftMotor, DriveMotor rightMotor, double TRACK,
 			double L_WHEEL_RAD, double R_WHEEL_RAD, double LS_WIDTH, double LS_L_DISTANCE) {
 		this.odometer = odometer;
 		this.leftMotor = leftMotor;
@@ -75,19 +83,30 @@ public class LightLocalization implements LightSensorUser {
 	 * 0 = bottom left, 1 = bottom right, 2 = top right, 3 = top left.
 	 */
 	public void lightLocalization(int gridX, int gridY, int quadrant) {
+		batcher.flush();	//drop the samples from before the spin
 		lineCounter = quadrant;
 		inLine = false;
 		localizing = true;
 		
 		Navigation.setMotorSpeeds(ROTATE_SPEED, leftMotor, rightMotor, L_WHEEL_RAD, R_WHEEL_RAD);
 		
-		//rotate counter-clockwise
+		//rotate counter-clockwise, processing the samples as they come
 		leftMotor.rotate(-Navigation.convertAngle(L_WHEEL_RAD, TRACK, 360), true);
-		rightMotor.rotate(Navigation.convertAngle(R_WHEEL_RAD, TRACK, 360), false);
+		rightMotor.rotate(Navigation.convertAngle(R_WHEEL_RAD, TRACK, 360), true);
+		while(leftMotor.isMoving() || rightMotor.isMoving()) {
+			try {
+				TaskScheduler.getClock().sleep(BATCH_PERIOD);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+			batcher.flush();
+		}
 		
 		//stop the motors
 		leftMotor.stop(true);
 		rightMotor.stop(false);
+		batcher.flush();
 		
 		localizing = false;
 		
@@ -100,46 +119,81 @@ public class LightLocalization implements LightSensorUser {
 		double dx = lsDistance * -Math.cos(Math.PI * dAngleY / 360);
 		double dy = lsDistance * -Math.cos(Math.PI * dAngleX / 360);
 		
+		double dTheta = getHeadingError(angleYn, angleYp, angleOffset) + CORRECTION_ANGLES[quadrant];
+		
+		odometer.setXYT(gridX * RingChallenge.TILE_SIZE + dx, gridY * RingChallenge.TILE_SIZE + dy,
+				odometer.getTheta() + (dTheta + 360) % 360);
+		
+	}
+
+	/**
+	 * Computes the error of the odometer heading from the headings at which the right light sensor crossed the y line
+	 * below and above the intersection, before the correction angle of the starting quadrant is added
+	 * @param angleYn heading when the line below the intersection was crossed, in degrees
+	 * @param angleYp heading when the line above the intersection was crossed, in degrees
+	 * @param angleOffset angle between the robot's axis and the right light sensor seen from the centre, in radians
+	 * @return theta correction in degrees, to add to the heading of the odometer
+	 */
+	public static double getHeadingError(double angleYn, double angleYp, double angleOffset) {
+		double dAngleY = (angleYn - angleYp + 360) % 360;
 		angleOffset *= 180 / Math.PI;
 		
 		double dThetaY = 270 - (angleYn - angleOffset) + dAngleY / 2;	//theta correction calculated with y axis
 		if(dThetaY > 180)
 			dThetaY -= 360;
-		double dTheta = dThetaY + CORRECTION_ANGLES[quadrant];
-		
-		odometer.setXYT(gridX * RingChallenge.TILE_SIZE + dx, gridY * RingChallenge.TILE_SIZE + dy,
-				odometer.getXYT()[2] + (dTheta + 360) % 360);
-		
+		return dThetaY;
+	}
+
+	/**
+	 * @return the batcher that must be subscribed to the sensor bus in place of this object
+	 */
+	public LightSampleBatcher getSampleBatcher() {
+		return batcher;
 	}
 
 	/**
-	 * receieves data from the light sensors
-	 * @param light light intensities read by the sensor [left, right]
+	 * receieves the light samples collected since the previous batch
+	 * @param left left light intensities
+	 * @param right right light intensities
+	 * @param ts clock nanoTime() at which each sample was fetched
+	 * @param n number of samples
 	 */
 	@Override
-	public void processLSData(int[] light) {
+	public void processLSBatch(int[] left, int[] right, long[] ts, int n) {
 		if(!localizing)
 			return;
 		
-		boolean lineCrossed = lineDetector.lineCrossed(light[1]);
+		for(int k = 0; k < n; k++) {
+			processSample(right[k], ts[k]);
+		}
+	}
+
+	/**
+	 * processes one sample of the right light sensor
+	 * @param light light intensity read by the right sensor
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 */
+	private void processSample(int light, long timestamp) {
+		boolean lineCrossed = lineDetector.lineCrossed(light);
 		
 		//record angle and increment counter if line crossed
 		if(lineCrossed && !inLine) {
 			inLine = true;
-			Sound.beep();
-			//get angle
+			Hardware.getSpeaker().beep();
+			//get angle at the moment the sample was taken, not when it is processed
+			odometer.poseAt(timestamp, sampledPose);
 			switch (lineCounter) {
 			case 0:
-				angleYn = odometer.getXYT()[2];
+				angleYn = sampledPose[2];
 				break;
 			case 1:
-				angleXp = odometer.getXYT()[2];
+				angleXp = sampledPose[2];
 				break;
 			case 2:
-				angleYp = odometer.getXYT()[2];
+				angleYp = sampledPose[2];
 				break;
 			case 3:
-				angleXn = odometer.getXYT()[2];
+				angleXn = sampledPose[2];
 				break;
 			}
 		}
@@ -0,0 +1,246 @@
+package ca.mcgill.ecse211.localization;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+import ca.mcgill.ecse211.scheduling.Condition;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
+/**
+ * This class is a motion started by one of the asynchronous Navigation methods (travelToAsync, turnToAsync,
+ * taxiTravelToAsync). A motion is a queue of steps, each of which starts the wheels with rotate(angle, true) and is
+ * finished once neither wheel is moving any more, so the thread that started the motion is free to plan, move the
+ * arm or watch the clock while the robot drives.
+ * <p>
+ * A motion only moves on to its next step when it is polled, by isDone, await or a Clock.waitFor on it. Motions
+ * requested while another one is running are queued after it, and start when it is done. A handle is not thread
+ * safe: it must be polled and cancelled by the thread that started it, like the VirtualClock requires anyway.
+ *
+ * @author Matthew
+ *
+ */
+public class MotionHandle implements Condition {
+
+	private static final int QUEUED = 0;
+	private static final int RUNNING = 1;
+	private static final int DONE = 2;
+	private static final int CANCELLED = 3;
+
+	private final ArrayDeque<Step> steps = new ArrayDeque<Step>();
+	private final ArrayList<Runnable> callbacks = new ArrayList<Runnable>();
+	private MotionHandle previous;
+	private MotionHandle next;
+	private Step step;
+	private int state = QUEUED;
+	private long startTime;
+	private long endTime;
+
+	/**
+	 * Constructor for the MotionHandle class. Handles are created by Navigation.
+	 *
+	 * @param previous motion this one starts after, or null to start it now
+	 */
+	MotionHandle(MotionHandle previous) {
+		if (previous != null && !previous.isFinished()) {
+			this.previous = previous;
+			previous.next = this;
+		}
+	}
+
+	/**
+	 * Adds a step at the end of the motion
+	 */
+	void add(Step step) {
+		steps.addLast(step);
+	}
+
+	/**
+	 * Adds steps to be run right after the current one, in order
+	 */
+	void insert(ArrayList<Step> inserted) {
+		for (int i = inserted.size() - 1; i >= 0; i--) {
+			steps.addFirst(inserted.get(i));
+		}
+	}
+
+	/**
+	 * Starts the motion if it is not queued after another one
+	 */
+	void start() {
+		if (previous == null)
+			begin();
+	}
+
+	/**
+	 * Moves the motion on: starts it once the motion before it is done, and starts each step once the previous
+	 * one is finished
+	 */
+	private void update() {
+		if (state == QUEUED) {
+			if (previous != null && !previous.isFinished())
+				return;
+			previous = null;
+			begin();
+		}
+		while (state == RUNNING) {
+			if (!step.isDone()) {
+				step.update();
+				return;
+			}
+			step.finish();
+			nextStep();
+		}
+	}
+
+	private void begin() {
+		state = RUNNING;
+		startTime = TaskScheduler.getClock().nanoTime();
+		nextStep();
+	}
+
+	/**
+	 * Starts the next step, or completes the motion if there is none
+	 */
+	private void nextStep() {
+		step = steps.pollFirst();
+		if (step != null) {
+			step.start(this);
+			return;
+		}
+		state = DONE;
+		endTime = TaskScheduler.getClock().nanoTime();
+		for (Runnable callback : callbacks) {
+			callback.run();
+		}
+		if (next != null)
+			next.update();
+	}
+
+	private boolean isFinished() {
+		update();
+		return state == DONE || state == CANCELLED;
+	}
+
+	/**
+	 * Polls the motion, starting its next step if the current one is finished
+	 *
+	 * @return true if the motion is complete or was cancelled
+	 */
+	public boolean isDone() {
+		return isFinished();
+	}
+
+	@Override
+	public boolean isMet() {
+		return isFinished();
+	}
+
+	/**
+	 * @return true if the motion was cancelled before it completed
+	 */
+	public boolean isCancelled() {
+		return state == CANCELLED;
+	}
+
+	/**
+	 * Waits until the motion is complete or cancelled
+	 *
+	 * @throws InterruptedException
+	 */
+	public void await() throws InterruptedException {
+		TaskScheduler.getClock().waitFor(this);
+	}
+
+	/**
+	 * Waits until the motion is complete or cancelled, or until a timeout
+	 *
+	 * @param timeout time to wait in ms
+	 * @return true if the motion is complete or cancelled
+	 * @throws InterruptedException
+	 */
+	public boolean await(long timeout) throws InterruptedException {
+		return TaskScheduler.getClock().waitFor(this, timeout);
+	}
+
+	/**
+	 * Runs a callback when the motion completes, from the thread polling it. It is not run if the motion is
+	 * cancelled, and it is run right away if the motion is already complete.
+	 *
+	 * @param callback work to do once the robot has arrived
+	 * @return this handle
+	 */
+	public MotionHandle then(Runnable callback) {
+		if (state == DONE)
+			callback.run();
+		else if (state != CANCELLED)
+			callbacks.add(callback);
+		return this;
+	}
+
+	/**
+	 * Stops the robot where it is and cancels this motion and every motion queued after it
+	 */
+	public void cancel() {
+		if (state == DONE || state == CANCELLED)
+			return;
+		if (state == RUNNING && step != null)
+			step.cancel();
+		state = CANCELLED;
+		steps.clear();
+		callbacks.clear();
+		step = null;
+		endTime = TaskScheduler.getClock().nanoTime();
+		if (previous != null) {
+			previous.next = null;
+			previous = null;
+		}
+		if (next != null) {
+			next.previous = null;
+			next.cancel();
+		}
+	}
+
+	/**
+	 * @return time the motion took or has taken so far (ns), 0 if it has not started
+	 */
+	public long getElapsedTime() {
+		if (state == QUEUED)
+			return 0;
+		return (state == RUNNING ? TaskScheduler.getClock().nanoTime() : endTime) - startTime;
+	}
+
+	/**
+	 * This class is one move of a motion, such as a turn in place or a straight line
+	 */
+	static abstract class Step {
+
+		/**
+		 * Starts the move, without waiting for it
+		 *
+		 * @param handle motion the step belongs to, to which more steps can be inserted
+		 */
+		abstract void start(MotionHandle handle);
+
+		/**
+		 * @return true once the move is finished
+		 */
+		abstract boolean isDone();
+
+		/**
+		 * Called every time the motion is polled while the move is running
+		 */
+		void update() {
+		}
+
+		/**
+		 * Called once the move is finished
+		 */
+		void finish() {
+		}
+
+		/**
+		 * Stops the move
+		 */
+		abstract void cancel();
+	}
+}
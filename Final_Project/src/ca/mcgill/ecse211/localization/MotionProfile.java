@@ -0,0 +1,90 @@
+package ca.mcgill.ecse211.localization;
+
+import ca.mcgill.ecse211.scheduling.LatencyMonitor;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
+/**
+ * This enum is the table of speed profiles used by Navigation. Each move ramps the wheels up to the cruise speed of
+ * its profile and back down with the acceleration of its profile (a trapezoidal profile, done by the motor
+ * regulator). The time taken by every move is recorded per profile, so the table can be tuned from
+ * TaskScheduler.printStatistics without losing line detections (see "sample to correction").
+ *
+ * @author Matthew
+ *
+ */
+public enum MotionProfile {
+
+	//speed in deg/s, acceleration in deg/s^2
+	CRUISE(320, 1000),	//straight moves, away from the lines
+	LINE(180, 1000),	//while a light sensor is close to a line that odometry correction must detect
+	TURN(200, 1000),	//turns in place, which correction relies on being accurate
+	ARC(200, 1000),	//PathExecutor arcs, where the outer wheel turns much faster than this speed
+	TUNNEL(180, 500),	//in the tunnel, where a swerve hits the walls
+	NUDGE(120, 500);	//moves shorter than NUDGE_DISTANCE, e.g. to and from the tree
+
+	public static final double NUDGE_DISTANCE = 10;	//cm
+	public static final double LINE_WINDOW = 4;	//cm on each side of a line where LINE is used
+
+	private final int speed;
+	private final int acceleration;
+	private final LatencyMonitor moveTime;
+
+	private MotionProfile(int speed, int acceleration) {
+		this.speed = speed;
+		this.acceleration = acceleration;
+		this.moveTime = TaskScheduler.createLatencyMonitor("move " + name().toLowerCase());
+	}
+
+	/**
+	 * @param distance length of a straight move in cm
+	 * @return profile of a straight move outside of the tunnel
+	 */
+	public static MotionProfile forDistance(double distance) {
+		return Math.abs(distance) < NUDGE_DISTANCE ? NUDGE : CRUISE;
+	}
+
+	/**
+	 * @return cruise speed of the wheels in deg/s
+	 */
+	public int getSpeed() {
+		return speed;
+	}
+
+	/**
+	 * @return acceleration of the wheels in deg/s^2
+	 */
+	public int getAcceleration() {
+		return acceleration;
+	}
+
+	/**
+	 * Returns the time the regulator takes to turn a wheel by an angle from rest to rest with this profile. Short
+	 * moves never reach the cruise speed, and their profile is a triangle.
+	 *
+	 * @param wheelAngle rotation of the wheel in degrees
+	 * @return time of the move in ms
+	 */
+	public int getMoveTime(int wheelAngle) {
+		double angle = Math.abs(wheelAngle);
+		double rampAngle = (double) speed * speed / acceleration;	//turned while speeding up and slowing down
+		if (angle >= rampAngle)
+			return (int) Math.round(1000 * (angle / speed + (double) speed / acceleration));
+		return (int) Math.round(1000 * 2 * Math.sqrt(angle / acceleration));
+	}
+
+	/**
+	 * Records the time taken by a move with this profile
+	 *
+	 * @param time time in ns
+	 */
+	void record(long time) {
+		moveTime.record(time);
+	}
+
+	/**
+	 * @return statistics of the moves made with this profile
+	 */
+	public LatencyMonitor getMoveTimes() {
+		return moveTime;
+	}
+}
@@ -1,14 +1,20 @@
 package ca.mcgill.ecse211.localization;
 
+import java.util.ArrayList;
+
 import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
 import ca.mcgill.ecse211.odometry.Odometer;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
 
 /**
  * This class contains every method that is useful for the robot's navigation. This means navigation to a specific 
  * point, rotation to a specific angle or avoiding obstacles. It also contains useful methods that convert distances 
  * to wheel rotations and angles to distances, which are useful for navigation. Finally, there is also a method to 
  * calculate the closest gridpoint to the robots location.
+ * <p>
+ * travelTo, turnTo, taxiTravelTo and travelDistance also have asynchronous versions that return a MotionHandle
+ * right away; the blocking versions start the same motion and wait for it.
  * 
  * @author Romain, Lara, Matthew
  *
@@ -16,13 +22,45 @@ import lejos.hardware.motor.EV3LargeRegulatedMotor;
 public class Navigation {
 	
 	private static Odometer odo;
+	private static DriveMotor leftMotor;
+	private static DriveMotor rightMotor;
+	private static PathExecutor pathExecutor;
+	private static MotionHandle lastMotion;
 	
 	public static final int DISTANCE_RANGE = 4;
-	public static final int CORRECTION_PERIOD = 1;	//how many tiles the robot travels (taxiTravelTo) before the robot corrects itself
+	public static final int CORRECTION_PERIOD = 1;	//how many tiles the robot travels (taxiTravelTo) before the robot corrects itself, unless DRIVE_THROUGH_CORRECTION
 	
 	
 	public static void setOdometer(Odometer odometer) {
 		Navigation.odo = odometer;
+		pathExecutor = null;
+		lastMotion = null;
+	}
+	
+	/**
+	 * Sets the wheel motors used by the navigation methods
+	 * @param leftMotor
+	 * @param rightMotor
+	 */
+	public static void setMotors(DriveMotor leftMotor, DriveMotor rightMotor) {
+		Navigation.leftMotor = leftMotor;
+		Navigation.rightMotor = rightMotor;
+		pathExecutor = null;
+		lastMotion = null;
+	}
+	
+	/**
+	 * Follows a path of adjacent grid intersections without stopping at each one (see PathExecutor), once every
+	 * motion requested before is done
+	 * @param path packed intersections (see PathPlanner.pack), excluding the intersection closest to the robot
+	 * @param isCorrected boolean which indicates if the odometry correction is active
+	 */
+	public static void followPath(int[] path, boolean isCorrected) {
+		if(lastMotion != null)
+			await(lastMotion);
+		if(pathExecutor == null)
+			pathExecutor = new PathExecutor(odo, leftMotor, rightMotor);
+		pathExecutor.follow(path, isCorrected);
 	}
 	
 	
@@ -35,17 +73,66 @@ public class Navigation {
 	 * @param isCorrected odometry correction is enabled
 	 */
 	public static void taxiTravelTo(double x, double y, boolean xFirst, boolean isCorrected) {
-		double[] XYT = odo.getXYT();
+		await(taxiTravelToAsync(x, y, xFirst, isCorrected));
+	}
+	
+	/**
+	 * Starts travelling to the specified coordinates parallel to the x and y axes (see taxiTravelTo). The legs are
+	 * planned from where the robot is when the motion starts.
+	 * @param x continuous x coordinate in cm
+	 * @param y continuous y coordinate in cm
+	 * @param xFirst boolean which indicates if the robot will travel along the x axis first
+	 * @param isCorrected odometry correction is enabled
+	 * @return handle of the motion
+	 */
+	public static MotionHandle taxiTravelToAsync(double x, double y, boolean xFirst, boolean isCorrected) {
+		MotionHandle handle = new MotionHandle(lastMotion);
+		handle.add(new TaxiStep(x, y, xFirst, isCorrected));
+		return start(handle);
+	}
+	
+	/**
+	 * Taxi travel to, but takes grid intersection coordinates
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @param xFirst robot will travel along the x axis first
+	 * @param isCorrected odometry correction is enabled
+	 */
+	public static void taxiTravelTo(int x, int y, boolean xFirst, boolean isCorrected) {
+		taxiTravelTo(x * RingChallenge.TILE_SIZE, y * RingChallenge.TILE_SIZE, xFirst, isCorrected);
+	}
+	
+	/**
+	 * Returns the points taxiTravelTo travels to in order. With correction, the robot stops every CORRECTION_PERIOD
+	 * tiles so that it corrects itself on each line, unless DRIVE_THROUGH_CORRECTION is set, in which case it drives
+	 * each axis in one leg and the legs are retargeted after each correction.
+	 * @param XYT position of the robot at the start
+	 * @param x continuous x coordinate in cm
+	 * @param y continuous y coordinate in cm
+	 * @param xFirst boolean which indicates if the robot will travel along the x axis first
+	 * @param isCorrected odometry correction is enabled
+	 * @return list of points {x, y}
+	 */
+	private static ArrayList<double[]> getTaxiPoints(double[] XYT, double x, double y, boolean xFirst, boolean isCorrected) {
+		ArrayList<double[]> points = new ArrayList<double[]>();
 		
 		//if no correction required
 		if(!isCorrected) {
 			if(xFirst)
-				travelTo(x, XYT[1], false);
+				points.add(new double[] {x, XYT[1]});
 			else
-				travelTo(XYT[0], y, false);
-			travelTo(x, y, false);
-			
-			return;
+				points.add(new double[] {XYT[0], y});
+			points.add(new double[] {x, y});
+			return points;
+		}
+		
+		//if correction is applied while driving, each axis is a single leg
+		if(RingChallenge.DRIVE_THROUGH_CORRECTION) {
+			if(Math.abs(xFirst ? x - XYT[0] : y - XYT[1]) > DISTANCE_RANGE)
+				points.add(xFirst ? new double[] {x, XYT[1]} : new double[] {XYT[0], y});
+			if(Math.abs(xFirst ? y - XYT[1] : x - XYT[0]) > DISTANCE_RANGE)
+				points.add(new double[] {x, y});
+			return points;
 		}
 		
 		//if correction required
@@ -55,72 +142,73 @@ public class Navigation {
 		
 		double nextX = (coords[0] + CORRECTION_PERIOD * (goingRight ? 1 : -1)) * RingChallenge.TILE_SIZE;
 		double nextY = (coords[1] + CORRECTION_PERIOD * (goingUp ? 1 : -1)) * RingChallenge.TILE_SIZE;
+		double curX = XYT[0], curY = XYT[1];	//where the robot will be
 		
 		if(xFirst) {
 			while(goingRight ? (nextX < x) : (nextX > x)) {
-				travelTo(nextX, XYT[1], true);
+				points.add(new double[] {curX = nextX, XYT[1]});
 				nextX += CORRECTION_PERIOD * (goingRight ? RingChallenge.TILE_SIZE : -RingChallenge.TILE_SIZE);
 			}
-			if(Math.abs(x - odo.getXYT()[0]) > DISTANCE_RANGE) {
-				travelTo(x, XYT[1], true);
-			}
+			if(Math.abs(x - curX) > DISTANCE_RANGE)
+				points.add(new double[] {x, XYT[1]});
 			while(goingUp ? (nextY < y) : (nextY > y)) {
-				travelTo(x, nextY, true);
+				points.add(new double[] {x, curY = nextY});
 				nextY += CORRECTION_PERIOD * (goingUp ? RingChallenge.TILE_SIZE : -RingChallenge.TILE_SIZE);
 			}
-			if(Math.abs(y - odo.getXYT()[1]) > DISTANCE_RANGE) {
-				travelTo(x, y, true);
-			}
+			if(Math.abs(y - curY) > DISTANCE_RANGE)
+				points.add(new double[] {x, y});
 		}
 		else {
 			while(goingUp ? (nextY < y) : (nextY > y)) {
-				travelTo(XYT[0], nextY, true);
+				points.add(new double[] {XYT[0], curY = nextY});
 				nextY += CORRECTION_PERIOD * (goingUp ? RingChallenge.TILE_SIZE : -RingChallenge.TILE_SIZE);
 			}
-			if(Math.abs(y - odo.getXYT()[1]) > DISTANCE_RANGE)
-				travelTo(XYT[0], y, true);
+			if(Math.abs(y - curY) > DISTANCE_RANGE)
+				points.add(new double[] {XYT[0], y});
 			while(goingRight ? (nextX < x) : (nextX > x)) {
-				travelTo(nextX, y, true);
+				points.add(new double[] {curX = nextX, y});
 				nextX += CORRECTION_PERIOD * (goingRight ? RingChallenge.TILE_SIZE : -RingChallenge.TILE_SIZE);
 			}
-			if(Math.abs(x - odo.getXYT()[0]) > DISTANCE_RANGE)
-				travelTo(x, y, true);
+			if(Math.abs(x - curX) > DISTANCE_RANGE)
+				points.add(new double[] {x, y});
 		}
+		return points;
 	}
 	
 	/**
-	 * Taxi travel to, but takes grid intersection coordinates
-	 * @param x x grid coordinate
-	 * @param y y grid coordinate
-	 * @param xFirst robot will travel along the x axis first
-	 * @param isCorrected odometry correction is enabled
+	 * Travels to the specified set of continuous coordinates
+	 * @param x double x continuous coordinate
+	 * @param y double y continuous coordinate
+	 * @param isCorrected boolean which indicates if the odometry correction is active
 	 */
-	public static void taxiTravelTo(int x, int y, boolean xFirst, boolean isCorrected) {
-		taxiTravelTo(x * RingChallenge.TILE_SIZE, y * RingChallenge.TILE_SIZE, xFirst, isCorrected);
+	public static void travelTo(double x, double y, boolean isCorrected) {
+		travelTo(x, y, isCorrected, null);
 	}
 	
 	/**
-	 * Travels to the specified set of continuous coordinates
+	 * Travels to the specified set of continuous coordinates with a given speed profile
 	 * @param x double x continuous coordinate
 	 * @param y double y continuous coordinate
 	 * @param isCorrected boolean which indicates if the odometry correction is active
+	 * @param profile speed profile of the straight move, or null to choose it from the distance
 	 */
-	public static void travelTo(double x, double y, boolean isCorrected) {
-
-		double[] XYZ = odo.getXYT();
-		//get dX and dY to arrive at next point
-		double dX = x - XYZ[0];
-		double dY = y - XYZ[1];
-		//calculate angle to new point in radians
-		double newTheta = Math.atan2(dX, dY);
-		//calculate distance to new point
-		double distance = Math.sqrt(dX * dX + dY * dY);
-		
-		turnTo(180 * newTheta / Math.PI);
-		if(isCorrected)
-			odo.enableCorrection();
-		travelDistance(distance);
-		odo.disableCorrection();
+	public static void travelTo(double x, double y, boolean isCorrected, MotionProfile profile) {
+		await(travelToAsync(x, y, isCorrected, profile));
+	}
+	
+	/**
+	 * Starts travelling to the specified set of continuous coordinates: a turn towards them, then a straight move
+	 * @param x double x continuous coordinate
+	 * @param y double y continuous coordinate
+	 * @param isCorrected boolean which indicates if the odometry correction is active
+	 * @param profile speed profile of the straight move, or null to choose it from the distance
+	 * @return handle of the motion
+	 */
+	public static MotionHandle travelToAsync(double x, double y, boolean isCorrected, MotionProfile profile) {
+		MotionHandle handle = new MotionHandle(lastMotion);
+		handle.add(new TurnStep(x, y));
+		handle.add(new StraightStep(x, y, 0, isCorrected, profile));
+		return start(handle);
 	}
 	
 	
@@ -143,10 +231,100 @@ public class Navigation {
 	 */
 	public static void travelDistance(double distance)
 	{
-		setMotorSpeeds(RingChallenge.MOTOR_SPEED, RingChallenge.leftMotor, RingChallenge.rightMotor,
-				RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD);
-		RingChallenge.leftMotor.rotate(convertDistance(RingChallenge.L_WHEEL_RAD, distance), true);
-		RingChallenge.rightMotor.rotate(convertDistance(RingChallenge.R_WHEEL_RAD, distance), false);
+		travelDistance(distance, MotionProfile.forDistance(distance), false);
+	}
+	
+	/**
+	 * Makes the wheels rotate the appropriate amount to get to the desired distance with a given speed profile.
+	 * If lines are detected for odometry correction, the robot slows down to the LINE profile whenever a light
+	 * sensor is close to a line.
+	 * 
+	 * @param distance double distance to be travelled by robot
+	 * @param profile speed profile of the move
+	 * @param isCorrected boolean which indicates if the odometry correction is active
+	 */
+	public static void travelDistance(double distance, MotionProfile profile, boolean isCorrected)
+	{
+		await(travelDistanceAsync(distance, profile, isCorrected));
+	}
+	
+	/**
+	 * Starts a straight move of the desired distance (see travelDistance)
+	 * 
+	 * @param distance double distance to be travelled by robot
+	 * @param profile speed profile of the move
+	 * @param isCorrected boolean which indicates if the odometry correction is active
+	 * @return handle of the motion
+	 */
+	public static MotionHandle travelDistanceAsync(double distance, MotionProfile profile, boolean isCorrected) {
+		MotionHandle handle = new MotionHandle(lastMotion);
+		handle.add(new StraightStep(Double.NaN, Double.NaN, distance, isCorrected, profile));
+		return start(handle);
+	}
+
+	/**
+	 * Checks whether the light sensors are close to a grid line that the robot is crossing, i.e. a line
+	 * perpendicular to its heading rather than one it drives along
+	 * 
+	 * @param XYT position and heading of the robot
+	 * @return true if the light sensors are within LINE_WINDOW of such a line
+	 */
+	public static boolean isNearLine(double[] XYT) {
+		double sin = Math.sin(Math.toRadians(XYT[2])), cos = Math.cos(Math.toRadians(XYT[2]));
+		//the light sensors are behind the wheels
+		double sensorX = XYT[0] - RingChallenge.LS_L_DISTANCE * sin;
+		double sensorY = XYT[1] - RingChallenge.LS_L_DISTANCE * cos;
+		if(Math.abs(cos) > 0.5 && getLineDistance(sensorY) < MotionProfile.LINE_WINDOW)
+			return true;
+		return Math.abs(sin) > 0.5 && getLineDistance(sensorX) < MotionProfile.LINE_WINDOW;
+	}
+	
+	/**
+	 * @param xy continuous x or y coordinate
+	 * @return distance to the closest grid line across that axis in cm
+	 */
+	private static double getLineDistance(double xy) {
+		return Math.abs(xy - Math.round(xy / RingChallenge.TILE_SIZE) * RingChallenge.TILE_SIZE);
+	}
+	
+	/**
+	 * Returns the time a straight move takes with the speed profiles, from rest to rest
+	 * 
+	 * @param distance distance to travel in cm
+	 * @param isCorrected whether the robot slows down around the lines it crosses
+	 * @return estimated time in ms
+	 */
+	public static int getTravelTime(double distance, boolean isCorrected) {
+		MotionProfile profile = MotionProfile.forDistance(distance);
+		int wheelAngle = convertDistance(RingChallenge.L_WHEEL_RAD, distance);
+		if(!isCorrected || profile.getSpeed() <= MotionProfile.LINE.getSpeed())
+			return profile.getMoveTime(wheelAngle);
+		//one line per tile, crossed at the LINE speed
+		double slowShare = Math.min(1, 2 * MotionProfile.LINE_WINDOW / RingChallenge.TILE_SIZE);
+		return profile.getMoveTime((int) Math.round(wheelAngle * (1 - slowShare)))
+				+ (int) Math.round(1000 * wheelAngle * slowShare / MotionProfile.LINE.getSpeed());
+	}
+	
+	/**
+	 * Returns the time a turn in place takes with the TURN profile
+	 * 
+	 * @param angle angle to turn in degrees
+	 * @return estimated time in ms
+	 */
+	public static int getTurnTime(double angle) {
+		return MotionProfile.TURN.getMoveTime(convertAngle(RingChallenge.L_WHEEL_RAD, RingChallenge.TRACK, angle));
+	}
+	
+	/**
+	 * Sets the acceleration of a profile and a speed on both wheels
+	 * 
+	 * @param profile speed profile
+	 * @param speed motor speed in deg/s
+	 */
+	static void setProfile(MotionProfile profile, int speed) {
+		leftMotor.setAcceleration(profile.getAcceleration());
+		rightMotor.setAcceleration(profile.getAcceleration());
+		setMotorSpeeds(speed, leftMotor, rightMotor, RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD);
 	}
 	
 	/**
@@ -155,22 +333,294 @@ public class Navigation {
 	 * @param theta double angle to turn to in degrees
 	 */
 	public static void turnTo (double theta) {	//assumes theta is in degrees and is >= -360
-
-		//get change in theta required by turn in degrees
-		double[] XYT = odo.getXYT();
-		theta = (theta + 360) % 360;
-		double dTheta = (theta - XYT[2] + 360) % 360;
+		await(turnToAsync(theta));
+	}
+	
+	/**
+	 * Starts rotating to the angle theta by minimal angle to its target. The angle to turn by is computed from
+	 * the heading of the robot when the turn starts.
+	 * 
+	 * @param theta double angle to turn to in degrees
+	 * @return handle of the motion
+	 */
+	public static MotionHandle turnToAsync(double theta) {
+		MotionHandle handle = new MotionHandle(lastMotion);
+		handle.add(new TurnStep(theta));
+		return start(handle);
+	}
+	
+	/**
+	 * Starts a motion, or queues it after the last motion requested
+	 */
+	private static MotionHandle start(MotionHandle handle) {
+		lastMotion = handle;
+		handle.start();
+		return handle;
+	}
+	
+	/**
+	 * Waits for a motion, and stops it if the thread is interrupted
+	 */
+	private static void await(MotionHandle handle) {
+		try {
+			handle.await();
+		} catch (InterruptedException e) {
+			handle.cancel();
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	/**
+	 * @return last motion requested, which may be done already, or null
+	 */
+	public static MotionHandle getLastMotion() {
+		return lastMotion;
+	}
+	
+	/**
+	 * @return whether neither wheel is turning
+	 */
+	private static boolean isStopped() {
+		return !leftMotor.isMoving() && !rightMotor.isMoving();
+	}
+	
+	/**
+	 * Stops both wheels without waiting
+	 */
+	private static void stopMotors() {
+		leftMotor.stop(true);
+		rightMotor.stop(true);
+	}
+	
+	/**
+	 * This class is a turn in place, to a heading or towards a point
+	 */
+	private static class TurnStep extends MotionHandle.Step {
+		
+		private final double theta;	//NaN to face (x, y)
+		private final double x, y;
+		private long start;
+		
+		TurnStep(double theta) {
+			this.theta = theta;
+			this.x = 0;
+			this.y = 0;
+		}
 		
-		//correct dTheta so that it defines the shortest turn
-		if(dTheta > 180) {
-			dTheta -= 360;
+		TurnStep(double x, double y) {
+			this.theta = Double.NaN;
+			this.x = x;
+			this.y = y;
 		}
 		
-		//perform turn
-		setMotorSpeeds(RingChallenge.MOTOR_SPEED, RingChallenge.leftMotor, RingChallenge.rightMotor,
-				RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD);
-		RingChallenge.leftMotor.rotate(convertAngle(RingChallenge.L_WHEEL_RAD, RingChallenge.TRACK, dTheta), true);
-		RingChallenge.rightMotor.rotate(-convertAngle(RingChallenge.R_WHEEL_RAD, RingChallenge.TRACK, dTheta), false);
+		@Override
+		void start(MotionHandle handle) {
+			start = TaskScheduler.getClock().nanoTime();
+			double target = theta;
+			if(Double.isNaN(target)) {
+				double[] XYT = odo.getXYT();
+				//calculate angle to new point
+				target = RingChallenge.ARITHMETIC.heading(x - XYT[0], y - XYT[1]);
+			}
+			
+			//get change in theta required by turn in degrees
+			target = (target + 360) % 360;
+			double dTheta = (target - odo.getTheta() + 360) % 360;
+			
+			//correct dTheta so that it defines the shortest turn
+			if(dTheta > 180) {
+				dTheta -= 360;
+			}
+			
+			//perform turn
+			setProfile(MotionProfile.TURN, MotionProfile.TURN.getSpeed());
+			leftMotor.rotate(convertAngle(RingChallenge.L_WHEEL_RAD, RingChallenge.TRACK, dTheta), true);
+			rightMotor.rotate(-convertAngle(RingChallenge.R_WHEEL_RAD, RingChallenge.TRACK, dTheta), true);
+		}
+		
+		@Override
+		boolean isDone() {
+			return isStopped();
+		}
+		
+		@Override
+		void finish() {
+			MotionProfile.TURN.record(TaskScheduler.getClock().nanoTime() - start);
+		}
+		
+		@Override
+		void cancel() {
+			stopMotors();
+		}
+	}
+	
+	/**
+	 * This class is a straight move, to a point or by a distance. If lines are detected for odometry correction,
+	 * the robot slows down to the LINE profile whenever a light sensor is close to a line. When moving to a point
+	 * with correction, the wheel targets are recomputed from the corrected pose after every correction, without
+	 * stopping: the robot follows the circular arc from the corrected pose through the point. Seen from the pose,
+	 * the point is at a heading error e, so the arc turns by 2e and is remaining * e / sin(e) long; the robot
+	 * reaches the point with its heading off by e, which the next turn or correction takes up.
+	 */
+	private static class StraightStep extends MotionHandle.Step {
+		
+		private static final double MAX_HEADING_FIX = 15;	//deg, larger errors are left to the next turn
+		private static final double MIN_RETARGET = 2;	//cm left, below which the targets are kept
+		
+		private final double x, y;	//NaN to travel distance
+		private final double distance;
+		private final boolean isCorrected;
+		private final double[] XYT = new double[3];
+		private final double[] polar = new double[2];	//distance and heading to the point
+		private MotionProfile profile;
+		private int speed;
+		private double leftShare = 1, rightShare = 1;	//wheel speeds relative to the profile speed
+		private int corrections;
+		private long start;
+		
+		StraightStep(double x, double y, double distance, boolean isCorrected, MotionProfile profile) {
+			this.x = x;
+			this.y = y;
+			this.distance = distance;
+			this.isCorrected = isCorrected;
+			this.profile = profile;
+		}
+		
+		@Override
+		void start(MotionHandle handle) {
+			start = TaskScheduler.getClock().nanoTime();
+			double distance = this.distance;
+			if(!Double.isNaN(x)) {
+				odo.getXYT(XYT);
+				double dX = x - XYT[0];
+				double dY = y - XYT[1];
+				distance = RingChallenge.ARITHMETIC.length(dX, dY);
+			}
+			if(profile == null)
+				profile = MotionProfile.forDistance(distance);
+			
+			if(isCorrected)
+				odo.enableCorrection();
+			corrections = odo.getCorrectionCount();
+			speed = profile.getSpeed();
+			setProfile(profile, speed);
+			leftMotor.rotate(convertDistance(RingChallenge.L_WHEEL_RAD, distance), true);
+			rightMotor.rotate(convertDistance(RingChallenge.R_WHEEL_RAD, distance), true);
+		}
+		
+		@Override
+		boolean isDone() {
+			return isStopped();
+		}
+		
+		@Override
+		void update() {
+			if(!isCorrected)
+				return;
+			odo.getXYT(XYT);
+			if(!Double.isNaN(x) && odo.getCorrectionCount() != corrections) {
+				corrections = odo.getCorrectionCount();
+				retarget();
+			}
+			
+			//slow down around the lines the light sensors cross
+			if(profile.getSpeed() <= MotionProfile.LINE.getSpeed())
+				return;
+			int nextSpeed = isNearLine(XYT) ? MotionProfile.LINE.getSpeed() : profile.getSpeed();
+			if(nextSpeed != speed) {
+				speed = nextSpeed;
+				setSpeeds();
+			}
+		}
+		
+		/**
+		 * Replaces the wheel targets with those of the arc that reaches the point from the corrected pose
+		 */
+		private void retarget() {
+			RingChallenge.ARITHMETIC.polar(x - XYT[0], y - XYT[1], polar);
+			double remaining = polar[0];
+			if(remaining < MIN_RETARGET)
+				return;
+			double error = (polar[1] - XYT[2] + 360) % 360;
+			if(error > 180)
+				error -= 360;
+			if(Math.abs(error) > 90)	//already past the point
+				return;
+			if(Math.abs(error) > MAX_HEADING_FIX)
+				error = 0;
+			//the chord of an arc turning by 2e points e off the heading; its length is the remaining distance
+			double half = Math.toRadians(error);
+			double arc = half == 0 ? remaining : remaining * half / Math.sin(half);
+			int left = convertDistance(RingChallenge.L_WHEEL_RAD, arc)
+					+ convertAngle(RingChallenge.L_WHEEL_RAD, RingChallenge.TRACK, 2 * error);
+			int right = convertDistance(RingChallenge.R_WHEEL_RAD, arc)
+					- convertAngle(RingChallenge.R_WHEEL_RAD, RingChallenge.TRACK, 2 * error);
+			double mean = (Math.abs(left) + Math.abs(right)) / 2.0;
+			leftShare = Math.abs(left) / mean;
+			rightShare = Math.abs(right) / mean;
+			setSpeeds();
+			leftMotor.rotate(left, true);
+			rightMotor.rotate(right, true);
+		}
+		
+		/**
+		 * Sets the wheel speeds from the current speed, so that both wheels reach their targets together
+		 */
+		private void setSpeeds() {
+			setMotorSpeeds(speed, leftMotor, rightMotor, RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD);
+			if(leftShare != 1 || rightShare != 1) {
+				leftMotor.setSpeed((int) Math.round(leftMotor.getSpeed() * leftShare));
+				rightMotor.setSpeed((int) Math.round(rightMotor.getSpeed() * rightShare));
+			}
+		}
+		
+		@Override
+		void finish() {
+			odo.disableCorrection();
+			profile.record(TaskScheduler.getClock().nanoTime() - start);
+		}
+		
+		@Override
+		void cancel() {
+			stopMotors();
+			odo.disableCorrection();
+		}
+	}
+	
+	/**
+	 * This class plans the legs of taxiTravelTo from where the robot is when it starts, and adds them to the motion
+	 */
+	private static class TaxiStep extends MotionHandle.Step {
+		
+		private final double x, y;
+		private final boolean xFirst;
+		private final boolean isCorrected;
+		
+		TaxiStep(double x, double y, boolean xFirst, boolean isCorrected) {
+			this.x = x;
+			this.y = y;
+			this.xFirst = xFirst;
+			this.isCorrected = isCorrected;
+		}
+		
+		@Override
+		void start(MotionHandle handle) {
+			ArrayList<MotionHandle.Step> legs = new ArrayList<MotionHandle.Step>();
+			for(double[] point : getTaxiPoints(odo.getXYT(), x, y, xFirst, isCorrected)) {
+				legs.add(new TurnStep(point[0], point[1]));
+				legs.add(new StraightStep(point[0], point[1], 0, isCorrected, null));
+			}
+			handle.insert(legs);
+		}
+		
+		@Override
+		boolean isDone() {
+			return true;
+		}
+		
+		@Override
+		void cancel() {
+		}
 	}
 	
 	/**
@@ -287,14 +737,14 @@ public class Navigation {
 	 * @param l_wheel_rad left wheel radius
 	 * @param r_wheel_rad right wheel radius
 	 */
-	public static void setMotorSpeeds(int speed, EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor, double l_wheel_rad,
+	public static void setMotorSpeeds(int speed, DriveMotor leftMotor, DriveMotor rightMotor, double l_wheel_rad,
 			double r_wheel_rad) {
 		if(l_wheel_rad > r_wheel_rad) {
 			leftMotor.setSpeed(speed);
-			rightMotor.setSpeed(Math.round(speed * l_wheel_rad / r_wheel_rad));
+			rightMotor.setSpeed((int) Math.round(speed * l_wheel_rad / r_wheel_rad));
 		}
 		else {
-			leftMotor.setSpeed(Math.round(speed * r_wheel_rad / l_wheel_rad));
+			leftMotor.setSpeed((int) Math.round(speed * r_wheel_rad / l_wheel_rad));
 			rightMotor.setSpeed(speed);
 		}
 	}
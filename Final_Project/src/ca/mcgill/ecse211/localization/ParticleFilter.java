@@ -0,0 +1,540 @@
+package ca.mcgill.ecse211.localization;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+
+/**
+ * This class is a particle filter on the pose of the robot, against the known map of the field: the grid lines
+ * seen by the light sensors and the walls (ArenaModel.getWalls) seen by the ultrasonic sensor. Each particle is a
+ * pose (x, y in cm, theta in radians clockwise from the y axis) with a weight. Particles are moved with noisy copies
+ * of the wheel distances, weighted by how well each observation fits them, and resampled (systematic resampling)
+ * when too few of them carry most of the weight.
+ * <p>
+ * The particles are kept as a structure of arrays, cut into chunks of CHUNK particles. Every operation is a pass
+ * over the chunks, and each chunk has its own random generator and partial sums, so a pass gives the same result
+ * whether its chunks are run in order by the calling thread (single-threaded mode, for the brick: no threads, no
+ * allocation, a fixed amount of work per observation) or in parallel by a fork-join pool (on a computer, e.g. in
+ * the simulator). Resampling is parallel too: the chunks first sum their weights, and each output chunk then finds
+ * its first source particle by binary search over the cumulated weights.
+ * <p>
+ * The arrays are allocated for the largest number of particles, but only the first active chunks are used, so that
+ * ParticleLocalizer can shrink or grow the filter to fit a time budget (see resize).
+ * <p>
+ * The class is not thread safe; see ParticleLocalizer.
+ *
+ * @author Matthew
+ *
+ */
+public class ParticleFilter {
+
+	public static final int CHUNK = 64;	//particles per chunk
+
+	//motion noise, as in PoseEstimator
+	private static final double WHEEL_NOISE = 0.1;	//cm^0.5
+	private static final double RADIUS_ERROR = 0.01;
+	private static final double TRACK_ERROR = 0.3;	//cm
+	//observation noise
+	private static final double LINE_SIGMA = 1.0;	//cm
+	private static final double RANGE_SIGMA = 2.0;	//cm
+	private static final double RANGE_SIGMA_RATIO = 0.02;	//of the range
+	private static final double MAX_RANGE = 255;	//cm
+	private static final double OUTLIER = 0.05;	//likelihood of an observation that fits no particle, e.g. a missed line
+	private static final double RESAMPLE_RATIO = 0.5;	//of the particles, effective sample size below which to resample
+
+	//passes
+	private static final int PREDICT = 0;
+	private static final int LINE = 1;
+	private static final int RANGE = 2;
+	private static final int CUMULATE = 3;
+	private static final int RESAMPLE = 4;
+	private static final int SPREAD = 5;
+	private static final int ESTIMATE = 6;
+
+	private final int capacity;
+	private int chunks;	//active chunks
+	private int size;	//active particles
+	private int sources;	//particles resampled from in the current pass
+	private final double track;
+	private final double[] walls;	//x1, y1, x2, y2 of each wall
+	private final ForkJoinPool pool;	//null in single-threaded mode
+
+	private double[] x, y, theta, weight;
+	private double[] nextX, nextY, nextTheta;
+	private final long[] seeds;
+	//per chunk: sum of the weights, sum of the squared weights, weighted sums of x, y, sin, cos, x^2 and y^2
+	private final double[] sums;
+	private static final int SUMS = 8;
+	private static final double SQRT3 = Math.sqrt(3);
+
+	//parameters of the current pass
+	private int pass;
+	private double a, b, c, d, e;
+	private double scale = 1;	//applied to the weights in the next observation pass
+	private double total;
+
+	private final double[] estimate = new double[5];	//x, y, theta (degrees), position sigma, heading sigma
+	private long updates;
+	private long workTime;
+
+	/**
+	 * Constructor for the ParticleFilter class
+	 *
+	 * @param size largest number of particles, rounded up to a multiple of CHUNK; all of them are active at first
+	 * @param threads number of threads of the fork-join pool, 1 for the single-threaded mode
+	 * @param track distance between the wheels in cm
+	 * @param walls segments {x1, y1, x2, y2} seen by the ultrasonic sensor, in cm
+	 * @param seed seed of the random generators
+	 */
+	public ParticleFilter(int size, int threads, double track, double[][] walls, long seed) {
+		this.chunks = (size + CHUNK - 1) / CHUNK;
+		this.size = chunks * CHUNK;
+		this.capacity = this.size;
+		this.track = track;
+		this.walls = new double[walls.length * 4];
+		for (int i = 0; i < walls.length; i++) {
+			System.arraycopy(walls[i], 0, this.walls, 4 * i, 4);
+		}
+		this.pool = threads > 1 ? new ForkJoinPool(threads) : null;
+		x = new double[this.size];
+		y = new double[this.size];
+		theta = new double[this.size];
+		weight = new double[this.size];
+		nextX = new double[this.size];
+		nextY = new double[this.size];
+		nextTheta = new double[this.size];
+		seeds = new long[chunks];
+		for (int i = 0; i < chunks; i++) {
+			seeds[i] = seed * 0x9E3779B97F4A7C15L + i * 0xBF58476D1CE4E5B9L + 1;
+		}
+		sums = new double[chunks * SUMS];
+	}
+
+	/**
+	 * Spreads the particles around a pose with a normal distribution
+	 *
+	 * @param x x position in cm
+	 * @param y y position in cm
+	 * @param theta heading in degrees
+	 * @param sigmaXY standard deviation of the position in cm
+	 * @param sigmaTheta standard deviation of the heading in degrees
+	 */
+	public void reset(double x, double y, double theta, double sigmaXY, double sigmaTheta) {
+		a = x;
+		b = y;
+		c = Math.toRadians(theta);
+		d = sigmaXY;
+		e = Math.toRadians(sigmaTheta);
+		run(SPREAD);
+		scale = 1;
+	}
+
+	/**
+	 * Moves every particle by a noisy copy of the distance turned by each wheel
+	 *
+	 * @param distL distance driven by the left wheel in cm
+	 * @param distR distance driven by the right wheel in cm
+	 */
+	public void predict(double distL, double distR) {
+		if (distL == 0 && distR == 0)
+			return;
+		a = distL;
+		b = distR;
+		run(PREDICT);
+	}
+
+	/**
+	 * Weights the particles by how close a light sensor that has just entered a line would be to a grid line
+	 *
+	 * @param forward position of the sensor ahead of the centre of rotation in cm (negative behind)
+	 * @param right position of the sensor right of the centre of rotation in cm
+	 */
+	public void updateLine(double forward, double right) {
+		a = forward;
+		b = right;
+		run(LINE);
+		normalize();
+	}
+
+	/**
+	 * Weights the particles by how well an ultrasonic range fits the nearest wall in front of them
+	 *
+	 * @param range distance measured by the sensor in cm
+	 * @param forward position of the sensor ahead of the centre of rotation in cm
+	 */
+	public void updateRange(double range, double forward) {
+		a = range;
+		b = forward;
+		run(RANGE);
+		normalize();
+	}
+
+	/**
+	 * Sums the weights of the last observation pass, and resamples if the effective number of particles is low
+	 */
+	private void normalize() {
+		double sum = 0, squares = 0;
+		for (int i = 0; i < chunks; i++) {
+			sum += sums[i * SUMS];
+			squares += sums[i * SUMS + 1];
+		}
+		if (!(sum > 0)) {	//every weight underflowed: keep the particles as they are
+			scale = 1;
+			return;
+		}
+		//the weights are rescaled in the next pass so that they average 1
+		scale = size / sum;
+		if (sum * sum / squares < RESAMPLE_RATIO * size) {
+			resample(sum, chunks);
+		}
+	}
+
+	/**
+	 * Changes the number of active particles. Dropped particles are simply forgotten, as resampling leaves them in
+	 * no particular order; added ones are drawn by resampling the active particles, which become equally weighted.
+	 *
+	 * @param size number of particles, rounded up to a multiple of CHUNK, between CHUNK and the capacity
+	 */
+	public void resize(int size) {
+		int newChunks = Math.max(1, Math.min(capacity / CHUNK, (size + CHUNK - 1) / CHUNK));
+		if (newChunks < chunks) {
+			chunks = newChunks;
+			this.size = chunks * CHUNK;
+			return;
+		}
+		if (newChunks == chunks)
+			return;
+		run(ESTIMATE);	//the sums of the last observation pass are stale after a resampling
+		double sum = 0;
+		for (int i = 0; i < chunks; i++) {
+			sum += sums[i * SUMS];
+		}
+		if (!(sum > 0))
+			return;
+		resample(sum, newChunks);
+	}
+
+	/**
+	 * Draws the given number of chunks of equally weighted particles from the active ones
+	 */
+	private void resample(double sum, int newChunks) {
+		total = sum;
+		sources = size;
+		run(CUMULATE);
+		chunks = newChunks;
+		size = chunks * CHUNK;
+		a = uniform(0) - 0.5;	//offset of the comb, in steps
+		run(RESAMPLE);
+		double[] swap = x;
+		x = nextX;
+		nextX = swap;
+		swap = y;
+		y = nextY;
+		nextY = swap;
+		swap = theta;
+		theta = nextTheta;
+		nextTheta = swap;
+		Arrays.fill(weight, 0, size, 1);
+		scale = 1;
+	}
+
+	/**
+	 * Computes the weighted mean pose and its spread
+	 *
+	 * @param xyt array receiving x, y (cm) and theta (degrees, 0 to 360)
+	 */
+	public void getXYT(double[] xyt) {
+		run(ESTIMATE);
+		double w = 0, sx = 0, sy = 0, sin = 0, cos = 0, sxx = 0, syy = 0;
+		for (int i = 0; i < chunks; i++) {
+			int s = i * SUMS;
+			w += sums[s];
+			sx += sums[s + 2];
+			sy += sums[s + 3];
+			sin += sums[s + 4];
+			cos += sums[s + 5];
+			sxx += sums[s + 6];
+			syy += sums[s + 7];
+		}
+		double mx = sx / w, my = sy / w;
+		double t = Math.toDegrees(Math.atan2(sin, cos));
+		estimate[0] = mx;
+		estimate[1] = my;
+		estimate[2] = t < 0 ? t + 360 : t;
+		estimate[3] = Math.sqrt(Math.max(0, sxx / w - mx * mx + syy / w - my * my));
+		//circular standard deviation
+		double r = Math.min(1, Math.sqrt(sin * sin + cos * cos) / w);
+		estimate[4] = Math.toDegrees(Math.sqrt(-2 * Math.log(Math.max(r, 1e-12))));
+		xyt[0] = estimate[0];
+		xyt[1] = estimate[1];
+		xyt[2] = estimate[2];
+	}
+
+	/**
+	 * @return standard deviation of the particle positions in cm, as of the last getXYT
+	 */
+	public double getPositionSpread() {
+		return estimate[3];
+	}
+
+	/**
+	 * @return circular standard deviation of the particle headings in degrees, as of the last getXYT
+	 */
+	public double getHeadingSpread() {
+		return estimate[4];
+	}
+
+	/**
+	 * Runs a pass over every active chunk, in this thread or in the pool
+	 */
+	private void run(int pass) {
+		long start = System.nanoTime();
+		this.pass = pass;
+		if (pool == null) {
+			for (int i = 0; i < chunks; i++) {
+				runChunk(i);
+			}
+		} else {
+			pool.invoke(new Pass(0, chunks));
+		}
+		if (pass == PREDICT || pass == LINE || pass == RANGE)
+			updates += size;
+		workTime += System.nanoTime() - start;
+	}
+
+	/**
+	 * Splits the chunks of a pass in halves until each task has one chunk
+	 */
+	private class Pass extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final int from, to;
+
+		Pass(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				runChunk(from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Pass(from, middle), new Pass(middle, to));
+		}
+	}
+
+	/**
+	 * Runs the current pass on one chunk
+	 */
+	private void runChunk(int chunk) {
+		int from = chunk * CHUNK, to = from + CHUNK;
+		int s = chunk * SUMS;
+		switch (pass) {
+		case SPREAD:
+			for (int i = from; i < to; i++) {
+				x[i] = a + d * gaussian(chunk);
+				y[i] = b + d * gaussian(chunk);
+				theta[i] = c + e * gaussian(chunk);
+				weight[i] = 1;
+			}
+			break;
+		case PREDICT:
+			double sigmaL = Math.sqrt(WHEEL_NOISE * WHEEL_NOISE * Math.abs(a) + RADIUS_ERROR * RADIUS_ERROR * a * a);
+			double sigmaR = Math.sqrt(WHEEL_NOISE * WHEEL_NOISE * Math.abs(b) + RADIUS_ERROR * RADIUS_ERROR * b * b);
+			for (int i = from; i < to; i++) {
+				double distL = a + sigmaL * gaussian(chunk), distR = b + sigmaR * gaussian(chunk);
+				double deltaD = 0.5 * (distL + distR);
+				theta[i] += (distL - distR) / (track + TRACK_ERROR * gaussian(chunk));
+				x[i] += deltaD * Math.sin(theta[i]);
+				y[i] += deltaD * Math.cos(theta[i]);
+			}
+			break;
+		case LINE: {
+			double sum = 0, squares = 0;
+			double variance = 2 * LINE_SIGMA * LINE_SIGMA;
+			for (int i = from; i < to; i++) {
+				double sin = Math.sin(theta[i]), cos = Math.cos(theta[i]);
+				double distance = Math.min(lineDistance(x[i] + a * sin + b * cos),
+						lineDistance(y[i] + a * cos - b * sin));
+				double w = weight[i] * scale * (OUTLIER + Math.exp(-distance * distance / variance));
+				weight[i] = w;
+				sum += w;
+				squares += w * w;
+			}
+			sums[s] = sum;
+			sums[s + 1] = squares;
+			break;
+		}
+		case RANGE: {
+			double sum = 0, squares = 0;
+			double sigma = RANGE_SIGMA + RANGE_SIGMA_RATIO * a;
+			double variance = 2 * sigma * sigma;
+			for (int i = from; i < to; i++) {
+				double error = a - cast(x[i], y[i], theta[i], b);
+				double w = weight[i] * scale * (OUTLIER + Math.exp(-error * error / variance));
+				weight[i] = w;
+				sum += w;
+				squares += w * w;
+			}
+			sums[s] = sum;
+			sums[s + 1] = squares;
+			break;
+		}
+		case CUMULATE: {
+			//weights become the cumulated weight up to and including each particle
+			double sum = 0;
+			for (int i = 0; i < chunk; i++) {
+				sum += sums[i * SUMS];
+			}
+			for (int i = from; i < to; i++) {
+				sum += weight[i];
+				weight[i] = sum;
+			}
+			break;
+		}
+		case RESAMPLE: {
+			//systematic resampling: output particle j takes the source whose cumulated weight passes (j + u) / size
+			double step = total / size;
+			int last = sources - 1;
+			double target = (from + 0.5 + a) * step;
+			int source = search(target);
+			for (int j = from; j < to; j++, target += step) {
+				while (source < last && weight[source] < target)
+					source++;
+				nextX[j] = x[source];
+				nextY[j] = y[source];
+				nextTheta[j] = theta[source];
+			}
+			break;
+		}
+		case ESTIMATE: {
+			double w = 0, sx = 0, sy = 0, sin = 0, cos = 0, sxx = 0, syy = 0;
+			for (int i = from; i < to; i++) {
+				double wi = weight[i];
+				w += wi;
+				sx += wi * x[i];
+				sy += wi * y[i];
+				sin += wi * Math.sin(theta[i]);
+				cos += wi * Math.cos(theta[i]);
+				sxx += wi * x[i] * x[i];
+				syy += wi * y[i] * y[i];
+			}
+			sums[s] = w;
+			sums[s + 2] = sx;
+			sums[s + 3] = sy;
+			sums[s + 4] = sin;
+			sums[s + 5] = cos;
+			sums[s + 6] = sxx;
+			sums[s + 7] = syy;
+			break;
+		}
+		}
+	}
+
+	/**
+	 * @return first particle whose cumulated weight is at least the target
+	 */
+	private int search(double target) {
+		int low = 0, high = sources - 1;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (weight[middle] < target)
+				low = middle + 1;
+			else
+				high = middle;
+		}
+		return low;
+	}
+
+	/**
+	 * Casts the ultrasonic beam of a particle
+	 *
+	 * @return distance from the sensor to the nearest wall in cm, MAX_RANGE if there is none
+	 */
+	private double cast(double px, double py, double pt, double forward) {
+		double dx = Math.sin(pt), dy = Math.cos(pt);
+		double ox = px + forward * dx, oy = py + forward * dy;
+		double nearest = MAX_RANGE;
+		for (int k = 0; k < walls.length; k += 4) {
+			double ex = walls[k + 2] - walls[k], ey = walls[k + 3] - walls[k + 1];
+			double denominator = dx * ey - dy * ex;
+			if (Math.abs(denominator) < 1e-12)
+				continue;
+			double wx = walls[k] - ox, wy = walls[k + 1] - oy;
+			double t = (wx * ey - wy * ex) / denominator;
+			double u = (wx * dy - wy * dx) / denominator;
+			if (t >= 0 && t < nearest && u >= 0 && u <= 1)
+				nearest = t;
+		}
+		return nearest;
+	}
+
+	/**
+	 * @return distance from a coordinate to the nearest grid line across that axis in cm
+	 */
+	private static double lineDistance(double coordinate) {
+		double offset = coordinate % RingChallenge.TILE_SIZE;
+		if (offset < 0)
+			offset += RingChallenge.TILE_SIZE;
+		return Math.min(offset, RingChallenge.TILE_SIZE - offset);
+	}
+
+	/**
+	 * Draws a number of mean 0 and standard deviation 1 from the generator of a chunk, as the sum of four uniform
+	 * numbers: close enough to a normal distribution for motion noise, without a logarithm or a square root
+	 */
+	private double gaussian(int chunk) {
+		return (uniform(chunk) + uniform(chunk) + uniform(chunk) + uniform(chunk) - 2) * SQRT3;
+	}
+
+	/**
+	 * @return uniform number in (0, 1]
+	 */
+	private double uniform(int chunk) {
+		long seed = seeds[chunk];
+		seed ^= seed << 13;
+		seed ^= seed >>> 7;
+		seed ^= seed << 17;
+		seeds[chunk] = seed;
+		return ((seed >>> 11) + 1) * 0x1.0p-53;
+	}
+
+	/**
+	 * @return number of active particles
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * @return largest number of particles
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return whether the passes run in a fork-join pool
+	 */
+	public boolean isParallel() {
+		return pool != null;
+	}
+
+	/**
+	 * @return number of particles moved or weighted so far
+	 */
+	public long getUpdates() {
+		return updates;
+	}
+
+	/**
+	 * @return wall time spent in passes so far (ns)
+	 */
+	public long getWorkTime() {
+		return workTime;
+	}
+}
@@ -0,0 +1,193 @@
+package ca.mcgill.ecse211.localization;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedUltrasonicUser;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.LineDetector;
+
+/**
+ * This class tracks the pose of the robot with a ParticleFilter while it navigates, so that it can be localized
+ * again without the light localization spin (see GameController). The tacho counts are read every PERIOD, and the
+ * particles are moved once the wheels have turned MIN_MOTION since they were last moved, or before each sample of
+ * the sensor bus, to the counts at which the sample was fetched. Each light sensor entering a line and each
+ * ultrasonic range weights the particles.
+ * <p>
+ * With a time budget, the task also measures the time spent in the filter since its last run, and drops particles
+ * when it was over the budget, or adds a chunk of them when it was well under it.
+ * <p>
+ * The methods are synchronized, as the task and the sensor bus can run in different threads on the robot.
+ *
+ * @author Matthew
+ *
+ */
+public class ParticleLocalizer implements TimedLightSensorUser, TimedUltrasonicUser {
+
+	public static final long PERIOD = RingChallenge.ODOMETER_PERIOD;	//ms, same as the odometer
+	public static final double CONVERGED_POSITION = 4.0;	//cm, spread of the particles below which the pose is used
+	public static final double CONVERGED_HEADING = 5.0;	//deg, the spread is about 1.5 times the true error in ParticleBenchmark
+
+	//same detection as OdometryCorrection
+	private static final int THRESHOLD = 30;
+	private static final int WINDOW_SIZE = 5;
+	private static final double US_FORWARD = 7.0;	//cm from the centre of rotation to the ultrasonic sensor
+	private static final int US_MAX_RANGE = 150;	//cm
+	private static final double MIN_MOTION = 1.0;	//cm turned by the wheels, together, before the particles are moved
+	private static final double GROW_RATIO = 0.5;	//of the budget, filter time per period below which particles are added
+
+	private final ParticleFilter filter;
+	private final DriveMotor leftMotor;
+	private final DriveMotor rightMotor;
+	private final PeriodicTask task;
+	private boolean tracking = false;
+	private long budget = 0;	//ns of filter work per PERIOD, 0 for no budget
+	private long lastWorkTime;
+
+	private int lastTachoL;
+	private int lastTachoR;
+	private final LineDetector[] detectors = { new LineDetector(WINDOW_SIZE, THRESHOLD),
+			new LineDetector(WINDOW_SIZE, THRESHOLD) };
+	private final boolean[] inLine = new boolean[2];
+
+	/**
+	 * Constructor for the ParticleLocalizer class
+	 *
+	 * @param filter particle filter, single-threaded on the robot
+	 * @param leftMotor
+	 * @param rightMotor
+	 */
+	public ParticleLocalizer(ParticleFilter filter, DriveMotor leftMotor, DriveMotor rightMotor) {
+		this.filter = filter;
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+		this.task = TaskScheduler.createTask("particle localizer", PERIOD, OverrunPolicy.SKIP, false, new Runnable() {
+			public void run() {
+				step();
+			}
+		});
+	}
+
+	/**
+	 * Limits the time spent in the filter, by moving the particles and by the observations, in each PERIOD
+	 *
+	 * @param millis time in ms, 0 to always use every particle of the filter
+	 */
+	public synchronized void setTimeBudget(double millis) {
+		budget = (long) (millis * 1000000);
+		if (budget <= 0)
+			filter.resize(filter.getCapacity());
+		lastWorkTime = filter.getWorkTime();
+	}
+
+	/**
+	 * Starts tracking from a pose, e.g. after a localization
+	 *
+	 * @param x x position in cm
+	 * @param y y position in cm
+	 * @param theta heading in degrees
+	 * @param sigmaXY standard deviation of the position in cm
+	 * @param sigmaTheta standard deviation of the heading in degrees
+	 */
+	public synchronized void reset(double x, double y, double theta, double sigmaXY, double sigmaTheta) {
+		lastTachoL = leftMotor.getTachoCount();
+		lastTachoR = rightMotor.getTachoCount();
+		filter.reset(x, y, theta, sigmaXY, sigmaTheta);
+		lastWorkTime = filter.getWorkTime();
+		tracking = true;
+	}
+
+	/**
+	 * Stops tracking until the next reset
+	 */
+	public synchronized void stop() {
+		tracking = false;
+	}
+
+	/**
+	 * Moves the particles to the current tacho counts, and fits the filter to the time budget
+	 */
+	public synchronized void step() {
+		if (!tracking)
+			return;
+		advance(leftMotor.getTachoCount(), rightMotor.getTachoCount(), MIN_MOTION);
+		if (budget > 0)
+			fitBudget();
+	}
+
+	/**
+	 * Resizes the filter from the time spent in it since the last step, assuming the time is proportional to the
+	 * number of particles. The time of the resize itself is not counted.
+	 */
+	private void fitBudget() {
+		long work = filter.getWorkTime() - lastWorkTime;
+		int size = filter.getSize();
+		if (work > budget)
+			filter.resize((int) (size * budget / work) / ParticleFilter.CHUNK * ParticleFilter.CHUNK);
+		else if (work < GROW_RATIO * budget && size < filter.getCapacity())
+			filter.resize(size + ParticleFilter.CHUNK);
+		lastWorkTime = filter.getWorkTime();
+	}
+
+	/**
+	 * Moves the particles to the given tacho counts if the wheels have turned by at least a given distance
+	 */
+	private void advance(int tachoL, int tachoR, double minMotion) {
+		double distL = Math.PI * RingChallenge.L_WHEEL_RAD * (tachoL - lastTachoL) / 180;
+		double distR = Math.PI * RingChallenge.R_WHEEL_RAD * (tachoR - lastTachoR) / 180;
+		if (Math.abs(distL) + Math.abs(distR) < minMotion)
+			return;
+		lastTachoL = tachoL;
+		lastTachoR = tachoR;
+		filter.predict(distL, distR);
+	}
+
+	@Override
+	public synchronized void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+		for (int i = 0; i < 2; i++) {
+			boolean detected = detectors[i].lineCrossed(light[i]);
+			if (detected && !inLine[i] && tracking) {
+				advance(tachoL, tachoR, 0);
+				filter.updateLine(-RingChallenge.LS_L_DISTANCE, (i == 0 ? -1 : 1) * RingChallenge.LS_WIDTH / 2);
+			}
+			inLine[i] = detected;
+		}
+	}
+
+	@Override
+	public synchronized void processUSDistance(int distance, long timestamp, int sequence, int tachoL, int tachoR) {
+		if (!tracking || distance <= 0 || distance > US_MAX_RANGE)
+			return;
+		advance(tachoL, tachoR, 0);
+		filter.updateRange(distance, US_FORWARD);
+	}
+
+	/**
+	 * Copies the mean pose of the particles
+	 *
+	 * @param xyt array of at least 3 elements, heading in degrees
+	 * @return true if the particles are close enough together for the pose to be used
+	 */
+	public synchronized boolean getXYT(double[] xyt) {
+		if (!tracking)
+			return false;
+		filter.getXYT(xyt);
+		return filter.getPositionSpread() <= CONVERGED_POSITION && filter.getHeadingSpread() <= CONVERGED_HEADING;
+	}
+
+	/**
+	 * @return the particle filter, to be read from the thread of the task
+	 */
+	public ParticleFilter getFilter() {
+		return filter;
+	}
+
+	/**
+	 * @return the task that moves the particles with the tacho counts
+	 */
+	public PeriodicTask getTask() {
+		return task;
+	}
+}
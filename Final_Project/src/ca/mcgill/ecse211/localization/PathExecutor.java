@@ -0,0 +1,264 @@
+package ca.mcgill.ecse211.localization;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.planning.PathPlanner;
+import ca.mcgill.ecse211.scheduling.Clock;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
+/**
+ * This class drives the robot along a path of grid intersections without stopping at each of them. Collinear
+ * intersections are merged into a single straight leg, and consecutive legs are joined by an arc, so the wheels
+ * keep turning from the first leg to the last. The wheel speeds are updated every CONTROL_PERIOD from the
+ * odometer: on a leg they steer the robot back onto the grid line, in an arc they keep a fixed radius until the
+ * robot faces the next leg. Odometry correction is enabled on the legs and disabled in the arcs, where the lines
+ * are crossed at an angle. After an arc, it is only enabled once the light sensors, which trail the wheels, are
+ * past the line of the corner. Legs are driven with the CRUISE profile, slowing down to LINE around the lines that
+ * correction detects, and arcs with the ARC profile. A path that doubles back on itself cannot be joined by an arc:
+ * the robot stops on that corner and turns around in place.
+ *
+ * @author Matthew
+ *
+ */
+public class PathExecutor {
+
+	public static final int CONTROL_PERIOD = 20;	//ms
+	public static final double ARC_RADIUS = 10;	//cm, at most half a tile so arcs of 1 tile legs do not overlap
+	private static final double HEADING_GAIN = 0.02;	//speed difference per degree of heading error
+	private static final double OFFSET_GAIN = 0.03;	//speed difference per cm off the line
+	private static final double MAX_STEERING = 0.3;
+	private static final double TURN_IN_PLACE = 20;	//deg, heading error above which the robot turns in place first
+	private static final double LINE_CLEARANCE = 3;	//cm past a line before the light sensors are used again
+
+	//headings: 0 = up, 1 = right, 2 = down, 3 = left
+	private static final int[] DX = { 0, 1, 0, -1 };
+	private static final int[] DY = { 1, 0, -1, 0 };
+
+	private final Odometer odometer;
+	private final DriveMotor leftMotor;
+	private final DriveMotor rightMotor;
+	private final double[] XYT = new double[3];
+
+	private int legs = 0;
+	private long lastTime = 0;
+
+	/**
+	 * Constructor for the PathExecutor class
+	 *
+	 * @param odometer
+	 * @param leftMotor
+	 * @param rightMotor
+	 */
+	public PathExecutor(Odometer odometer, DriveMotor leftMotor, DriveMotor rightMotor) {
+		this.odometer = odometer;
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+	}
+
+	/**
+	 * Merges collinear intersections of a path, keeping only those where the robot has to turn and the last one
+	 *
+	 * @param x starting x grid coordinate
+	 * @param y starting y grid coordinate
+	 * @param path packed adjacent intersections, excluding the start
+	 * @return packed corners of the path
+	 */
+	public static int[] mergeLegs(int x, int y, int[] path) {
+		int[] corners = new int[path.length];
+		int count = 0;
+		int lastX = x, lastY = y;
+		for (int i = 0; i < path.length; i++) {
+			int nextX = PathPlanner.getX(path[i]), nextY = PathPlanner.getY(path[i]);
+			if (i == path.length - 1) {
+				corners[count++] = path[i];
+				break;
+			}
+			int afterX = PathPlanner.getX(path[i + 1]), afterY = PathPlanner.getY(path[i + 1]);
+			//keep the intersection if the direction changes there
+			if ((nextX - lastX) * (afterY - nextY) != (nextY - lastY) * (afterX - nextX)
+					|| (nextX - lastX) * (afterX - nextX) + (nextY - lastY) * (afterY - nextY) <= 0)
+				corners[count++] = path[i];
+			lastX = nextX;
+			lastY = nextY;
+		}
+		int[] merged = new int[count];
+		System.arraycopy(corners, 0, merged, 0, count);
+		return merged;
+	}
+
+	/**
+	 * Drives along a path of adjacent intersections, starting from the intersection closest to the robot, and stops
+	 * on the last one
+	 *
+	 * @param path packed adjacent intersections, excluding the start
+	 * @param isCorrected whether odometry correction is enabled on the legs
+	 */
+	public void follow(int[] path, boolean isCorrected) {
+		if (path.length == 0)
+			return;
+		Clock clock = TaskScheduler.getClock();
+		long start = clock.nanoTime();
+		odometer.getXYT(XYT);
+		int[] coords = Navigation.getClosestCoordinates(XYT[0], XYT[1]);
+		int[] corners = mergeLegs(coords[0], coords[1], path);
+
+		double fromX = coords[0] * RingChallenge.TILE_SIZE, fromY = coords[1] * RingChallenge.TILE_SIZE;
+		int heading = getHeading(coords[0], coords[1], corners[0]);
+		if (Math.abs(getError(heading * 90, XYT[2])) > TURN_IN_PLACE)
+			Navigation.turnTo(heading * 90);
+
+		Navigation.setProfile(MotionProfile.CRUISE, MotionProfile.CRUISE.getSpeed());
+		leftMotor.forward();
+		rightMotor.forward();
+		try {
+			for (int i = 0; i < corners.length; i++) {
+				double toX = PathPlanner.getX(corners[i]) * RingChallenge.TILE_SIZE;
+				double toY = PathPlanner.getY(corners[i]) * RingChallenge.TILE_SIZE;
+				boolean last = i == corners.length - 1;
+				int nextHeading = last ? heading
+						: getHeading(PathPlanner.getX(corners[i]), PathPlanner.getY(corners[i]), corners[i + 1]);
+
+				boolean reverse = !last && nextHeading == (heading + 2) % 4;
+
+				double correctFrom = i == 0 ? 0 : RingChallenge.LS_L_DISTANCE + LINE_CLEARANCE;
+				driveLeg(clock, fromX, fromY, toX, toY, heading, last || reverse ? 0 : ARC_RADIUS,
+						isCorrected ? correctFrom : Double.MAX_VALUE);
+				odometer.disableCorrection();
+				legs++;
+				if (reverse)
+					turnAround(nextHeading);
+				else if (!last)
+					driveArc(clock, heading, nextHeading);
+
+				fromX = toX;
+				fromY = toY;
+				heading = nextHeading;
+			}
+		} catch (InterruptedException e) {
+			//stop where the robot is, and let the caller see the interrupt
+			Thread.currentThread().interrupt();
+		} finally {
+			odometer.disableCorrection();
+			leftMotor.stop(true);
+			rightMotor.stop(false);
+			lastTime = clock.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * Drives along a grid line until the robot is a given distance from the end of the leg, enabling odometry
+	 * correction once it has driven a given distance from the start
+	 */
+	private void driveLeg(Clock clock, double fromX, double fromY, double toX, double toY, int heading,
+			double stopBefore, double correctFrom) throws InterruptedException {
+		double length = Math.abs(toX - fromX) + Math.abs(toY - fromY);
+		boolean corrected = false;
+		long start = clock.nanoTime();
+		while (true) {
+			odometer.getXYT(XYT);
+			double along = (XYT[0] - fromX) * DX[heading] + (XYT[1] - fromY) * DY[heading];
+			if (along >= length - stopBefore) {
+				MotionProfile.CRUISE.record(clock.nanoTime() - start);
+				return;
+			}
+			if (!corrected && along >= correctFrom) {
+				odometer.enableCorrection();
+				corrected = true;
+			}
+			//left of the line is positive, which needs a clockwise correction
+			double offset = DX[heading] * (XYT[1] - fromY) - DY[heading] * (XYT[0] - fromX);
+			double steering = HEADING_GAIN * getError(heading * 90, XYT[2]) + OFFSET_GAIN * offset;
+			steering = Math.max(-MAX_STEERING, Math.min(MAX_STEERING, steering));
+			MotionProfile profile = corrected && Navigation.isNearLine(XYT) ? MotionProfile.LINE : MotionProfile.CRUISE;
+			setWheelSpeeds(profile.getSpeed(), 1 + steering, 1 - steering);
+			clock.sleep(CONTROL_PERIOD);
+		}
+	}
+
+	/**
+	 * Stops on a corner and turns in place to the opposite heading, then starts the next leg
+	 */
+	private void turnAround(int nextHeading) throws InterruptedException {
+		leftMotor.stop(true);
+		rightMotor.stop(false);
+		Navigation.turnTo(nextHeading * 90);
+		if (Thread.interrupted())	//the turn was cancelled
+			throw new InterruptedException();
+		Navigation.setProfile(MotionProfile.CRUISE, MotionProfile.CRUISE.getSpeed());
+		leftMotor.forward();
+		rightMotor.forward();
+	}
+
+	/**
+	 * Turns from one heading to the next along an arc of ARC_RADIUS, without stopping
+	 *
+	 * @param heading heading of the leg driven
+	 * @param nextHeading heading of the next leg, a quarter turn from the first
+	 */
+	private void driveArc(Clock clock, int heading, int nextHeading) throws InterruptedException {
+		if (nextHeading != (heading + 1) % 4 && nextHeading != (heading + 3) % 4)
+			throw new IllegalArgumentException("An arc joins perpendicular legs only");
+		boolean clockwise = nextHeading == (heading + 1) % 4;
+		double ratio = RingChallenge.TRACK / 2 / ARC_RADIUS;
+		int speed = MotionProfile.ARC.getSpeed();
+		if (clockwise)
+			setWheelSpeeds(speed, 1 + ratio, 1 - ratio);
+		else
+			setWheelSpeeds(speed, 1 - ratio, 1 + ratio);
+		long start = clock.nanoTime();
+		while (true) {
+			odometer.getXYT(XYT);
+			double error = getError(nextHeading * 90, XYT[2]);
+			if (clockwise ? error <= 0 : error >= 0) {
+				MotionProfile.ARC.record(clock.nanoTime() - start);
+				return;
+			}
+			clock.sleep(CONTROL_PERIOD);
+		}
+	}
+
+	/**
+	 * Sets the wheel speeds as multiples of a motor speed, accounting for the wheel radii
+	 */
+	private void setWheelSpeeds(int speed, double left, double right) {
+		leftMotor.setSpeed((int) Math.round(speed * left * RingChallenge.R_WHEEL_RAD
+				/ Math.min(RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD)));
+		rightMotor.setSpeed((int) Math.round(speed * right * RingChallenge.L_WHEEL_RAD
+				/ Math.min(RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD)));
+	}
+
+	/**
+	 * @return heading (0 = up, 1 = right, 2 = down, 3 = left) from an intersection to the next corner
+	 */
+	private static int getHeading(int x, int y, int corner) {
+		int dx = PathPlanner.getX(corner) - x, dy = PathPlanner.getY(corner) - y;
+		return dx > 0 ? 1 : dx < 0 ? 3 : dy > 0 ? 0 : 2;
+	}
+
+	/**
+	 * @return clockwise angle from theta to target, in degrees between -180 and 180
+	 */
+	private static double getError(double target, double theta) {
+		double error = (target - theta) % 360;
+		if (error > 180)
+			error -= 360;
+		else if (error < -180)
+			error += 360;
+		return error;
+	}
+
+	/**
+	 * @return number of legs driven since the executor was created
+	 */
+	public int getLegCount() {
+		return legs;
+	}
+
+	/**
+	 * @return time taken to follow the last path (ns)
+	 */
+	public long getLastTime() {
+		return lastTime;
+	}
+}
@@ -1,9 +1,11 @@
 package ca.mcgill.ecse211.localization;
 
 import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
 import ca.mcgill.ecse211.interfaces.UltrasonicUser;
 import ca.mcgill.ecse211.odometry.Odometer;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import ca.mcgill.ecse211.scheduling.Condition;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
 
 /**
  * This class contrains methods that allow the robot to perform ultrasonic localization
@@ -19,15 +21,21 @@ public class UltrasonicLocalization implements UltrasonicUser {
 	private static final int NOISE_MARGIN = 5;			//width of the noise margin
 	private static final int ROTATE_SPEED = 250;		//motor speed while turning
 	
-	private EV3LargeRegulatedMotor leftMotor;
-	private EV3LargeRegulatedMotor rightMotor;
+	private DriveMotor leftMotor;
+	private DriveMotor rightMotor;
 	private Odometer odometer;
 	
-	private double angleBottom;
-	private double angleLeft;
+	private volatile double angleBottom;
+	private volatile double angleLeft;
 	
-	private int localizationStep;
-	private boolean localizing = false;
+	private volatile int localizationStep;
+	private volatile boolean localizing = false;
+	
+	private final Condition localized = new Condition() {
+		public boolean isMet() {
+			return !localizing;
+		}
+	};
 	
 	
 	/**
@@ -36,7 +44,7 @@ public class UltrasonicLocalization implements UltrasonicUser {
 	 * @param leftMotor
 	 * @param rightMotor
 	 */
-	public UltrasonicLocalization(Odometer odometer, EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor) {
+	public UltrasonicLocalization(Odometer odometer, DriveMotor leftMotor, DriveMotor rightMotor) {
 		this.odometer = odometer;
 		this.leftMotor = leftMotor;
 		this.rightMotor = rightMotor;
@@ -57,7 +65,11 @@ public class UltrasonicLocalization implements UltrasonicUser {
 		leftMotor.forward();
 		rightMotor.backward();
 		
-		while(localizing);
+		try {
+			TaskScheduler.getClock().waitFor(localized);
+		} catch (InterruptedException e) {
+			e.printStackTrace();
+		}
 		
 		//calculate correction to theta
 		double dAngle;
@@ -65,7 +77,7 @@ public class UltrasonicLocalization implements UltrasonicUser {
 			dAngle = 225 - (angleBottom + angleLeft) / 2;
 		else
 			dAngle = 45 - (angleBottom + angleLeft) / 2;
-		double theta = odometer.getXYT()[2] + dAngle;
+		double theta = odometer.getTheta() + dAngle;
 		
 		//apply correction
 		odometer.setTheta((theta + 360) % 360);
@@ -92,14 +104,14 @@ public class UltrasonicLocalization implements UltrasonicUser {
 		else if(distance < DISTANCE_THRESHOLD - NOISE_MARGIN) {
 			switch(localizationStep) {
 			case 1:
-				angleBottom = odometer.getXYT()[2];
+				angleBottom = odometer.getTheta();
 				//rotate counter-clockwise
 				leftMotor.backward();
 				rightMotor.forward();
 				localizationStep++;
 				break;
 			case 3:
-				angleLeft = odometer.getXYT()[2];
+				angleLeft = odometer.getTheta();
 				if((angleBottom + 360 - angleLeft) % 360 < 90)
 					break;
 				//stop robot
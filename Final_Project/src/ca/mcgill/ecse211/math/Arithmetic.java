@@ -0,0 +1,125 @@
+package ca.mcgill.ecse211.math;
+
+/**
+ * This enum chooses how the math run every cycle is computed: with doubles and Math, or with FixedPoint. It is
+ * selected at startup by RingChallenge.ARITHMETIC. Each method takes and returns doubles, so that callers do not
+ * change; with FIXED_POINT, the inputs are converted once and the functions themselves run on integers. Where a
+ * caller needs two results from the same inputs (polar, atanCos), a single method computes both, so that the inputs
+ * and the angle in between are converted only once.
+ * <p>
+ * Headings are in degrees, clockwise from the y axis, like the odometer.
+ *
+ * @author Matthew
+ *
+ */
+public enum Arithmetic {
+	DOUBLE, FIXED_POINT;
+
+	/**
+	 * @param dx x component of a vector in cm
+	 * @param dy y component of a vector in cm
+	 * @return heading of the vector in degrees, between -180 and 180
+	 */
+	public double heading(double dx, double dy) {
+		if (this == DOUBLE)
+			return Math.toDegrees(Math.atan2(dx, dy));
+		return FixedPoint.toDegrees(FixedPoint.atan2(FixedPoint.fromDouble(dx), FixedPoint.fromDouble(dy)));
+	}
+
+	/**
+	 * @param dx x component of a vector in cm
+	 * @param dy y component of a vector in cm
+	 * @return length of the vector in cm
+	 */
+	public double length(double dx, double dy) {
+		if (this == DOUBLE)
+			return Math.sqrt(dx * dx + dy * dy);
+		return FixedPoint.toDouble(FixedPoint.hypot(FixedPoint.fromDouble(dx), FixedPoint.fromDouble(dy)));
+	}
+
+	/**
+	 * Computes the length and heading of a vector together
+	 *
+	 * @param dx x component of a vector in cm
+	 * @param dy y component of a vector in cm
+	 * @param out array of at least 2 elements receiving the length in cm and the heading in degrees, between -180
+	 *        and 180
+	 */
+	public void polar(double dx, double dy, double[] out) {
+		if (this == DOUBLE) {
+			out[0] = Math.sqrt(dx * dx + dy * dy);
+			out[1] = Math.toDegrees(Math.atan2(dx, dy));
+			return;
+		}
+		int fx = FixedPoint.fromDouble(dx), fy = FixedPoint.fromDouble(dy);
+		out[0] = FixedPoint.toDouble(FixedPoint.hypot(fx, fy));
+		out[1] = FixedPoint.toDegrees(FixedPoint.atan2(fx, fy));
+	}
+
+	/**
+	 * Computes an angle from its tangent, and its cosine, keeping the angle as a binary angle in between
+	 *
+	 * @param ratio
+	 * @param out array of at least 2 elements receiving atan(ratio) in radians and cos(atan(ratio))
+	 */
+	public void atanCos(double ratio, double[] out) {
+		if (this == DOUBLE) {
+			out[0] = Math.atan(ratio);
+			out[1] = Math.cos(out[0]);
+			return;
+		}
+		int angle = FixedPoint.atan(FixedPoint.fromDouble(ratio));
+		out[0] = FixedPoint.toRadians(angle);
+		out[1] = FixedPoint.toDouble(FixedPoint.cos(angle));
+	}
+
+	/**
+	 * @param ratio
+	 * @return atan(ratio) in radians
+	 */
+	public double atan(double ratio) {
+		if (this == DOUBLE)
+			return Math.atan(ratio);
+		return FixedPoint.toRadians(FixedPoint.atan(FixedPoint.fromDouble(ratio)));
+	}
+
+	/**
+	 * @param radians
+	 * @return cosine
+	 */
+	public double cos(double radians) {
+		if (this == DOUBLE)
+			return Math.cos(radians);
+		return FixedPoint.toDouble(FixedPoint.cos(FixedPoint.fromRadians(radians)));
+	}
+
+	/**
+	 * @param radians
+	 * @return sine
+	 */
+	public double sin(double radians) {
+		if (this == DOUBLE)
+			return Math.sin(radians);
+		return FixedPoint.toDouble(FixedPoint.sin(FixedPoint.fromRadians(radians)));
+	}
+
+	/**
+	 * Computes the factor that scales a color sample to unit length
+	 *
+	 * @param r red value, from 0 to 1
+	 * @param g green value
+	 * @param b blue value
+	 * @return 1 / |(r, g, b)|, or 0 for a sample without light
+	 */
+	public double inverseNorm(double r, double g, double b) {
+		if (this == DOUBLE) {
+			double squaredNorm = r * r + g * g + b * b;
+			return squaredNorm > 0 ? 1 / Math.sqrt(squaredNorm) : 0;
+		}
+		//the sample in Q0.30 keeps the resolution of the sensor; its squared norm fits a long
+		long fr = (long) (r * (1 << 30)), fg = (long) (g * (1 << 30)), fb = (long) (b * (1 << 30));
+		long squaredNorm = (fr * fr + fg * fg + fb * fb) >> 8;	//Q52, within 3 * 2^52
+		long norm = FixedPoint.sqrt(squaredNorm);	//Q26
+		return norm > 0 ? (double) (1L << 26) / norm : 0;
+	}
+}
@@ -0,0 +1,196 @@
+package ca.mcgill.ecse211.math;
+
+/**
+ * This class is a fixed-point math library made of integer operations only, for the brick, whose processor has no
+ * floating point unit. Numbers are in Q16.16: an int holding the value times 2^16, which covers +-32768 with a
+ * resolution of 0.000015, enough for centimetres on the whole arena. Products are taken on longs before being
+ * shifted back.
+ * <p>
+ * Angles are binary angles: a full turn is 2^32, so an int wraps around exactly like a heading, and a turn of one
+ * unit is 8.4e-8 degrees. sin and cos interpolate a table of 1024 steps per turn, and atan2 a table of atan over
+ * the first octant; both are within 0.00002 of Math. sqrt is an integer square root by Newton's iteration.
+ * <p>
+ * Conversions from and to double are only meant at the edges of a computation.
+ *
+ * @author Matthew
+ *
+ */
+public final class FixedPoint {
+
+	public static final int FRACTION_BITS = 16;
+	public static final int ONE = 1 << FRACTION_BITS;
+	public static final int HALF_TURN = Integer.MIN_VALUE;	//binary angle of 180 degrees, same as -180
+	public static final int QUARTER_TURN = 1 << 30;
+	public static final int EIGHTH_TURN = 1 << 29;
+
+	private static final int SIN_BITS = 10;	//table steps per turn, as a power of 2
+	private static final int SIN_SHIFT = 32 - SIN_BITS;
+	private static final int ATAN_BITS = 8;	//table steps over [0, 1]
+	private static final double TURN = 4294967296.0;	//2^32
+
+	private static final int[] SIN = new int[(1 << SIN_BITS) + 1];
+	private static final int[] ATAN = new int[(1 << ATAN_BITS) + 1];	//binary angles
+
+	static {
+		for (int i = 0; i < SIN.length; i++) {
+			SIN[i] = (int) Math.round(Math.sin(2 * Math.PI * i / (1 << SIN_BITS)) * ONE);
+		}
+		for (int i = 0; i < ATAN.length; i++) {
+			ATAN[i] = (int) Math.round(Math.atan((double) i / (1 << ATAN_BITS)) / (2 * Math.PI) * TURN);
+		}
+	}
+
+	private FixedPoint() {
+	}
+
+	/**
+	 * @param value
+	 * @return value in Q16.16, rounded
+	 */
+	public static int fromDouble(double value) {
+		return (int) Math.round(value * ONE);
+	}
+
+	/**
+	 * @param value in Q16.16
+	 * @return value
+	 */
+	public static double toDouble(int value) {
+		return value * (1.0 / ONE);
+	}
+
+	/**
+	 * @param a in Q16.16
+	 * @param b in Q16.16
+	 * @return a * b in Q16.16
+	 */
+	public static int mul(int a, int b) {
+		return (int) (((long) a * b) >> FRACTION_BITS);
+	}
+
+	/**
+	 * @param a in Q16.16
+	 * @param b in Q16.16, not 0
+	 * @return a / b in Q16.16
+	 */
+	public static int div(int a, int b) {
+		return (int) (((long) a << FRACTION_BITS) / b);
+	}
+
+	/**
+	 * @param radians angle, of any size
+	 * @return binary angle, wrapped
+	 */
+	public static int fromRadians(double radians) {
+		return (int) (long) Math.floor(radians * (TURN / (2 * Math.PI)) + 0.5);
+	}
+
+	/**
+	 * @param angle binary angle
+	 * @return angle in radians, between -pi and pi
+	 */
+	public static double toRadians(int angle) {
+		return angle * (2 * Math.PI / TURN);
+	}
+
+	/**
+	 * @param degrees angle, of any size
+	 * @return binary angle, wrapped
+	 */
+	public static int fromDegrees(double degrees) {
+		return (int) (long) Math.floor(degrees * (TURN / 360) + 0.5);
+	}
+
+	/**
+	 * @param angle binary angle
+	 * @return angle in degrees, between -180 and 180
+	 */
+	public static double toDegrees(int angle) {
+		return angle * (360 / TURN);
+	}
+
+	/**
+	 * @param angle binary angle
+	 * @return sine in Q16.16
+	 */
+	public static int sin(int angle) {
+		int index = angle >>> SIN_SHIFT;
+		int fraction = (angle << SIN_BITS) >>> 16;	//16 bits between two entries
+		int a = SIN[index];
+		return a + (int) (((long) (SIN[index + 1] - a) * fraction) >> 16);
+	}
+
+	/**
+	 * @param angle binary angle
+	 * @return cosine in Q16.16
+	 */
+	public static int cos(int angle) {
+		return sin(angle + QUARTER_TURN);
+	}
+
+	/**
+	 * @param ratio in Q16.16
+	 * @return binary angle of atan(ratio), between -90 and 90 degrees
+	 */
+	public static int atan(int ratio) {
+		return atan2(ratio, ONE);
+	}
+
+	/**
+	 * Computes the angle of a vector from the x axis, counterclockwise, like Math.atan2
+	 *
+	 * @param y any fixed-point format, the same as x
+	 * @param x
+	 * @return binary angle, 0 for a null vector
+	 */
+	public static int atan2(int y, int x) {
+		if (x == 0 && y == 0)
+			return 0;
+		long ax = Math.abs((long) x), ay = Math.abs((long) y);
+		//angle of the vector folded into the first octant
+		int angle = ay <= ax ? atanOctant(ay, ax) : QUARTER_TURN - atanOctant(ax, ay);
+		if (x < 0)
+			angle = HALF_TURN - angle;
+		return y < 0 ? -angle : angle;
+	}
+
+	/**
+	 * @return binary angle of atan(small / large), with small <= large and large > 0
+	 */
+	private static int atanOctant(long small, long large) {
+		long ratio = (small << (ATAN_BITS + 16)) / large;	//ATAN_BITS integer bits for the index, 16 for the fraction
+		int index = (int) (ratio >>> 16);
+		if (index >= 1 << ATAN_BITS)
+			return EIGHTH_TURN;
+		int fraction = (int) (ratio & 0xFFFF);
+		int a = ATAN[index];
+		return a + (int) (((long) (ATAN[index + 1] - a) * fraction) >> 16);
+	}
+
+	/**
+	 * @param value not negative
+	 * @return largest integer whose square is at most value
+	 */
+	public static long sqrt(long value) {
+		if (value < 2)
+			return value;
+		//Newton's iteration decreases towards the root from a power of 2 above it, in a few steps
+		int bits = 64 - Long.numberOfLeadingZeros(value);
+		long root = 1L << ((bits + 1) >> 1);
+		long next = (root + value / root) >> 1;
+		while (next < root) {
+			root = next;
+			next = (root + value / root) >> 1;
+		}
+		return root;
+	}
+
+	/**
+	 * @param x in Q16.16
+	 * @param y in Q16.16
+	 * @return length of the vector in Q16.16
+	 */
+	public static int hypot(int x, int y) {
+		return (int) sqrt((long) x * x + (long) y * y);
+	}
+}
@@ -0,0 +1,89 @@
+package ca.mcgill.ecse211.odometry;
+
+import ca.mcgill.ecse211.math.FixedPoint;
+
+/**
+ * This enum lists the ways the odometer turns the distances driven by the wheels during one update into a
+ * displacement of the robot. The robot is assumed to follow a circular arc during the update, which is exact when
+ * the wheel speeds keep the same ratio over the interval.
+ * <ul>
+ * <li>EULER drives the whole distance along the heading at the end of the update. Its error grows with the turn
+ * during the update, so it needs short periods.</li>
+ * <li>MIDPOINT drives the whole distance along the mean heading of the update. This is the direction of the chord
+ * of the arc, but the arc is longer than its chord.</li>
+ * <li>EXACT_ARC drives the length of the chord, 2 R sin(dTheta / 2) = distance sin(dTheta / 2) / (dTheta / 2),
+ * along the mean heading, which lands exactly on the end of the arc.</li>
+ * </ul>
+ * Headings are in radians, clockwise from the y axis, or binary angles in the fixed-point version.
+ *
+ * @author Matthew
+ *
+ */
+public enum IntegrationScheme {
+	EULER, MIDPOINT, EXACT_ARC;
+
+	//below this turn in rad, sin(x / 2) / (x / 2) is computed from its series to avoid dividing by zero
+	private static final double SMALL_TURN = 1e-4;
+	private static final long TWO_PI = Math.round(2 * Math.PI * FixedPoint.ONE);	//Q16.16
+
+	/**
+	 * Computes the displacement of the robot during one update
+	 *
+	 * @param heading heading at the start of the update in radians
+	 * @param distance distance driven by the centre of the robot in cm
+	 * @param turn change of heading in radians
+	 * @param dxy array of at least 2 elements receiving the displacement along x and y in cm
+	 */
+	public void displacement(double heading, double distance, double turn, double[] dxy) {
+		double direction;
+		double length = distance;
+		switch (this) {
+		case EULER:
+			direction = heading + turn;
+			break;
+		case MIDPOINT:
+			direction = heading + turn / 2;
+			break;
+		default:
+			direction = heading + turn / 2;
+			double half = turn / 2;
+			if (Math.abs(half) < SMALL_TURN)
+				length *= 1 - half * half / 6;
+			else
+				length *= Math.sin(half) / half;
+			break;
+		}
+		dxy[0] = length * Math.sin(direction);
+		dxy[1] = length * Math.cos(direction);
+	}
+
+	/**
+	 * Computes the displacement of the robot during one update with FixedPoint
+	 *
+	 * @param heading binary angle at the start of the update
+	 * @param distance distance driven by the centre of the robot in cm, Q16.16
+	 * @param turn change of heading as a binary angle, less than half a turn
+	 * @param dxy array of at least 2 elements receiving the displacement along x and y in cm, Q16.16
+	 */
+	public void displacement(int heading, int distance, int turn, int[] dxy) {
+		int direction;
+		int length = distance;
+		switch (this) {
+		case EULER:
+			direction = heading + turn;
+			break;
+		case MIDPOINT:
+			direction = heading + (turn >> 1);
+			break;
+		default:
+			direction = heading + (turn >> 1);
+			//sin(h) / h = 1 - h^2 / 6 + h^4 / 120, within 0.000003 for the half turns of an update
+			int half = (int) (((long) (turn >> 1) * TWO_PI) >> 32);	//radians, Q16.16
+			int square = FixedPoint.mul(half, half);
+			length = FixedPoint.mul(length, FixedPoint.ONE - square / 6 + FixedPoint.mul(square, square) / 120);
+			break;
+		}
+		dxy[0] = FixedPoint.mul(length, FixedPoint.sin(direction));
+		dxy[1] = FixedPoint.mul(length, FixedPoint.cos(direction));
+	}
+}
@@ -3,7 +3,9 @@ package ca.mcgill.ecse211.odometry;
 /**
  * The odometer class ensures that there is only one instance of an odometer at all times. It
  * has methods to ensure that is the case (singleton). It also contains the logic of the odometer 
- * itself. Angles are stored in degrees but are converted to radians for calculations.
+ * itself. The heading is integrated in radians, without wrapping, by the IntegrationScheme chosen in
+ * RingChallenge, once every ODOMETER_PERIOD, with doubles or with FixedPoint depending on RingChallenge.ARITHMETIC.
+ * With FixedPoint, the pose itself is kept in FixedPoint (see OdometerData) and never converted during an update.
  * 
  * @author Rodrigo Silva
  * @author Dirk Dubois
@@ -15,31 +17,51 @@ package ca.mcgill.ecse211.odometry;
  * @author Matthew
  */
 
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.math.Arithmetic;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
 
 public class Odometer extends OdometerData implements Runnable {
 
 	private OdometerData odoData;
 	private static Odometer odo = null; // Returned as singleton
 	private static OdometryCorrection odoCorrection;
+	private volatile PoseFusion poseFusion;	//corrects the odometer instead of odoCorrection when set
 
 	// Motors and related variables
 	private int leftMotorTachoCount;
 	private int rightMotorTachoCount;
-	private EV3LargeRegulatedMotor leftMotor;
-	private EV3LargeRegulatedMotor rightMotor;
+	private DriveMotor leftMotor;
+	private DriveMotor rightMotor;
 
 	private int lastTachoL;
 	private int lastTachoR;
 	private double Theta;
+	private volatile IntegrationScheme scheme = RingChallenge.ODOMETRY_INTEGRATION;
+	private final double[] displacement = new double[2];
+	
+	// Fixed-point odometry: cm per tacho degree in Q0.32, binary angle per cm, displacement in Q16.16
+	private final Arithmetic arithmetic = RingChallenge.ARITHMETIC;
+	private final long leftScale;
+	private final long rightScale;
+	private final long turnScale;
+	private final int[] fixedDisplacement = new int[2];
 
 	private final double TRACK;
 	private final double L_WHEEL_RAD;
 	private final double R_WHEEL_RAD;
 
-	private double[] position;
+	private static final long ODOMETER_PERIOD = RingChallenge.ODOMETER_PERIOD; // odometer update period in ms
+	private static final int HISTORY_SIZE = (int) Math.max(16, 1600 / ODOMETER_PERIOD); // number of past poses kept (1.6 s)
+
+	private final PoseHistory history = new PoseHistory(HISTORY_SIZE);
+	private final double[] position = new double[3];
 
-	private static final long ODOMETER_PERIOD = 25; // odometer update period in ms
+	private final PeriodicTask task;
+	private volatile long lastUpdateTime;
 
 	/**
 	 * This is the default constructor of this class. It initiates all motors and
@@ -49,7 +71,7 @@ public class Odometer extends OdometerData implements Runnable {
 	 * @param rightMotor
 	 * @throws OdometerExceptions
 	 */
-	private Odometer(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor, final double TRACK,
+	private Odometer(DriveMotor leftMotor, DriveMotor rightMotor, final double TRACK,
 			final double L_WHEEL_RAD, final double R_WHEEL_RAD) throws OdometerExceptions {
 		odoData = OdometerData.getOdometerData(); // Allows access to x,y,z
 													// manipulation methods
@@ -66,7 +88,17 @@ public class Odometer extends OdometerData implements Runnable {
 		this.TRACK = TRACK;
 		this.L_WHEEL_RAD = L_WHEEL_RAD;
 		this.R_WHEEL_RAD = R_WHEEL_RAD;
+		this.leftScale = Math.round(Math.PI * L_WHEEL_RAD / 180 * 4294967296.0);
+		this.rightScale = Math.round(Math.PI * R_WHEEL_RAD / 180 * 4294967296.0);
+		this.turnScale = Math.round(4294967296.0 / (2 * Math.PI * TRACK));
+		if (arithmetic == Arithmetic.FIXED_POINT)
+			useFixedPoint();
 
+		this.task = TaskScheduler.createTask("odometer", ODOMETER_PERIOD, OverrunPolicy.CATCH_UP, false, new Runnable() {
+			public void run() {
+				step();
+			}
+		});
 	}
 
 	/**
@@ -78,7 +110,7 @@ public class Odometer extends OdometerData implements Runnable {
 	 * @return new or existing Odometer Object
 	 * @throws OdometerExceptions
 	 */
-	public synchronized static Odometer getOdometer(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor,
+	public synchronized static Odometer getOdometer(DriveMotor leftMotor, DriveMotor rightMotor,
 			final double TRACK, final double L_WHEEL_RAD, final double R_WHEEL_RAD) throws OdometerExceptions {
 		if (odo != null) { // Return existing object
 			return odo;
@@ -105,9 +137,14 @@ public class Odometer extends OdometerData implements Runnable {
 	}
 	
 	/**
-	 * This method enables odometer correction by the odometry correction class
+	 * This method enables odometer correction by the odometry correction class, unless a PoseFusion corrects the
+	 * odometer
 	 */
 	public synchronized void enableCorrection() {
+		if(poseFusion != null)
+			return;
+		if(!odoCorrection.running)
+			odoCorrection.reset();
 		odoCorrection.running = true;
 	}
 	
@@ -121,50 +158,139 @@ public class Odometer extends OdometerData implements Runnable {
 	public OdometryCorrection getOdometryCorrection() {
 		return odoCorrection;
 	}
+	
+	/**
+	 * Makes a PoseFusion correct the odometer from now on instead of the odometry correction class, see
+	 * RingChallenge.POSE_CORRECTION
+	 * 
+	 * @param poseFusion
+	 */
+	public synchronized void setPoseFusion(PoseFusion poseFusion) {
+		odoCorrection.running = false;
+		poseFusion.follow(this);
+		this.poseFusion = poseFusion;
+	}
+	
+	/**
+	 * @return the PoseFusion correcting the odometer, null if it is the odometry correction class
+	 */
+	public PoseFusion getPoseFusion() {
+		return poseFusion;
+	}
+	
+	/**
+	 * @return number of corrections applied to the odometer so far, which moves on whenever the pose jumps
+	 */
+	public int getCorrectionCount() {
+		PoseFusion fusion = poseFusion;
+		return fusion != null ? fusion.getCorrectionCount() : odoCorrection.getCorrectionCount();
+	}
+	
+	/**
+	 * Changes how the distances driven by the wheels are integrated, from the next update on
+	 * 
+	 * @param scheme
+	 */
+	public void setIntegrationScheme(IntegrationScheme scheme) {
+		this.scheme = scheme;
+	}
+	
+	/**
+	 * @return how the distances driven by the wheels are integrated
+	 */
+	public IntegrationScheme getIntegrationScheme() {
+		return scheme;
+	}
+	
+	/**
+	 * Returns the pose and tacho counts of the robot at a past instant, interpolated from the odometer
+	 * history. Used to get the pose at the moment a sensor sample was fetched rather than when it is processed.
+	 * 
+	 * @param nanos clock nanoTime() of interest
+	 * @param out array receiving [x, y, theta] and, if it is long enough, [tachoL, tachoR]
+	 * @return false if the instant is older than the history
+	 */
+	public boolean poseAt(long nanos, double[] out) {
+		return history.poseAt(nanos, out);
+	}
 
 	/**
 	 * This method is where the logic for the odometer will run. Use the methods
-	 * provided from the OdometerData class to implement the odometer.
+	 * provided from the OdometerData class to implement the odometer. The update
+	 * is released once every ODOMETER_PERIOD by a periodic task.
 	 */
 	// run method (required for Thread)
 	public void run() {
-		long updateStart, updateEnd;
-
-		while (true) {
-			updateStart = System.currentTimeMillis();
-
-			//Get the current tachoCount for each motor
-			leftMotorTachoCount = leftMotor.getTachoCount();
-			rightMotorTachoCount = rightMotor.getTachoCount();
-
-			//Get the current values of the robot
-			position = odo.getXYT();
-
-			// Calculate new robot position based on tachometer counts
-			double distL = Math.PI * L_WHEEL_RAD * (leftMotorTachoCount - lastTachoL) / 180; // compute wheel
-			double distR = Math.PI * R_WHEEL_RAD * (rightMotorTachoCount - lastTachoR) / 180; // displacements
-			lastTachoL = leftMotorTachoCount; // save tacho counts for next iteration
-			lastTachoR = rightMotorTachoCount;
-			double deltaD = 0.5 * (distL + distR); // compute vehicle displacement
-			double deltaT = (distL - distR) / TRACK;
-			Theta = position[2] * Math.PI / 180; // Converting Theta back to radians for the calculations
-			Theta += deltaT; // update heading
-			double dX = deltaD * Math.sin(Theta); // compute X component of displacement
-			double dY = deltaD * Math.cos(Theta); // compute Y component of displacement
-
-			// Update odometer values with new calculated values
-			odo.update(dX, dY, deltaT * 180 / Math.PI);
-
-			// this ensures that the odometer only runs once every period
-			updateEnd = System.currentTimeMillis();
-			if (updateEnd - updateStart < ODOMETER_PERIOD) {
-				try {
-					Thread.sleep(ODOMETER_PERIOD - (updateEnd - updateStart));
-				} catch (InterruptedException e) {
-					// there is nothing to be done
-				}
-			}
+		task.run();
+	}
+	
+	/**
+	 * Performs a single odometer update from the change in tacho counts since the last one
+	 */
+	public void step() {
+		//Get the current tachoCount for each motor
+		long sampleTime = TaskScheduler.getClock().nanoTime();
+		leftMotorTachoCount = leftMotor.getTachoCount();
+		rightMotorTachoCount = rightMotor.getTachoCount();
+
+		if(arithmetic == Arithmetic.FIXED_POINT) {
+			stepFixed();
+			record(sampleTime);
+			return;
 		}
+		
+		//Get the current heading of the robot, in radians and unwrapped
+		Theta = odo.getHeading();
+
+		// Calculate new robot position based on tachometer counts
+		double distL = Math.PI * L_WHEEL_RAD * (leftMotorTachoCount - lastTachoL) / 180; // compute wheel
+		double distR = Math.PI * R_WHEEL_RAD * (rightMotorTachoCount - lastTachoR) / 180; // displacements
+		lastTachoL = leftMotorTachoCount; // save tacho counts for next iteration
+		lastTachoR = rightMotorTachoCount;
+		double deltaD = 0.5 * (distL + distR); // compute vehicle displacement
+		double deltaT = (distL - distR) / TRACK;
+		scheme.displacement(Theta, deltaD, deltaT, displacement); // compute X and Y components of displacement
+
+		// Update odometer values with new calculated values
+		odo.updateRadians(displacement[0], displacement[1], deltaT);
+		record(sampleTime);
+	}
+	
+	/**
+	 * Performs the integration of an update with FixedPoint, from the tacho counts to the pose
+	 */
+	private void stepFixed() {
+		long distL = leftScale * (leftMotorTachoCount - lastTachoL); // wheel displacements in Q0.32
+		long distR = rightScale * (rightMotorTachoCount - lastTachoR);
+		lastTachoL = leftMotorTachoCount;
+		lastTachoR = rightMotorTachoCount;
+		int deltaD = (int) ((distL + distR) >> 17); // vehicle displacement in Q16.16
+		int deltaT = (int) (((distL - distR) * turnScale) >> 32); // binary angle
+		scheme.displacement(odo.getFixedHeading(), deltaD, deltaT, fixedDisplacement);
+		odo.updateFixed(fixedDisplacement[0], fixedDisplacement[1], deltaT);
+	}
+	
+	/**
+	 * Remembers where the robot was at the moment the tachos were read
+	 */
+	private void record(long sampleTime) {
+		odo.getXYT(position);
+		history.record(sampleTime, position[0], position[1], position[2], leftMotorTachoCount, rightMotorTachoCount);
+		lastUpdateTime = sampleTime;
+	}
+	
+	/**
+	 * @return clock nanoTime() at which the tacho counts of the latest update were read
+	 */
+	public long getLastUpdateTime() {
+		return lastUpdateTime;
+	}
+	
+	/**
+	 * @return the periodic task running the odometer, for timing statistics
+	 */
+	public PeriodicTask getTask() {
+		return task;
 	}
 
 }
@@ -1,12 +1,26 @@
 package ca.mcgill.ecse211.odometry;
 
-import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+import ca.mcgill.ecse211.math.FixedPoint;
+
 /**
  * This class stores and provides thread safe access to the odometer data. Taken from the
  * sample code given for the labs.
+ * <p>
+ * Reads are lock-free: writers are serialized by a lock and bump a sequence counter before and
+ * after each write (seqlock), and readers simply retry if a write happened while they were
+ * copying the position. Readers therefore never block, even while a correction is being applied.
+ * <p>
+ * The heading is kept in radians, clockwise from the y axis and not wrapped, so that integration never loses
+ * precision to conversions or jumps at 360 degrees. getTheta and getXYT give a wrapped view in degrees, from 0 to
+ * 360, and setting theta in degrees keeps the number of turns of the unwrapped heading.
+ * <p>
+ * With RingChallenge.ARITHMETIC set to FIXED_POINT, the odometer keeps the pose in FixedPoint instead (see
+ * useFixedPoint): x and y in Q16.16 and the heading as a binary angle with its turns, so that its updates take no
+ * floating point at all. The pose is only converted to doubles when it is read, or written with doubles by a
+ * correction.
  * 
  * @author Rodrigo Silva
  * @author Dirk Dubois
@@ -20,7 +34,14 @@ public class OdometerData {
   // Position parameters
   private volatile double x; // x-axis position
   private volatile double y; // y-axis position
-  private volatile double theta; // Head angle
+  private volatile double theta; // Head angle in degrees, wrapped view of heading
+  private volatile double heading; // Head angle in radians, not wrapped
+
+  // Fixed-point pose, used instead of the above once useFixedPoint is called
+  private volatile boolean fixedPoint = false;
+  private volatile int fixedX; // Q16.16
+  private volatile int fixedY; // Q16.16
+  private volatile long fixedHeading; // binary angle, 2^32 per turn, not wrapped
 
   // Class control variables
   private volatile static int numberOfIntances = 0; // Number of OdometerData
@@ -32,15 +53,12 @@ public class OdometerData {
   // Thread control tools
   private static Lock lock = new ReentrantLock(true); // Fair lock for
                                                       // concurrent writing
-  private volatile boolean isReseting = false; // Indicates if a thread is
-                                               // trying to reset any
-                                               // position parameters
-  private Condition doneReseting = lock.newCondition(); // Let other threads
-                                                        // know that a reset
-                                                        // operation is
-                                                        // over.
+  private volatile int sequence = 0; // Odd while a write is in progress,
+                                     // incremented twice per write
+  private volatile int overrides = 0; // Number of calls to setXYT
 
   private static OdometerData odoData = null;
+  private static final double TURN = 4294967296.0; // 2^32, binary angle of a turn
 
   /**
    * Default constructor. The constructor is private. A factory is used instead such that only one
@@ -50,6 +68,7 @@ public class OdometerData {
     this.x = 0;
     this.y = 0;
     this.theta = 0;
+    this.heading = 0;
   }
 
   /**
@@ -80,32 +99,81 @@ public class OdometerData {
    * Writes the current position and orientation of the robot onto the odoData array. odoData[0] =
    * x, odoData[1] = y; odoData[2] = theta;
    * 
-   * @param position the array to store the odometer data
    * @return the odometer data.
    */
   public double[] getXYT() {
-    double[] position = new double[3];
-    lock.lock();
-    try {
-      while (isReseting) { // If a reset operation is being executed, wait
-        // until it is over.
-        doneReseting.await(); // Using await() is lighter on the CPU
-        // than simple busy wait.
-      }
+    return getXYT(new double[3]);
+  }
 
+  /**
+   * Copies the current position and orientation of the robot into the given array without
+   * allocating. position[0] = x, position[1] = y; position[2] = theta;
+   * 
+   * @param position the array to store the odometer data, of length 3 or more
+   * @return the same array, for convenience
+   */
+  public double[] getXYT(double[] position) {
+    if (fixedPoint)
+      return getFixedXYT(position);
+    int start;
+    do {
+      start = sequence;
       position[0] = x;
       position[1] = y;
       position[2] = theta;
+    } while ((start & 1) != 0 || start != sequence); // retry if a write overlapped the copy
 
-    } catch (InterruptedException e) {
-      // Print exception to screen
-      e.printStackTrace();
-    } finally {
-      lock.unlock();
-    }
+    return position;
+  }
+
+  /**
+   * Copies the fixed-point pose, then converts it to doubles outside of the retry loop.
+   */
+  private double[] getFixedXYT(double[] position) {
+    int start, fx, fy;
+    long fheading;
+    do {
+      start = sequence;
+      fx = fixedX;
+      fy = fixedY;
+      fheading = fixedHeading;
+    } while ((start & 1) != 0 || start != sequence);
 
+    position[0] = FixedPoint.toDouble(fx);
+    position[1] = FixedPoint.toDouble(fy);
+    position[2] = wrapFixed(fheading);
     return position;
+  }
 
+  /**
+   * Returns the current heading without allocating.
+   * 
+   * @return theta in degrees
+   */
+  public double getTheta() {
+    if (fixedPoint)
+      return wrapFixed(fixedHeading);
+    return theta; // a single volatile read is always consistent
+  }
+
+  /**
+   * Returns the current heading without allocating.
+   * 
+   * @return heading in radians, not wrapped
+   */
+  public double getHeading() {
+    if (fixedPoint)
+      return fixedHeading * (2 * Math.PI / TURN);
+    return heading;
+  }
+
+  /**
+   * Returns the current heading in FixedPoint, for the fixed-point odometer.
+   * 
+   * @return heading as a binary angle, wrapped
+   */
+  public int getFixedHeading() {
+    return (int) fixedHeading;
   }
 
   /**
@@ -114,24 +182,91 @@ public class OdometerData {
    * 
    * @param dx
    * @param dy
-   * @param dtheta
+   * @param dtheta change of heading in degrees
    */
   public void update(double dx, double dy, double dtheta) {
+    updateRadians(dx, dy, Math.toRadians(dtheta));
+  }
+
+  /**
+   * Adds dx, dy and dheading to the current values of x, y and heading, respectively. Used by the
+   * odometer, which works in radians.
+   * 
+   * @param dx
+   * @param dy
+   * @param dheading change of heading in radians
+   */
+  public void updateRadians(double dx, double dy, double dheading) {
+    if (fixedPoint) {
+      updateFixed(FixedPoint.fromDouble(dx), FixedPoint.fromDouble(dy),
+          Math.round(dheading * (TURN / (2 * Math.PI))));
+      return;
+    }
     lock.lock();
-    isReseting = true;
     try {
+      beginWrite();
       x += dx;
       y += dy;
-      theta = (theta + (360 + dtheta) % 360) % 360; // keeps the updates
-                                                    // within 360
-                                                    // degrees
-      isReseting = false; // Done reseting
-      doneReseting.signalAll(); // Let the other threads know that you are
-                                // done reseting
+      heading += dheading;
+      theta = wrap(heading);
+      endWrite();
+    } finally {
+      lock.unlock();
+    }
+
+  }
+
+  /**
+   * Adds dx, dy and dheading to the fixed-point pose. Used by the fixed-point odometer, without
+   * any conversion.
+   * 
+   * @param dx in Q16.16
+   * @param dy in Q16.16
+   * @param dheading change of heading as a binary angle
+   */
+  public void updateFixed(int dx, int dy, long dheading) {
+    lock.lock();
+    try {
+      beginWrite();
+      fixedX += dx;
+      fixedY += dy;
+      fixedHeading += dheading;
+      endWrite();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Keeps the pose in FixedPoint from now on, starting from the current one.
+   */
+  protected void useFixedPoint() {
+    lock.lock();
+    try {
+      beginWrite();
+      fixedX = FixedPoint.fromDouble(x);
+      fixedY = FixedPoint.fromDouble(y);
+      fixedHeading = Math.round(heading * (TURN / (2 * Math.PI)));
+      fixedPoint = true;
+      endWrite();
     } finally {
       lock.unlock();
     }
+  }
+
+  /**
+   * @return heading in degrees between 0 and 360
+   */
+  private static double wrap(double heading) {
+    double degrees = Math.toDegrees(heading) % 360;
+    return degrees < 0 ? degrees + 360 : degrees;
+  }
 
+  /**
+   * @return binary angle in degrees between 0 and 360
+   */
+  private static double wrapFixed(long heading) {
+    return (heading & 0xFFFFFFFFL) * (360 / TURN);
   }
 
   /**
@@ -142,15 +277,46 @@ public class OdometerData {
    * @param theta the value of theta
    */
   public void setXYT(double x, double y, double theta) {
+    setXYT(x, y, theta, true, true, true);
+  }
+
+  /**
+   * Overrides any combination of x, y and theta in a single atomic write, so readers never see
+   * a partially corrected position. Use for odometry correction.
+   * 
+   * @param x the value of x
+   * @param y the value of y
+   * @param theta the value of theta
+   * @param updateX whether x is overridden
+   * @param updateY whether y is overridden
+   * @param updateTheta whether theta is overridden
+   */
+  public void setXYT(double x, double y, double theta, boolean updateX, boolean updateY,
+      boolean updateTheta) {
     lock.lock();
-    isReseting = true;
     try {
-      this.x = x;
-      this.y = y;
-      this.theta = theta;
-      isReseting = false; // Done reseting
-      doneReseting.signalAll(); // Let the other threads know that you are
-                                // done reseting
+      beginWrite();
+      if (fixedPoint) {
+        if (updateX)
+          fixedX = FixedPoint.fromDouble(x);
+        if (updateY)
+          fixedY = FixedPoint.fromDouble(y);
+        if (updateTheta) // the difference of two binary angles is the smallest turn between them
+          fixedHeading += FixedPoint.fromDegrees(theta) - (int) fixedHeading;
+      } else {
+        if (updateX)
+          this.x = x;
+        if (updateY)
+          this.y = y;
+        if (updateTheta) {
+          // move the unwrapped heading by the smallest angle that gives theta
+          double change = Math.toRadians(theta) - heading;
+          heading += change - 2 * Math.PI * Math.floor(change / (2 * Math.PI) + 0.5);
+          this.theta = wrap(heading);
+        }
+      }
+      overrides++;
+      endWrite();
     } finally {
       lock.unlock();
     }
@@ -162,16 +328,7 @@ public class OdometerData {
    * @param x the value of x
    */
   public void setX(double x) {
-    lock.lock();
-    isReseting = true;
-    try {
-      this.x = x;
-      isReseting = false; // Done reseting
-      doneReseting.signalAll(); // Let the other threads know that you are
-                                // done reseting
-    } finally {
-      lock.unlock();
-    }
+    setXYT(x, 0, 0, true, false, false);
   }
 
   /**
@@ -180,16 +337,7 @@ public class OdometerData {
    * @param y the value of y
    */
   public void setY(double y) {
-    lock.lock();
-    isReseting = true;
-    try {
-      this.y = y;
-      isReseting = false; // Done reseting
-      doneReseting.signalAll(); // Let the other threads know that you are
-                                // done reseting
-    } finally {
-      lock.unlock();
-    }
+    setXYT(0, y, 0, false, true, false);
   }
 
   /**
@@ -198,17 +346,28 @@ public class OdometerData {
    * @param theta the value of theta
    */
   public void setTheta(double theta) {
-    lock.lock();
-    isReseting = true;
-    try {
-      this.theta = theta;
-      isReseting = false; // Done reseting
-      doneReseting.signalAll(); // Let the other threads know that you are
-                                // done reseting
-    } finally {
-      lock.unlock();
-    }
+    setXYT(0, 0, theta, false, false, true);
+  }
+
+  /**
+   * @return number of times the pose was overridden rather than updated, e.g. by a localization
+   */
+  public int getOverrideCount() {
+    return overrides;
+  }
+
+  /**
+   * Marks the start of a write. Must be called with the lock held.
+   */
+  private void beginWrite() {
+    sequence++; // odd: readers will retry
+  }
+
+  /**
+   * Marks the end of a write. Must be called with the lock held.
+   */
+  private void endWrite() {
+    sequence++; // even: position is consistent again
   }
 
-  
 }
@@ -1,11 +1,13 @@
 package ca.mcgill.ecse211.odometry;
 
 import ca.mcgill.ecse211.game.RingChallenge;
-import ca.mcgill.ecse211.interfaces.LightSensorUser;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
 import ca.mcgill.ecse211.localization.Navigation;
+import ca.mcgill.ecse211.scheduling.LatencyMonitor;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
 import ca.mcgill.ecse211.sensor.LineDetector;
-import lejos.hardware.Sound;
-import lejos.hardware.motor.EV3LargeRegulatedMotor;
 
 /**
  * This class controls odometry correction. It uses an existing instance of the odometer since it is
@@ -15,12 +17,12 @@ import lejos.hardware.motor.EV3LargeRegulatedMotor;
  * @author Matthew, Lara
  *
  */
-public class OdometryCorrection implements LightSensorUser {
+public class OdometryCorrection implements TimedLightSensorUser {
 	private static final int THRESHOLD = 30;
 	private static final int WINDOW_SIZE = 5;
 	
-	private EV3LargeRegulatedMotor leftMotor;
-	private EV3LargeRegulatedMotor rightMotor;
+	private DriveMotor leftMotor;
+	private DriveMotor rightMotor;
 	private Odometer odometer;
 	
 	private LineDetector leftLineDetector = new LineDetector(WINDOW_SIZE, THRESHOLD);
@@ -30,7 +32,16 @@ public class OdometryCorrection implements LightSensorUser {
 	private boolean[] inLine = new boolean[2];
 	private boolean[] lineCrossed = new boolean[2];
 	private int[][] tachoCount = new int[2][2];
-	boolean running;
+	private double[] XYT = new double[3];
+	private double[] sampledXYT = new double[3];	//pose when the lagging sensor crossed the line
+	private double[] crossingAngle = new double[2];	//angle to the line in radians and its cosine
+	private long sampleTime;
+	
+	//time from the light sample to the correction, and age of the odometer pose being corrected
+	private LatencyMonitor sampleLatency = TaskScheduler.createLatencyMonitor("sample to correction");
+	private LatencyMonitor poseAge = TaskScheduler.createLatencyMonitor("pose age at correction");
+	volatile boolean running;
+	private volatile int corrections = 0;
 
 	/**
 	 * This is the default class constructor. An existing instance of the odometer
@@ -38,7 +49,7 @@ public class OdometryCorrection implements LightSensorUser {
 	 * 
 	 * @throws OdometerExceptions
 	 */
-	public OdometryCorrection(EV3LargeRegulatedMotor leftMotor, EV3LargeRegulatedMotor rightMotor) throws OdometerExceptions {
+	public OdometryCorrection(DriveMotor leftMotor, DriveMotor rightMotor) throws OdometerExceptions {
 		this.leftMotor = leftMotor;
 		this.rightMotor = rightMotor;
 		this.odometer = Odometer.getOdometer();
@@ -47,8 +58,13 @@ public class OdometryCorrection implements LightSensorUser {
 	/**
 	 * Here is where the odometry correction code is run. It updates the odometer each time the light sensors cross a line.
 	 * @param light light sensor values read by the light sensor
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 * @param sequence sequence number of the sample
+	 * @param tachoL left motor tacho count when the sample was fetched
+	 * @param tachoR right motor tacho count when the sample was fetched
 	 */
-	public void processLSData(int[] light) {
+	@Override
+	public void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
 		//determine if sensors have crossed the line
 		boolean[] lineDetected = {leftLineDetector.lineCrossed(light[0]), rightLineDetector.lineCrossed(light[1])};
 		
@@ -56,11 +72,15 @@ public class OdometryCorrection implements LightSensorUser {
 		if(!running)
 			return;
 		
+		//tacho counts are those at the moment the light sensors were sampled, not when the sample is processed
+		if(lineDetected[0] || lineDetected[1])
+			sampleTime = timestamp;
+		
 		//check if left light sensor has entered a line
 		if(lineDetected[0] && !inLine[0]) {
 			inLine[0] = true;
-			tachoCount[0][0] = leftMotor.getTachoCount();
-			tachoCount[0][1] = rightMotor.getTachoCount();
+			tachoCount[0][0] = tachoL;
+			tachoCount[0][1] = tachoR;
 			if(lineCrossed[1]) {
 				correctOdometer(1);
 				lineCrossed[1] = false;
@@ -76,8 +96,8 @@ public class OdometryCorrection implements LightSensorUser {
 		//check if right light sensor has entered a line
 		if(lineDetected[1] && !inLine[1]) {
 			inLine[1] = true;
-			tachoCount[1][0] = leftMotor.getTachoCount();
-			tachoCount[1][1] = rightMotor.getTachoCount();
+			tachoCount[1][0] = tachoL;
+			tachoCount[1][1] = tachoR;
 			if(lineCrossed[0]) {
 				correctOdometer(0);
 				lineCrossed[0] = false;
@@ -92,7 +112,25 @@ public class OdometryCorrection implements LightSensorUser {
 	}
 
 	/**
-	 * This method determines what the corrected values for the odometer are and applies them
+	 * @return number of corrections applied to the odometer so far, which moves on whenever the pose jumps
+	 */
+	public int getCorrectionCount() {
+		return corrections;
+	}
+
+	/**
+	 * Forgets a line crossed by only one sensor before correction was disabled, so that it is not paired with
+	 * a line crossed by the other sensor once correction is enabled again
+	 */
+	void reset() {
+		lineCrossed[0] = false;
+		lineCrossed[1] = false;
+	}
+
+	/**
+	 * This method determines what the corrected values for the odometer are and applies them. The pose is snapped
+	 * as it was when the lagging sensor crossed the line, from the odometer history, and the motion of the robot
+	 * since then is added back, so a correction applied late does not pull the robot back to the line.
 	 * @param leadingSensor which sensor detected a line first (0 = left, 1 = right)
 	 */
 	private void correctOdometer(int leadingSensor) {
@@ -100,39 +138,51 @@ public class OdometryCorrection implements LightSensorUser {
 		double dL = Math.PI * RingChallenge.L_WHEEL_RAD * (tachoCount[laggingSensor][0] - tachoCount[leadingSensor][0]) / 180;
 		double dR = Math.PI * RingChallenge.R_WHEEL_RAD * (tachoCount[laggingSensor][1] - tachoCount[leadingSensor][1]) / 180;
 		double distance = (dL + dR) / 2;
-		double dTheta = Math.atan(distance / RingChallenge.LS_WIDTH);
+		RingChallenge.ARITHMETIC.atanCos(distance / RingChallenge.LS_WIDTH, crossingAngle);
+		double dTheta = crossingAngle[0];
 		if(leadingSensor == 1)
 			dTheta *= -1;
-		double perpDistance = (RingChallenge.LS_L_DISTANCE + distance / 2) * Math.cos(dTheta);	//perpendicular distance
+		double perpDistance = (RingChallenge.LS_L_DISTANCE + distance / 2) * crossingAngle[1];	//perpendicular distance
 		dTheta *= 180 / Math.PI;
 		
 		if(dTheta > 30)
 			return;
 		
-		double[] XYT = odometer.getXYT();
+		odometer.getXYT(XYT);
+		double[] S = sampledXYT;
+		if(!odometer.poseAt(sampleTime, S))	//older than the history: snap the current pose
+			System.arraycopy(XYT, 0, S, 0, 3);
+		//motion since the crossing
+		double movedX = XYT[0] - S[0], movedY = XYT[1] - S[1];
+		double turned = XYT[2] - S[2];
 		int[] coords;
 		
-		//correct odometer based on which way the robot is facing and where the closest grid intersection is
-		if(315 <= XYT[2] || XYT[2] < 45) {	//up
-			coords = Navigation.getClosestCoordinates(XYT[0], XYT[1] - perpDistance);
-			odometer.setY(coords[1] * RingChallenge.TILE_SIZE + perpDistance);
-			odometer.setTheta((dTheta + 360) % 360);
+		//correct odometer based on which way the robot was facing and where the closest grid intersection is
+		//position and heading are overridden together so no reader sees a half-corrected pose
+		if(315 <= S[2] || S[2] < 45) {	//up
+			coords = Navigation.getClosestCoordinates(S[0], S[1] - perpDistance);
+			odometer.setXYT(0, coords[1] * RingChallenge.TILE_SIZE + perpDistance + movedY,
+					(dTheta + turned + 720) % 360, false, true, true);
 		}
-		else if(45 <= XYT[2] && XYT[2] < 135) {	//right
-			coords = Navigation.getClosestCoordinates(XYT[0] - perpDistance, XYT[1]);
-			odometer.setX(coords[0] * RingChallenge.TILE_SIZE + perpDistance);
-			odometer.setTheta((90 + dTheta) % 360);
+		else if(45 <= S[2] && S[2] < 135) {	//right
+			coords = Navigation.getClosestCoordinates(S[0] - perpDistance, S[1]);
+			odometer.setXYT(coords[0] * RingChallenge.TILE_SIZE + perpDistance + movedX, 0,
+					(90 + dTheta + turned + 720) % 360, true, false, true);
 		}
-		else if(135 <= XYT[2] && XYT[2] < 225) {	//down
-			coords = Navigation.getClosestCoordinates(XYT[0], XYT[1] + perpDistance);
-			odometer.setY(coords[1] * RingChallenge.TILE_SIZE - perpDistance);
-			odometer.setTheta((180 + dTheta) % 360);
+		else if(135 <= S[2] && S[2] < 225) {	//down
+			coords = Navigation.getClosestCoordinates(S[0], S[1] + perpDistance);
+			odometer.setXYT(0, coords[1] * RingChallenge.TILE_SIZE - perpDistance + movedY,
+					(180 + dTheta + turned + 720) % 360, false, true, true);
 		}
 		else {	//left
-			coords = Navigation.getClosestCoordinates(XYT[0] + perpDistance, XYT[1]);
-			odometer.setX(coords[0] * RingChallenge.TILE_SIZE - perpDistance);
-			odometer.setTheta((270 + dTheta) % 360);
+			coords = Navigation.getClosestCoordinates(S[0] + perpDistance, S[1]);
+			odometer.setXYT(coords[0] * RingChallenge.TILE_SIZE - perpDistance + movedX, 0,
+					(270 + dTheta + turned + 720) % 360, true, false, true);
 		}
-		Sound.beep();
+		corrections++;
+		long now = TaskScheduler.getClock().nanoTime();
+		sampleLatency.record(now - sampleTime);
+		poseAge.record(now - odometer.getLastUpdateTime());
+		Hardware.getSpeaker().beep();
 	}
 }
@@ -0,0 +1,17 @@
+package ca.mcgill.ecse211.odometry;
+
+/**
+ * This enum lists the ways the odometer is corrected while the robot navigates, see RingChallenge.POSE_CORRECTION.
+ * <ul>
+ * <li>SNAP overwrites the pose with OdometryCorrection when both light sensors have crossed the same line, on the
+ * legs where Navigation enables correction.</li>
+ * <li>KALMAN_FILTER fuses every line crossed by either light sensor and every ultrasonic range into the pose with a
+ * PoseFusion, weighted by their uncertainty, whenever the robot navigates. PoseBenchmark compares both.</li>
+ * </ul>
+ *
+ * @author Matthew
+ *
+ */
+public enum PoseCorrection {
+	SNAP, KALMAN_FILTER
+}
@@ -0,0 +1,393 @@
+package ca.mcgill.ecse211.odometry;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+
+/**
+ * This class is an extended Kalman filter on the pose of the robot. It keeps the pose (x, y in cm, theta in
+ * radians clockwise from the y axis, not wrapped) together with its 3x3 covariance, and fuses:
+ * <ul>
+ * <li>the distance turned by each wheel (predict), with a noise that grows with the distance driven, an error on
+ * the wheel radii and an error on the track;</li>
+ * <li>a light sensor entering a grid line (updateLine), which says that the sensor is on the nearest line that
+ * fits the covariance. When both sensors cross the same line, the second crossing is fused against the line of the
+ * first, and the distance driven between the two crossings gives the angle to the line (updateLineAngle);</li>
+ * <li>an ultrasonic range to one of the walls of the field (updateRange).</li>
+ * </ul>
+ * Unlike OdometryCorrection, which overwrites the pose, each observation moves the pose by the Kalman gain, i.e.
+ * in proportion to how uncertain the pose is compared to the observation. Observations that are too far from the
+ * prediction (Mahalanobis gate), or that could be either of two lines, are rejected and counted.
+ * <p>
+ * Every matrix is kept in scalar fields, so no method allocates and the filter can run at the odometer rate on
+ * the brick. The class is not thread safe; see PoseFusion.
+ *
+ * @author Matthew
+ *
+ */
+public class PoseEstimator {
+
+	public static final int NO_LINE = -1;
+
+	//process noise
+	private static final double WHEEL_NOISE = 0.1;	//cm^0.5, standard deviation of a wheel distance is WHEEL_NOISE * sqrt(distance)
+	private static final double RADIUS_ERROR = 0.01;	//relative standard deviation of the wheel radii
+	private static final double TRACK_ERROR = 0.3;	//cm, standard deviation of the track
+
+	//observation noise
+	private static final double LINE_SIGMA = 0.8;	//cm, detection delay and line width
+	private static final double LINE_ANGLE_SIGMA = Math.atan(0.3 / RingChallenge.LS_WIDTH);	//0.3 cm between the sensors
+	private static final double RANGE_SIGMA = 1.5;	//cm
+	private static final double RANGE_SIGMA_RATIO = 0.02;	//of the range
+	private static final double GATE = 9;	//squared Mahalanobis distance, 3 standard deviations
+	private static final double MAX_INCIDENCE = Math.toRadians(20);	//between the beam and the normal to a wall
+
+	private static final double WIDTH = RingChallenge.GAME_GRID_X * RingChallenge.TILE_SIZE;
+	private static final double HEIGHT = RingChallenge.GAME_GRID_Y * RingChallenge.TILE_SIZE;
+
+	private final double track;
+
+	//state
+	private double x, y, theta;
+	//covariance, symmetric
+	private double p00, p01, p02, p11, p12, p22;
+
+	//last innovation, its variance and observation row, set by innovation
+	private double residual, variance, h0, h1, h2;
+
+	private int lineUpdates, lineRejections, rangeUpdates, rangeRejections;
+
+	/**
+	 * Constructor for the PoseEstimator class
+	 *
+	 * @param track distance between the wheels in cm
+	 */
+	public PoseEstimator(double track) {
+		this.track = track;
+	}
+
+	/**
+	 * Sets the pose and makes it uncertain by the given amounts, e.g. after localization
+	 *
+	 * @param x x position in cm
+	 * @param y y position in cm
+	 * @param theta heading in degrees, clockwise from the y axis
+	 * @param sigmaXY standard deviation of the position in cm
+	 * @param sigmaTheta standard deviation of the heading in degrees
+	 */
+	public void reset(double x, double y, double theta, double sigmaXY, double sigmaTheta) {
+		this.x = x;
+		this.y = y;
+		this.theta = Math.toRadians(theta);
+		double t = Math.toRadians(sigmaTheta);
+		p00 = sigmaXY * sigmaXY;
+		p11 = sigmaXY * sigmaXY;
+		p22 = t * t;
+		p01 = p02 = p12 = 0;
+	}
+
+	/**
+	 * Moves the pose by the distance turned by each wheel, like Odometer.step, and grows the covariance
+	 *
+	 * @param distL distance driven by the left wheel in cm
+	 * @param distR distance driven by the right wheel in cm
+	 */
+	public void predict(double distL, double distR) {
+		if (distL == 0 && distR == 0)
+			return;
+		double deltaD = 0.5 * (distL + distR);
+		double deltaT = (distL - distR) / track;
+		theta += deltaT;
+		double sin = Math.sin(theta), cos = Math.cos(theta);
+		x += deltaD * sin;
+		y += deltaD * cos;
+
+		//covariance through the motion: only x and y depend on theta
+		double a = deltaD * cos, c = -deltaD * sin;
+		double n00 = p00 + 2 * a * p02 + a * a * p22;
+		double n01 = p01 + a * p12 + c * p02 + a * c * p22;
+		double n02 = p02 + a * p22;
+		double n11 = p11 + 2 * c * p12 + c * c * p22;
+		double n12 = p12 + c * p22;
+		p00 = n00;
+		p01 = n01;
+		p02 = n02;
+		p11 = n11;
+		p12 = n12;
+
+		//noise of each wheel distance
+		double varL = WHEEL_NOISE * WHEEL_NOISE * Math.abs(distL) + RADIUS_ERROR * RADIUS_ERROR * distL * distL;
+		double varR = WHEEL_NOISE * WHEEL_NOISE * Math.abs(distR) + RADIUS_ERROR * RADIUS_ERROR * distR * distR;
+		addNoise(0.5 * sin + a / track, 0.5 * cos + c / track, 1 / track, varL);
+		addNoise(0.5 * sin - a / track, 0.5 * cos - c / track, -1 / track, varR);
+		//noise of the track, which scales the turn
+		double dT = -deltaT / track;
+		addNoise(a * dT, c * dT, dT, TRACK_ERROR * TRACK_ERROR);
+	}
+
+	/**
+	 * Adds the covariance of one noise source, given the change of the pose per unit of noise
+	 */
+	private void addNoise(double g0, double g1, double g2, double var) {
+		p00 += g0 * g0 * var;
+		p01 += g0 * g1 * var;
+		p02 += g0 * g2 * var;
+		p11 += g1 * g1 * var;
+		p12 += g1 * g2 * var;
+		p22 += g2 * g2 * var;
+	}
+
+	/**
+	 * Fuses a light sensor entering a grid line, choosing the line from the pose and its covariance
+	 *
+	 * @param forward position of the sensor ahead of the centre of rotation in cm (negative behind)
+	 * @param right position of the sensor right of the centre of rotation in cm
+	 * @return the line fused (see getLineAxis, getLineIndex), or NO_LINE if the observation was rejected
+	 */
+	public int updateLine(double forward, double right) {
+		double sin = Math.sin(theta), cos = Math.cos(theta);
+		double sensorX = x + forward * sin + right * cos;
+		double sensorY = y + forward * cos - right * sin;
+		int lineX = (int) Math.max(0, Math.round(sensorX / RingChallenge.TILE_SIZE));
+		int lineY = (int) Math.max(0, Math.round(sensorY / RingChallenge.TILE_SIZE));
+
+		double distanceX = lineInnovation(forward, right, 0, lineX);
+		double distanceY = lineInnovation(forward, right, 1, lineY);
+		//a sensor close to both lines, e.g. on an intersection, could have seen either
+		if (distanceX <= GATE && distanceY <= GATE || Math.min(distanceX, distanceY) > GATE) {
+			lineRejections++;
+			return NO_LINE;
+		}
+		int line = distanceX <= GATE ? pack(0, lineX) : pack(1, lineY);
+		lineInnovation(forward, right, getLineAxis(line), getLineIndex(line));
+		correct();
+		lineUpdates++;
+		return line;
+	}
+
+	/**
+	 * Fuses a light sensor entering a known grid line, e.g. the one the other sensor has just crossed
+	 *
+	 * @param forward position of the sensor ahead of the centre of rotation in cm (negative behind)
+	 * @param right position of the sensor right of the centre of rotation in cm
+	 * @param line line returned by updateLine
+	 * @return true if the observation was fused, false if it was rejected
+	 */
+	public boolean updateLine(double forward, double right, int line) {
+		if (lineInnovation(forward, right, getLineAxis(line), getLineIndex(line)) > GATE) {
+			lineRejections++;
+			return false;
+		}
+		correct();
+		lineUpdates++;
+		return true;
+	}
+
+	/**
+	 * Fuses the angle between the robot and a line crossed by both light sensors, found from the distance driven
+	 * between the two crossings like in OdometryCorrection. The detection delay is the same for both sensors, so
+	 * this angle is much more accurate than the difference of the two crossings fused by updateLine.
+	 *
+	 * @param line line crossed by both sensors
+	 * @param angle clockwise angle from the normal to the line closest to the heading, to the heading, in radians
+	 * @return true if the observation was fused, false if it was rejected
+	 */
+	public boolean updateLineAngle(int line, double angle) {
+		//normals of a line along y face 90 and 270 degrees, those of a line along x 0 and 180 degrees
+		double normal = getLineAxis(line) == 0 ? Math.PI / 2 : 0;
+		double offset = theta - normal - angle;
+		residual = -(offset - Math.PI * Math.round(offset / Math.PI));
+		h0 = 0;
+		h1 = 0;
+		h2 = 1;
+		if (innovation(LINE_ANGLE_SIGMA * LINE_ANGLE_SIGMA) > GATE) {
+			lineRejections++;
+			return false;
+		}
+		correct();
+		lineUpdates++;
+		return true;
+	}
+
+	/**
+	 * Computes the innovation of a sensor on a line
+	 *
+	 * @return squared Mahalanobis distance of the innovation
+	 */
+	private double lineInnovation(double forward, double right, int axis, int index) {
+		double sin = Math.sin(theta), cos = Math.cos(theta);
+		if (axis == 0) {	//line along y, at a given x
+			residual = index * RingChallenge.TILE_SIZE - (x + forward * sin + right * cos);
+			h0 = 1;
+			h1 = 0;
+			h2 = forward * cos - right * sin;
+		} else {	//line along x, at a given y
+			residual = index * RingChallenge.TILE_SIZE - (y + forward * cos - right * sin);
+			h0 = 0;
+			h1 = 1;
+			h2 = -forward * sin - right * cos;
+		}
+		return innovation(LINE_SIGMA * LINE_SIGMA);
+	}
+
+	/**
+	 * Fuses an ultrasonic range to the wall of the field the sensor points at
+	 *
+	 * @param range distance measured by the sensor in cm
+	 * @param forward position of the sensor ahead of the centre of rotation in cm
+	 * @return true if the observation was fused, false if it was rejected
+	 */
+	public boolean updateRange(double range, double forward) {
+		double sin = Math.sin(theta), cos = Math.cos(theta);
+		//distance along the beam from the centre of rotation to each wall it points at
+		double alongX = sin > 0 ? (WIDTH - x) / sin : sin < 0 ? -x / sin : Double.MAX_VALUE;
+		double alongY = cos > 0 ? (HEIGHT - y) / cos : cos < 0 ? -y / cos : Double.MAX_VALUE;
+		if (alongX < alongY) {	//wall at x = 0 or x = WIDTH
+			if (Math.abs(sin) < Math.cos(MAX_INCIDENCE)) {
+				rangeRejections++;
+				return false;
+			}
+			residual = range - (alongX - forward);
+			h0 = -1 / sin;
+			h1 = 0;
+			h2 = -alongX * cos / sin;
+		} else {	//wall at y = 0 or y = HEIGHT
+			if (Math.abs(cos) < Math.cos(MAX_INCIDENCE)) {
+				rangeRejections++;
+				return false;
+			}
+			residual = range - (alongY - forward);
+			h0 = 0;
+			h1 = -1 / cos;
+			h2 = alongY * sin / cos;
+		}
+		double sigma = RANGE_SIGMA + RANGE_SIGMA_RATIO * range;
+		if (innovation(sigma * sigma) > GATE) {	//e.g. a tunnel or a tree in front of the wall
+			rangeRejections++;
+			return false;
+		}
+		correct();
+		rangeUpdates++;
+		return true;
+	}
+
+	/**
+	 * Computes the variance of the innovation held in residual with the observation row h
+	 *
+	 * @param noise variance of the observation
+	 * @return squared Mahalanobis distance of the innovation
+	 */
+	private double innovation(double noise) {
+		double u0 = p00 * h0 + p01 * h1 + p02 * h2;
+		double u1 = p01 * h0 + p11 * h1 + p12 * h2;
+		double u2 = p02 * h0 + p12 * h1 + p22 * h2;
+		variance = h0 * u0 + h1 * u1 + h2 * u2 + noise;
+		return residual * residual / variance;
+	}
+
+	/**
+	 * Applies the innovation held in residual and variance to the pose and its covariance
+	 */
+	private void correct() {
+		double u0 = p00 * h0 + p01 * h1 + p02 * h2;
+		double u1 = p01 * h0 + p11 * h1 + p12 * h2;
+		double u2 = p02 * h0 + p12 * h1 + p22 * h2;
+		double scale = residual / variance;
+		x += u0 * scale;
+		y += u1 * scale;
+		theta += u2 * scale;
+		p00 -= u0 * u0 / variance;
+		p01 -= u0 * u1 / variance;
+		p02 -= u0 * u2 / variance;
+		p11 -= u1 * u1 / variance;
+		p12 -= u1 * u2 / variance;
+		p22 -= u2 * u2 / variance;
+	}
+
+	private static int pack(int axis, int index) {
+		return axis << 16 | index;
+	}
+
+	/**
+	 * @param line line returned by updateLine
+	 * @return 0 for a line along y (at a given x), 1 for a line along x (at a given y)
+	 */
+	public static int getLineAxis(int line) {
+		return line >> 16;
+	}
+
+	/**
+	 * @param line line returned by updateLine
+	 * @return grid coordinate of the line
+	 */
+	public static int getLineIndex(int line) {
+		return line & 0xFFFF;
+	}
+
+	/**
+	 * Copies the pose, with the heading in degrees between 0 and 360 like the odometer
+	 *
+	 * @param xyt array of at least 3 elements
+	 */
+	public void getXYT(double[] xyt) {
+		xyt[0] = x;
+		xyt[1] = y;
+		double t = Math.toDegrees(theta) % 360;
+		xyt[2] = t < 0 ? t + 360 : t;
+	}
+
+	/**
+	 * Copies the covariance of x, y and theta (theta in radians), row by row
+	 *
+	 * @param covariance array of at least 9 elements
+	 */
+	public void getCovariance(double[] covariance) {
+		covariance[0] = p00;
+		covariance[1] = covariance[3] = p01;
+		covariance[2] = covariance[6] = p02;
+		covariance[4] = p11;
+		covariance[5] = covariance[7] = p12;
+		covariance[8] = p22;
+	}
+
+	/**
+	 * @return standard deviation of the position along its most uncertain direction in cm
+	 */
+	public double getPositionSigma() {
+		double mean = (p00 + p11) / 2, d = (p00 - p11) / 2;
+		return Math.sqrt(mean + Math.sqrt(d * d + p01 * p01));
+	}
+
+	/**
+	 * @return standard deviation of the heading in degrees
+	 */
+	public double getHeadingSigma() {
+		return Math.toDegrees(Math.sqrt(p22));
+	}
+
+	/**
+	 * @return number of line crossings fused
+	 */
+	public int getLineUpdates() {
+		return lineUpdates;
+	}
+
+	/**
+	 * @return number of line crossings rejected
+	 */
+	public int getLineRejections() {
+		return lineRejections;
+	}
+
+	/**
+	 * @return number of ultrasonic ranges fused
+	 */
+	public int getRangeUpdates() {
+		return rangeUpdates;
+	}
+
+	/**
+	 * @return number of ultrasonic ranges rejected
+	 */
+	public int getRangeRejections() {
+		return rangeRejections;
+	}
+}
@@ -0,0 +1,275 @@
+package ca.mcgill.ecse211.odometry;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.DriveMotor;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedUltrasonicUser;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.LineDetector;
+
+/**
+ * This class feeds a PoseEstimator from the robot: the tacho counts every PERIOD (its task runs with the odometer),
+ * and the light and ultrasonic samples of the sensor bus. Every sample carries the tacho counts at which it was
+ * fetched, so the estimator is first moved to those counts and the observation is fused at the pose the robot had
+ * when the sample was taken. Lines are detected like in OdometryCorrection, but each sensor is fused on its own,
+ * whatever the heading of the robot, including while it turns.
+ * <p>
+ * When RingChallenge.POSE_CORRECTION is KALMAN_FILTER, the fusion follows the Odometer (see
+ * Odometer.setPoseFusion): every change an observation makes to the estimated pose is added to the odometer, and
+ * the estimator starts again from the pose of the odometer whenever something else overrides it, e.g. a
+ * localization. Both integrate the same tacho counts in between.
+ * <p>
+ * The methods are synchronized, as the task and the sensor bus can run in different threads on the robot.
+ *
+ * @author Matthew
+ *
+ */
+public class PoseFusion implements TimedLightSensorUser, TimedUltrasonicUser {
+
+	public static final long PERIOD = RingChallenge.ODOMETER_PERIOD;	//ms, same as the odometer
+
+	//same detection as OdometryCorrection
+	private static final int THRESHOLD = 30;
+	private static final int WINDOW_SIZE = 5;
+	//cm driven after a crossing in which the other sensor is fused against the same line (30 degrees off square)
+	private static final double PAIR_DISTANCE = RingChallenge.LS_WIDTH * Math.tan(Math.toRadians(30));
+	private static final double US_FORWARD = 7.0;	//cm from the centre of rotation to the ultrasonic sensor
+	private static final int US_MAX_RANGE = 150;	//cm, longer ranges are too wide to hit only a wall
+	//uncertainty of a pose set on the odometer, e.g. after a light localization
+	private static final double OVERRIDE_SIGMA_XY = 1.0;	//cm
+	private static final double OVERRIDE_SIGMA_THETA = 2.0;	//deg
+	//change of the odometer counted as a correction, after which Navigation aims again
+	private static final double CORRECTION_XY = 1.0;	//cm
+	private static final double CORRECTION_THETA = 1.0;	//deg
+
+	private final PoseEstimator estimator;
+	private final DriveMotor leftMotor;
+	private final DriveMotor rightMotor;
+	private final double leftRadius;
+	private final double rightRadius;
+	private final PeriodicTask task;
+	private boolean observing = true;
+
+	private int lastTachoL;
+	private int lastTachoR;
+	private double along;	//cm driven by the centre of the robot, negative backwards
+
+	private final LineDetector[] detectors = { new LineDetector(WINDOW_SIZE, THRESHOLD),
+			new LineDetector(WINDOW_SIZE, THRESHOLD) };
+	private final boolean[] inLine = new boolean[2];
+	private final int[] lastLine = { PoseEstimator.NO_LINE, PoseEstimator.NO_LINE };
+	private final double[] lastLineAlong = new double[2];
+	private final double[] sensorRight = { -RingChallenge.LS_WIDTH / 2, RingChallenge.LS_WIDTH / 2 };
+
+	//odometer followed, and changes made to it since the last counted correction
+	private Odometer odometer;
+	private int overrides;
+	private final double[] before = new double[3];
+	private final double[] after = new double[3];
+	private final double[] odometerPose = new double[3];
+	private final double[] pending = new double[3];
+	private volatile int corrections = 0;
+
+	/**
+	 * Constructor for the PoseFusion class
+	 *
+	 * @param leftMotor
+	 * @param rightMotor
+	 * @param track distance between the wheels in cm
+	 * @param leftRadius radius of the left wheel in cm
+	 * @param rightRadius radius of the right wheel in cm
+	 */
+	public PoseFusion(DriveMotor leftMotor, DriveMotor rightMotor, double track, double leftRadius,
+			double rightRadius) {
+		this.estimator = new PoseEstimator(track);
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+		this.leftRadius = leftRadius;
+		this.rightRadius = rightRadius;
+		this.task = TaskScheduler.createTask("pose fusion", PERIOD, OverrunPolicy.CATCH_UP, false, new Runnable() {
+			public void run() {
+				step();
+			}
+		});
+	}
+
+	/**
+	 * Sets the pose, from the current tacho counts on
+	 *
+	 * @param x x position in cm
+	 * @param y y position in cm
+	 * @param theta heading in degrees
+	 * @param sigmaXY standard deviation of the position in cm
+	 * @param sigmaTheta standard deviation of the heading in degrees
+	 */
+	public synchronized void reset(double x, double y, double theta, double sigmaXY, double sigmaTheta) {
+		lastTachoL = leftMotor.getTachoCount();
+		lastTachoR = rightMotor.getTachoCount();
+		estimator.reset(x, y, theta, sigmaXY, sigmaTheta);
+		lastLine[0] = lastLine[1] = PoseEstimator.NO_LINE;
+	}
+
+	/**
+	 * Starts following an odometer, from its current pose
+	 *
+	 * @param odometer
+	 */
+	synchronized void follow(Odometer odometer) {
+		this.odometer = odometer;
+		resetToOdometer();
+	}
+
+	/**
+	 * Sets the pose to that of the followed odometer
+	 */
+	private void resetToOdometer() {
+		overrides = odometer.getOverrideCount();
+		odometer.getXYT(odometerPose);
+		reset(odometerPose[0], odometerPose[1], odometerPose[2], OVERRIDE_SIGMA_XY, OVERRIDE_SIGMA_THETA);
+	}
+
+	/**
+	 * Sets whether the sensor samples are fused; without them, the estimator only does dead reckoning
+	 *
+	 * @param observing
+	 */
+	public synchronized void setObserving(boolean observing) {
+		this.observing = observing;
+	}
+
+	/**
+	 * Moves the estimator to the current tacho counts
+	 */
+	public synchronized void step() {
+		if (odometer != null && odometer.getOverrideCount() != overrides)
+			resetToOdometer();
+		else
+			advance(leftMotor.getTachoCount(), rightMotor.getTachoCount());
+	}
+
+	/**
+	 * Moves the estimator to the given tacho counts
+	 */
+	private void advance(int tachoL, int tachoR) {
+		double distL = Math.PI * leftRadius * (tachoL - lastTachoL) / 180;
+		double distR = Math.PI * rightRadius * (tachoR - lastTachoR) / 180;
+		lastTachoL = tachoL;
+		lastTachoR = tachoR;
+		along += (distL + distR) / 2;
+		estimator.predict(distL, distR);
+	}
+
+	@Override
+	public synchronized void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+		boolean entered = false;
+		for (int i = 0; i < 2; i++) {
+			boolean detected = detectors[i].lineCrossed(light[i]);
+			if (detected && !inLine[i] && observing) {
+				if (!entered)
+					beginObservation(tachoL, tachoR);
+				entered = true;
+				fuseLine(i);
+			}
+			inLine[i] = detected;
+		}
+		if (entered)
+			endObservation();
+	}
+
+	/**
+	 * Moves the estimator to the tacho counts of a sample, before it is fused
+	 */
+	private void beginObservation(int tachoL, int tachoR) {
+		advance(tachoL, tachoR);
+		estimator.getXYT(before);
+	}
+
+	/**
+	 * Adds the change made by the fused sample to the followed odometer
+	 */
+	private void endObservation() {
+		if (odometer == null)
+			return;
+		if (odometer.getOverrideCount() != overrides) {	//the sample predates the new pose
+			resetToOdometer();
+			return;
+		}
+		estimator.getXYT(after);
+		double dx = after[0] - before[0];
+		double dy = after[1] - before[1];
+		double dTheta = (after[2] - before[2] + 540) % 360 - 180;
+		if (dx == 0 && dy == 0 && dTheta == 0)
+			return;
+		odometer.update(dx, dy, dTheta);
+		pending[0] += dx;
+		pending[1] += dy;
+		pending[2] += dTheta;
+		if (Math.hypot(pending[0], pending[1]) >= CORRECTION_XY || Math.abs(pending[2]) >= CORRECTION_THETA) {
+			pending[0] = pending[1] = pending[2] = 0;
+			corrections++;
+		}
+	}
+
+	/**
+	 * Fuses a line entered by a sensor. If the other sensor has just crossed a line, the crossing is fused against
+	 * that line, together with the angle to it given by the distance driven since.
+	 */
+	private void fuseLine(int sensor) {
+		int other = 1 - sensor;
+		double forward = -RingChallenge.LS_L_DISTANCE;
+		int line = lastLine[other];
+		double distance = along - lastLineAlong[other];
+		if (line != PoseEstimator.NO_LINE && Math.abs(distance) <= PAIR_DISTANCE) {
+			//as in OdometryCorrection, the robot is turned counterclockwise from the line if the right sensor led
+			double angle = Math.atan(distance / RingChallenge.LS_WIDTH);
+			estimator.updateLineAngle(line, other == 1 ? -angle : angle);
+			if (!estimator.updateLine(forward, sensorRight[sensor], line))
+				line = PoseEstimator.NO_LINE;
+			lastLine[other] = PoseEstimator.NO_LINE;	//each crossing is paired once
+		} else
+			line = estimator.updateLine(forward, sensorRight[sensor]);
+		lastLine[sensor] = line;
+		lastLineAlong[sensor] = along;
+	}
+
+	@Override
+	public synchronized void processUSDistance(int distance, long timestamp, int sequence, int tachoL, int tachoR) {
+		if (!observing || distance <= 0 || distance > US_MAX_RANGE)
+			return;
+		beginObservation(tachoL, tachoR);
+		estimator.updateRange(distance, US_FORWARD);
+		endObservation();
+	}
+
+	/**
+	 * @return number of times the changes made to the followed odometer added up to a correction
+	 */
+	public int getCorrectionCount() {
+		return corrections;
+	}
+
+	/**
+	 * Copies the estimated pose
+	 *
+	 * @param xyt array of at least 3 elements, heading in degrees
+	 */
+	public synchronized void getXYT(double[] xyt) {
+		estimator.getXYT(xyt);
+	}
+
+	/**
+	 * @return the estimator, to be read from the thread of the task
+	 */
+	public PoseEstimator getEstimator() {
+		return estimator;
+	}
+
+	/**
+	 * @return the task that moves the estimator with the tacho counts
+	 */
+	public PeriodicTask getTask() {
+		return task;
+	}
+}
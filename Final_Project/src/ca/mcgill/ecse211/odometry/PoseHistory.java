@@ -0,0 +1,123 @@
+package ca.mcgill.ecse211.odometry;
+
+/**
+ * This class keeps a fixed-size history of timestamped odometer states (pose and tacho counts) in
+ * a ring buffer of primitive arrays, so that the pose at the exact moment a sensor sample was taken
+ * can be recovered afterwards by linear interpolation. Nothing is allocated after construction.
+ *
+ * @author Matthew
+ */
+public class PoseHistory {
+
+	private final long[] time;
+	private final double[] x;
+	private final double[] y;
+	private final double[] theta;
+	private final int[] tachoL;
+	private final int[] tachoR;
+
+	private final int capacity;
+	private int newest = -1;	//index of the newest entry
+	private int size = 0;
+
+	/**
+	 * Constructor for the PoseHistory class
+	 * @param capacity number of entries kept before the oldest ones are overwritten
+	 */
+	public PoseHistory(int capacity) {
+		this.capacity = capacity;
+		this.time = new long[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.theta = new double[capacity];
+		this.tachoL = new int[capacity];
+		this.tachoR = new int[capacity];
+	}
+
+	/**
+	 * Records a new entry. Entries must be recorded in increasing time order.
+	 * @param nanos clock nanoTime() at which the tacho counts were read
+	 * @param x x position in cm
+	 * @param y y position in cm
+	 * @param theta heading in degrees
+	 * @param tachoL left motor tacho count
+	 * @param tachoR right motor tacho count
+	 */
+	public synchronized void record(long nanos, double x, double y, double theta, int tachoL, int tachoR) {
+		newest = (newest + 1) % capacity;
+		this.time[newest] = nanos;
+		this.x[newest] = x;
+		this.y[newest] = y;
+		this.theta[newest] = theta;
+		this.tachoL[newest] = tachoL;
+		this.tachoR[newest] = tachoR;
+		if(size < capacity)
+			size++;
+	}
+
+	/**
+	 * Interpolates the state at the given time. A time slightly newer than the last entry is
+	 * extrapolated from the last recorded interval, and a time older than the history gets the oldest entry.
+	 * @param nanos clock nanoTime() of interest
+	 * @param out array receiving [x, y, theta] and, if it is long enough, [tachoL, tachoR]
+	 * @return false if there is no history or the time is older than it, true otherwise
+	 */
+	public synchronized boolean poseAt(long nanos, double[] out) {
+		if(size == 0)
+			return false;
+
+		//sample newer than the last update: extrapolate along the last interval, by one interval at most
+		if(nanos - time[newest] >= 0) {
+			int previous = (newest - 1 + capacity) % capacity;
+			if(size == 1 || time[newest] == time[previous]) {
+				interpolate(newest, newest, 0, out);
+			}
+			else {
+				double f = (double) (nanos - time[previous]) / (time[newest] - time[previous]);
+				interpolate(previous, newest, Math.min(f, 2), out);
+			}
+			return true;
+		}
+
+		//walk back from the newest entry until the entry at or before nanos is found
+		int after = newest;
+		for(int n = 1; n < size; n++) {
+			int before = (after - 1 + capacity) % capacity;
+			if(time[before] - nanos <= 0) {
+				double f = (double) (nanos - time[before]) / (time[after] - time[before]);
+				interpolate(before, after, f, out);
+				return true;
+			}
+			after = before;
+		}
+
+		//nanos is older than the oldest entry
+		interpolate(after, after, 0, out);
+		return false;
+	}
+
+	/**
+	 * Writes the linear interpolation between two entries into out
+	 * @param a first entry
+	 * @param b second entry
+	 * @param f fraction of the way from a to b
+	 * @param out array receiving [x, y, theta, tachoL, tachoR]
+	 */
+	private void interpolate(int a, int b, double f, double[] out) {
+		out[0] = x[a] + f * (x[b] - x[a]);
+		out[1] = y[a] + f * (y[b] - y[a]);
+
+		//interpolate heading along the shortest way around the circle
+		double dTheta = theta[b] - theta[a];
+		if(dTheta > 180)
+			dTheta -= 360;
+		else if(dTheta < -180)
+			dTheta += 360;
+		out[2] = (theta[a] + f * dTheta + 360) % 360;
+
+		if(out.length >= 5) {
+			out[3] = tachoL[a] + f * (tachoL[b] - tachoL[a]);
+			out[4] = tachoR[a] + f * (tachoR[b] - tachoR[a]);
+		}
+	}
+}
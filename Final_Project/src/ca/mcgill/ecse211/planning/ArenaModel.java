@@ -0,0 +1,370 @@
+package ca.mcgill.ecse211.planning;
+
+import java.util.ArrayList;
+
+import ca.mcgill.ecse211.config.GameConfig;
+import ca.mcgill.ecse211.game.RingChallenge;
+
+/**
+ * This class is the map of the field for one game, computed once from the game parameters: what each grid
+ * intersection belongs to (our zone, the opponent's zone, the island, the tunnels), which intersections of the
+ * island the robot cannot travel on, the orientation and ends of both tunnels, and which sides of our tree can be
+ * reached. Every query is an array lookup or a bit test, and nothing can be changed after construction.
+ * <p>
+ * Tunnel orientations: 1 = vertical & LL on starting island, 2 = vertical & LL on island, 3 = horizontal & LL on
+ * starting island, 4 = horizontal && LL on island. Tree sides: 1 = north, 2 = east, 3 = south, 4 = west.
+ *
+ * @author Matthew
+ *
+ */
+public final class ArenaModel {
+
+	//zone tags of an intersection, combined when an intersection is on the edge of several zones
+	public static final int START_ZONE = 1;
+	public static final int OPPONENT_ZONE = 2;
+	public static final int ISLAND = 4;
+	public static final int TUNNEL = 8;
+	public static final int OPPONENT_TUNNEL = 16;
+
+	private static final int OUR = 0, OPPONENT = 1;
+
+	//size of the walls seen by the ultrasonic sensor
+	public static final double TUNNEL_WALL_INSET = 2.0;	//cm between the grid line and a tunnel wall
+	public static final double TREE_HALF_WIDTH = 4.0;	//cm
+
+	private final int width;
+	private final int height;
+	private final boolean red;
+	private final byte[] zones;
+	private final GridMap islandMap;	//free = inside the island, off the tunnel ends and the trees
+
+	//per tunnel (OUR, OPPONENT): {LL_x, LL_y, UR_x, UR_y}, orientation, packed island end intersections
+	private final int[][] tunnels = new int[2][];
+	private final int[] orientations = new int[2];
+	private final int[][] tunnelEnds = new int[2][2];
+	private final int tunnelExit;	//intersection the robot goes to after our tunnel
+	private final int[][] trees = new int[2][];
+
+	private final int[] sideCoordinates = new int[5];	//packed, indexed by side
+	private final int availableSides;	//bit per side
+
+	/**
+	 * Constructor for the ArenaModel class, on the game field
+	 *
+	 * @param config game parameters
+	 * @param teamNumber our team number
+	 * @throws IllegalArgumentException if our team is not playing
+	 */
+	public ArenaModel(GameConfig config, int teamNumber) {
+		this(config, teamNumber, RingChallenge.GAME_GRID_X, RingChallenge.GAME_GRID_Y);
+	}
+
+	/**
+	 * Constructor for the ArenaModel class
+	 *
+	 * @param config game parameters
+	 * @param teamNumber our team number
+	 * @param gridX number of tiles along x
+	 * @param gridY number of tiles along y
+	 * @throws IllegalArgumentException if our team is not playing
+	 */
+	public ArenaModel(GameConfig config, int teamNumber, int gridX, int gridY) {
+		if (config.get("RedTeam") == teamNumber)
+			red = true;
+		else if (config.get("GreenTeam") == teamNumber)
+			red = false;
+		else
+			throw new IllegalArgumentException("Team " + teamNumber + " is not playing");
+		width = gridX + 1;
+		height = gridY + 1;
+
+		String us = red ? "Red" : "Green", them = red ? "Green" : "Red";
+		String ourTunnel = red ? "TNR" : "TNG", theirTunnel = red ? "TNG" : "TNR";
+		int[] startZone = getRectangle(config, us);
+		int[] opponentZone = getRectangle(config, them);
+		int[] island = getRectangle(config, "Island");
+		tunnels[OUR] = getRectangle(config, ourTunnel);
+		tunnels[OPPONENT] = getRectangle(config, theirTunnel);
+		trees[OUR] = new int[] { config.get(red ? "TR_x" : "TG_x"), config.get(red ? "TR_y" : "TG_y") };
+		trees[OPPONENT] = new int[] { config.get(red ? "TG_x" : "TR_x"), config.get(red ? "TG_y" : "TR_y") };
+
+		zones = new byte[width * height];
+		tag(startZone, START_ZONE);
+		tag(opponentZone, OPPONENT_ZONE);
+		tag(island, ISLAND);
+		tag(tunnels[OUR], TUNNEL);
+		tag(tunnels[OPPONENT], OPPONENT_TUNNEL);
+
+		orientations[OUR] = getOrientation(startZone, island);
+		orientations[OPPONENT] = getOrientation(opponentZone, island);
+		for (int t = OUR; t <= OPPONENT; t++) {
+			tunnelEnds[t] = getIslandEnd(tunnels[t], orientations[t]);
+		}
+
+		islandMap = new GridMap(width, height);
+		islandMap.setBlocked(0, 0, width - 1, height - 1, true);
+		islandMap.setBlocked(island[0] + 1, island[1] + 1, island[2] - 1, island[3] - 1, false);
+		for (int t = OUR; t <= OPPONENT; t++) {
+			for (int end : tunnelEnds[t]) {
+				islandMap.setBlocked(PathPlanner.getX(end), PathPlanner.getY(end), true);
+			}
+			islandMap.setBlocked(trees[t][0], trees[t][1], true);
+		}
+
+		tunnelExit = getExit(tunnels[OUR], orientations[OUR]);
+
+		int sides = 0;
+		int[][] offsets = { {}, { 0, 1 }, { 1, 0 }, { 0, -1 }, { -1, 0 } };
+		for (int side = 1; side <= 4; side++) {
+			int x = trees[OUR][0] + offsets[side][0], y = trees[OUR][1] + offsets[side][1];
+			sideCoordinates[side] = PathPlanner.pack(Math.max(0, x), Math.max(0, y));
+			if (!islandMap.isBlocked(x, y))
+				sides |= 1 << side;
+		}
+		availableSides = sides;
+	}
+
+	/**
+	 * @return {LL_x, LL_y, UR_x, UR_y} of a rectangle of the game parameters
+	 */
+	private static int[] getRectangle(GameConfig config, String name) {
+		return new int[] { config.get(name + "_LL_x"), config.get(name + "_LL_y"), config.get(name + "_UR_x"),
+				config.get(name + "_UR_y") };
+	}
+
+	/**
+	 * Tags every intersection of a rectangle, edges included
+	 */
+	private void tag(int[] rectangle, int zone) {
+		for (int y = Math.max(0, rectangle[1]); y <= Math.min(height - 1, rectangle[3]); y++) {
+			for (int x = Math.max(0, rectangle[0]); x <= Math.min(width - 1, rectangle[2]); x++) {
+				zones[y * width + x] |= zone;
+			}
+		}
+	}
+
+	/**
+	 * Finds the orientation of the tunnel of a starting zone. The island can either be completely above, below,
+	 * right of, or left of the starting zone, but never a combination of these, and this also indicates whether
+	 * the tunnel is vertical or horizontal.
+	 */
+	private static int getOrientation(int[] zone, int[] island) {
+		if (Math.max(zone[1], zone[3]) <= Math.min(island[1], island[3]))	//island above starting zone
+			return 1;
+		else if (Math.min(zone[1], zone[3]) >= Math.max(island[1], island[3]))	//island below starting zone
+			return 2;
+		else if (Math.max(zone[0], zone[2]) <= Math.min(island[0], island[2]))	//island right of starting zone
+			return 3;
+		else
+			return 4;
+	}
+
+	/**
+	 * @return the two intersections at the island end of a tunnel, packed
+	 */
+	private static int[] getIslandEnd(int[] tunnel, int orientation) {
+		switch (orientation) {
+		case 1:
+			return new int[] { PathPlanner.pack(tunnel[2], tunnel[3]), PathPlanner.pack(tunnel[0], tunnel[3]) };
+		case 2:
+			return new int[] { PathPlanner.pack(tunnel[2], tunnel[1]), PathPlanner.pack(tunnel[0], tunnel[1]) };
+		case 3:
+			return new int[] { PathPlanner.pack(tunnel[2], tunnel[3]), PathPlanner.pack(tunnel[2], tunnel[1]) };
+		default:
+			return new int[] { PathPlanner.pack(tunnel[0], tunnel[3]), PathPlanner.pack(tunnel[0], tunnel[1]) };
+		}
+	}
+
+	/**
+	 * Finds the intersection one tile out of the island end of a tunnel, favouring the one on the LL side when
+	 * it is free
+	 */
+	private int getExit(int[] tunnel, int orientation) {
+		int x, y, dx = 0, dy = 0;
+		switch (orientation) {
+		case 1:
+			x = tunnel[0];
+			y = tunnel[3] + 1;
+			dx = 1;
+			break;
+		case 2:
+			x = tunnel[0];
+			y = tunnel[1] - 1;
+			dx = 1;
+			break;
+		case 3:
+			x = tunnel[2] + 1;
+			y = tunnel[1];
+			dy = 1;
+			break;
+		default:
+			x = tunnel[0] - 1;
+			y = tunnel[1];
+			dy = 1;
+			break;
+		}
+		if (islandMap.isBlocked(x, y)) {
+			x += dx;
+			y += dy;
+		}
+		return PathPlanner.pack(Math.max(0, x), Math.max(0, y));
+	}
+
+	/**
+	 * @return whether our team is the red team
+	 */
+	public boolean isRed() {
+		return red;
+	}
+
+	/**
+	 * @return number of intersections along x
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return number of intersections along y
+	 */
+	public int getHeight() {
+		return height;
+	}
+
+	/**
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @return zone tags of the intersection (START_ZONE, OPPONENT_ZONE, ISLAND, TUNNEL, OPPONENT_TUNNEL), 0 if it is
+	 *         in none of them or off the field
+	 */
+	public int getZones(int x, int y) {
+		return x < 0 || y < 0 || x >= width || y >= height ? 0 : zones[y * width + x];
+	}
+
+	/**
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @param zone zone tag
+	 * @return whether the intersection is in the zone
+	 */
+	public boolean isIn(int x, int y, int zone) {
+		return (getZones(x, y) & zone) != 0;
+	}
+
+	/**
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @return whether the robot cannot travel on the intersection while on the island: it is off the island, on
+	 *         its edge, at the end of a tunnel or a tree
+	 */
+	public boolean isBlocked(int x, int y) {
+		return islandMap.isBlocked(x, y);
+	}
+
+	/**
+	 * Finds the fastest path between two intersections of the island
+	 *
+	 * @param planner planner of the size of this field
+	 * @param x1 starting x coordinate
+	 * @param y1 starting y coordinate
+	 * @param heading heading of the robot at the start, or PathPlanner.UNKNOWN_HEADING
+	 * @param x2 destination x coordinate
+	 * @param y2 destination y coordinate
+	 * @return packed intersections to travel to, excluding the start, or null if the destination cannot be reached
+	 */
+	public int[] planPath(PathPlanner planner, int x1, int y1, int heading, int x2, int y2) {
+		return planner.plan(islandMap, x1, y1, heading, x2, y2);
+	}
+
+	/**
+	 * @param ourTunnel whether to return the orientation of our tunnel or the opponent's
+	 * @return orientation of the tunnel
+	 */
+	public int getTunnelOrientation(boolean ourTunnel) {
+		return orientations[ourTunnel ? OUR : OPPONENT];
+	}
+
+	/**
+	 * @return packed intersection one tile out of our tunnel on the island, where the robot goes after crossing it
+	 */
+	public int getTunnelExit() {
+		return tunnelExit;
+	}
+
+	/**
+	 * @return coordinates of the intersections the robot cannot travel on within the island: {tunnel1, tunnel2,
+	 *         opp_tunnel1, opp_tunnel2, tree, opp_tree}, where each element is a coordinate pair {x, y}
+	 */
+	public int[][] getObstacles() {
+		int[][] obstacles = new int[6][];
+		for (int t = OUR; t <= OPPONENT; t++) {
+			for (int i = 0; i < 2; i++) {
+				obstacles[2 * t + i] = new int[] { PathPlanner.getX(tunnelEnds[t][i]), PathPlanner.getY(tunnelEnds[t][i]) };
+			}
+			obstacles[4 + t] = trees[t].clone();
+		}
+		return obstacles;
+	}
+
+	/**
+	 * Returns the walls the ultrasonic sensor can see: the edges of the field, the two long walls of each tunnel
+	 * and the four faces of each tree
+	 *
+	 * @return segments {x1, y1, x2, y2} in cm
+	 */
+	public double[][] getWalls() {
+		double tile = RingChallenge.TILE_SIZE;
+		double w = (width - 1) * tile, h = (height - 1) * tile;
+		double[][] walls = new double[4 + 2 * 2 + 2 * 4][];
+		int n = 0;
+		walls[n++] = new double[] { 0, 0, w, 0 };
+		walls[n++] = new double[] { w, 0, w, h };
+		walls[n++] = new double[] { w, h, 0, h };
+		walls[n++] = new double[] { 0, h, 0, 0 };
+		for (int t = OUR; t <= OPPONENT; t++) {
+			double x1 = Math.min(tunnels[t][0], tunnels[t][2]) * tile, x2 = Math.max(tunnels[t][0], tunnels[t][2]) * tile;
+			double y1 = Math.min(tunnels[t][1], tunnels[t][3]) * tile, y2 = Math.max(tunnels[t][1], tunnels[t][3]) * tile;
+			if (y2 - y1 > x2 - x1) {	//vertical tunnel
+				walls[n++] = new double[] { x1 + TUNNEL_WALL_INSET, y1, x1 + TUNNEL_WALL_INSET, y2 };
+				walls[n++] = new double[] { x2 - TUNNEL_WALL_INSET, y1, x2 - TUNNEL_WALL_INSET, y2 };
+			} else {
+				walls[n++] = new double[] { x1, y1 + TUNNEL_WALL_INSET, x2, y1 + TUNNEL_WALL_INSET };
+				walls[n++] = new double[] { x1, y2 - TUNNEL_WALL_INSET, x2, y2 - TUNNEL_WALL_INSET };
+			}
+			double cx = trees[t][0] * tile, cy = trees[t][1] * tile, r = TREE_HALF_WIDTH;
+			walls[n++] = new double[] { cx - r, cy - r, cx + r, cy - r };
+			walls[n++] = new double[] { cx + r, cy - r, cx + r, cy + r };
+			walls[n++] = new double[] { cx + r, cy + r, cx - r, cy + r };
+			walls[n++] = new double[] { cx - r, cy + r, cx - r, cy - r };
+		}
+		return walls;
+	}
+
+	/**
+	 * @param side side of our tree
+	 * @return packed intersection one tile away from the side of our tree
+	 */
+	public int getSideCoordinates(int side) {
+		return sideCoordinates[side];
+	}
+
+	/**
+	 * @param side side of our tree
+	 * @return whether the intersection in front of the side is on the island and free
+	 */
+	public boolean isSideAvailable(int side) {
+		return side >= 1 && side <= 4 && (availableSides & (1 << side)) != 0;
+	}
+
+	/**
+	 * @return available sides of our tree, in order
+	 */
+	public ArrayList<Integer> getAvailableSides() {
+		ArrayList<Integer> sides = new ArrayList<Integer>();
+		for (int side = 1; side <= 4; side++) {
+			if (isSideAvailable(side))
+				sides.add(side);
+		}
+		return sides;
+	}
+}
@@ -0,0 +1,103 @@
+package ca.mcgill.ecse211.planning;
+
+/**
+ * This class is an occupancy map of the grid intersections of the field, stored as a bitset: one bit per
+ * intersection, set if the robot cannot travel on it. Intersection (x, y) is cell y * width + x.
+ *
+ * @author Matthew
+ *
+ */
+public class GridMap {
+
+	private final int width;
+	private final int height;
+	private final long[] blocked;
+
+	/**
+	 * Constructor for the GridMap class. Every intersection starts free.
+	 *
+	 * @param width number of intersections along x
+	 * @param height number of intersections along y
+	 */
+	public GridMap(int width, int height) {
+		if (width <= 0 || height <= 0)
+			throw new IllegalArgumentException("Invalid grid size " + width + "x" + height);
+		this.width = width;
+		this.height = height;
+		this.blocked = new long[(width * height + 63) >> 6];
+	}
+
+	/**
+	 * Marks an intersection as blocked or free. Intersections outside the grid are ignored.
+	 *
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @param isBlocked whether the robot cannot travel on the intersection
+	 */
+	public void setBlocked(int x, int y, boolean isBlocked) {
+		if (!contains(x, y))
+			return;
+		int cell = y * width + x;
+		if (isBlocked)
+			blocked[cell >> 6] |= 1L << cell;
+		else
+			blocked[cell >> 6] &= ~(1L << cell);
+	}
+
+	/**
+	 * Marks every intersection of a rectangle, bounds included, as blocked or free
+	 *
+	 * @param llX lower left x grid coordinate
+	 * @param llY lower left y grid coordinate
+	 * @param urX upper right x grid coordinate
+	 * @param urY upper right y grid coordinate
+	 * @param isBlocked whether the robot cannot travel on the intersections
+	 */
+	public void setBlocked(int llX, int llY, int urX, int urY, boolean isBlocked) {
+		for (int y = llY; y <= urY; y++) {
+			for (int x = llX; x <= urX; x++) {
+				setBlocked(x, y, isBlocked);
+			}
+		}
+	}
+
+	/**
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @return whether the robot cannot travel on the intersection; intersections outside the grid are blocked
+	 */
+	public boolean isBlocked(int x, int y) {
+		return !contains(x, y) || isBlocked(y * width + x);
+	}
+
+	/**
+	 * @param cell index of an intersection in the grid
+	 * @return whether the robot cannot travel on the intersection
+	 */
+	public boolean isBlocked(int cell) {
+		return (blocked[cell >> 6] & (1L << cell)) != 0;
+	}
+
+	/**
+	 * @param x x grid coordinate
+	 * @param y y grid coordinate
+	 * @return whether the intersection is in the grid
+	 */
+	public boolean contains(int x, int y) {
+		return x >= 0 && y >= 0 && x < width && y < height;
+	}
+
+	/**
+	 * @return number of intersections along x
+	 */
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @return number of intersections along y
+	 */
+	public int getHeight() {
+		return height;
+	}
+}
@@ -0,0 +1,333 @@
+package ca.mcgill.ecse211.planning;
+
+import java.util.Arrays;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.localization.Navigation;
+
+/**
+ * This class finds the fastest path between two grid intersections with A*. Navigation.travelTo stops and
+ * turns in place before every leg, so the search runs over (intersection, heading) states: driving to the
+ * next intersection costs the time of one tile, and turning costs the time of a 90 or 180 degree turn. The
+ * heuristic is the exact cost on an empty grid, so the first path found is the fastest one.
+ * <p>
+ * All the search memory is allocated by the constructor and reused by every query, and the path is returned
+ * as a packed int[] (see pack, getX and getY). A planner is not thread safe.
+ *
+ * @author Matthew
+ *
+ */
+public class PathPlanner {
+
+	public static final int UNKNOWN_HEADING = -1;
+	public static final int MOVE_OVERHEAD = 100;	//ms lost between the end of a rotate and the start of the next
+
+	//headings: 0 = up, 1 = right, 2 = down, 3 = left
+	private static final int[] DX = { 0, 1, 0, -1 };
+	private static final int[] DY = { 1, 0, -1, 0 };
+
+	private final int width;
+	private final int height;
+	private final int tileCost;
+	private final int turnCost;
+	private final int uTurnCost;
+	private boolean useHeuristic = true;
+
+	//search state, indexed by cell * 4 + heading; only valid where stamp == search
+	private final int[] cost;
+	private final int[] parent;
+	private final int[] heapIndex;	//position in the heap, -1 once expanded
+	private final int[] stamp;
+	private int search = 0;
+
+	//binary min-heap of states, keyed on cost + heuristic
+	private final int[] heap;
+	private final int[] heapKey;
+	private int heapSize;
+
+	private int lastCost = -1;
+	private int lastExpanded = 0;
+
+	/**
+	 * Constructor for the PathPlanner class
+	 *
+	 * @param width number of intersections along x
+	 * @param height number of intersections along y
+	 * @param tileCost time to drive one tile (ms)
+	 * @param turnCost time to turn 90 degrees in place (ms)
+	 * @param uTurnCost time to turn 180 degrees in place (ms)
+	 */
+	public PathPlanner(int width, int height, int tileCost, int turnCost, int uTurnCost) {
+		if (tileCost <= 0 || turnCost < 0 || uTurnCost < 0)
+			throw new IllegalArgumentException("Invalid costs");
+		this.width = width;
+		this.height = height;
+		this.tileCost = tileCost;
+		this.turnCost = turnCost;
+		this.uTurnCost = Math.max(turnCost, Math.min(uTurnCost, 2 * turnCost));	//two 90 degree turns are never worse
+		int states = width * height * 4;
+		cost = new int[states];
+		parent = new int[states];
+		heapIndex = new int[states];
+		stamp = new int[states];
+		heap = new int[states];
+		heapKey = new int[states];
+	}
+
+	/**
+	 * Creates a planner for the game field, with costs computed from the speed profiles Navigation uses to
+	 * travel and turn
+	 *
+	 * @return the planner
+	 */
+	public static PathPlanner createDefault() {
+		return new PathPlanner(RingChallenge.GAME_GRID_X + 1, RingChallenge.GAME_GRID_Y + 1,
+				Navigation.getTravelTime(RingChallenge.TILE_SIZE, true) + MOVE_OVERHEAD,
+				Navigation.getTurnTime(90) + MOVE_OVERHEAD, Navigation.getTurnTime(180) + MOVE_OVERHEAD);
+	}
+
+	/**
+	 * Finds the fastest path from one intersection to another. The start intersection may be blocked (the robot
+	 * is already on it).
+	 *
+	 * @param map occupancy map, of the size of the planner
+	 * @param x1 starting x coordinate
+	 * @param y1 starting y coordinate
+	 * @param heading heading of the robot at the start (0 = up, 1 = right, 2 = down, 3 = left), or
+	 *        UNKNOWN_HEADING for a free first turn
+	 * @param x2 destination x coordinate
+	 * @param y2 destination y coordinate
+	 * @return packed intersections to travel to in order, excluding the start; empty if the robot is already at
+	 *         the destination, null if the destination cannot be reached
+	 */
+	public int[] plan(GridMap map, int x1, int y1, int heading, int x2, int y2) {
+		if (map.getWidth() != width || map.getHeight() != height)
+			throw new IllegalArgumentException("Map is not " + width + "x" + height);
+		lastExpanded = 0;
+		lastCost = -1;
+		if (!map.contains(x1, y1) || map.isBlocked(x2, y2)) {
+			if (x1 == x2 && y1 == y2) {
+				lastCost = 0;
+				return new int[0];
+			}
+			return null;
+		}
+
+		if (++search == 0) {	//stamps wrapped around, forget every old search
+			Arrays.fill(stamp, 0);
+			search = 1;
+		}
+		heapSize = 0;
+		int start = y1 * width + x1;
+		for (int h = 0; h < 4; h++) {
+			if (heading == UNKNOWN_HEADING || h == heading)
+				relax(start * 4 + h, -1, 0, x2, y2);
+		}
+
+		int goal = y2 * width + x2;
+		while (heapSize > 0) {
+			int state = pop();
+			lastExpanded++;
+			int cell = state >> 2, h = state & 3;
+			int g = cost[state];
+			if (cell == goal) {
+				lastCost = g;
+				return buildPath(state);
+			}
+
+			int x = cell % width + DX[h], y = cell / width + DY[h];
+			if (x >= 0 && y >= 0 && x < width && y < height && !map.isBlocked(y * width + x))
+				relax((y * width + x) * 4 + h, state, g + tileCost, x2, y2);
+			relax(cell * 4 + ((h + 1) & 3), state, g + turnCost, x2, y2);
+			relax(cell * 4 + ((h + 3) & 3), state, g + turnCost, x2, y2);
+			relax(cell * 4 + ((h + 2) & 3), state, g + uTurnCost, x2, y2);
+		}
+		return null;
+	}
+
+	/**
+	 * Records a cheaper way to reach a state and queues it
+	 */
+	private void relax(int state, int from, int g, int x2, int y2) {
+		if (stamp[state] == search) {
+			if (heapIndex[state] < 0 || g >= cost[state])
+				return;
+		} else {
+			stamp[state] = search;
+			heapIndex[state] = heapSize++;
+			heap[heapIndex[state]] = state;
+		}
+		cost[state] = g;
+		parent[state] = from;
+		heapKey[heapIndex[state]] = g + (useHeuristic ? getHeuristic(state, x2, y2) : 0);
+		siftUp(heapIndex[state]);
+	}
+
+	/**
+	 * Returns the time to reach the destination from a state if there were no obstacles, which is never more
+	 * than the real time
+	 */
+	private int getHeuristic(int state, int x2, int y2) {
+		int cell = state >> 2, h = state & 3;
+		int dx = x2 - cell % width, dy = y2 - cell / width;
+		int result = (Math.abs(dx) + Math.abs(dy)) * tileCost;
+		boolean alongX = dx * DX[h] > 0, alongY = dy * DY[h] > 0;
+		if (dx != 0 && dy != 0)
+			result += alongX || alongY ? turnCost : 2 * turnCost;
+		else if (dx != 0 || dy != 0) {
+			if (!alongX && !alongY)
+				result += (dx != 0 ? DX[h] != 0 : DY[h] != 0) ? uTurnCost : turnCost;
+		}
+		return result;
+	}
+
+	/**
+	 * Follows the parents of the goal state back to the start
+	 */
+	private int[] buildPath(int state) {
+		int length = 0;
+		for (int s = state; parent[s] >= 0; s = parent[s]) {
+			if (parent[s] >> 2 != s >> 2)
+				length++;
+		}
+		int[] path = new int[length];
+		for (int s = state; parent[s] >= 0; s = parent[s]) {
+			if (parent[s] >> 2 != s >> 2) {
+				int cell = s >> 2;
+				path[--length] = pack(cell % width, cell / width);
+			}
+		}
+		return path;
+	}
+
+	private int pop() {
+		int top = heap[0];
+		heapIndex[top] = -1;
+		if (--heapSize > 0) {
+			heap[0] = heap[heapSize];
+			heapKey[0] = heapKey[heapSize];
+			heapIndex[heap[0]] = 0;
+			siftDown(0);
+		}
+		return top;
+	}
+
+	private void siftUp(int i) {
+		int state = heap[i], key = heapKey[i];
+		while (i > 0) {
+			int up = (i - 1) >> 1;
+			if (heapKey[up] <= key)
+				break;
+			heap[i] = heap[up];
+			heapKey[i] = heapKey[up];
+			heapIndex[heap[i]] = i;
+			i = up;
+		}
+		heap[i] = state;
+		heapKey[i] = key;
+		heapIndex[state] = i;
+	}
+
+	private void siftDown(int i) {
+		int state = heap[i], key = heapKey[i];
+		while (true) {
+			int down = 2 * i + 1;
+			if (down >= heapSize)
+				break;
+			if (down + 1 < heapSize && heapKey[down + 1] < heapKey[down])
+				down++;
+			if (heapKey[down] >= key)
+				break;
+			heap[i] = heap[down];
+			heapKey[i] = heapKey[down];
+			heapIndex[heap[i]] = i;
+			i = down;
+		}
+		heap[i] = state;
+		heapKey[i] = key;
+		heapIndex[state] = i;
+	}
+
+	/**
+	 * Sets whether the search is guided by the heuristic (A*) or not (Dijkstra); both find the same cost
+	 *
+	 * @param useHeuristic
+	 */
+	public void setHeuristic(boolean useHeuristic) {
+		this.useHeuristic = useHeuristic;
+	}
+
+	/**
+	 * @return time of the last path found (ms), -1 if the last destination could not be reached
+	 */
+	public int getLastCost() {
+		return lastCost;
+	}
+
+	/**
+	 * @return number of states expanded by the last search
+	 */
+	public int getLastExpanded() {
+		return lastExpanded;
+	}
+
+	/**
+	 * Returns the time taken to follow a path with Navigation.travelTo, one intersection at a time, with the
+	 * costs of this planner
+	 *
+	 * @param x1 starting x coordinate
+	 * @param y1 starting y coordinate
+	 * @param heading heading of the robot at the start, or UNKNOWN_HEADING
+	 * @param path packed intersections
+	 * @return time to follow the path (ms)
+	 */
+	public int getCost(int x1, int y1, int heading, int[] path) {
+		int total = 0, x = x1, y = y1, h = heading;
+		for (int point : path) {
+			int nextX = getX(point), nextY = getY(point);
+			int nextH = nextX > x ? 1 : nextX < x ? 3 : nextY > y ? 0 : 2;
+			if (h != UNKNOWN_HEADING && nextH != h)
+				total += (nextH - h + 4) % 4 == 2 ? uTurnCost : turnCost;
+			total += (Math.abs(nextX - x) + Math.abs(nextY - y)) * tileCost;
+			x = nextX;
+			y = nextY;
+			h = nextH;
+		}
+		return total;
+	}
+
+	/**
+	 * Converts an odometer heading to the closest grid heading
+	 *
+	 * @param theta heading in degrees, clockwise from the y axis
+	 * @return 0 = up, 1 = right, 2 = down, 3 = left
+	 */
+	public static int getHeading(double theta) {
+		return (int) Math.round(((theta % 360) + 360) / 90) % 4;
+	}
+
+	/**
+	 * @param x x grid coordinate, 0 to 65535
+	 * @param y y grid coordinate, 0 to 65535
+	 * @return both coordinates in one int
+	 */
+	public static int pack(int x, int y) {
+		return (x << 16) | y;
+	}
+
+	/**
+	 * @param point packed intersection
+	 * @return x grid coordinate
+	 */
+	public static int getX(int point) {
+		return point >>> 16;
+	}
+
+	/**
+	 * @param point packed intersection
+	 * @return y grid coordinate
+	 */
+	public static int getY(int point) {
+		return point & 0xFFFF;
+	}
+}
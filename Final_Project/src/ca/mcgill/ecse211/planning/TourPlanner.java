@@ -0,0 +1,148 @@
+package ca.mcgill.ecse211.planning;
+
+import java.util.List;
+
+/**
+ * This class chooses the order in which to search the sides of our tree. It tries every order of every subset of
+ * the available sides (at most 64 with four sides), and keeps the one that searches the most sides the robot can
+ * still carry rings from, then the one that takes the least time, counting the trip back to the tunnel. An order
+ * is only kept if it fits in the time left. The plan is redone after each side, so a side without a ring does not
+ * use up a place in the arm.
+ * <p>
+ * Travel times come from a matrix between nodes: START (where the robot is), sides 1 to 4, and TUNNEL.
+ *
+ * @author Matthew
+ *
+ */
+public class TourPlanner {
+
+	public static final int START = 0;
+	public static final int TUNNEL = 5;
+	public static final int NODES = 6;
+	public static final int UNREACHABLE = -1;
+
+	private final int searchTime;
+
+	private final int[] order = new int[4];
+	private final int[] bestOrder = new int[4];
+	private int bestLength;
+	private int bestTime;
+	private final boolean[] used = new boolean[NODES];
+
+	/**
+	 * Constructor for the TourPlanner class
+	 *
+	 * @param searchTime time to search one side of the tree (ms)
+	 */
+	public TourPlanner(int searchTime) {
+		this.searchTime = searchTime;
+	}
+
+	/**
+	 * Computes the travel times between the robot, the sides of our tree and the tunnel with a path planner
+	 *
+	 * @param arena map of the field
+	 * @param planner path planner of the size of the field
+	 * @param x x grid coordinate of the robot
+	 * @param y y grid coordinate of the robot
+	 * @param heading heading of the robot, or PathPlanner.UNKNOWN_HEADING
+	 * @param tunnelX x grid coordinate of the intersection to return to
+	 * @param tunnelY y grid coordinate of the intersection to return to
+	 * @return travel times (ms) from each node to each node, UNREACHABLE if there is no path
+	 */
+	public static int[][] getTravelTimes(ArenaModel arena, PathPlanner planner, int x, int y, int heading, int tunnelX,
+			int tunnelY) {
+		int[] nodes = new int[NODES];
+		nodes[START] = PathPlanner.pack(x, y);
+		for (int side = 1; side <= 4; side++) {
+			nodes[side] = arena.getSideCoordinates(side);
+		}
+		nodes[TUNNEL] = PathPlanner.pack(tunnelX, tunnelY);
+
+		int[][] times = new int[NODES][NODES];
+		for (int from = START; from < TUNNEL; from++) {
+			//after searching a side, the robot faces the tree: side 1 (north) faces down, side 2 (east) faces left...
+			int fromHeading = from == START ? heading : (from + 1) % 4;
+			for (int to = 1; to < NODES; to++) {
+				if (to == from || (from != START && !arena.isSideAvailable(from))
+						|| (to != TUNNEL && !arena.isSideAvailable(to))) {
+					times[from][to] = to == from ? 0 : UNREACHABLE;
+					continue;
+				}
+				int[] path = arena.planPath(planner, PathPlanner.getX(nodes[from]), PathPlanner.getY(nodes[from]),
+						fromHeading, PathPlanner.getX(nodes[to]), PathPlanner.getY(nodes[to]));
+				times[from][to] = path == null ? UNREACHABLE : planner.getLastCost();
+			}
+		}
+		times[TUNNEL][TUNNEL] = 0;
+		return times;
+	}
+
+	/**
+	 * Finds the best order in which to search the remaining sides
+	 *
+	 * @param times travel times between nodes (ms), see getTravelTimes
+	 * @param sides sides that have not been searched yet
+	 * @param capacity number of rings the robot can still carry
+	 * @param budget time left to search and get back to the tunnel (ms)
+	 * @return next side to search, or -1 if no side can be searched and the robot should go back
+	 */
+	public int plan(int[][] times, List<Integer> sides, int capacity, int budget) {
+		bestLength = 0;
+		bestTime = times[START][TUNNEL] == UNREACHABLE ? Integer.MAX_VALUE : times[START][TUNNEL];
+		for (int node = 0; node < NODES; node++) {
+			used[node] = node == START || node == TUNNEL || !sides.contains(node);
+		}
+		search(times, START, 0, 0, Math.min(capacity, 4), budget);
+		return bestLength == 0 ? -1 : bestOrder[0];
+	}
+
+	/**
+	 * Extends the current order with every side not used yet, and records the current order if it is the best
+	 */
+	private void search(int[][] times, int node, int length, int time, int capacity, int budget) {
+		if (length > 0 && times[node][TUNNEL] != UNREACHABLE) {
+			int total = time + times[node][TUNNEL];
+			if (total <= budget && (length > bestLength || (length == bestLength && total < bestTime))) {
+				bestLength = length;
+				bestTime = total;
+				System.arraycopy(order, 0, bestOrder, 0, length);
+			}
+		}
+		if (length == capacity)
+			return;
+		for (int side = 1; side <= 4; side++) {
+			if (used[side] || times[node][side] == UNREACHABLE)
+				continue;
+			int next = time + times[node][side] + searchTime;
+			if (next > budget)
+				continue;
+			used[side] = true;
+			order[length] = side;
+			search(times, side, length + 1, next, capacity, budget);
+			used[side] = false;
+		}
+	}
+
+	/**
+	 * @return number of sides in the last plan
+	 */
+	public int getLength() {
+		return bestLength;
+	}
+
+	/**
+	 * @param i position in the last plan
+	 * @return side to search at that position
+	 */
+	public int getSide(int i) {
+		return bestOrder[i];
+	}
+
+	/**
+	 * @return time to follow the last plan and get back to the tunnel (ms)
+	 */
+	public int getTime() {
+		return bestTime;
+	}
+}
@@ -0,0 +1,57 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This interface is the source of time for the game: time stamps of sensor samples and odometer updates,
+ * timers, and every wait of the game thread. The robot uses the system clock; the simulator uses a virtual
+ * clock so that a game runs much faster than real time. The clock in use is set in TaskScheduler.
+ * 
+ * @author Matthew
+ *
+ */
+public interface Clock {
+
+	/**
+	 * @return current time in ns, only meaningful relative to other values of the same clock
+	 */
+	public long nanoTime();
+
+	/**
+	 * @return current time in ms
+	 */
+	public long currentTimeMillis();
+
+	/**
+	 * Waits for the given time
+	 * 
+	 * @param millis time to wait in ms
+	 * @throws InterruptedException
+	 */
+	public void sleep(long millis) throws InterruptedException;
+
+	/**
+	 * Waits until an absolute time
+	 * 
+	 * @param nanoTime nanoTime() to wait for; returns at once if it has passed
+	 * @throws InterruptedException
+	 */
+	public void sleepUntil(long nanoTime) throws InterruptedException;
+
+	/**
+	 * Waits until the condition is met
+	 * 
+	 * @param condition condition to wait for
+	 * @throws InterruptedException
+	 */
+	public void waitFor(Condition condition) throws InterruptedException;
+
+	/**
+	 * Waits until the condition is met or the timeout elapses
+	 * 
+	 * @param condition condition to wait for
+	 * @param timeout maximum time to wait in ms; the condition is only checked once if it is not positive
+	 * @return whether the condition was met
+	 * @throws InterruptedException
+	 */
+	public boolean waitFor(Condition condition, long timeout) throws InterruptedException;
+
+}
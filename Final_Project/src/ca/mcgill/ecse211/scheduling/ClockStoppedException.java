@@ -0,0 +1,17 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This exception is thrown from a wait on a virtual clock once the clock is stopped, i.e. when the
+ * simulated game is over, so that the game thread unwinds from whatever it was waiting for.
+ * 
+ * @author Matthew
+ *
+ */
+@SuppressWarnings("serial")
+public class ClockStoppedException extends RuntimeException {
+
+	public ClockStoppedException(String message) {
+		super(message);
+	}
+
+}
@@ -0,0 +1,17 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This interface represents something a thread can wait for with Clock.waitFor, such as a motor
+ * reaching its target or a localization routine finishing
+ * 
+ * @author Matthew
+ *
+ */
+public interface Condition {
+
+	/**
+	 * @return whether the condition currently holds
+	 */
+	public boolean isMet();
+
+}
@@ -0,0 +1,85 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This class replaces the odometer and poller threads with a single time-triggered loop. Every tick, the
+ * tasks added to it are run in the order they were added, so the odometer can integrate the latest tacho
+ * counts before the sensors are fetched and their users (e.g. odometry correction) are dispatched. Each task
+ * runs every divisor ticks and is skipped while it is paused.
+ * <p>
+ * The tasks are the same PeriodicTask objects that the threaded mode runs on their own threads, so both
+ * modes can be compared without changing the odometer or the pollers.
+ * 
+ * @author Matthew
+ *
+ */
+public class CyclicExecutive implements Runnable {
+
+	private final PeriodicTask task;
+
+	private PeriodicTask[] tasks = new PeriodicTask[0];
+	private int[] divisors = new int[0];
+	private long tick = 0;
+
+	/**
+	 * Constructor for the CyclicExecutive class
+	 * 
+	 * @param basePeriod length of a tick in ms
+	 */
+	public CyclicExecutive(long basePeriod) {
+		this.task = TaskScheduler.createTask("cyclic executive", basePeriod, OverrunPolicy.SKIP, false, new Runnable() {
+			public void run() {
+				tick();
+			}
+		});
+	}
+
+	/**
+	 * Adds a task to the end of the tick. Must be called before the executive is started.
+	 * 
+	 * @param periodicTask task to run
+	 * @param divisor the task runs once every divisor ticks
+	 */
+	public void add(PeriodicTask periodicTask, int divisor) {
+		PeriodicTask[] newTasks = new PeriodicTask[tasks.length + 1];
+		int[] newDivisors = new int[divisors.length + 1];
+		System.arraycopy(tasks, 0, newTasks, 0, tasks.length);
+		System.arraycopy(divisors, 0, newDivisors, 0, divisors.length);
+		newTasks[tasks.length] = periodicTask;
+		newDivisors[divisors.length] = divisor;
+		tasks = newTasks;
+		divisors = newDivisors;
+	}
+
+	/**
+	 * Runs the executive until it is stopped or its thread is interrupted
+	 */
+	public void run() {
+		task.run();
+	}
+
+	/**
+	 * Stops the executive; its run method returns after the current tick
+	 */
+	public void stop() {
+		task.stop();
+	}
+
+	/**
+	 * @return the periodic task releasing the ticks, for timing statistics
+	 */
+	public PeriodicTask getTask() {
+		return task;
+	}
+
+	/**
+	 * Runs every task that is due this tick, in order. Called by the executive's own task, or by a
+	 * virtual clock at each of its ticks when the game is simulated.
+	 */
+	public void tick() {
+		for (int i = 0; i < tasks.length; i++) {
+			if (tick % divisors[i] == 0 && !tasks[i].isPaused())
+				tasks[i].execute();
+		}
+		tick++;
+	}
+}
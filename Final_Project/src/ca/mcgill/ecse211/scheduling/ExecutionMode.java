@@ -0,0 +1,14 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This enum documents how the odometer and the sensor pollers are executed
+ * 
+ * @author Matthew
+ *
+ */
+public enum ExecutionMode {
+
+	THREADED,	//each poller and the odometer run on their own thread with their own period
+	CYCLIC;	//a single cyclic executive runs the odometer then the pollers in order every tick
+	
+}
@@ -0,0 +1,73 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This class accumulates latency measurements, such as the time between the moment a sensor sample is
+ * fetched and the moment the odometer is corrected with it, so that execution modes can be compared.
+ * Measurements are recorded by a single thread and can be read from any thread.
+ * 
+ * @author Matthew
+ *
+ */
+public class LatencyMonitor {
+
+	private final String name;
+
+	private volatile long count = 0;
+	private volatile long total = 0;	//ns
+	private volatile long worst = 0;	//ns
+
+	/**
+	 * Constructor for the LatencyMonitor class. Monitors are created through TaskScheduler.createLatencyMonitor.
+	 * 
+	 * @param name name of the measured latency, used in statistics
+	 */
+	LatencyMonitor(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Records one measurement
+	 * 
+	 * @param latency latency in ns
+	 */
+	public void record(long latency) {
+		total += latency;
+		if (latency > worst)
+			worst = latency;
+		count++;
+	}
+
+	/**
+	 * @return name of the measured latency
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return number of measurements
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return average latency in ns
+	 */
+	public long getMeanLatency() {
+		long n = count;
+		return n == 0 ? 0 : total / n;
+	}
+
+	/**
+	 * @return largest latency in ns
+	 */
+	public long getWorstLatency() {
+		return worst;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + count + " samples, mean " + getMeanLatency() / 1000 + " us, max " + worst / 1000 + " us";
+	}
+}
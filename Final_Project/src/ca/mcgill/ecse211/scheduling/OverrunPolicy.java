@@ -0,0 +1,14 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This enum documents what a periodic task does when a cycle finishes after the next release time
+ * 
+ * @author Matthew
+ *
+ */
+public enum OverrunPolicy {
+
+	CATCH_UP,	//run the late cycles back to back until the task is on schedule again
+	SKIP;	//drop the missed releases and resume at the next release time in the future
+	
+}
@@ -0,0 +1,259 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This class runs a piece of work at a fixed rate. Release times are absolute deadlines on the clock of
+ * TaskScheduler (deadline += period every cycle), so the schedule does not drift when cycles take a variable amount
+ * of time. Overruns are counted and handled according to an OverrunPolicy, and the release jitter and execution time
+ * of every cycle are recorded. A paused task parks its thread until it is resumed instead of waking up every period.
+ * <p>
+ * The execution time is the processor time of the body, so it is measured with System.nanoTime() whatever the
+ * clock. A VirtualClock is driven by a single thread, so with it the task is not run on its own thread but by a
+ * cyclic executive ticked by the clock (see execute()).
+ * 
+ * @author Matthew
+ *
+ */
+public class PeriodicTask implements Runnable {
+
+	private static final int MAX_BACKLOG = 4;	//most late cycles run back to back when catching up
+
+	private final String name;
+	private final long period;	//ns
+	private final OverrunPolicy policy;
+	private final Runnable body;
+
+	private volatile boolean paused;
+	private volatile boolean stopped = false;
+	private final Object pauseLock = new Object();
+
+	//statistics, only written by the thread running the task
+	private volatile long cycles = 0;
+	private volatile long overruns = 0;
+	private volatile long skipped = 0;
+	private volatile long worstExecution = 0;	//ns
+	private volatile long worstJitter = 0;	//ns
+	private volatile long totalJitter = 0;	//ns
+
+	/**
+	 * Constructor for the PeriodicTask class. Tasks are created through TaskScheduler.createTask.
+	 * 
+	 * @param name name of the task, used in statistics
+	 * @param period period of the task in ms
+	 * @param policy what to do when a cycle overruns the next release time
+	 * @param paused whether the task starts paused
+	 * @param body work done every cycle
+	 */
+	PeriodicTask(String name, long period, OverrunPolicy policy, boolean paused, Runnable body) {
+		this.name = name;
+		this.period = period * 1000000;
+		this.policy = policy;
+		this.paused = paused;
+		this.body = body;
+	}
+
+	/**
+	 * Runs the body once per period until the task is stopped or its thread is interrupted
+	 */
+	public void run() {
+		Clock clock = TaskScheduler.getClock();
+		long deadline = clock.nanoTime();
+		long release, end, late;
+
+		while (!stopped) {
+			if (paused) {
+				if (!park())
+					return;
+				deadline = clock.nanoTime();	//restart the schedule from the moment the task is resumed
+			}
+
+			release = clock.nanoTime();
+			recordJitter(release - deadline);
+
+			end = execute(clock);
+
+			deadline += period;
+			late = end - deadline;
+			if (late > 0) {	//this cycle finished after the next release time
+				overruns++;
+				if (policy == OverrunPolicy.SKIP || late > MAX_BACKLOG * period) {
+					long missed = late / period + 1;
+					skipped += missed;
+					deadline += missed * period;
+				}
+			}
+
+			if (!sleepUntil(clock, deadline))
+				return;
+		}
+	}
+
+	/**
+	 * Runs the body once from the calling thread and records its execution time. Used by the cyclic
+	 * executive, which releases the task itself instead of running it on its own thread.
+	 */
+	void execute() {
+		execute(TaskScheduler.getClock());
+	}
+
+	/**
+	 * Runs the body once and records its execution time
+	 * 
+	 * @param clock clock of the schedule
+	 * @return clock nanoTime() at which the cycle ended
+	 */
+	private long execute(Clock clock) {
+		long start = System.nanoTime();
+		body.run();
+
+		long execution = System.nanoTime() - start;
+		if (execution > worstExecution)
+			worstExecution = execution;
+		cycles++;
+		return clock.nanoTime();
+	}
+
+	/**
+	 * Pauses the task. The current cycle, if any, completes first.
+	 */
+	public void pause() {
+		paused = true;
+	}
+
+	/**
+	 * Unpauses the task
+	 */
+	public void unpause() {
+		synchronized (pauseLock) {
+			paused = false;
+			pauseLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Stops the task for good; its run method returns after the current cycle
+	 */
+	public void stop() {
+		synchronized (pauseLock) {
+			stopped = true;
+			pauseLock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return whether the task is paused
+	 */
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * @return name of the task
+	 */
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return period of the task in ms
+	 */
+	public long getPeriod() {
+		return period / 1000000;
+	}
+
+	/**
+	 * @return number of cycles executed so far
+	 */
+	public long getCycles() {
+		return cycles;
+	}
+
+	/**
+	 * @return number of cycles that finished after the next release time
+	 */
+	public long getOverruns() {
+		return overruns;
+	}
+
+	/**
+	 * @return number of releases dropped because of overruns
+	 */
+	public long getSkipped() {
+		return skipped;
+	}
+
+	/**
+	 * @return longest execution time of a single cycle in ns
+	 */
+	public long getWorstExecutionTime() {
+		return worstExecution;
+	}
+
+	/**
+	 * @return largest delay between a release time and the actual start of the cycle in ns
+	 */
+	public long getWorstJitter() {
+		return worstJitter;
+	}
+
+	/**
+	 * @return average delay between a release time and the actual start of the cycle in ns
+	 */
+	public long getMeanJitter() {
+		long n = cycles;
+		return n == 0 ? 0 : totalJitter / n;
+	}
+
+	/**
+	 * Records the delay between a release time and the start of the cycle
+	 * 
+	 * @param jitter delay in ns
+	 */
+	private void recordJitter(long jitter) {
+		if (jitter < 0)
+			jitter = 0;
+		totalJitter += jitter;
+		if (jitter > worstJitter)
+			worstJitter = jitter;
+	}
+
+	/**
+	 * Blocks the calling thread while the task is paused
+	 * 
+	 * @return false if the task was stopped or interrupted
+	 */
+	private boolean park() {
+		synchronized (pauseLock) {
+			while (paused && !stopped) {
+				try {
+					pauseLock.wait();
+				} catch (InterruptedException e) {
+					return false;	//end thread
+				}
+			}
+		}
+		return !stopped;
+	}
+
+	/**
+	 * Sleeps until an absolute deadline
+	 * 
+	 * @param clock clock of the schedule
+	 * @param deadline clock nanoTime() to wake up at
+	 * @return false if the thread was interrupted
+	 */
+	private boolean sleepUntil(Clock clock, long deadline) {
+		try {
+			clock.sleepUntil(deadline);
+		} catch (InterruptedException e) {
+			return false;	//end thread
+		}
+		return true;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": period " + getPeriod() + " ms, " + cycles + " cycles, " + overruns + " overruns, "
+				+ skipped + " skipped, wcet " + worstExecution / 1000 + " us, jitter mean "
+				+ getMeanJitter() / 1000 + " us max " + worstJitter / 1000 + " us";
+	}
+}
@@ -0,0 +1,54 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This class is the real-time clock used on the robot. Conditions are waited for by checking them
+ * every POLL_INTERVAL, which keeps the waiting thread from spinning on a core the pollers need.
+ * 
+ * @author Matthew
+ *
+ */
+public class SystemClock implements Clock {
+
+	private static final long POLL_INTERVAL = 2;	//ms
+
+	@Override
+	public long nanoTime() {
+		return System.nanoTime();
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return System.currentTimeMillis();
+	}
+
+	@Override
+	public void sleep(long millis) throws InterruptedException {
+		Thread.sleep(millis);
+	}
+
+	@Override
+	public void sleepUntil(long nanoTime) throws InterruptedException {
+		long remaining = nanoTime - System.nanoTime();
+		if (remaining > 0)
+			Thread.sleep(remaining / 1000000, (int) (remaining % 1000000));
+	}
+
+	@Override
+	public void waitFor(Condition condition) throws InterruptedException {
+		while (!condition.isMet()) {
+			Thread.sleep(POLL_INTERVAL);
+		}
+	}
+
+	@Override
+	public boolean waitFor(Condition condition, long timeout) throws InterruptedException {
+		long deadline = System.nanoTime() + timeout * 1000000L;
+		long remaining;
+		while (!condition.isMet()) {
+			if ((remaining = deadline - System.nanoTime()) <= 0)
+				return false;
+			Thread.sleep(Math.min(POLL_INTERVAL, (remaining + 999999) / 1000000));
+		}
+		return true;
+	}
+}
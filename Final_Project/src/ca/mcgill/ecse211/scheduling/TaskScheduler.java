@@ -0,0 +1,99 @@
+package ca.mcgill.ecse211.scheduling;
+
+import java.util.ArrayList;
+
+/**
+ * This class creates the periodic tasks used by the odometer and the sensor pollers and keeps track of
+ * all of them, so that their timing statistics (jitter, overruns, worst-case execution time) can be
+ * inspected from anywhere. It also holds the clock the game reads time from and waits on.
+ * 
+ * @author Matthew
+ *
+ */
+public class TaskScheduler {
+
+	private static ArrayList<PeriodicTask> tasks = new ArrayList<PeriodicTask>();
+	private static ArrayList<LatencyMonitor> latencyMonitors = new ArrayList<LatencyMonitor>();
+	private static volatile Clock clock = new SystemClock();
+
+	/**
+	 * @return the clock used for time stamps, timers and waits
+	 */
+	public static Clock getClock() {
+		return clock;
+	}
+
+	/**
+	 * Sets the clock used for time stamps, timers and waits. Must be called before anything is started.
+	 * 
+	 * @param clock new clock
+	 */
+	public static void setClock(Clock clock) {
+		TaskScheduler.clock = clock;
+	}
+
+	/**
+	 * Creates and registers a periodic task. The task is executed by calling its run method from the
+	 * thread that should execute it.
+	 * 
+	 * @param name name of the task, used in statistics
+	 * @param period period of the task in ms
+	 * @param policy what to do when a cycle overruns the next release time
+	 * @param paused whether the task starts paused
+	 * @param body work done every cycle
+	 * @return the new task
+	 */
+	public synchronized static PeriodicTask createTask(String name, long period, OverrunPolicy policy,
+			boolean paused, Runnable body) {
+		PeriodicTask task = new PeriodicTask(name, period, policy, paused, body);
+		tasks.add(task);
+		return task;
+	}
+
+	/**
+	 * Returns every task created so far
+	 * 
+	 * @return copy of the task list
+	 */
+	public synchronized static ArrayList<PeriodicTask> getTasks() {
+		return new ArrayList<PeriodicTask>(tasks);
+	}
+
+	/**
+	 * Creates and registers a latency monitor. If a monitor with the same name exists, it is returned instead,
+	 * so that objects created again (e.g. for every simulated game) add to the same statistics.
+	 * 
+	 * @param name name of the measured latency, used in statistics
+	 * @return the new or existing monitor
+	 */
+	public synchronized static LatencyMonitor createLatencyMonitor(String name) {
+		for (LatencyMonitor monitor : latencyMonitors) {
+			if (monitor.getName().equals(name))
+				return monitor;
+		}
+		LatencyMonitor monitor = new LatencyMonitor(name);
+		latencyMonitors.add(monitor);
+		return monitor;
+	}
+
+	/**
+	 * Returns every latency monitor created so far
+	 * 
+	 * @return copy of the monitor list
+	 */
+	public synchronized static ArrayList<LatencyMonitor> getLatencyMonitors() {
+		return new ArrayList<LatencyMonitor>(latencyMonitors);
+	}
+
+	/**
+	 * Prints the timing statistics of every task and latency monitor
+	 */
+	public static void printStatistics() {
+		for (PeriodicTask task : getTasks()) {
+			System.out.println(task);
+		}
+		for (LatencyMonitor monitor : getLatencyMonitors()) {
+			System.out.println(monitor);
+		}
+	}
+}
@@ -0,0 +1,134 @@
+package ca.mcgill.ecse211.scheduling;
+
+/**
+ * This class is a discrete-event clock for running the game faster than real time. Time only advances when the
+ * game thread waits: every wait jumps from one tick to the next, running the tick (typically the cyclic
+ * executive, which updates the odometer and dispatches sensor samples) at each one, until the awaited condition
+ * holds or the awaited time is reached. No thread ever sleeps, so a game takes as long as its computation.
+ * <p>
+ * The clock is driven by a single thread, so periodic tasks cannot run on threads of their own with it: in the
+ * simulator they are run by a cyclic executive ticked by the clock. It can be given a deadline and a stop condition; the first wait that
+ * would advance past the deadline, or start a tick once the stop condition holds, throws a ClockStoppedException.
+ *
+ * @author Matthew
+ *
+ */
+public class VirtualClock implements Clock {
+
+	private final long period;	//ns between ticks
+	private Runnable tick;
+
+	private long now = 0;	//ns
+	private long nextTick;
+	private long ticks = 0;
+
+	private long deadline = Long.MAX_VALUE;
+	private Condition stopCondition;
+
+	/**
+	 * Constructor for the VirtualClock class
+	 *
+	 * @param period time between ticks in ms
+	 */
+	public VirtualClock(long period) {
+		this.period = period * 1000000L;
+		this.nextTick = this.period;
+	}
+
+	/**
+	 * Sets the work done at every tick
+	 *
+	 * @param tick work done at every tick, or null
+	 */
+	public void setTick(Runnable tick) {
+		this.tick = tick;
+	}
+
+	/**
+	 * Sets when the clock stops
+	 *
+	 * @param deadline nanoTime() after which the clock stops, Long.MAX_VALUE for none
+	 * @param stopCondition condition after which the clock stops, or null
+	 */
+	public void stopAt(long deadline, Condition stopCondition) {
+		this.deadline = deadline;
+		this.stopCondition = stopCondition;
+	}
+
+	@Override
+	public long nanoTime() {
+		return now;
+	}
+
+	@Override
+	public long currentTimeMillis() {
+		return now / 1000000L;
+	}
+
+	@Override
+	public void sleep(long millis) {
+		advanceTo(now + millis * 1000000L);
+	}
+
+	@Override
+	public void sleepUntil(long nanoTime) {
+		if (nanoTime - now > 0)
+			advanceTo(nanoTime);
+	}
+
+	@Override
+	public void waitFor(Condition condition) {
+		while (!condition.isMet()) {
+			step();
+		}
+	}
+
+	@Override
+	public boolean waitFor(Condition condition, long timeout) {
+		long end = now + Math.max(0, timeout) * 1000000L;
+		while (!condition.isMet()) {
+			if (nextTick - end > 0) {
+				advanceTo(end);
+				return condition.isMet();
+			}
+			step();
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of ticks run so far
+	 */
+	public long getTicks() {
+		return ticks;
+	}
+
+	/**
+	 * Runs every tick up to the given time, then moves the time to it
+	 *
+	 * @param time nanoTime() to advance to
+	 */
+	private void advanceTo(long time) {
+		while (nextTick - time <= 0) {
+			step();
+		}
+		if (time - deadline > 0)
+			throw new ClockStoppedException("Deadline reached");
+		now = time;
+	}
+
+	/**
+	 * Advances to the next tick and runs it
+	 */
+	private void step() {
+		if (nextTick - deadline > 0)
+			throw new ClockStoppedException("Deadline reached");
+		if (stopCondition != null && stopCondition.isMet())
+			throw new ClockStoppedException("Stop condition met");
+		now = nextTick;
+		nextTick += period;
+		ticks++;
+		if (tick != null)
+			tick.run();
+	}
+}
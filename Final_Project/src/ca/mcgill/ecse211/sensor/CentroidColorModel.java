@@ -0,0 +1,99 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This class classifies colors by their distance to the mean normalized RGB value of each color. A color only
+ * matches if it is within the gate distance of its centroid, and the nearest matching centroid wins. Distances
+ * are compared squared, so classifying takes no square root.
+ * 
+ * @author Matthew
+ *
+ */
+public class CentroidColorModel implements ColorModel {
+
+	private int size = 0;
+	private int[] colors = new int[4];
+	private double[] r = new double[4];
+	private double[] g = new double[4];
+	private double[] b = new double[4];
+	private double[] gateSquared = new double[4];
+
+	/**
+	 * Adds a color to the model
+	 * 
+	 * @param color color number
+	 * @param meanR mean red value, normalized by this method
+	 * @param meanG mean green value
+	 * @param meanB mean blue value
+	 * @param gate maximum euclidean distance between a normalized sample and the centroid
+	 */
+	public void addColor(int color, double meanR, double meanG, double meanB, double gate) {
+		if (size == colors.length)
+			grow();
+		double norm = Math.sqrt(meanR * meanR + meanG * meanG + meanB * meanB);
+		colors[size] = color;
+		r[size] = meanR / norm;
+		g[size] = meanG / norm;
+		b[size] = meanB / norm;
+		gateSquared[size] = gate * gate;
+		size++;
+	}
+
+	/**
+	 * Classifies a color. The confidence falls linearly with the squared distance, from 1 at the centroid to 0
+	 * at the gate.
+	 */
+	@Override
+	public void classify(double sr, double sg, double sb, ColorResult result) {
+		int best = -1;
+		double bestDistance = 0;
+		for (int i = 0; i < size; i++) {
+			double dr = sr - r[i];
+			double dg = sg - g[i];
+			double db = sb - b[i];
+			double distance = dr * dr + dg * dg + db * db;
+			if (distance < gateSquared[i] && (best < 0 || distance < bestDistance)) {
+				best = i;
+				bestDistance = distance;
+			}
+		}
+		if (best < 0)
+			result.set(0, 0);
+		else
+			result.set(colors[best], 1 - bestDistance / gateSquared[best]);
+	}
+
+	@Override
+	public long fingerprint() {
+		long hash = ColorClassifier.mix(getClass().getName().hashCode(), size);
+		for (int i = 0; i < size; i++) {
+			hash = ColorClassifier.mix(hash, colors[i]);
+			hash = ColorClassifier.mix(hash, r[i]);
+			hash = ColorClassifier.mix(hash, g[i]);
+			hash = ColorClassifier.mix(hash, b[i]);
+			hash = ColorClassifier.mix(hash, gateSquared[i]);
+		}
+		return hash;
+	}
+
+	/**
+	 * Doubles the capacity of the model
+	 */
+	private void grow() {
+		int capacity = colors.length * 2;
+		int[] newColors = new int[capacity];
+		double[] newR = new double[capacity];
+		double[] newG = new double[capacity];
+		double[] newB = new double[capacity];
+		double[] newGate = new double[capacity];
+		System.arraycopy(colors, 0, newColors, 0, size);
+		System.arraycopy(r, 0, newR, 0, size);
+		System.arraycopy(g, 0, newG, 0, size);
+		System.arraycopy(b, 0, newB, 0, size);
+		System.arraycopy(gateSquared, 0, newGate, 0, size);
+		colors = newColors;
+		r = newR;
+		g = newG;
+		b = newB;
+		gateSquared = newGate;
+	}
+}
@@ -0,0 +1,226 @@
+package ca.mcgill.ecse211.sensor;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+
+import ca.mcgill.ecse211.math.Arithmetic;
+
+/**
+ * This class classifies RGB samples from the color sensor as ring colors. Each sample is normalized once and
+ * passed to a pluggable ColorModel (nearest centroid, Gaussian or k nearest neighbours), which writes the color
+ * and a confidence into a reusable ColorResult. The normalization uses doubles or FixedPoint (see Arithmetic).
+ * <p>
+ * Models are either created from the default calibration or loaded from a calibration file. Lines starting with
+ * # are comments, and the first line chooses the model:
+ * <pre>
+ * model centroid
+ * color &lt;color&gt; &lt;R&gt; &lt;G&gt; &lt;B&gt; &lt;gate&gt;
+ *
+ * model gaussian &lt;gate&gt;
+ * color &lt;color&gt; &lt;r&gt; &lt;g&gt; &lt;b&gt; &lt;rr&gt; &lt;rg&gt; &lt;rb&gt; &lt;gg&gt; &lt;gb&gt; &lt;bb&gt;
+ *
+ * model neighbours &lt;k&gt; &lt;gate&gt;
+ * sample &lt;color&gt; &lt;R&gt; &lt;G&gt; &lt;B&gt;
+ * </pre>
+ * Centroids and samples are raw sensor values, while Gaussian means and covariances are of normalized values.
+ * 
+ * @author Matthew
+ *
+ */
+public class ColorClassifier {
+
+	/**
+	 * Version of the classification code, part of the fingerprint. It must be increased whenever classify or a
+	 * model changes the color it gives to a sample, so that tables built by an older version are rebuilt.
+	 */
+	public static final int VERSION = 2;	//2: k-NN ties go to the nearest voter
+
+	private final ColorModel model;
+	private Arithmetic arithmetic = Arithmetic.DOUBLE;
+
+	/**
+	 * Constructor for the ColorClassifier class
+	 * 
+	 * @param model model used to classify normalized samples
+	 */
+	public ColorClassifier(ColorModel model) {
+		this.model = model;
+	}
+
+	/**
+	 * Classifies an RGB sample
+	 * 
+	 * @param r red value
+	 * @param g green value
+	 * @param b blue value
+	 * @param result result receiving the color and confidence
+	 * @return result
+	 */
+	public ColorResult classify(double r, double g, double b, ColorResult result) {
+		double inverseNorm = arithmetic.inverseNorm(r, g, b);
+		if (!(inverseNorm > 0)) {	//no light, or invalid sample
+			result.set(0, 0);
+			return result;
+		}
+		model.classify(r * inverseNorm, g * inverseNorm, b * inverseNorm, result);
+		return result;
+	}
+
+	/**
+	 * Sets how samples are normalized
+	 * 
+	 * @param arithmetic
+	 */
+	public void setArithmetic(Arithmetic arithmetic) {
+		this.arithmetic = arithmetic;
+	}
+
+	/**
+	 * Computes a fingerprint of the classifier: the code version, the arithmetic and the type and parameters of
+	 * the model. A ColorLookupTable stores the fingerprint of the classifier it was built from, so that a cached
+	 * table is only used by the same classifier.
+	 * 
+	 * @return fingerprint
+	 */
+	public long fingerprint() {
+		return mix(mix(model.fingerprint(), VERSION), arithmetic.ordinal());
+	}
+
+	/**
+	 * Mixes a value into a fingerprint
+	 * 
+	 * @param hash fingerprint so far
+	 * @param value value to add
+	 * @return new fingerprint
+	 */
+	static long mix(long hash, long value) {
+		hash = (hash ^ value) * 0x100000001B3L;	//FNV-1a prime, applied to whole values
+		return hash ^ (hash >>> 29);
+	}
+
+	/**
+	 * Mixes a value into a fingerprint
+	 * 
+	 * @param hash fingerprint so far
+	 * @param value value to add
+	 * @return new fingerprint
+	 */
+	static long mix(long hash, double value) {
+		return mix(hash, Double.doubleToLongBits(value));
+	}
+
+	/**
+	 * @return model used to classify samples
+	 */
+	public ColorModel getModel() {
+		return model;
+	}
+
+	/**
+	 * Creates a nearest centroid classifier from the calibration measured on the competition rings
+	 * 
+	 * @return default classifier
+	 */
+	public static ColorClassifier createDefault() {
+		CentroidColorModel model = new CentroidColorModel();
+		model.addColor(4, 0.133333, 0.031333, 0.008823, 0.1);	//orange
+		model.addColor(3, 0.0802921, 0.0609802, 0.016470, 0.12);	//yellow
+		model.addColor(1, 0.039234, 0.118627, 0.120593, 0.15);	//blue
+		model.addColor(2, 0.024509, 0.060784, 0.007843, 0.1);	//green
+		return new ColorClassifier(model);
+	}
+
+	/**
+	 * Loads a classifier from a calibration file
+	 * 
+	 * @param fileName path to the calibration file
+	 * @return classifier using the model described by the file
+	 * @throws IOException if the file cannot be read
+	 * @throws SensorExceptions if the file is not a valid calibration file
+	 */
+	public static ColorClassifier load(String fileName) throws IOException, SensorExceptions {
+		BufferedReader reader = new BufferedReader(new FileReader(fileName));
+		try {
+			ColorModel model = null;
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#"))
+					continue;
+				String[] tokens = line.split("\\s+");
+				try {
+					if (model == null)
+						model = createModel(tokens);
+					else
+						addEntry(model, tokens);
+				} catch (NumberFormatException e) {
+					throw new SensorExceptions(fileName + ":" + lineNumber + ": invalid number");
+				} catch (SensorExceptions e) {
+					throw new SensorExceptions(fileName + ":" + lineNumber + ": " + e.getMessage());
+				}
+			}
+			if (model == null)
+				throw new SensorExceptions(fileName + ": no model");
+			return new ColorClassifier(model);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Creates the model described by the first line of a calibration file
+	 * 
+	 * @param tokens tokens of the line
+	 * @return empty model
+	 * @throws SensorExceptions if the line does not describe a model
+	 */
+	private static ColorModel createModel(String[] tokens) throws SensorExceptions {
+		if (!tokens[0].equals("model") || tokens.length < 2)
+			throw new SensorExceptions("expected model");
+		if (tokens[1].equals("centroid") && tokens.length == 2)
+			return new CentroidColorModel();
+		if (tokens[1].equals("gaussian") && tokens.length == 3)
+			return new GaussianColorModel(Double.parseDouble(tokens[2]));
+		if (tokens[1].equals("neighbours") && tokens.length == 4)
+			return new NeighbourColorModel(Integer.parseInt(tokens[2]), Double.parseDouble(tokens[3]));
+		throw new SensorExceptions("unknown model " + tokens[1]);
+	}
+
+	/**
+	 * Adds a color or sample line of a calibration file to a model
+	 * 
+	 * @param model model being loaded
+	 * @param tokens tokens of the line
+	 * @throws SensorExceptions if the line does not fit the model
+	 */
+	private static void addEntry(ColorModel model, String[] tokens) throws SensorExceptions {
+		if (model instanceof CentroidColorModel && tokens[0].equals("color") && tokens.length == 6) {
+			((CentroidColorModel) model).addColor(Integer.parseInt(tokens[1]), Double.parseDouble(tokens[2]),
+					Double.parseDouble(tokens[3]), Double.parseDouble(tokens[4]), Double.parseDouble(tokens[5]));
+		} else if (model instanceof GaussianColorModel && tokens[0].equals("color") && tokens.length == 11) {
+			double[] mean = new double[3];
+			double[] covariance = new double[6];
+			for (int i = 0; i < 3; i++) {
+				mean[i] = Double.parseDouble(tokens[2 + i]);
+			}
+			for (int i = 0; i < 6; i++) {
+				covariance[i] = Double.parseDouble(tokens[5 + i]);
+			}
+			((GaussianColorModel) model).addColor(Integer.parseInt(tokens[1]), mean, covariance);
+		} else if (model instanceof NeighbourColorModel && tokens[0].equals("sample") && tokens.length == 5) {
+			try {
+				((NeighbourColorModel) model).addSample(Integer.parseInt(tokens[1]), Double.parseDouble(tokens[2]),
+						Double.parseDouble(tokens[3]), Double.parseDouble(tokens[4]));
+			} catch (IllegalArgumentException e) {
+				if (e instanceof NumberFormatException)
+					throw e;
+				throw new SensorExceptions(e.getMessage());
+			}
+		} else {
+			throw new SensorExceptions("unexpected " + tokens[0]);
+		}
+	}
+}
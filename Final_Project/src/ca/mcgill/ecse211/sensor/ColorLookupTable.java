@@ -0,0 +1,156 @@
+package ca.mcgill.ecse211.sensor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * This class maps RGB samples to ring colors with a precomputed lookup table, so that classifying a sample
+ * takes one division, a few multiplications and one array read.
+ * <p>
+ * The classifiers only depend on the direction of the RGB vector, not on its intensity. The table is therefore
+ * indexed by the chromaticity of the sample, r = R / (R + G + B) and g = G / (R + G + B), each quantized to the
+ * configured number of bits; blue is implied by the two others. Each cell holds the color a ColorClassifier
+ * gives to the centre of the cell, so samples near the border between two colors may be classified differently
+ * than by the classifier.
+ * <p>
+ * A table keeps the fingerprint of the classifier it was built from, to tell whether a saved table is still
+ * valid for a classifier.
+ * 
+ * @author Matthew
+ *
+ */
+public class ColorLookupTable {
+
+	private static final int MAGIC = 0x524C5532;	//"RLU2", with the classifier fingerprint
+	private static final int MAX_BITS = 10;
+
+	private final int bits;
+	private final int size;	//cells per channel
+	private final byte[] table;
+	private final long fingerprint;
+
+	/**
+	 * Constructor used when loading a table
+	 * 
+	 * @param bits bits per channel
+	 * @param table colors, indexed by (r << bits) | g
+	 * @param fingerprint fingerprint of the classifier the table was built from
+	 */
+	private ColorLookupTable(int bits, byte[] table, long fingerprint) {
+		this.bits = bits;
+		this.size = 1 << bits;
+		this.table = table;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * Builds a table from a classifier. The table takes 4^bits bytes.
+	 * 
+	 * @param classifier classifier giving the color of each cell
+	 * @param bits bits per channel, from 1 to 10
+	 * @return table
+	 */
+	public static ColorLookupTable build(ColorClassifier classifier, int bits) {
+		if (bits < 1 || bits > MAX_BITS)
+			throw new IllegalArgumentException("Bits per channel must be between 1 and " + MAX_BITS);
+		int size = 1 << bits;
+		byte[] table = new byte[size * size];
+		ColorResult result = new ColorResult();
+		for (int i = 0; i < size; i++) {
+			double r = (i + 0.5) / size;
+			for (int j = 0; j < size; j++) {
+				double g = (j + 0.5) / size;
+				if (i + j >= size)	//no sample has r + g > 1
+					continue;
+				double b = Math.max(0, 1 - r - g);	//centre of a cell straddling r + g = 1 may be just outside
+				table[(i << bits) | j] = (byte) classifier.classify(r, g, b, result).getColor();
+			}
+		}
+		return new ColorLookupTable(bits, table, classifier.fingerprint());
+	}
+
+	/**
+	 * Classifies an RGB sample
+	 * 
+	 * @param r red value
+	 * @param g green value
+	 * @param b blue value
+	 * @return color (1 = blue, 2 = green, 3 = yellow, 4 = orange), 0 if no color matched
+	 */
+	public int classify(double r, double g, double b) {
+		double sum = r + g + b;
+		if (!(sum > 0))
+			return 0;
+		double scale = size / sum;
+		int i = (int) (r * scale);
+		int j = (int) (g * scale);
+		if (i >= size)
+			i = size - 1;
+		if (j >= size)
+			j = size - 1;
+		return table[(i << bits) | j];
+	}
+
+	/**
+	 * @return bits per channel
+	 */
+	public int getBits() {
+		return bits;
+	}
+
+	/**
+	 * @param classifier
+	 * @return whether the table was built from a classifier with the same fingerprint
+	 */
+	public boolean isBuiltFrom(ColorClassifier classifier) {
+		return fingerprint == classifier.fingerprint();
+	}
+
+	/**
+	 * Writes the table to a file
+	 * 
+	 * @param fileName path of the file
+	 * @throws IOException if the file cannot be written
+	 */
+	public void save(String fileName) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(bits);
+			out.writeLong(fingerprint);
+			out.write(table);
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Reads a table written by save
+	 * 
+	 * @param fileName path of the file
+	 * @return table
+	 * @throws IOException if the file cannot be read
+	 * @throws SensorExceptions if the file is not a lookup table
+	 */
+	public static ColorLookupTable load(String fileName) throws IOException, SensorExceptions {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+		try {
+			if (in.readInt() != MAGIC)
+				throw new SensorExceptions(fileName + " is not a color lookup table.");
+			int bits = in.readInt();
+			if (bits < 1 || bits > MAX_BITS)
+				throw new SensorExceptions(fileName + " has an invalid number of bits.");
+			long fingerprint = in.readLong();
+			byte[] table = new byte[1 << (2 * bits)];
+			in.readFully(table);
+			return new ColorLookupTable(bits, table, fingerprint);
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,28 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This interface contains methods that must be implemented by the models used by the ColorClassifier
+ * 
+ * @author Matthew
+ *
+ */
+public interface ColorModel {
+
+	/**
+	 * Classifies a color. Implementations must not allocate.
+	 * 
+	 * @param r red component, normalized so that r^2 + g^2 + b^2 = 1
+	 * @param g green component, normalized
+	 * @param b blue component, normalized
+	 * @param result result receiving the color and confidence
+	 */
+	public void classify(double r, double g, double b, ColorResult result);
+
+	/**
+	 * Computes a fingerprint of the model, see ColorClassifier.fingerprint
+	 * 
+	 * @return value that changes whenever the type or the parameters of the model change
+	 */
+	public long fingerprint();
+
+}
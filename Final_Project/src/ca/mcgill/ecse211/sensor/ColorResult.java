@@ -0,0 +1,44 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This class holds the result of a color classification. A result object is meant to be reused for every
+ * sample so that classifying does not allocate.
+ * 
+ * @author Matthew
+ *
+ */
+public class ColorResult {
+
+	private int color = 0;
+	private double confidence = 0;
+
+	/**
+	 * @return detected color (1 = blue, 2 = green, 3 = yellow, 4 = orange), 0 if no color matched
+	 */
+	public int getColor() {
+		return color;
+	}
+
+	/**
+	 * @return confidence of the classification, from 0 to 1
+	 */
+	public double getConfidence() {
+		return confidence;
+	}
+
+	/**
+	 * Sets the result. Called by color models.
+	 * 
+	 * @param color detected color, 0 if none
+	 * @param confidence confidence from 0 to 1
+	 */
+	public void set(int color, double confidence) {
+		this.color = color;
+		this.confidence = confidence;
+	}
+
+	@Override
+	public String toString() {
+		return color + " (" + confidence + ")";
+	}
+}
@@ -0,0 +1,135 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This class classifies colors with a Gaussian distribution of normalized RGB values per color. A color only
+ * matches if the Mahalanobis distance of the sample to its mean is within the gate, and the most likely
+ * matching color wins. Covariance matrices are inverted once, when colors are added.
+ * 
+ * @author Matthew
+ *
+ */
+public class GaussianColorModel implements ColorModel {
+
+	private final double gateSquared;
+
+	private int size = 0;
+	private int[] colors = new int[0];
+	private double[][] mean = new double[0][];	//[r, g, b] per color
+	private double[][] inverse = new double[0][];	//upper triangle of the inverse covariance [rr, rg, rb, gg, gb, bb]
+	private double[] logDeterminant = new double[0];
+
+	/**
+	 * Constructor for the GaussianColorModel class
+	 * 
+	 * @param gate maximum Mahalanobis distance between a sample and the mean of its color
+	 */
+	public GaussianColorModel(double gate) {
+		this.gateSquared = gate * gate;
+	}
+
+	/**
+	 * Adds a color to the model
+	 * 
+	 * @param color color number
+	 * @param mean mean normalized [r, g, b]
+	 * @param covariance upper triangle of the covariance matrix of normalized values [rr, rg, rb, gg, gb, bb]
+	 * @throws SensorExceptions if the covariance matrix is not positive definite
+	 */
+	public void addColor(int color, double[] mean, double[] covariance) throws SensorExceptions {
+		double rr = covariance[0], rg = covariance[1], rb = covariance[2];
+		double gg = covariance[3], gb = covariance[4], bb = covariance[5];
+
+		//cofactors of the symmetric matrix
+		double crr = gg * bb - gb * gb;
+		double crg = rb * gb - rg * bb;
+		double crb = rg * gb - rb * gg;
+		double cgg = rr * bb - rb * rb;
+		double cgb = rg * rb - rr * gb;
+		double cbb = rr * gg - rg * rg;
+		double determinant = rr * crr + rg * crg + rb * crb;
+		if (!(determinant > 0) || rr <= 0 || cbb <= 0)
+			throw new SensorExceptions("Covariance of color " + color + " is not positive definite.");
+
+		int n = size + 1;
+		int[] newColors = new int[n];
+		double[][] newMean = new double[n][];
+		double[][] newInverse = new double[n][];
+		double[] newLogDeterminant = new double[n];
+		System.arraycopy(colors, 0, newColors, 0, size);
+		System.arraycopy(this.mean, 0, newMean, 0, size);
+		System.arraycopy(inverse, 0, newInverse, 0, size);
+		System.arraycopy(logDeterminant, 0, newLogDeterminant, 0, size);
+
+		newColors[size] = color;
+		newMean[size] = new double[] {mean[0], mean[1], mean[2]};
+		newInverse[size] = new double[] {crr / determinant, crg / determinant, crb / determinant,
+				cgg / determinant, cgb / determinant, cbb / determinant};
+		newLogDeterminant[size] = Math.log(determinant);
+
+		colors = newColors;
+		this.mean = newMean;
+		inverse = newInverse;
+		logDeterminant = newLogDeterminant;
+		size = n;
+	}
+
+	/**
+	 * Classifies a color. The confidence is the posterior probability of the chosen color among the colors of
+	 * the model, assuming they are equally likely.
+	 */
+	@Override
+	public void classify(double r, double g, double b, ColorResult result) {
+		int best = -1;
+		double bestScore = 0;
+		for (int i = 0; i < size; i++) {
+			double distance = mahalanobis(i, r, g, b);
+			double score = distance + logDeterminant[i];	//-2 log likelihood, up to a constant
+			if (distance < gateSquared && (best < 0 || score < bestScore)) {
+				best = i;
+				bestScore = score;
+			}
+		}
+		if (best < 0) {
+			result.set(0, 0);
+			return;
+		}
+
+		double sum = 0;
+		for (int i = 0; i < size; i++) {
+			sum += Math.exp((bestScore - mahalanobis(i, r, g, b) - logDeterminant[i]) / 2);
+		}
+		result.set(colors[best], 1 / sum);
+	}
+
+	@Override
+	public long fingerprint() {
+		long hash = ColorClassifier.mix(getClass().getName().hashCode(), gateSquared);
+		for (int i = 0; i < size; i++) {
+			hash = ColorClassifier.mix(hash, colors[i]);
+			for (int k = 0; k < 3; k++) {
+				hash = ColorClassifier.mix(hash, mean[i][k]);
+			}
+			for (int k = 0; k < 6; k++) {
+				hash = ColorClassifier.mix(hash, inverse[i][k]);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * @param i index of the color
+	 * @param r normalized red
+	 * @param g normalized green
+	 * @param b normalized blue
+	 * @return squared Mahalanobis distance between the sample and the mean of the color
+	 */
+	private double mahalanobis(int i, double r, double g, double b) {
+		double[] m = mean[i];
+		double[] s = inverse[i];
+		double dr = r - m[0];
+		double dg = g - m[1];
+		double db = b - m[2];
+		return s[0] * dr * dr + s[3] * dg * dg + s[5] * db * db
+				+ 2 * (s[1] * dr * dg + s[2] * dr * db + s[4] * dg * db);
+	}
+}
@@ -1,6 +1,10 @@
 package ca.mcgill.ecse211.sensor;
 
-import lejos.robotics.SampleProvider;
+import ca.mcgill.ecse211.hardware.ColorSensor;
+import ca.mcgill.ecse211.hardware.LightSensor;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
 
 /**
  * This class runs a thread that polls the light sensor at specific intervals of time and stores
@@ -15,81 +19,99 @@ public class LightPoller extends Thread {
 	private int pollerPeriod;
 
 	private LightPollerType sensorType;
-	private SampleProvider[] sampleProvider;
-	private float[][] data;
+	private LightSensor[] lineSensors;
+	private ColorSensor colorSensor;
+	private float[] rgb = new float[3];
 	SensorController sensorController;
 
-	protected boolean running = false;
+	private PeriodicTask task;
+	private int[] intensity = new int[2];
+	private int[] tacho = new int[2];	//drive motor tacho counts when the sample was fetched
+	private double[] colorRGB = new double[3];
 
 	/**
 	 * Constructor for the color light poller
-	 * @param colorSampleProvider
-	 * @param colorData data buffer for light sensor
+	 * @param colorSensor
 	 */
-	public LightPoller(SampleProvider colorSampleProvider, float[] colorData) {
-		this.sampleProvider = new SampleProvider[] {colorSampleProvider};
-		this.data = new float[][] {colorData};
+	public LightPoller(ColorSensor colorSensor) {
+		this.colorSensor = colorSensor;
 		this.sensorType = LightPollerType.COLOR;
 		this.pollerPeriod = COLOR_POLLER_PERIOD;
+		this.task = createTask("color poller");
 	}
 	
 	
 	/**
 	 * Constructor for the line light poller
 	 * 
-	 * @param leftSampleProvider
-	 * @param leftData data buffer for left light sensor
-	 * @param rightSampleProvider
-	 * @param rightData data buffer for right light sensor
+	 * @param leftSensor left light sensor
+	 * @param rightSensor right light sensor
 	 */
-	public LightPoller(SampleProvider leftSampleProvider, float[] leftData, SampleProvider rightSampleProvider,
-			float[] rightData) {
-		this.sampleProvider = new SampleProvider[] {leftSampleProvider, rightSampleProvider};
-		this.data = new float[][] {leftData, rightData};
+	public LightPoller(LightSensor leftSensor, LightSensor rightSensor) {
+		this.lineSensors = new LightSensor[] {leftSensor, rightSensor};
 		this.sensorType = LightPollerType.LINE;
 		this.pollerPeriod = LINE_POLLER_PERIOD;
+		this.task = createTask("line poller");
 	}
 	
 
+	/**
+	 * Creates the periodic task that polls the sensor, paused until the poller is set running
+	 * @param name name of the task
+	 * @return the polling task
+	 */
+	private PeriodicTask createTask(String name) {
+		return TaskScheduler.createTask(name, pollerPeriod, OverrunPolicy.SKIP, true, new Runnable() {
+			public void run() {
+				poll();
+			}
+		});
+	}
+	
 	/**
 	 * polls the light sensor at the interval set by LS_POLLER_PERIOD
 	 */
 	public void run() {
-		long updateStart, updateEnd, sleepPeriod;
-		int[] intensity = new int[2];
-		double[] colorRGB = new double[3];
-
-		while (true) {
-			
-			updateStart = System.currentTimeMillis();
-			
-			if(running) {
-				switch(sensorType) {
-				case LINE:
-					sampleProvider[0].fetchSample(data[0], 0); // acquire data (left)
-					intensity[0] = (int) (data[0][0] * 100.0); // extract from buffer, cast to int (left)
-					sampleProvider[1].fetchSample(data[1], 0); // acquire data (right)
-					intensity[1] = (int) (data[1][0] * 100.0); // extract from buffer, cast to int (right)
-					sensorController.setLight(intensity);
-					break;
-				case COLOR:
-					sampleProvider[0].fetchSample(data[0], 0); // acquire data
-					colorRGB[0] = (data[0][0]); 
-					colorRGB[1] = (data[0][1]);
-					colorRGB[2] = (data[0][2]);
-					sensorController.setColor(colorRGB);
-					break;
-				}
-			}
-
-			updateEnd = System.currentTimeMillis();
-			sleepPeriod = pollerPeriod - (updateEnd - updateStart);
-			try {
-				if (sleepPeriod >= 0)
-					Thread.sleep(pollerPeriod - (updateEnd - updateStart));
-			} catch (InterruptedException e) {
-				return; // end thread
-			}
+		task.run();
+	}
+	
+	/**
+	 * Fetches one sample and passes it to the sensor controller
+	 */
+	void poll() {
+		long sampleTime = TaskScheduler.getClock().nanoTime();
+		sensorController.readTachos(tacho);
+		switch(sensorType) {
+		case LINE:
+			intensity[0] = (int) (lineSensors[0].fetchIntensity() * 100.0); // acquire data, cast to int (left)
+			intensity[1] = (int) (lineSensors[1].fetchIntensity() * 100.0); // acquire data, cast to int (right)
+			sensorController.setLight(intensity, sampleTime, tacho);
+			break;
+		case COLOR:
+			colorSensor.fetchRGB(rgb); // acquire data
+			colorRGB[0] = (rgb[0]); 
+			colorRGB[1] = (rgb[1]);
+			colorRGB[2] = (rgb[2]);
+			sensorController.setColor(colorRGB, sampleTime, tacho);
+			break;
 		}
 	}
+	
+	/**
+	 * Pauses or unpauses the poller. A paused poller's thread is parked until it is unpaused.
+	 * @param running whether the poller should poll
+	 */
+	public void setRunning(boolean running) {
+		if(running)
+			task.unpause();
+		else
+			task.pause();
+	}
+	
+	/**
+	 * @return the periodic task polling the sensor, for timing statistics
+	 */
+	public PeriodicTask getTask() {
+		return task;
+	}
 }
@@ -0,0 +1,97 @@
+package ca.mcgill.ecse211.sensor;
+
+import ca.mcgill.ecse211.interfaces.BatchLightSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+
+/**
+ * This class collects light sensor samples as they are dispatched and hands them to a batch user whenever
+ * the user's own thread calls flush, so that the user can run at a lower rate than the light poller without
+ * losing samples. Samples are kept in a ring of primitive arrays; if more samples than the capacity arrive
+ * between two flushes, the oldest ones are overwritten and counted as dropped.
+ * 
+ * @author Matthew
+ *
+ */
+public class LightSampleBatcher implements TimedLightSensorUser {
+
+	private final BatchLightSensorUser user;
+	private final int capacity;
+
+	//samples waiting to be flushed, guarded by this
+	private final int[] left;
+	private final int[] right;
+	private final long[] ts;
+	private int head = 0;	//index of the oldest sample
+	private int size = 0;
+	private int dropped = 0;
+
+	//batch handed to the user, only touched by the flushing thread
+	private final int[] batchLeft;
+	private final int[] batchRight;
+	private final long[] batchTs;
+
+	/**
+	 * Constructor for the LightSampleBatcher class
+	 * 
+	 * @param user user receiving the batches
+	 * @param capacity maximum number of samples kept between two flushes
+	 */
+	public LightSampleBatcher(BatchLightSensorUser user, int capacity) {
+		this.user = user;
+		this.capacity = capacity;
+		this.left = new int[capacity];
+		this.right = new int[capacity];
+		this.ts = new long[capacity];
+		this.batchLeft = new int[capacity];
+		this.batchRight = new int[capacity];
+		this.batchTs = new long[capacity];
+	}
+
+	/**
+	 * Stores a sample until the next flush
+	 */
+	@Override
+	public synchronized void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+		int i = (head + size) % capacity;
+		left[i] = light[0];
+		right[i] = light[1];
+		ts[i] = timestamp;
+		if (size < capacity) {
+			size++;
+		} else {
+			head = (head + 1) % capacity;
+			dropped++;
+		}
+	}
+
+	/**
+	 * Passes all samples collected since the previous flush to the user. Must always be called from the same
+	 * thread, as the batch arrays are reused.
+	 * 
+	 * @return number of samples passed to the user
+	 */
+	public int flush() {
+		int n;
+		synchronized (this) {
+			n = size;
+			for (int k = 0; k < n; k++) {
+				int i = (head + k) % capacity;
+				batchLeft[k] = left[i];
+				batchRight[k] = right[i];
+				batchTs[k] = ts[i];
+			}
+			head = 0;
+			size = 0;
+		}
+		if (n > 0)
+			user.processLSBatch(batchLeft, batchRight, batchTs, n);
+		return n;
+	}
+
+	/**
+	 * @return number of samples overwritten before they could be flushed
+	 */
+	public synchronized int getDropped() {
+		return dropped;
+	}
+}
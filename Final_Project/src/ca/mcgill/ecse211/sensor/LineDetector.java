@@ -1,18 +1,27 @@
 package ca.mcgill.ecse211.sensor;
 
-import java.util.ArrayList;
-
 /**
  * This class takes a stream of light sensor values and determines when a light sensors detects a line
- * 
+ * <p>
+ * The window is kept in a circular int buffer, and two monotonic deques (also circular int buffers of sample
+ * sequence numbers) track the minimum of the window and the maximum of the samples newer than that minimum.
+ * Each sample is therefore processed in amortized constant time without any allocation, whatever the window size.
+ *
  * @author Matthew Kourlas
  */
 public class LineDetector {
-	
+
 	private int window_size;	//must be large enough to contain the entire drop in intensity when crossing a line
 	private int threshold;	//magnitude in drop in intensity which indicates a detected line
-	private ArrayList<Integer> window = new ArrayList<Integer>();
-	
+	private int[] window;	//sample values, indexed by sequence number modulo window_size
+
+	private int[] minDeque;	//sequence numbers of increasing values; the head is the newest minimum of the window
+	private int minHead, minSize;
+	private int[] maxDeque;	//sequence numbers of decreasing values, all newer than the minimum
+	private int maxHead, maxSize;
+
+	private int sequence = -1;	//sequence number of the newest sample
+
 	/**
 	 * constructor for the MedianFilter class
 	 * @param window_size range of values to be considered
@@ -20,9 +29,12 @@ public class LineDetector {
 	public LineDetector(int window_size, int threshold) {
 		this.window_size = window_size;
 		this.threshold = threshold;
+		this.window = new int[window_size];
+		this.minDeque = new int[window_size];
+		this.maxDeque = new int[window_size];
 	}
-	
-	
+
+
 	/**
 	 * This method takes the next value in a series of intensity values and returns if the magnitude of the maximum drop
 	 * in intensity is equal to or greater than threshold
@@ -31,28 +43,50 @@ public class LineDetector {
 	 */
 	public boolean lineCrossed(int nextValue) {
 		//shift window
-		window.add(0, nextValue);
-		if(window.size() > window_size)
-			window.remove(window.size() - 1);
-		
-		//find minimum
-		int minVal = window.get(0);
-		int minIndex = 0;
-		for(int i = 1; i < window.size(); i++) {
-			if(window.get(i) < minVal) {
-				minVal = window.get(i);
-				minIndex = i;
-			}
+		sequence++;
+		window[index(sequence)] = nextValue;
+
+		//drop samples that left the window
+		int oldest = sequence - window_size + 1;
+		if(minSize > 0 && minDeque[minHead] - oldest < 0) {
+			minHead = (minHead + 1) % window_size;
+			minSize--;
 		}
-		
-		//find maximum left of minimum
-		int maxVal = window.get(0);
-		for(int i = 1; i < minIndex; i++) {
-			if(window.get(i) > maxVal)
-				maxVal = window.get(i);
+		if(maxSize > 0 && maxDeque[maxHead] - oldest < 0) {
+			maxHead = (maxHead + 1) % window_size;
+			maxSize--;
 		}
-		
+
+		//find minimum: equal older values are discarded so the newest occurrence of the minimum wins
+		while(minSize > 0 && window[index(minDeque[(minHead + minSize - 1) % window_size])] >= nextValue)
+			minSize--;
+		minDeque[(minHead + minSize) % window_size] = sequence;
+		minSize++;
+		int minSeq = minDeque[minHead];
+		int minVal = window[index(minSeq)];
+
+		//find maximum left of minimum, i.e. among samples newer than the minimum
+		while(maxSize > 0 && window[index(maxDeque[(maxHead + maxSize - 1) % window_size])] <= nextValue)
+			maxSize--;
+		maxDeque[(maxHead + maxSize) % window_size] = sequence;
+		maxSize++;
+		while(maxSize > 0 && maxDeque[maxHead] - minSeq <= 0) {	//the minimum only ever moves forward
+			maxHead = (maxHead + 1) % window_size;
+			maxSize--;
+		}
+		int maxVal = maxSize > 0 ? window[index(maxDeque[maxHead])] : minVal;
+
 		//return if maximum drop is greater than or equal to threshold
 		return maxVal - minVal >= threshold;
 	}
+
+	/**
+	 * Returns the buffer index of a sample
+	 * @param sequence sequence number of the sample
+	 * @return index of the sample in the window buffer
+	 */
+	private int index(int sequence) {
+		int i = sequence % window_size;
+		return i < 0 ? i + window_size : i;
+	}
 }
@@ -0,0 +1,132 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This class classifies colors by a vote among the k calibration samples nearest to the sample (k-NN). Only
+ * calibration samples within the gate distance vote. The working arrays are allocated once, so a model must
+ * only be used by one thread.
+ * 
+ * @author Matthew
+ *
+ */
+public class NeighbourColorModel implements ColorModel {
+
+	private static final int MAX_COLOR = 4;
+
+	private final int k;
+	private final double gateSquared;
+
+	private int size = 0;
+	private int[] colors = new int[16];
+	private double[] r = new double[16];
+	private double[] g = new double[16];
+	private double[] b = new double[16];
+
+	//k nearest samples, sorted by distance, and votes per color
+	private final double[] nearestDistance;
+	private final int[] nearestColor;
+	private final int[] votes = new int[MAX_COLOR + 1];
+
+	/**
+	 * Constructor for the NeighbourColorModel class
+	 * 
+	 * @param k number of neighbours that vote
+	 * @param gate maximum euclidean distance between a normalized sample and a voting calibration sample
+	 */
+	public NeighbourColorModel(int k, double gate) {
+		this.k = k;
+		this.gateSquared = gate * gate;
+		this.nearestDistance = new double[k];
+		this.nearestColor = new int[k];
+	}
+
+	/**
+	 * Adds a calibration sample to the model
+	 * 
+	 * @param color color number, from 1 to 4
+	 * @param sampleR red value, normalized by this method
+	 * @param sampleG green value
+	 * @param sampleB blue value
+	 */
+	public void addSample(int color, double sampleR, double sampleG, double sampleB) {
+		if (color < 1 || color > MAX_COLOR)
+			throw new IllegalArgumentException("Color must be between 1 and " + MAX_COLOR);
+		if (size == colors.length) {
+			int capacity = size * 2;
+			int[] newColors = new int[capacity];
+			double[] newR = new double[capacity];
+			double[] newG = new double[capacity];
+			double[] newB = new double[capacity];
+			System.arraycopy(colors, 0, newColors, 0, size);
+			System.arraycopy(r, 0, newR, 0, size);
+			System.arraycopy(g, 0, newG, 0, size);
+			System.arraycopy(b, 0, newB, 0, size);
+			colors = newColors;
+			r = newR;
+			g = newG;
+			b = newB;
+		}
+		double norm = Math.sqrt(sampleR * sampleR + sampleG * sampleG + sampleB * sampleB);
+		colors[size] = color;
+		r[size] = sampleR / norm;
+		g[size] = sampleG / norm;
+		b[size] = sampleB / norm;
+		size++;
+	}
+
+	/**
+	 * Classifies a color. The confidence is the fraction of the k votes won by the chosen color; ties go to the
+	 * color with the nearest voter.
+	 */
+	@Override
+	public void classify(double sr, double sg, double sb, ColorResult result) {
+		//insertion sort of the k nearest samples within the gate
+		int found = 0;
+		for (int i = 0; i < size; i++) {
+			double dr = sr - r[i];
+			double dg = sg - g[i];
+			double db = sb - b[i];
+			double distance = dr * dr + dg * dg + db * db;
+			if (distance >= gateSquared || (found == k && distance >= nearestDistance[k - 1]))
+				continue;
+			int j = found < k ? found++ : k - 1;
+			while (j > 0 && nearestDistance[j - 1] > distance) {
+				nearestDistance[j] = nearestDistance[j - 1];
+				nearestColor[j] = nearestColor[j - 1];
+				j--;
+			}
+			nearestDistance[j] = distance;
+			nearestColor[j] = colors[i];
+		}
+		if (found == 0) {
+			result.set(0, 0);
+			return;
+		}
+
+		for (int c = 0; c <= MAX_COLOR; c++) {
+			votes[c] = 0;
+		}
+		for (int j = 0; j < found; j++) {
+			votes[nearestColor[j]]++;
+		}
+		//the voters are sorted by distance, so the first color with the most votes has the nearest voter
+		int best = nearestColor[0];
+		for (int j = 1; j < found; j++) {
+			if (votes[nearestColor[j]] > votes[best])
+				best = nearestColor[j];
+		}
+		result.set(best, (double) votes[best] / k);
+	}
+
+	@Override
+	public long fingerprint() {
+		long hash = ColorClassifier.mix(getClass().getName().hashCode(), k);
+		hash = ColorClassifier.mix(hash, gateSquared);
+		for (int i = 0; i < size; i++) {
+			hash = ColorClassifier.mix(hash, colors[i]);
+			hash = ColorClassifier.mix(hash, r[i]);
+			hash = ColorClassifier.mix(hash, g[i]);
+			hash = ColorClassifier.mix(hash, b[i]);
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,292 @@
+package ca.mcgill.ecse211.sensor;
+
+import java.util.ArrayList;
+
+import ca.mcgill.ecse211.interfaces.ColorSensorUser;
+import ca.mcgill.ecse211.interfaces.LightSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedColorSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+import ca.mcgill.ecse211.interfaces.TimedUltrasonicUser;
+import ca.mcgill.ecse211.interfaces.UltrasonicUser;
+
+/**
+ * This class delivers sensor data from the pollers to the sensor users. Users subscribe once with a mask of the
+ * modes (e.g. game states) in which they are enabled, and selecting a mode publishes the matching users of every
+ * channel in a single immutable snapshot. Poller threads iterate the arrays of the snapshot they read, so dispatch
+ * never allocates, never locks, and never sees a half-updated set of users.
+ * <p>
+ * Every sample is delivered with the time it was fetched, its sequence number on its channel and the tacho
+ * counts read at fetch time. Users of the plain interfaces are wrapped in adapters that drop this information.
+ * Each channel has its own subscribe method, so that a user of several channels is subscribed to each of them by
+ * name rather than by a cast.
+ * 
+ * @author Matthew
+ *
+ */
+public class SensorBus {
+
+	private static final Snapshot EMPTY = new Snapshot(new TimedUltrasonicUser[0], new TimedLightSensorUser[0],
+			new TimedColorSensorUser[0]);
+
+	private volatile Snapshot active = EMPTY;
+
+	//only accessed while holding the bus lock
+	private ArrayList<SensorSubscription> subscriptions = new ArrayList<SensorSubscription>();
+	private int activeMask = 0;
+
+	/**
+	 * Subscribes an ultrasonic sensor user
+	 * 
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	public SensorSubscription subscribeUltrasonic(UltrasonicUser user, int enableMask) {
+		return subscribe(SensorChannel.ULTRASONIC, new UltrasonicUserAdapter(user), enableMask);
+	}
+
+	/**
+	 * Subscribes a light sensor user
+	 * 
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	public SensorSubscription subscribeLight(LightSensorUser user, int enableMask) {
+		return subscribe(SensorChannel.LIGHT, new LightSensorUserAdapter(user), enableMask);
+	}
+
+	/**
+	 * Subscribes a color sensor user
+	 * 
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	public SensorSubscription subscribeColor(ColorSensorUser user, int enableMask) {
+		return subscribe(SensorChannel.COLOR, new ColorSensorUserAdapter(user), enableMask);
+	}
+
+	/**
+	 * Subscribes an ultrasonic sensor user that receives sample times and tacho counts
+	 * 
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	public SensorSubscription subscribeUltrasonic(TimedUltrasonicUser user, int enableMask) {
+		return subscribe(SensorChannel.ULTRASONIC, user, enableMask);
+	}
+
+	/**
+	 * Subscribes a light sensor user that receives sample times and tacho counts. A LightSampleBatcher, like the
+	 * one of LightLocalization, subscribes through this method.
+	 * 
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	public SensorSubscription subscribeLight(TimedLightSensorUser user, int enableMask) {
+		return subscribe(SensorChannel.LIGHT, user, enableMask);
+	}
+
+	/**
+	 * Subscribes a color sensor user that receives sample times and tacho counts
+	 * 
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	public SensorSubscription subscribeColor(TimedColorSensorUser user, int enableMask) {
+		return subscribe(SensorChannel.COLOR, user, enableMask);
+	}
+
+	/**
+	 * Selects the active mode: from now on, only users whose enable mask shares a bit with the given mask
+	 * receive data. All channels switch at once.
+	 * 
+	 * @param mask mask of the active mode(s)
+	 */
+	public synchronized void select(int mask) {
+		activeMask = mask;
+		publish();
+	}
+
+	/**
+	 * Sends a distance to all enabled ultrasonic sensor users
+	 * 
+	 * @param distance distance in cm
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 * @param sequence sequence number of the sample
+	 * @param tachoL left motor tacho count at fetch time
+	 * @param tachoR right motor tacho count at fetch time
+	 */
+	public void dispatchDistance(int distance, long timestamp, int sequence, int tachoL, int tachoR) {
+		TimedUltrasonicUser[] users = active.ultrasonicUsers;
+		for (int i = 0; i < users.length; i++) {
+			users[i].processUSDistance(distance, timestamp, sequence, tachoL, tachoR);
+		}
+	}
+
+	/**
+	 * Sends light intensities to all enabled light sensor users
+	 * 
+	 * @param light intensities [left, right]
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 * @param sequence sequence number of the sample
+	 * @param tachoL left motor tacho count at fetch time
+	 * @param tachoR right motor tacho count at fetch time
+	 */
+	public void dispatchLight(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+		TimedLightSensorUser[] users = active.lightSensorUsers;
+		for (int i = 0; i < users.length; i++) {
+			users[i].processLSData(light, timestamp, sequence, tachoL, tachoR);
+		}
+	}
+
+	/**
+	 * Sends a color to all enabled color sensor users
+	 * 
+	 * @param color detected color
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 * @param sequence sequence number of the sample
+	 * @param tachoL left motor tacho count at fetch time
+	 * @param tachoR right motor tacho count at fetch time
+	 */
+	public void dispatchColor(int color, long timestamp, int sequence, int tachoL, int tachoR) {
+		TimedColorSensorUser[] users = active.colorSensorUsers;
+		for (int i = 0; i < users.length; i++) {
+			users[i].processColorData(color, timestamp, sequence, tachoL, tachoR);
+		}
+	}
+
+	/**
+	 * Adds a subscription and publishes the new set of users
+	 * 
+	 * @param channel channel of the user
+	 * @param user the user
+	 * @param enableMask modes in which the user receives data
+	 * @return handle to the subscription
+	 */
+	private synchronized SensorSubscription subscribe(SensorChannel channel, Object user, int enableMask) {
+		SensorSubscription subscription = new SensorSubscription(this, channel, user, enableMask);
+		subscriptions.add(subscription);
+		publish();
+		return subscription;
+	}
+
+	/**
+	 * Removes a subscription and publishes the new set of users
+	 * 
+	 * @param subscription subscription to remove
+	 */
+	synchronized void unsubscribe(SensorSubscription subscription) {
+		if (subscriptions.remove(subscription))
+			publish();
+	}
+
+	/**
+	 * Changes the enable mask of a subscription and publishes the new set of users
+	 * 
+	 * @param subscription subscription to change
+	 * @param enableMask new mask of modes
+	 */
+	synchronized void setEnableMask(SensorSubscription subscription, int enableMask) {
+		subscription.updateEnableMask(enableMask);
+		publish();
+	}
+
+	/**
+	 * Builds the arrays of enabled users for the active mode and publishes them with a single volatile write.
+	 * Must be called while holding the bus lock.
+	 */
+	private void publish() {
+		ArrayList<TimedUltrasonicUser> ultrasonicUsers = new ArrayList<TimedUltrasonicUser>();
+		ArrayList<TimedLightSensorUser> lightSensorUsers = new ArrayList<TimedLightSensorUser>();
+		ArrayList<TimedColorSensorUser> colorSensorUsers = new ArrayList<TimedColorSensorUser>();
+
+		for (SensorSubscription subscription : subscriptions) {
+			if ((subscription.getEnableMask() & activeMask) == 0)
+				continue;
+			switch (subscription.getChannel()) {
+			case ULTRASONIC:
+				ultrasonicUsers.add((TimedUltrasonicUser) subscription.getUser());
+				break;
+			case LIGHT:
+				lightSensorUsers.add((TimedLightSensorUser) subscription.getUser());
+				break;
+			case COLOR:
+				colorSensorUsers.add((TimedColorSensorUser) subscription.getUser());
+				break;
+			}
+		}
+
+		active = new Snapshot(ultrasonicUsers.toArray(new TimedUltrasonicUser[ultrasonicUsers.size()]),
+				lightSensorUsers.toArray(new TimedLightSensorUser[lightSensorUsers.size()]),
+				colorSensorUsers.toArray(new TimedColorSensorUser[colorSensorUsers.size()]));
+	}
+
+	/**
+	 * Immutable set of the users enabled on every channel
+	 */
+	private static class Snapshot {
+		final TimedUltrasonicUser[] ultrasonicUsers;
+		final TimedLightSensorUser[] lightSensorUsers;
+		final TimedColorSensorUser[] colorSensorUsers;
+
+		Snapshot(TimedUltrasonicUser[] ultrasonicUsers, TimedLightSensorUser[] lightSensorUsers,
+				TimedColorSensorUser[] colorSensorUsers) {
+			this.ultrasonicUsers = ultrasonicUsers;
+			this.lightSensorUsers = lightSensorUsers;
+			this.colorSensorUsers = colorSensorUsers;
+		}
+	}
+
+	/**
+	 * Delivers samples to an ultrasonic sensor user that does not use sample times
+	 */
+	private static class UltrasonicUserAdapter implements TimedUltrasonicUser {
+		private final UltrasonicUser user;
+
+		UltrasonicUserAdapter(UltrasonicUser user) {
+			this.user = user;
+		}
+
+		@Override
+		public void processUSDistance(int distance, long timestamp, int sequence, int tachoL, int tachoR) {
+			user.processUSDistance(distance);
+		}
+	}
+
+	/**
+	 * Delivers samples to a light sensor user that does not use sample times
+	 */
+	private static class LightSensorUserAdapter implements TimedLightSensorUser {
+		private final LightSensorUser user;
+
+		LightSensorUserAdapter(LightSensorUser user) {
+			this.user = user;
+		}
+
+		@Override
+		public void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+			user.processLSData(light);
+		}
+	}
+
+	/**
+	 * Delivers samples to a color sensor user that does not use sample times
+	 */
+	private static class ColorSensorUserAdapter implements TimedColorSensorUser {
+		private final ColorSensorUser user;
+
+		ColorSensorUserAdapter(ColorSensorUser user) {
+			this.user = user;
+		}
+
+		@Override
+		public void processColorData(int color, long timestamp, int sequence, int tachoL, int tachoR) {
+			user.processColorData(color);
+		}
+	}
+}
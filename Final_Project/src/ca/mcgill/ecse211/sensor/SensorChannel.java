@@ -0,0 +1,15 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This enum documents the channels of the sensor bus
+ * 
+ * @author Matthew
+ *
+ */
+public enum SensorChannel {
+
+	ULTRASONIC,
+	LIGHT,
+	COLOR;
+	
+}
@@ -1,10 +1,6 @@
 package ca.mcgill.ecse211.sensor;
 
-import java.util.ArrayList;
-
-import ca.mcgill.ecse211.interfaces.ColorSensorUser;
-import ca.mcgill.ecse211.interfaces.LightSensorUser;
-import ca.mcgill.ecse211.interfaces.UltrasonicUser;
+import ca.mcgill.ecse211.hardware.DriveMotor;
 
 /**
  * This class contains methods that deal with control and output of ultrasonic, color and light sensors. It also
@@ -21,9 +17,19 @@ public class SensorController {
 	private LightPoller colorPoller;
 	private UltrasonicPoller ultrasonicPoller;
 
-	private ArrayList<UltrasonicUser> currentUltrasonicUsers = new ArrayList<UltrasonicUser>();
-	private ArrayList<LightSensorUser> currentLightSensorUsers = new ArrayList<LightSensorUser>();
-	private ArrayList<ColorSensorUser> currentColorSensorUsers = new ArrayList<ColorSensorUser>();
+	private final SensorBus sensorBus = new SensorBus();
+	
+	private volatile ColorClassifier colorClassifier = ColorClassifier.createDefault();
+	private volatile ColorLookupTable colorLookupTable = null;
+	private ColorResult colorResult = new ColorResult();	//only used by the color poller
+	
+	private DriveMotor leftMotor;
+	private DriveMotor rightMotor;
+	
+	//sequence numbers of the latest sample on each channel, each written only by its poller
+	private int ultrasonicSequence = 0;
+	private int lightSequence = 0;
+	private int colorSequence = 0;
 
 	/**
 	 * Constructor for sensor controller which cannot be accessed externally.
@@ -83,68 +89,97 @@ public class SensorController {
 	 * Unpauses leftLightPoller
 	 */
 	public void unpauseLightPoller() {
-		lightPoller.running = true;
+		lightPoller.setRunning(true);
 	}
 	
 	/**
 	 * Pauses leftLightPoller
 	 */
 	public void pauseLightPoller() {
-		lightPoller.running = false;
+		lightPoller.setRunning(false);
 	}
 	
 	/**
 	 * Unpauses colorPoller
 	 */
 	public void unpauseColorPoller() {
-		colorPoller.running = true;
+		colorPoller.setRunning(true);
 	}
 	
 	/**
 	 * Pauses colorPoller
 	 */
 	public void pauseColorPoller() {
-		colorPoller.running = false;
+		colorPoller.setRunning(false);
 	}
 	
 	/**
 	 * Unpauses ultrasonicPoller
 	 */
 	public void unpauseUltrasonicPoller() {
-		ultrasonicPoller.running = true;
+		ultrasonicPoller.setRunning(true);
 	}
 	
 	/**
 	 * Pauses colorPoller
 	 */
 	public void pauseUltrasonicPoller() {
-		ultrasonicPoller.running = false;
+		ultrasonicPoller.setRunning(false);
 	}
 	
 	
-	//Setter methods for sensor user lists
 	/**
-	 * Setter method for ultrasonic user list
-	 * @param currentUltrasonicUsers
+	 * Returns the bus through which sensor data is delivered to the sensor users
+	 * 
+	 * @return the sensor bus
+	 */
+	public SensorBus getSensorBus() {
+		return sensorBus;
+	}
+	
+
+	/**
+	 * Sets the classifier used to determine the color of color sensor samples
+	 * 
+	 * @param colorClassifier
 	 */
-	public void setCurrentUltrasonicUsers(ArrayList<UltrasonicUser> currentUltrasonicUsers) {
-		this.currentUltrasonicUsers = currentUltrasonicUsers;
+	public void setColorClassifier(ColorClassifier colorClassifier) {
+		this.colorClassifier = colorClassifier;
 	}
 	
 	/**
-	 * Setter method for left light sensor user list
-	 * @param currentLeftLightSensorUsers
+	 * Sets a lookup table used instead of the color classifier to determine the color of color sensor samples
+	 * 
+	 * @param colorLookupTable table, or null to use the color classifier
 	 */
-	public void setCurrentLeftLightSensorUsers(ArrayList<LightSensorUser> currentLightSensorUsers) {
-		this.currentLightSensorUsers = currentLightSensorUsers;
+	public void setColorLookupTable(ColorLookupTable colorLookupTable) {
+		this.colorLookupTable = colorLookupTable;
 	}
 	
 	/**
-	 * Setter method for color sensor user list
-	 * @param currentColorSensorUsers
+	 * Sets the drive motors whose tacho counts are captured with every sample
+	 * 
+	 * @param leftMotor
+	 * @param rightMotor
 	 */
-	public void setCurrentColorSensorUsers(ArrayList<ColorSensorUser> currentColorSensorUsers) {
-		this.currentColorSensorUsers = currentColorSensorUsers;
+	public void setMotors(DriveMotor leftMotor, DriveMotor rightMotor) {
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+	}
+	
+	/**
+	 * Reads the drive motor tacho counts. Pollers call this right before fetching a sample.
+	 * 
+	 * @param tacho array receiving [left, right], zeros if no motors are set
+	 */
+	void readTachos(int[] tacho) {
+		if (leftMotor == null) {
+			tacho[0] = 0;
+			tacho[1] = 0;
+		} else {
+			tacho[0] = leftMotor.getTachoCount();
+			tacho[1] = rightMotor.getTachoCount();
+		}
 	}
 	
 
@@ -153,101 +188,40 @@ public class SensorController {
 	 * Sets the distance for all classes that use the ultrasonic sensor
 	 * 
 	 * @param distance
+	 * @param sampleTime clock nanoTime() at which the ultrasonic sensor was sampled
+	 * @param tacho tacho counts [left, right] at which the ultrasonic sensor was sampled
 	 */
-	public void setDistance(int distance) {
+	public void setDistance(int distance, long sampleTime, int[] tacho) {
 		//distance = usFilter.getFilteredValue(distance > 255 ? 255 : distance);
-		for (UltrasonicUser ultrasonicUser : currentUltrasonicUsers) {
-			ultrasonicUser.processUSDistance(distance);
-		}
+		sensorBus.dispatchDistance(distance, sampleTime, ++ultrasonicSequence, tacho[0], tacho[1]);
 	}
 
 	/**
 	 * Sets the left light sensor value for all classes that use the left light sensor
 	 * 
 	 * @param light
+	 * @param sampleTime clock nanoTime() at which the light sensors were sampled
+	 * @param tacho tacho counts [left, right] at which the light sensors were sampled
 	 */
-	public void setLight(int[] light) {
-		for (LightSensorUser lightSensorUser : currentLightSensorUsers) {
-			lightSensorUser.processLSData(light);
-		}
+	public void setLight(int[] light, long sampleTime, int[] tacho) {
+		sensorBus.dispatchLight(light, sampleTime, ++lightSequence, tacho[0], tacho[1]);
 	}
 
 	/**
-	 * Sets the color value for all classes that use the color sensor. Also computes RGB normalization calculations and
-	 * determines the color indicated by the RGB values.
+	 * Sets the color value for all classes that use the color sensor. The color indicated by the RGB values is
+	 * determined by the color lookup table if one is set, and by the color classifier otherwise.
 	 * 
 	 * @param light array of doubles, RGB values
+	 * @param sampleTime clock nanoTime() at which the color sensor was sampled
+	 * @param tacho tacho counts [left, right] at which the color sensor was sampled
 	 */
-	public void setColor(double[] light) {
-		int color = 0;
-
-		double R = light[0];
-		double G = light[1];
-		double B = light[2];
-
-		double Rn = R / Math.sqrt(Math.pow(R, 2) + Math.pow(G, 2) + Math.pow(B, 2));
-		double Gn = G / Math.sqrt(Math.pow(R, 2) + Math.pow(G, 2) + Math.pow(B, 2));
-		double Bn = B / Math.sqrt(Math.pow(R, 2) + Math.pow(G, 2) + Math.pow(B, 2));
-
-		double ORANGE_DISTANCE = Math
-				.sqrt(Math.pow(Rn - ORANGE_R, 2) + Math.pow(Gn - ORANGE_G, 2) + Math.pow(Bn - ORANGE_B, 2));
-		double YELLOW_DISTANCE = Math
-				.sqrt(Math.pow(Rn - YELLOW_R, 2) + Math.pow(Gn - YELLOW_G, 2) + Math.pow(Bn - YELLOW_B, 2));
-		double GREEN_DISTANCE = Math
-				.sqrt(Math.pow(Rn - GREEN_R, 2) + Math.pow(Gn - GREEN_G, 2) + Math.pow(Bn - GREEN_B, 2));
-		double BLUE_DISTANCE = Math
-				.sqrt(Math.pow(Rn - BLUE_R, 2) + Math.pow(Gn - BLUE_G, 2) + Math.pow(Bn - BLUE_B, 2));
-
-		if (ORANGE_DISTANCE < 0.1) {
-			color = 4;
-		} else if (YELLOW_DISTANCE < 0.12) {
-			color = 3;
-		} else if (BLUE_DISTANCE < 0.15) {
-			color = 1;
-		} else if (GREEN_DISTANCE < 0.1) {
-			color = 2;
-		}
-		for (ColorSensorUser colorSensorUser : currentColorSensorUsers) {
-			colorSensorUser.processColorData(color);
-		}
+	public void setColor(double[] light, long sampleTime, int[] tacho) {
+		int color;
+		ColorLookupTable table = colorLookupTable;
+		if (table != null)
+			color = table.classify(light[0], light[1], light[2]);
+		else
+			color = colorClassifier.classify(light[0], light[1], light[2], colorResult).getColor();
+		sensorBus.dispatchColor(color, sampleTime, ++colorSequence, tacho[0], tacho[1]);
 	}
-
-	//color sensor constants
-	private static double ORANGE_MEAN_R = 0.133333;
-	private static double ORANGE_MEAN_G = 0.031333;
-	private static double ORANGE_MEAN_B = 0.008823;
-	private static double YELLOW_MEAN_R = 0.0802921; //
-	private static double YELLOW_MEAN_G = 0.0609802; //
-	private static double YELLOW_MEAN_B = 0.016470; //
-	private static double GREEN_MEAN_R = 0.024509; //0.067642;
-	private static double GREEN_MEAN_G = 0.060784; //0.111789;
-	private static double GREEN_MEAN_B = 0.007843; //0.022945;
-	private static double BLUE_MEAN_R = 0.039234;
-	private static double BLUE_MEAN_G = 0.118627;
-	private static double BLUE_MEAN_B = 0.120593;
-
-	private static double ORANGE_R = (ORANGE_MEAN_R
-			/ Math.sqrt(Math.pow(ORANGE_MEAN_R, 2) + Math.pow(ORANGE_MEAN_G, 2) + Math.pow(ORANGE_MEAN_B, 2)));
-	private static double ORANGE_G = (ORANGE_MEAN_G
-			/ Math.sqrt(Math.pow(ORANGE_MEAN_R, 2) + Math.pow(ORANGE_MEAN_G, 2) + Math.pow(ORANGE_MEAN_B, 2)));
-	private static double ORANGE_B = (ORANGE_MEAN_B
-			/ Math.sqrt(Math.pow(ORANGE_MEAN_R, 2) + Math.pow(ORANGE_MEAN_G, 2) + Math.pow(ORANGE_MEAN_B, 2)));
-	private static double YELLOW_R = (YELLOW_MEAN_R
-			/ Math.sqrt(Math.pow(YELLOW_MEAN_R, 2) + Math.pow(YELLOW_MEAN_G, 2) + Math.pow(YELLOW_MEAN_B, 2)));
-	private static double YELLOW_G = (YELLOW_MEAN_G
-			/ Math.sqrt(Math.pow(YELLOW_MEAN_R, 2) + Math.pow(YELLOW_MEAN_G, 2) + Math.pow(YELLOW_MEAN_B, 2)));
-	private static double YELLOW_B = (YELLOW_MEAN_B
-			/ Math.sqrt(Math.pow(YELLOW_MEAN_R, 2) + Math.pow(YELLOW_MEAN_G, 2) + Math.pow(YELLOW_MEAN_B, 2)));
-	private static double GREEN_R = (GREEN_MEAN_R
-			/ Math.sqrt(Math.pow(GREEN_MEAN_R, 2) + Math.pow(GREEN_MEAN_G, 2) + Math.pow(GREEN_MEAN_B, 2)));
-	private static double GREEN_G = (GREEN_MEAN_G
-			/ Math.sqrt(Math.pow(GREEN_MEAN_R, 2) + Math.pow(GREEN_MEAN_G, 2) + Math.pow(GREEN_MEAN_B, 2)));
-	private static double GREEN_B = (GREEN_MEAN_B
-			/ Math.sqrt(Math.pow(GREEN_MEAN_R, 2) + Math.pow(GREEN_MEAN_G, 2) + Math.pow(GREEN_MEAN_B, 2)));
-	private static double BLUE_R = (BLUE_MEAN_R
-			/ Math.sqrt(Math.pow(BLUE_MEAN_R, 2) + Math.pow(BLUE_MEAN_G, 2) + Math.pow(BLUE_MEAN_B, 2)));
-	private static double BLUE_G = (BLUE_MEAN_G
-			/ Math.sqrt(Math.pow(BLUE_MEAN_R, 2) + Math.pow(BLUE_MEAN_G, 2) + Math.pow(BLUE_MEAN_B, 2)));
-	private static double BLUE_B = (BLUE_MEAN_B
-			/ Math.sqrt(Math.pow(BLUE_MEAN_R, 2) + Math.pow(BLUE_MEAN_G, 2) + Math.pow(BLUE_MEAN_B, 2)));
 }
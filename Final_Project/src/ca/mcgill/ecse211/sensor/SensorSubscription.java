@@ -0,0 +1,77 @@
+package ca.mcgill.ecse211.sensor;
+
+/**
+ * This class is the handle returned when a sensor user subscribes to the sensor bus. It can be used to change
+ * when the user is enabled or to unsubscribe it.
+ * 
+ * @author Matthew
+ *
+ */
+public class SensorSubscription {
+
+	private final SensorBus bus;
+	private final SensorChannel channel;
+	private final Object user;
+	private int enableMask;
+
+	/**
+	 * Constructor for the SensorSubscription class. Subscriptions are created through the subscribe methods of SensorBus.
+	 * 
+	 * @param bus bus the user is subscribed to
+	 * @param channel channel the user receives data from
+	 * @param user the subscribed sensor user
+	 * @param enableMask modes in which the user receives data
+	 */
+	SensorSubscription(SensorBus bus, SensorChannel channel, Object user, int enableMask) {
+		this.bus = bus;
+		this.channel = channel;
+		this.user = user;
+		this.enableMask = enableMask;
+	}
+
+	/**
+	 * Removes the user from the bus
+	 */
+	public void unsubscribe() {
+		bus.unsubscribe(this);
+	}
+
+	/**
+	 * Changes the modes in which the user receives data
+	 * 
+	 * @param enableMask new mask of modes
+	 */
+	public void setEnableMask(int enableMask) {
+		bus.setEnableMask(this, enableMask);
+	}
+
+	/**
+	 * @return mask of modes in which the user receives data
+	 */
+	public int getEnableMask() {
+		return enableMask;
+	}
+
+	/**
+	 * @return channel the user receives data from
+	 */
+	public SensorChannel getChannel() {
+		return channel;
+	}
+
+	/**
+	 * Setter used by the bus, which serializes all changes
+	 * 
+	 * @param enableMask new mask of modes
+	 */
+	void updateEnableMask(int enableMask) {
+		this.enableMask = enableMask;
+	}
+
+	/**
+	 * @return the subscribed sensor user
+	 */
+	Object getUser() {
+		return user;
+	}
+}
@@ -0,0 +1,186 @@
+package ca.mcgill.ecse211.sensor;
+
+import ca.mcgill.ecse211.scheduling.Clock;
+import ca.mcgill.ecse211.scheduling.Condition;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+
+/**
+ * This class decides the color in front of the color sensor (a ring color, or 0 for no ring) from a sequence
+ * of color samples, and stops as soon as the decision reaches the configured error rate instead of waiting
+ * for a fixed time.
+ * <p>
+ * It runs two sequential probability ratio tests. The first tells a ring from no ring: with no ring, a sample
+ * reads 0 with probability accuracy, and with a ring it reads 0 with probability ringZeroRate, as the sensor
+ * also sees through the hole of the ring and off its edges. Readings of 0 are therefore weak evidence, and never
+ * count against a color. The second picks the color of the ring, under the model that each nonzero sample reads
+ * the true color with probability accuracy and any of the three other colors otherwise. The log likelihood ratio
+ * between two colors is then proportional to the difference of their sample counts, so a color is decided once
+ * a ring is established and its count leads every other color count by a fixed number of samples.
+ * <p>
+ * When no decision is reached in time, any nonzero reading means a ring, like the fixed wait this replaces.
+ * 
+ * @author Matthew
+ *
+ */
+public class SequentialColorDetector {
+
+	private static final int COLORS = 5;	//no ring, blue, green, yellow, orange
+
+	private final int requiredLead;
+	private final double threshold;	//log likelihood ratio of no ring against a ring needed to decide either
+	private final double zeroEvidence;	//added to the ratio by a 0 sample
+	private final double colorEvidence;	//added to the ratio by a nonzero sample, negative
+	private final int[] counts = new int[COLORS];
+	private double noRingRatio;
+	private int lastColor;
+
+	private boolean active = false;
+	private long startTime;
+	private int decision = -1;
+	private long decisionTime;
+	private int samples;
+
+	private final Condition decided = new Condition() {
+		public boolean isMet() {
+			synchronized (SequentialColorDetector.this) {
+				return decision >= 0;
+			}
+		}
+	};
+
+	/**
+	 * Constructor for the SequentialColorDetector class
+	 * 
+	 * @param errorRate acceptable probability of deciding the wrong color, between 0 and 0.5
+	 * @param accuracy probability that a single sample reads the true color, between 0.25 and 1
+	 * @param ringZeroRate probability that a sample reads 0 while a ring is in front of the sensor, below accuracy
+	 */
+	public SequentialColorDetector(double errorRate, double accuracy, double ringZeroRate) {
+		if (!(errorRate > 0 && errorRate < 0.5) || !(accuracy > 1.0 / (COLORS - 1) && accuracy < 1)
+				|| !(ringZeroRate > 0 && ringZeroRate < accuracy))
+			throw new IllegalArgumentException("Invalid error rate, accuracy or ring zero rate");
+		this.threshold = Math.log((1 - errorRate) / errorRate);
+		this.zeroEvidence = Math.log(accuracy / ringZeroRate);
+		this.colorEvidence = Math.log((1 - accuracy) / (1 - ringZeroRate));
+		double evidence = Math.log(accuracy * (COLORS - 2) / (1 - accuracy));	//per sample of difference
+		this.requiredLead = Math.max(1, (int) Math.ceil(threshold / evidence));
+	}
+
+	/**
+	 * Starts a new decision. Samples fetched before the start time are ignored.
+	 * 
+	 * @param startTime clock nanoTime() from which samples count
+	 */
+	public synchronized void start(long startTime) {
+		for (int i = 0; i < COLORS; i++) {
+			counts[i] = 0;
+		}
+		this.startTime = startTime;
+		this.decision = -1;
+		this.samples = 0;
+		this.noRingRatio = 0;
+		this.lastColor = 0;
+		this.active = true;
+	}
+
+	/**
+	 * Adds a sample to the current decision
+	 * 
+	 * @param color color read by the sensor
+	 * @param timestamp clock nanoTime() at which the sample was fetched
+	 * @return true if this sample completed the decision
+	 */
+	public synchronized boolean addSample(int color, long timestamp) {
+		if (!active || timestamp - startTime < 0 || color < 0 || color >= COLORS)
+			return false;
+		samples++;
+		counts[color]++;
+		if (color == 0) {
+			noRingRatio += zeroEvidence;
+			if (noRingRatio < threshold)
+				return false;
+		} else {
+			noRingRatio += colorEvidence;
+			lastColor = color;
+			if (noRingRatio > -threshold || counts[color] - runnerUp(color) < requiredLead)
+				return false;
+		}
+		decide(color, timestamp);
+		return true;
+	}
+
+	/**
+	 * Waits on the clock of the TaskScheduler until a color is decided. If no color is decided in time, the
+	 * color with the most nonzero samples is returned, the latest one if there is a tie, and 0 if all samples
+	 * were 0.
+	 * 
+	 * @param timeout maximum time to wait in ms, from the start of the decision
+	 * @return decided color
+	 * @throws InterruptedException
+	 */
+	public int awaitDecision(long timeout) throws InterruptedException {
+		Clock clock = TaskScheduler.getClock();
+		long remaining;
+		synchronized (this) {
+			remaining = startTime + timeout * 1000000L - clock.nanoTime();
+		}
+		clock.waitFor(decided, (remaining + 999999) / 1000000L);
+		synchronized (this) {
+			if (decision < 0) {
+				int leader = lastColor;
+				for (int i = 1; i < COLORS; i++) {
+					if (counts[i] > counts[leader])
+						leader = i;
+				}
+				decide(leader, clock.nanoTime());
+			}
+			return decision;
+		}
+	}
+
+	/**
+	 * @return time from the start to the last decision in ns
+	 */
+	public synchronized long getDecisionTime() {
+		return decisionTime;
+	}
+
+	/**
+	 * @return number of samples used by the last decision
+	 */
+	public synchronized int getSampleCount() {
+		return samples;
+	}
+
+	/**
+	 * @return lead in samples a color needs to be decided
+	 */
+	public int getRequiredLead() {
+		return requiredLead;
+	}
+
+	/**
+	 * Ends the current decision
+	 * 
+	 * @param color decided color
+	 * @param time clock nanoTime() of the decision
+	 */
+	private void decide(int color, long time) {
+		decision = color;
+		decisionTime = time - startTime;
+		active = false;
+	}
+
+	/**
+	 * @param color a ring color
+	 * @return largest sample count among the other ring colors
+	 */
+	private int runnerUp(int color) {
+		int max = 0;
+		for (int i = 1; i < COLORS; i++) {
+			if (i != color && counts[i] > max)
+				max = counts[i];
+		}
+		return max;
+	}
+}
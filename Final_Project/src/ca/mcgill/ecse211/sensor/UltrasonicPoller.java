@@ -1,6 +1,9 @@
 package ca.mcgill.ecse211.sensor;
 
-import lejos.robotics.SampleProvider;
+import ca.mcgill.ecse211.hardware.RangeSensor;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
 
 /**
  * This class runs a thread that polls the ultrasonic sensor at specific intervals of time and stores
@@ -12,21 +15,25 @@ public class UltrasonicPoller extends Thread {
 
 	private static final int US_POLLER_PERIOD = 50;
 
-	private SampleProvider usSP;
-	private float[] usData;
+	private RangeSensor usSensor;
 	SensorController sensorController;
 	
-	public boolean running = false;
+	private PeriodicTask task;
+	private int[] tacho = new int[2];	//drive motor tacho counts when the sample was fetched
 
 	/**
 	 * Constructor for ultrasonic poller
 	 * 
-	 * @param usSP ultrasonic sample provider
-	 * @param usData data buffer for ultrasonic sensor
+	 * @param usSensor ultrasonic sensor
 	 */
-	public UltrasonicPoller(SampleProvider usSP, float[] usData) {
-		this.usSP = usSP;
-		this.usData = usData;
+	public UltrasonicPoller(RangeSensor usSensor) {
+		this.usSensor = usSensor;
+		this.task = TaskScheduler.createTask("ultrasonic poller", US_POLLER_PERIOD, OverrunPolicy.SKIP, true,
+				new Runnable() {
+					public void run() {
+						poll();
+					}
+				});
 	}
 	
 
@@ -34,26 +41,34 @@ public class UltrasonicPoller extends Thread {
 	 * polls the ultrasonic sensor at the interval set by US_POLLER_PERIOD
 	 */
 	public void run() {
-		long updateStart, updateEnd, sleepPeriod;
-		int distance;
-
-		while (true) {
-			updateStart = System.currentTimeMillis();
-			
-			if (running) {
-				usSP.fetchSample(usData, 0); // acquire data
-				distance = (int) (usData[0] * 100.0); // extract from buffer, cast to int
-				sensorController.setDistance(distance); // now take action depending on value
-			}
-			
-			updateEnd = System.currentTimeMillis();
-			sleepPeriod = US_POLLER_PERIOD - (updateEnd - updateStart);
-			try {
-				if (sleepPeriod >= 0)
-					Thread.sleep(sleepPeriod);
-			} catch (InterruptedException e) {
-				return; // end thread
-			}
-		}
+		task.run();
+	}
+	
+	/**
+	 * Fetches one sample and passes it to the sensor controller
+	 */
+	void poll() {
+		long sampleTime = TaskScheduler.getClock().nanoTime();
+		sensorController.readTachos(tacho);
+		int distance = (int) (usSensor.fetchDistance() * 100.0); // acquire data, cast to int
+		sensorController.setDistance(distance, sampleTime, tacho); // now take action depending on value
+	}
+	
+	/**
+	 * Pauses or unpauses the poller. A paused poller's thread is parked until it is unpaused.
+	 * @param running whether the poller should poll
+	 */
+	public void setRunning(boolean running) {
+		if(running)
+			task.unpause();
+		else
+			task.pause();
+	}
+	
+	/**
+	 * @return the periodic task polling the sensor, for timing statistics
+	 */
+	public PeriodicTask getTask() {
+		return task;
 	}
 }
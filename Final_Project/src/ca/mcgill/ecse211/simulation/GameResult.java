@@ -0,0 +1,63 @@
+package ca.mcgill.ecse211.simulation;
+
+/**
+ * This class holds the outcome of one simulated game
+ * 
+ * @author Matthew
+ *
+ */
+public class GameResult {
+
+	private final boolean done;
+	private final long missionTime;
+	private final int rings;
+	private final double odometerError;
+
+	/**
+	 * Constructor for the GameResult class
+	 * @param done whether the robot finished before the end of the game
+	 * @param missionTime simulated time the game took in ns
+	 * @param rings number of rings the robot believes it picked up
+	 * @param odometerError distance between the odometer's and the true position at the end, in cm
+	 */
+	public GameResult(boolean done, long missionTime, int rings, double odometerError) {
+		this.done = done;
+		this.missionTime = missionTime;
+		this.rings = rings;
+		this.odometerError = odometerError;
+	}
+
+	/**
+	 * @return whether the robot finished before the end of the game
+	 */
+	public boolean isDone() {
+		return done;
+	}
+
+	/**
+	 * @return simulated time the game took in ns
+	 */
+	public long getMissionTime() {
+		return missionTime;
+	}
+
+	/**
+	 * @return number of rings the robot believes it picked up
+	 */
+	public int getRings() {
+		return rings;
+	}
+
+	/**
+	 * @return distance between the odometer's and the true position at the end, in cm
+	 */
+	public double getOdometerError() {
+		return odometerError;
+	}
+
+	@Override
+	public String toString() {
+		return (done ? "done" : "timed out") + " after " + String.format("%.1f", missionTime / 1e9) + " s, " + rings
+				+ " rings, odometer off by " + String.format("%.1f", odometerError) + " cm";
+	}
+}
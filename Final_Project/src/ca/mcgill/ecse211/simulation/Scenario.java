@@ -0,0 +1,117 @@
+package ca.mcgill.ecse211.simulation;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import ca.mcgill.ecse211.config.GameConfig;
+import ca.mcgill.ecse211.game.WiFi;
+
+/**
+ * This class describes a simulated game: the game parameters the server would send and the rings hanging on
+ * our tree, which the server does not send.
+ *
+ * @author Matthew
+ *
+ */
+public class Scenario {
+
+	private final GameConfig config;
+
+	//rings on each side of our tree (1 = north, 2 = east, 3 = south, 4 = west); 0 = no ring
+	private final int[] ringColors = { 0, 1, 2, 3, 4 };
+	private final boolean[] ringUpper = { false, true, false, true, false };
+
+	/**
+	 * Constructor for the Scenario class, with a ring of each color on our tree
+	 *
+	 * @param config game parameters
+	 */
+	public Scenario(GameConfig config) {
+		this.config = config;
+	}
+
+	/**
+	 * Creates the scenario of server/example_data_fill.xml: our team is red and starts in corner 1
+	 *
+	 * @return the default scenario
+	 */
+	public static Scenario createDefault() {
+		String[] keys = GameConfig.getKeys();
+		int[] values = { WiFi.TEAM_NUMBER, 1, 2, 3, 11, 0, 15, 4, 0, 5, 4, 9, 0, 0, 9, 4, 9, 2, 11, 3, 3, 4, 4, 6, 5,
+				2, 2, 2 };
+		Map<String, Long> data = new LinkedHashMap<String, Long>();
+		for (int i = 0; i < keys.length; i++) {
+			data.put(keys[i], Long.valueOf(values[i]));
+		}
+		return new Scenario(GameConfig.fromMap(data));
+	}
+
+	/**
+	 * Loads the game parameters of a layout file in the server's format
+	 *
+	 * @param fileName path to the layout file
+	 * @return scenario with the default rings
+	 * @throws IOException if the file cannot be read or a game parameter is missing
+	 */
+	public static Scenario load(String fileName) throws IOException {
+		return new Scenario(GameConfig.load(fileName));
+	}
+
+	/**
+	 * @param key name of the parameter, as sent by the server
+	 * @return value of the parameter
+	 */
+	public int get(String key) {
+		return config.get(key);
+	}
+
+	/**
+	 * @return the game parameters
+	 */
+	public GameConfig getConfig() {
+		return config;
+	}
+
+	/**
+	 * @return whether our team is the red team
+	 */
+	public boolean isRed() {
+		return get("RedTeam") == WiFi.TEAM_NUMBER;
+	}
+
+	/**
+	 * @return our starting corner
+	 */
+	public int getCorner() {
+		return isRed() ? get("RedCorner") : get("GreenCorner");
+	}
+
+	/**
+	 * Places a ring on a side of our tree
+	 *
+	 * @param side 1 = north, 2 = east, 3 = south, 4 = west
+	 * @param color 1 = blue, 2 = green, 3 = yellow, 4 = orange, 0 = no ring
+	 * @param upper whether the ring is on the upper level
+	 */
+	public void setRing(int side, int color, boolean upper) {
+		ringColors[side] = color;
+		ringUpper[side] = upper;
+	}
+
+	/**
+	 * @param side 1 = north, 2 = east, 3 = south, 4 = west
+	 * @return color of the ring on that side of our tree, 0 if there is none
+	 */
+	public int getRingColor(int side) {
+		return ringColors[side];
+	}
+
+	/**
+	 * @param side 1 = north, 2 = east, 3 = south, 4 = west
+	 * @return whether the ring on that side of our tree is on the upper level
+	 */
+	public boolean isRingUpper(int side) {
+		return ringUpper[side];
+	}
+}
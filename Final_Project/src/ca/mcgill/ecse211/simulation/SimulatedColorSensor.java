@@ -0,0 +1,27 @@
+package ca.mcgill.ecse211.simulation;
+
+import ca.mcgill.ecse211.hardware.ColorSensor;
+
+/**
+ * This class is the color sensor on the arm of the simulated robot, reading the rings of our tree
+ * 
+ * @author Matthew
+ *
+ */
+public class SimulatedColorSensor implements ColorSensor {
+
+	private final SimulatedWorld world;
+
+	/**
+	 * Constructor for the SimulatedColorSensor class
+	 * @param world field the sensor looks at
+	 */
+	public SimulatedColorSensor(SimulatedWorld world) {
+		this.world = world;
+	}
+
+	@Override
+	public void fetchRGB(float[] rgb) {
+		world.color(rgb);
+	}
+}
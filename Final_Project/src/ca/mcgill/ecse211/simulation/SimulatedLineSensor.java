@@ -0,0 +1,32 @@
+package ca.mcgill.ecse211.simulation;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.LightSensor;
+
+/**
+ * This class is one of the two line sensors at the back of the simulated robot, placed like those of the
+ * robot: LS_L_DISTANCE behind the centre of rotation and LS_WIDTH apart
+ * 
+ * @author Matthew
+ *
+ */
+public class SimulatedLineSensor implements LightSensor {
+
+	private final SimulatedWorld world;
+	private final double right;	//cm right of the centre of rotation
+
+	/**
+	 * Constructor for the SimulatedLineSensor class
+	 * @param world field the sensor looks at
+	 * @param left whether this is the left sensor
+	 */
+	public SimulatedLineSensor(SimulatedWorld world, boolean left) {
+		this.world = world;
+		this.right = (left ? -0.5 : 0.5) * RingChallenge.LS_WIDTH;
+	}
+
+	@Override
+	public float fetchIntensity() {
+		return world.lineIntensity(-RingChallenge.LS_L_DISTANCE, right);
+	}
+}
@@ -0,0 +1,27 @@
+package ca.mcgill.ecse211.simulation;
+
+import ca.mcgill.ecse211.hardware.RangeSensor;
+
+/**
+ * This class is the ultrasonic sensor of the simulated robot, facing forward
+ * 
+ * @author Matthew
+ *
+ */
+public class SimulatedRangeSensor implements RangeSensor {
+
+	private final SimulatedWorld world;
+
+	/**
+	 * Constructor for the SimulatedRangeSensor class
+	 * @param world field the sensor looks at
+	 */
+	public SimulatedRangeSensor(SimulatedWorld world) {
+		this.world = world;
+	}
+
+	@Override
+	public float fetchDistance() {
+		return world.range();
+	}
+}
@@ -0,0 +1,300 @@
+package ca.mcgill.ecse211.simulation;
+
+import java.util.Random;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.VirtualMotor;
+
+/**
+ * This class models the playing field and the true pose of the robot for the simulator. The pose is integrated
+ * exactly (as an arc) from the angles of the virtual drive motors, and the sensors read the field at that pose:
+ * the grid lines under the line sensors, the walls, tunnels and trees in front of the ultrasonic sensor, and the
+ * rings of our tree in front of the color sensor.
+ * <p>
+ * Coordinates are in cm from the lower left corner of the field, and headings are in radians clockwise from
+ * the y axis, like the odometer.
+ *
+ * @author Matthew
+ *
+ */
+public class SimulatedWorld {
+
+	private static final double LINE_WIDTH = 1.5;	//cm, fully dark
+	private static final double LINE_EDGE = 0.5;	//cm over which the intensity goes from the board to the line
+	private static final double BOARD_INTENSITY = 0.45;
+	private static final double LINE_INTENSITY = 0.1;
+
+	private static final double US_OFFSET = 7.0;	//cm from the centre of rotation to the ultrasonic sensor
+	private static final double US_RANGE = 255.0;	//cm, no echo beyond
+	private static final double TREE_HALF_WIDTH = 4.0;	//cm
+	private static final double TUNNEL_WALL_INSET = 2.0;	//cm between the grid line and a tunnel wall
+
+	private static final double RING_MIN_DISTANCE = 23.0;	//cm from the centre of rotation to the tree
+	private static final double RING_MAX_DISTANCE = 28.5;
+	private static final double RING_MAX_ANGLE = Math.toRadians(15);	//between the heading and the tree
+	private static final int UPPER_LEVEL_ANGLE = 310;	//color arm angle reading the upper level
+	private static final int LOWER_LEVEL_ANGLE = 360;
+	private static final int LEVEL_TOLERANCE = 15;	//deg
+	private static final double COLOR_NOISE = 0.05;	//relative standard deviation of the RGB values
+
+	//mean raw RGB of each ring color (1 = blue, 2 = green, 3 = yellow, 4 = orange) and of no ring
+	private static final double[][] RING_RGB = { { 0.01, 0.012, 0.01 }, { 0.039234, 0.118627, 0.120593 },
+			{ 0.024509, 0.060784, 0.007843 }, { 0.0802921, 0.0609802, 0.016470 }, { 0.133333, 0.031333, 0.008823 } };
+
+	private final VirtualMotor leftMotor;
+	private final VirtualMotor rightMotor;
+	private final VirtualMotor colorMotor;
+	private final double leftRadius;
+	private final double rightRadius;
+	private final double track;
+	private final Random random;
+
+	//field, as wall segments {x1, y1, x2, y2}
+	private final double width = RingChallenge.GAME_GRID_X * RingChallenge.TILE_SIZE;
+	private final double height = RingChallenge.GAME_GRID_Y * RingChallenge.TILE_SIZE;
+	private double[][] walls = new double[0][];
+	private double treeX, treeY;	//our tree
+	private Scenario scenario;
+
+	//true state
+	private double x, y, theta;
+	private double lastLeftAngle, lastRightAngle;
+	private double colorArmZero;
+
+	/**
+	 * Constructor for the SimulatedWorld class. The true wheel radii and track may differ from the values the
+	 * robot's code uses, to study the effect of calibration errors.
+	 *
+	 * @param leftMotor left drive motor
+	 * @param rightMotor right drive motor
+	 * @param colorMotor motor of the color sensor arm
+	 * @param leftRadius true left wheel radius in cm
+	 * @param rightRadius true right wheel radius in cm
+	 * @param track true track in cm
+	 * @param seed seed of the sensor noise
+	 */
+	public SimulatedWorld(VirtualMotor leftMotor, VirtualMotor rightMotor, VirtualMotor colorMotor, double leftRadius,
+			double rightRadius, double track, long seed) {
+		this.leftMotor = leftMotor;
+		this.rightMotor = rightMotor;
+		this.colorMotor = colorMotor;
+		this.leftRadius = leftRadius;
+		this.rightRadius = rightRadius;
+		this.track = track;
+		this.random = new Random(seed);
+	}
+
+	/**
+	 * Builds the field of a scenario: outer walls, both tunnels and both trees
+	 *
+	 * @param scenario game to simulate
+	 */
+	public void setLayout(Scenario scenario) {
+		this.scenario = scenario;
+		double[][] newWalls = new double[4 + 4 + 8][];
+		int n = 0;
+		newWalls[n++] = new double[] { 0, 0, width, 0 };
+		newWalls[n++] = new double[] { width, 0, width, height };
+		newWalls[n++] = new double[] { width, height, 0, height };
+		newWalls[n++] = new double[] { 0, height, 0, 0 };
+		n = addTunnel(newWalls, n, scenario.get("TNR_LL_x"), scenario.get("TNR_LL_y"), scenario.get("TNR_UR_x"),
+				scenario.get("TNR_UR_y"));
+		n = addTunnel(newWalls, n, scenario.get("TNG_LL_x"), scenario.get("TNG_LL_y"), scenario.get("TNG_UR_x"),
+				scenario.get("TNG_UR_y"));
+		n = addTree(newWalls, n, scenario.get("TR_x"), scenario.get("TR_y"));
+		n = addTree(newWalls, n, scenario.get("TG_x"), scenario.get("TG_y"));
+		walls = newWalls;
+		treeX = (scenario.isRed() ? scenario.get("TR_x") : scenario.get("TG_x")) * RingChallenge.TILE_SIZE;
+		treeY = (scenario.isRed() ? scenario.get("TR_y") : scenario.get("TG_y")) * RingChallenge.TILE_SIZE;
+	}
+
+	/**
+	 * Places the robot in the middle of the tile of its starting corner, and the color arm at rest
+	 *
+	 * @param heading heading of the robot in degrees
+	 */
+	public synchronized void reset(double heading) {
+		int corner = scenario.getCorner();
+		double half = RingChallenge.TILE_SIZE / 2;
+		x = corner == 1 || corner == 2 ? width - half : half;
+		y = corner == 2 || corner == 3 ? height - half : half;
+		theta = Math.toRadians(heading);
+		lastLeftAngle = leftMotor.getAngle();
+		lastRightAngle = rightMotor.getAngle();
+		colorArmZero = colorMotor.getAngle();
+	}
+
+	/**
+	 * Places the robot at a pose, e.g. the start of a calibration
+	 *
+	 * @param x x position in cm
+	 * @param y y position in cm
+	 * @param heading heading of the robot in degrees
+	 */
+	public synchronized void place(double x, double y, double heading) {
+		this.x = x;
+		this.y = y;
+		theta = Math.toRadians(heading);
+		lastLeftAngle = leftMotor.getAngle();
+		lastRightAngle = rightMotor.getAngle();
+	}
+
+	/**
+	 * Moves the robot by the rotation of the wheels since the last update. Must be called often enough that
+	 * the wheel speeds are constant in between, e.g. at every tick of the clock.
+	 */
+	public synchronized void update() {
+		double leftAngle = leftMotor.getAngle();
+		double rightAngle = rightMotor.getAngle();
+		double distL = Math.toRadians(leftAngle - lastLeftAngle) * leftRadius;
+		double distR = Math.toRadians(rightAngle - lastRightAngle) * rightRadius;
+		lastLeftAngle = leftAngle;
+		lastRightAngle = rightAngle;
+
+		double distance = (distL + distR) / 2;
+		double dTheta = (distL - distR) / track;
+		if (Math.abs(dTheta) < 1e-9) {
+			x += distance * Math.sin(theta);
+			y += distance * Math.cos(theta);
+		} else {
+			double radius = distance / dTheta;
+			x += radius * (Math.cos(theta) - Math.cos(theta + dTheta));
+			y += radius * (Math.sin(theta + dTheta) - Math.sin(theta));
+		}
+		theta += dTheta;
+	}
+
+	/**
+	 * @param xyt array receiving the true x (cm), y (cm) and heading (degrees, 0 to 360)
+	 */
+	public synchronized void getXYT(double[] xyt) {
+		xyt[0] = x;
+		xyt[1] = y;
+		xyt[2] = (Math.toDegrees(theta) % 360 + 360) % 360;
+	}
+
+	/**
+	 * Reads the floor under a line sensor
+	 *
+	 * @param forward position of the sensor ahead of the centre of rotation in cm
+	 * @param right position of the sensor right of the centre of rotation in cm
+	 * @return intensity of the floor, from 0 to 1
+	 */
+	public synchronized float lineIntensity(double forward, double right) {
+		update();
+		double sin = Math.sin(theta), cos = Math.cos(theta);
+		double sensorX = x + forward * sin + right * cos;
+		double sensorY = y + forward * cos - right * sin;
+		double edge = Math.min(lineDistance(sensorX), lineDistance(sensorY)) - LINE_WIDTH / 2;
+		if (edge >= LINE_EDGE)
+			return (float) BOARD_INTENSITY;
+		if (edge <= 0)
+			return (float) LINE_INTENSITY;
+		return (float) (LINE_INTENSITY + (BOARD_INTENSITY - LINE_INTENSITY) * edge / LINE_EDGE);
+	}
+
+	/**
+	 * Casts the ultrasonic beam from the front of the robot
+	 *
+	 * @return distance to the first wall, tunnel or tree in m, infinity if there is none in range
+	 */
+	public synchronized float range() {
+		update();
+		double dx = Math.sin(theta), dy = Math.cos(theta);
+		double ox = x + US_OFFSET * dx, oy = y + US_OFFSET * dy;
+		double nearest = US_RANGE;
+		for (double[] wall : walls) {
+			double ex = wall[2] - wall[0], ey = wall[3] - wall[1];
+			double denominator = dx * ey - dy * ex;
+			if (Math.abs(denominator) < 1e-12)
+				continue;
+			double wx = wall[0] - ox, wy = wall[1] - oy;
+			double t = (wx * ey - wy * ex) / denominator;	//along the beam
+			double u = (wx * dy - wy * dx) / denominator;	//along the wall
+			if (t >= 0 && t < nearest && u >= 0 && u <= 1)
+				nearest = t;
+		}
+		return nearest >= US_RANGE ? Float.POSITIVE_INFINITY : (float) (nearest / 100);
+	}
+
+	/**
+	 * Reads the color sensor: the ring in front of it if the robot faces a side of our tree at the right
+	 * distance with the color arm at that ring's level, the background otherwise
+	 *
+	 * @param rgb array receiving the red, green and blue values, from 0 to 1
+	 */
+	public synchronized void color(float[] rgb) {
+		update();
+		int color = 0;
+		double dx = treeX - x, dy = treeY - y;
+		double distance = Math.sqrt(dx * dx + dy * dy);
+		double bearing = Math.atan2(dx, dy) - theta;
+		bearing = Math.atan2(Math.sin(bearing), Math.cos(bearing));
+		if (distance >= RING_MIN_DISTANCE && distance <= RING_MAX_DISTANCE && Math.abs(bearing) <= RING_MAX_ANGLE) {
+			int side = facedSide(dx, dy);
+			double armAngle = colorMotor.getAngle() - colorArmZero;
+			int level = scenario.isRingUpper(side) ? UPPER_LEVEL_ANGLE : LOWER_LEVEL_ANGLE;
+			if (Math.abs(armAngle - level) <= LEVEL_TOLERANCE)
+				color = scenario.getRingColor(side);
+		}
+		for (int i = 0; i < 3; i++) {
+			rgb[i] = (float) Math.max(0, RING_RGB[color][i] * (1 + COLOR_NOISE * random.nextGaussian()));
+		}
+	}
+
+	/**
+	 * @param coordinate x or y position in cm
+	 * @return distance to the nearest grid line across that axis in cm
+	 */
+	private static double lineDistance(double coordinate) {
+		double offset = coordinate % RingChallenge.TILE_SIZE;
+		if (offset < 0)
+			offset += RingChallenge.TILE_SIZE;
+		return Math.min(offset, RingChallenge.TILE_SIZE - offset);
+	}
+
+	/**
+	 * @param dx x offset from the robot to the tree
+	 * @param dy y offset from the robot to the tree
+	 * @return side of the tree the robot is on (1 = north, 2 = east, 3 = south, 4 = west)
+	 */
+	private static int facedSide(double dx, double dy) {
+		if (Math.abs(dy) >= Math.abs(dx))
+			return dy < 0 ? 1 : 3;
+		return dx < 0 ? 2 : 4;
+	}
+
+	/**
+	 * Adds the two long walls of a tunnel
+	 *
+	 * @return index of the next free wall
+	 */
+	private static int addTunnel(double[][] walls, int n, int llX, int llY, int urX, int urY) {
+		double tile = RingChallenge.TILE_SIZE;
+		double x1 = Math.min(llX, urX) * tile, x2 = Math.max(llX, urX) * tile;
+		double y1 = Math.min(llY, urY) * tile, y2 = Math.max(llY, urY) * tile;
+		if (y2 - y1 > x2 - x1) {	//vertical tunnel
+			walls[n++] = new double[] { x1 + TUNNEL_WALL_INSET, y1, x1 + TUNNEL_WALL_INSET, y2 };
+			walls[n++] = new double[] { x2 - TUNNEL_WALL_INSET, y1, x2 - TUNNEL_WALL_INSET, y2 };
+		} else {
+			walls[n++] = new double[] { x1, y1 + TUNNEL_WALL_INSET, x2, y1 + TUNNEL_WALL_INSET };
+			walls[n++] = new double[] { x1, y2 - TUNNEL_WALL_INSET, x2, y2 - TUNNEL_WALL_INSET };
+		}
+		return n;
+	}
+
+	/**
+	 * Adds the four faces of a tree standing on a grid intersection
+	 *
+	 * @return index of the next free wall
+	 */
+	private static int addTree(double[][] walls, int n, int gridX, int gridY) {
+		double cx = gridX * RingChallenge.TILE_SIZE, cy = gridY * RingChallenge.TILE_SIZE;
+		double h = TREE_HALF_WIDTH;
+		walls[n++] = new double[] { cx - h, cy - h, cx + h, cy - h };
+		walls[n++] = new double[] { cx + h, cy - h, cx + h, cy + h };
+		walls[n++] = new double[] { cx + h, cy + h, cx - h, cy + h };
+		walls[n++] = new double[] { cx - h, cy + h, cx - h, cy - h };
+		return n;
+	}
+}
@@ -0,0 +1,287 @@
+package ca.mcgill.ecse211.simulation;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import ca.mcgill.ecse211.game.GameController;
+import ca.mcgill.ecse211.game.GameNavigation;
+import ca.mcgill.ecse211.game.GameState;
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.game.RingSearcher;
+import ca.mcgill.ecse211.game.TimeKeeper;
+import ca.mcgill.ecse211.game.WiFi;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.hardware.VirtualMotor;
+import ca.mcgill.ecse211.hardware.VirtualSpeaker;
+import ca.mcgill.ecse211.localization.LightLocalization;
+import ca.mcgill.ecse211.localization.Navigation;
+import ca.mcgill.ecse211.localization.ParticleFilter;
+import ca.mcgill.ecse211.localization.ParticleLocalizer;
+import ca.mcgill.ecse211.localization.UltrasonicLocalization;
+import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.odometry.OdometerExceptions;
+import ca.mcgill.ecse211.odometry.PoseCorrection;
+import ca.mcgill.ecse211.odometry.PoseFusion;
+import ca.mcgill.ecse211.scheduling.ClockStoppedException;
+import ca.mcgill.ecse211.scheduling.Condition;
+import ca.mcgill.ecse211.scheduling.CyclicExecutive;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.scheduling.VirtualClock;
+import ca.mcgill.ecse211.sensor.LightPoller;
+import ca.mcgill.ecse211.sensor.SensorController;
+import ca.mcgill.ecse211.sensor.SensorExceptions;
+import ca.mcgill.ecse211.sensor.UltrasonicPoller;
+
+/**
+ * This class runs complete games (GameController.finalDemo) on a simulated robot and field, faster than real
+ * time. The odometer and the pollers run in a cyclic executive driven by a virtual clock, and everything that
+ * reads or waits for time uses that clock, so a game only takes as long as its computation. It reports the
+ * mission time of each game and the number of games simulated per second of wall time.
+ * <p>
+ * Usage: Simulator [games] [layout.xml] [-v]. The layout is a server layout file (default: the game of
+ * server/example_data_fill.xml); -v shows the output of the game code.
+ *
+ * @author Matthew
+ *
+ */
+public class Simulator {
+
+	private static final int DEFAULT_GAMES = 10;
+	private static final long SEED = 211;
+
+	private final Scenario scenario;
+	private final VirtualClock clock;
+	private final VirtualMotor leftMotor = new VirtualMotor();
+	private final VirtualMotor rightMotor = new VirtualMotor();
+	private final VirtualMotor armMotor = new VirtualMotor();
+	private final VirtualMotor colorMotor = new VirtualMotor();
+	private final SimulatedWorld world;
+	private final Odometer odometer;
+	private final SensorController sensorController;
+	private final CyclicExecutive executive;
+	private final Hardware hardware;
+	private ParticleLocalizer particleLocalizer;
+	private PoseFusion poseFusion;
+	private final Random random = new Random(SEED);
+
+	private final double[] truePose = new double[3];
+	private final double[] odometerPose = new double[3];
+
+	/**
+	 * Constructor for the Simulator class. Installs the virtual clock and creates the simulated robot; only
+	 * one simulator can exist, as the odometer and the sensor controller are singletons.
+	 *
+	 * @param scenario game to simulate
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 */
+	public Simulator(Scenario scenario) throws OdometerExceptions, SensorExceptions {
+		this(scenario, RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD, RingChallenge.TRACK);
+	}
+
+	/**
+	 * Constructor for the Simulator class, with a robot whose true wheel radii and track differ from those in
+	 * RingChallenge
+	 *
+	 * @param scenario game to simulate
+	 * @param leftRadius true left wheel radius in cm
+	 * @param rightRadius true right wheel radius in cm
+	 * @param track true track in cm
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 */
+	public Simulator(Scenario scenario, double leftRadius, double rightRadius, double track)
+			throws OdometerExceptions, SensorExceptions {
+		this.scenario = scenario;
+		this.clock = new VirtualClock(RingChallenge.EXECUTIVE_PERIOD);
+		TaskScheduler.setClock(clock);
+
+		world = new SimulatedWorld(leftMotor, rightMotor, colorMotor, leftRadius, rightRadius, track, SEED);
+		world.setLayout(scenario);
+		hardware = new Hardware(leftMotor, rightMotor, armMotor, colorMotor, new SimulatedRangeSensor(world),
+				new SimulatedLineSensor(world, true), new SimulatedLineSensor(world, false),
+				new SimulatedColorSensor(world), new VirtualSpeaker());
+		hardware.install();
+
+		odometer = Odometer.getOdometer(leftMotor, rightMotor, RingChallenge.TRACK, RingChallenge.L_WHEEL_RAD,
+				RingChallenge.R_WHEEL_RAD);
+		UltrasonicPoller usPoller = new UltrasonicPoller(hardware.ultrasonicSensor);
+		LightPoller lightPoller = new LightPoller(hardware.leftLineSensor, hardware.rightLineSensor);
+		LightPoller colorPoller = new LightPoller(hardware.colorSensor);
+		sensorController = SensorController.getSensorController(lightPoller, colorPoller, usPoller);
+		sensorController.setMotors(leftMotor, rightMotor);
+		Navigation.setOdometer(odometer);
+		Navigation.setMotors(leftMotor, rightMotor);
+
+		//same schedule as the robot in cyclic mode, with the field updated before each tick
+		executive = new CyclicExecutive(RingChallenge.EXECUTIVE_PERIOD);
+		executive.add(odometer.getTask(), RingChallenge.ODOMETER_DIVISOR);
+		executive.add(lightPoller.getTask(), RingChallenge.LINE_DIVISOR);
+		executive.add(colorPoller.getTask(), RingChallenge.COLOR_DIVISOR);
+		executive.add(usPoller.getTask(), RingChallenge.US_DIVISOR);
+		clock.setTick(new Runnable() {
+			public void run() {
+				world.update();
+				executive.tick();
+			}
+		});
+
+		WiFi.load(scenario.getConfig());
+		if (RingChallenge.PARTICLE_RECOVERY) {
+			//same single-threaded filter as on the robot; ParticleBenchmark compares it with larger parallel ones
+			ParticleFilter filter = new ParticleFilter(RingChallenge.PARTICLES, 1, RingChallenge.TRACK,
+					WiFi.getArena().getWalls(), SEED);
+			particleLocalizer = new ParticleLocalizer(filter, leftMotor, rightMotor);
+			particleLocalizer.setTimeBudget(RingChallenge.PARTICLE_BUDGET);
+			executive.add(particleLocalizer.getTask(), RingChallenge.ODOMETER_DIVISOR);
+		}
+		if (RingChallenge.POSE_CORRECTION == PoseCorrection.KALMAN_FILTER) {
+			poseFusion = new PoseFusion(leftMotor, rightMotor, RingChallenge.TRACK, RingChallenge.L_WHEEL_RAD,
+					RingChallenge.R_WHEEL_RAD);
+			odometer.setPoseFusion(poseFusion);
+			executive.add(poseFusion.getTask(), RingChallenge.ODOMETER_DIVISOR);
+		}
+	}
+
+	/**
+	 * Plays one game, from a random heading in the starting corner, until the robot is done or the game time
+	 * runs out
+	 *
+	 * @return result of the game
+	 * @throws OdometerExceptions
+	 */
+	public GameResult play() throws OdometerExceptions {
+		world.reset(random.nextDouble() * 360);
+		odometer.setXYT(0, 0, 0);
+		odometer.disableCorrection();
+
+		LightLocalization lsLocalization = new LightLocalization(odometer, leftMotor, rightMotor, RingChallenge.TRACK,
+				RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD, RingChallenge.LS_WIDTH,
+				RingChallenge.LS_L_DISTANCE);
+		UltrasonicLocalization usLocalization = new UltrasonicLocalization(odometer, leftMotor, rightMotor);
+		RingSearcher ringSearcher = new RingSearcher(leftMotor, rightMotor, armMotor, colorMotor);
+		GameNavigation gameNav = new GameNavigation(odometer);
+		GameController game = new GameController(sensorController, lsLocalization, usLocalization, ringSearcher,
+				odometer.getOdometryCorrection(), gameNav, odometer);
+		if (particleLocalizer != null)
+			game.setParticleLocalizer(particleLocalizer);
+		if (poseFusion != null)
+			game.setPoseFusion(poseFusion);
+		game.changeState(GameState.INSTRUCTIONS);
+
+		TimeKeeper.startTimer();
+		long start = clock.nanoTime();
+		clock.stopAt(start + RingChallenge.GAME_TIME * 1000000000L, new Condition() {
+			public boolean isMet() {
+				return GameController.state == GameState.DONE;
+			}
+		});
+		try {
+			game.run();
+		} catch (ClockStoppedException e) {
+			//the game is over
+		}
+		long missionTime = clock.nanoTime() - start;
+		boolean done = GameController.state == GameState.DONE;
+
+		leftMotor.stop(true);
+		rightMotor.stop(true);
+		armMotor.stop(true);
+		colorMotor.stop(true);
+		game.changeState(GameState.DONE);
+		game.unsubscribe();
+		clock.stopAt(Long.MAX_VALUE, null);
+
+		world.getXYT(truePose);
+		odometer.getXYT(odometerPose);
+		double dx = truePose[0] - odometerPose[0], dy = truePose[1] - odometerPose[1];
+		return new GameResult(done, missionTime, ringSearcher.getCount(), Math.sqrt(dx * dx + dy * dy));
+	}
+
+	/**
+	 * Adds a task to the schedule of the simulated robot, e.g. an estimator to compare with the odometer. It runs
+	 * after the tasks of the robot in each tick.
+	 *
+	 * @param task periodic task
+	 * @param divisor the task runs once every divisor ticks
+	 */
+	public void addTask(PeriodicTask task, int divisor) {
+		executive.add(task, divisor);
+	}
+
+	/**
+	 * @return the devices of the simulated robot
+	 */
+	public Hardware getHardware() {
+		return hardware;
+	}
+
+	/**
+	 * @return the simulated field
+	 */
+	public SimulatedWorld getWorld() {
+		return world;
+	}
+
+	/**
+	 * @return the scenario being simulated
+	 */
+	public Scenario getScenario() {
+		return scenario;
+	}
+
+	/**
+	 * Runs the simulator
+	 *
+	 * @param args [games] [layout.xml] [-v]
+	 * @throws IOException if the layout file cannot be read
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 */
+	public static void main(String[] args) throws IOException, OdometerExceptions, SensorExceptions {
+		int games = DEFAULT_GAMES;
+		Scenario scenario = Scenario.createDefault();
+		boolean verbose = false;
+		for (String arg : args) {
+			if (arg.equals("-v"))
+				verbose = true;
+			else if (arg.matches("\\d+"))
+				games = Integer.parseInt(arg);
+			else
+				scenario = Scenario.load(arg);
+		}
+
+		PrintStream out = System.out;
+		if (!verbose) {
+			System.setOut(new PrintStream(new OutputStream() {
+				public void write(int b) {
+				}
+			}));
+		}
+
+		Simulator simulator = new Simulator(scenario);
+		long totalMissionTime = 0;
+		int completed = 0;
+		long wallStart = System.nanoTime();
+		for (int i = 0; i < games; i++) {
+			GameResult result = simulator.play();
+			out.println("Game " + (i + 1) + ": " + result);
+			if (result.isDone()) {
+				completed++;
+				totalMissionTime += result.getMissionTime();
+			}
+		}
+		double wallTime = (System.nanoTime() - wallStart) / 1e9;
+
+		System.setOut(out);
+		out.println(games + " games in " + String.format("%.3f", wallTime) + " s: "
+				+ String.format("%.1f", games / wallTime) + " games/s");
+		out.println(completed + " completed, mean mission time "
+				+ (completed == 0 ? "-" : String.format("%.1f s", totalMissionTime / 1e9 / completed)));
+		if (verbose)
+			TaskScheduler.printStatistics();
+	}
+}
@@ -0,0 +1,199 @@
+package ca.mcgill.ecse211.testing;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import ca.mcgill.ecse211.calibration.CalibrationExceptions;
+import ca.mcgill.ecse211.calibration.CalibrationSolver;
+import ca.mcgill.ecse211.calibration.Calibrator;
+import ca.mcgill.ecse211.calibration.CrossingLog;
+import ca.mcgill.ecse211.calibration.RobotCalibration;
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.interfaces.TimedLightSensorUser;
+import ca.mcgill.ecse211.localization.LightLocalization;
+import ca.mcgill.ecse211.odometry.IntegrationScheme;
+import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.odometry.OdometerExceptions;
+import ca.mcgill.ecse211.sensor.LineDetector;
+import ca.mcgill.ecse211.sensor.SensorBus;
+import ca.mcgill.ecse211.sensor.SensorController;
+import ca.mcgill.ecse211.sensor.SensorExceptions;
+import ca.mcgill.ecse211.sensor.SensorSubscription;
+import ca.mcgill.ecse211.simulation.Scenario;
+import ca.mcgill.ecse211.simulation.SimulatedWorld;
+import ca.mcgill.ecse211.simulation.Simulator;
+
+/**
+ * This class runs the Calibrator on a simulated robot whose true wheel radii and track differ from those in
+ * RingChallenge, and compares the calibration solved from its crossings with the true values. It also dead reckons
+ * the patterns with the calibration in use and with the solved one, to show how far each ends from the true pose.
+ * <p>
+ * The true correction angles are measured in the simulator: LightLocalization spins from each starting quadrant,
+ * and its heading error is computed from the true headings at which the right sensor reported the lines, which is
+ * what the angle has to cancel.
+ *
+ * @author Matthew
+ *
+ */
+public class CalibrationBenchmark {
+
+	private static final double RADIUS_ERROR = 1.0;	//%, left wheel larger and right wheel smaller than calibrated
+	private static final double TRACK_ERROR = 3.0;	//%, track larger than calibrated
+	private static final double[] START_OFFSETS = { -20, 0, 20 };	//deg, around the middle of each starting quadrant
+
+	/**
+	 * Records the true heading at which the right light sensor reports each line during a LightLocalization spin,
+	 * with the same detection as LightLocalization
+	 */
+	private static class TrueCrossings implements TimedLightSensorUser {
+		private final SimulatedWorld world;
+		private final LineDetector detector = new LineDetector(5, 30);
+		private final double[] pose = new double[3];
+		private boolean inLine = false;
+		private int lineCounter;
+		double angleYn = Double.NaN, angleYp = Double.NaN;
+
+		TrueCrossings(SimulatedWorld world, int quadrant) {
+			this.world = world;
+			this.lineCounter = quadrant;
+		}
+
+		@Override
+		public void processLSData(int[] light, long timestamp, int sequence, int tachoL, int tachoR) {
+			boolean lineCrossed = detector.lineCrossed(light[1]);
+			if (lineCrossed && !inLine) {
+				world.getXYT(pose);
+				if (lineCounter == 0 && Double.isNaN(angleYn))
+					angleYn = pose[2];
+				else if (lineCounter == 2 && Double.isNaN(angleYp))
+					angleYp = pose[2];
+			} else if (!lineCrossed && inLine) {
+				lineCounter = (lineCounter + 1) % 4;
+			}
+			inLine = lineCrossed;
+		}
+	}
+
+	/**
+	 * Measures the correction angle of each starting quadrant of LightLocalization on the simulated robot
+	 *
+	 * @return mean correction angle for each starting quadrant, in degrees
+	 */
+	private static double[] trueCorrectionAngles(Simulator simulator, Odometer odometer, SensorBus bus) {
+		Hardware hardware = simulator.getHardware();
+		LightLocalization lsLocalization = new LightLocalization(odometer, hardware.leftMotor, hardware.rightMotor,
+				RingChallenge.TRACK, RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD, RingChallenge.LS_WIDTH,
+				RingChallenge.LS_L_DISTANCE);
+		SensorSubscription batcher = bus.subscribeLight(lsLocalization.getSampleBatcher(), 1);
+		double x = Calibrator.START_X * RingChallenge.TILE_SIZE, y = Calibrator.START_Y * RingChallenge.TILE_SIZE;
+		//heading at which the right sensor points to the middle of quadrant 0 (bottom left), then 1, 2 and 3
+		double offset = Math.toDegrees(Math.atan(RingChallenge.LS_WIDTH / 2 / RingChallenge.LS_L_DISTANCE));
+		double angleOffset = Math.toRadians(offset);
+		double[] angles = new double[4];
+		for (int q = 0; q < 4; q++) {
+			for (double startOffset : START_OFFSETS) {
+				double heading = (225 - 90 * q - (180 - offset) + startOffset + 720) % 360;
+				simulator.getWorld().place(x, y, heading);
+				odometer.setXYT(x, y, heading);
+				TrueCrossings crossings = new TrueCrossings(simulator.getWorld(), q);
+				SensorSubscription subscription = bus.subscribeLight(crossings, 1);
+				lsLocalization.lightLocalization(Calibrator.START_X, Calibrator.START_Y, q);
+				subscription.unsubscribe();
+				angles[q] -= LightLocalization.getHeadingError(crossings.angleYn, crossings.angleYp, angleOffset)
+						/ START_OFFSETS.length;
+			}
+		}
+		batcher.unsubscribe();
+		return angles;
+	}
+
+	/**
+	 * Dead reckons a log from the starting pose of the Calibrator
+	 *
+	 * @return x, y and heading in degrees at the end of the log
+	 */
+	private static double[] deadReckon(CrossingLog log, RobotCalibration calibration) {
+		double x = Calibrator.START_X * RingChallenge.TILE_SIZE, y = Calibrator.START_Y * RingChallenge.TILE_SIZE;
+		double heading = 0;
+		double[] dxy = new double[2];
+		for (int i = 1; i < log.size(); i++) {
+			double distL = Math.PI * calibration.getLeftRadius() * (log.getTachoL(i) - log.getTachoL(i - 1)) / 180;
+			double distR = Math.PI * calibration.getRightRadius() * (log.getTachoR(i) - log.getTachoR(i - 1)) / 180;
+			double turn = (distL - distR) / calibration.getTrack();
+			IntegrationScheme.EXACT_ARC.displacement(heading, (distL + distR) / 2, turn, dxy);
+			x += dxy[0];
+			y += dxy[1];
+			heading += turn;
+		}
+		return new double[] { x, y, Math.toDegrees(heading) };
+	}
+
+	/**
+	 * Runs the benchmark
+	 *
+	 * @param args [wheel radius error %] [track error %]
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 * @throws CalibrationExceptions
+	 */
+	public static void main(String[] args) throws OdometerExceptions, SensorExceptions, CalibrationExceptions {
+		double radiusError = (args.length > 0 ? Double.parseDouble(args[0]) : RADIUS_ERROR) / 100;
+		double trackError = (args.length > 1 ? Double.parseDouble(args[1]) : TRACK_ERROR) / 100;
+		double leftRadius = RingChallenge.L_WHEEL_RAD * (1 + radiusError);
+		double rightRadius = RingChallenge.R_WHEEL_RAD * (1 - radiusError);
+		double track = RingChallenge.TRACK * (1 + trackError);
+
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+		Simulator simulator = new Simulator(Scenario.createDefault(), leftRadius, rightRadius, track);
+		Hardware hardware = simulator.getHardware();
+		SensorController sensorController = SensorController.getSensorController();
+		CrossingLog log = new CrossingLog();
+		SensorBus bus = sensorController.getSensorBus();
+		bus.subscribeLight(log, 1);
+		bus.select(1);
+		sensorController.unpauseLightPoller();
+
+		simulator.getWorld().place(Calibrator.START_X * RingChallenge.TILE_SIZE,
+				Calibrator.START_Y * RingChallenge.TILE_SIZE, 0);
+		log.setRecording(true);
+		new Calibrator(hardware.leftMotor, hardware.rightMotor).drivePatterns();
+		log.setRecording(false);
+		double[] truePose = new double[3];
+		simulator.getWorld().getXYT(truePose);
+
+		CalibrationSolver solver = new CalibrationSolver(log, Calibrator.START_X * RingChallenge.TILE_SIZE,
+				Calibrator.START_Y * RingChallenge.TILE_SIZE, 0);
+		RobotCalibration solved = solver.solve(RingChallenge.CALIBRATION);
+		RobotCalibration truth = new RobotCalibration(leftRadius, rightRadius, track,
+				trueCorrectionAngles(simulator, Odometer.getOdometer(), bus));
+		System.setOut(out);
+
+		out.println(log.size() + " light samples, " + solver.getUsedCrossings() + " of " + solver.getCrossings()
+				+ " crossings used");
+		out.println(String.format("rms residual %.3f cm before, %.3f cm after, detection lag %.2f cm",
+				solver.getInitialRms(), solver.getRms(), solver.getLag()));
+		out.println("true       " + truth);
+		out.println("in use     " + RingChallenge.CALIBRATION);
+		out.println("solved     " + solved);
+		out.println(String.format("solved errors: left radius %.3f%%, right radius %.3f%%, track %.3f%%",
+				100 * (solved.getLeftRadius() / truth.getLeftRadius() - 1),
+				100 * (solved.getRightRadius() / truth.getRightRadius() - 1),
+				100 * (solved.getTrack() / truth.getTrack() - 1)));
+		double[] solvedAngles = solved.getCorrectionAngles(), trueAngles = truth.getCorrectionAngles();
+		out.println(String.format("solved errors: correction angles %.2f %.2f %.2f %.2f deg",
+				solvedAngles[0] - trueAngles[0], solvedAngles[1] - trueAngles[1], solvedAngles[2] - trueAngles[2],
+				solvedAngles[3] - trueAngles[3]));
+		for (RobotCalibration calibration : new RobotCalibration[] { RingChallenge.CALIBRATION, solved }) {
+			double[] pose = deadReckon(log, calibration);
+			double heading = ((pose[2] - truePose[2]) % 360 + 540) % 360 - 180;
+			out.println(String.format("%-7s dead reckoning ends %.2f cm and %.2f deg from the true pose",
+					calibration == solved ? "solved" : "in use", Math.hypot(pose[0] - truePose[0],
+							pose[1] - truePose[1]), heading));
+		}
+	}
+}
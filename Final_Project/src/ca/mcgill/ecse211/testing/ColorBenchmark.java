@@ -0,0 +1,169 @@
+package ca.mcgill.ecse211.testing;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import ca.mcgill.ecse211.math.Arithmetic;
+import ca.mcgill.ecse211.sensor.ColorClassifier;
+import ca.mcgill.ecse211.sensor.ColorLookupTable;
+import ca.mcgill.ecse211.sensor.ColorResult;
+import ca.mcgill.ecse211.sensor.SensorExceptions;
+
+/**
+ * This class compares the time taken to classify color samples by the original floating point computation,
+ * the ColorClassifier and the ColorLookupTable, and how often the table agrees with the classifier. It runs
+ * on the brick or on a computer.
+ * 
+ * @author Matthew
+ *
+ */
+public class ColorBenchmark {
+
+	private static final int SAMPLES = 4096;
+	private static final int ROUNDS = 50;
+	private static final int BITS = 7;
+
+	private static final double[][] MEANS = { {0.133333, 0.031333, 0.008823}, {0.0802921, 0.0609802, 0.016470},
+			{0.039234, 0.118627, 0.120593}, {0.024509, 0.060784, 0.007843}};
+	private static final double[][] CENTROIDS = new double[MEANS.length][3];	//normalized means
+
+	static {
+		for (int c = 0; c < MEANS.length; c++) {
+			double norm = Math.sqrt(MEANS[c][0] * MEANS[c][0] + MEANS[c][1] * MEANS[c][1] + MEANS[c][2] * MEANS[c][2]);
+			for (int k = 0; k < 3; k++) {
+				CENTROIDS[c][k] = MEANS[c][k] / norm;
+			}
+		}
+	}
+
+	/**
+	 * Runs the benchmark
+	 * @param args
+	 * @throws IOException
+	 * @throws SensorExceptions
+	 */
+	public static void main(String[] args) throws IOException, SensorExceptions {
+		//samples scattered around the ring colors, plus background
+		Random random = new Random(211);
+		double[][] samples = new double[SAMPLES][3];
+		for (int i = 0; i < SAMPLES; i++) {
+			int c = random.nextInt(MEANS.length + 1);
+			double scale = 0.5 + random.nextDouble();
+			for (int k = 0; k < 3; k++) {
+				double mean = c < MEANS.length ? MEANS[c][k] : 0.02;
+				samples[i][k] = Math.max(0, scale * mean + 0.01 * random.nextGaussian());
+			}
+		}
+
+		ColorClassifier classifier = ColorClassifier.createDefault();
+		long start = System.nanoTime();
+		ColorLookupTable table = ColorLookupTable.build(classifier, BITS);
+		long buildTime = System.nanoTime() - start;
+
+		File file = File.createTempFile("colors", ".lut");
+		table.save(file.getPath());
+		start = System.nanoTime();
+		table = ColorLookupTable.load(file.getPath());
+		long loadTime = System.nanoTime() - start;
+		file.delete();
+		ColorClassifier fixedPoint = ColorClassifier.createDefault();
+		fixedPoint.setArithmetic(Arithmetic.FIXED_POINT);
+		boolean valid = table.isBuiltFrom(classifier) && !table.isBuiltFrom(fixedPoint);
+
+		ColorResult result = new ColorResult();
+		int agree = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			if (table.classify(samples[i][0], samples[i][1], samples[i][2]) == classifier
+					.classify(samples[i][0], samples[i][1], samples[i][2], result).getColor())
+				agree++;
+		}
+
+		//warm up, then time each path
+		int checksum = 0;
+		for (int round = 0; round < 3; round++) {
+			checksum += runLegacy(samples) + runClassifier(classifier, samples, result) + runTable(table, samples);
+		}
+		long legacy = 0, classified = 0, looked = 0;
+		for (int round = 0; round < ROUNDS; round++) {
+			start = System.nanoTime();
+			checksum += runLegacy(samples);
+			legacy += System.nanoTime() - start;
+			start = System.nanoTime();
+			checksum += runClassifier(classifier, samples, result);
+			classified += System.nanoTime() - start;
+			start = System.nanoTime();
+			checksum += runTable(table, samples);
+			looked += System.nanoTime() - start;
+		}
+
+		double count = (double) SAMPLES * ROUNDS;
+		System.out.println("table: " + BITS + " bits, " + (1 << (2 * BITS)) + " bytes, built in "
+				+ buildTime / 1000000 + " ms, loaded in " + loadTime / 1000000 + " ms");
+		System.out.println("fingerprint matches the classifier only: " + valid);
+		System.out.println("agreement with classifier: " + 100.0 * agree / SAMPLES + "%");
+		System.out.println("legacy:     " + legacy / count + " ns/sample");
+		System.out.println("classifier: " + classified / count + " ns/sample");
+		System.out.println("table:      " + looked / count + " ns/sample");
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Classifies all samples with the ColorClassifier
+	 */
+	private static int runClassifier(ColorClassifier classifier, double[][] samples, ColorResult result) {
+		int sum = 0;
+		for (int i = 0; i < samples.length; i++) {
+			sum += classifier.classify(samples[i][0], samples[i][1], samples[i][2], result).getColor();
+		}
+		return sum;
+	}
+
+	/**
+	 * Classifies all samples with the lookup table
+	 */
+	private static int runTable(ColorLookupTable table, double[][] samples) {
+		int sum = 0;
+		for (int i = 0; i < samples.length; i++) {
+			sum += table.classify(samples[i][0], samples[i][1], samples[i][2]);
+		}
+		return sum;
+	}
+
+	/**
+	 * Classifies all samples the way SensorController.setColor originally did, with precomputed centroids
+	 */
+	private static int runLegacy(double[][] samples) {
+		int sum = 0;
+		for (int i = 0; i < samples.length; i++) {
+			double R = samples[i][0];
+			double G = samples[i][1];
+			double B = samples[i][2];
+
+			double Rn = R / Math.sqrt(Math.pow(R, 2) + Math.pow(G, 2) + Math.pow(B, 2));
+			double Gn = G / Math.sqrt(Math.pow(R, 2) + Math.pow(G, 2) + Math.pow(B, 2));
+			double Bn = B / Math.sqrt(Math.pow(R, 2) + Math.pow(G, 2) + Math.pow(B, 2));
+
+			double ORANGE_DISTANCE = Math.sqrt(Math.pow(Rn - CENTROIDS[0][0], 2) + Math.pow(Gn - CENTROIDS[0][1], 2)
+					+ Math.pow(Bn - CENTROIDS[0][2], 2));
+			double YELLOW_DISTANCE = Math.sqrt(Math.pow(Rn - CENTROIDS[1][0], 2) + Math.pow(Gn - CENTROIDS[1][1], 2)
+					+ Math.pow(Bn - CENTROIDS[1][2], 2));
+			double BLUE_DISTANCE = Math.sqrt(Math.pow(Rn - CENTROIDS[2][0], 2) + Math.pow(Gn - CENTROIDS[2][1], 2)
+					+ Math.pow(Bn - CENTROIDS[2][2], 2));
+			double GREEN_DISTANCE = Math.sqrt(Math.pow(Rn - CENTROIDS[3][0], 2) + Math.pow(Gn - CENTROIDS[3][1], 2)
+					+ Math.pow(Bn - CENTROIDS[3][2], 2));
+
+			int color = 0;
+			if (ORANGE_DISTANCE < 0.1)
+				color = 4;
+			else if (YELLOW_DISTANCE < 0.12)
+				color = 3;
+			else if (BLUE_DISTANCE < 0.15)
+				color = 1;
+			else if (GREEN_DISTANCE < 0.1)
+				color = 2;
+			sum += color;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,211 @@
+package ca.mcgill.ecse211.testing;
+
+import java.util.Random;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.math.Arithmetic;
+import ca.mcgill.ecse211.math.FixedPoint;
+import ca.mcgill.ecse211.odometry.IntegrationScheme;
+
+/**
+ * This class compares the double and FixedPoint versions of the math run every cycle: the odometer update, the
+ * heading and distance to a point of Navigation, the line crossing geometry of OdometryCorrection and the color
+ * normalization of ColorClassifier. It first reports the error of the fixed-point versions in cm and degrees, over
+ * random inputs and over odometry driven for a while, then the operations per second of both versions.
+ * <p>
+ * Run it on the brick to choose RingChallenge.ARITHMETIC: a computer has a floating point unit, the brick does not.
+ *
+ * @author Matthew
+ *
+ */
+public class FixedPointBenchmark {
+
+	private static final int SAMPLES = 100000;
+	private static final int ITERATIONS = 1000000;
+	private static final int COURSES = 20;
+	private static final int COURSE_UPDATES = 60000 / RingChallenge.ODOMETER_PERIOD;	//one minute
+	private static final double ARENA = RingChallenge.GAME_GRID_X * RingChallenge.TILE_SIZE;	//cm
+	private static final double MAX_CROSSING = RingChallenge.LS_WIDTH * Math.tan(Math.toRadians(30));	//cm
+
+	private static final String[] KERNELS = { "odometer update", "heading to point", "distance to point",
+			"line crossing", "color normalization" };
+
+	/**
+	 * Odometry with doubles, as in Odometer.step
+	 */
+	private static class DoubleOdometry {
+		double x, y, heading;
+		private final double[] dxy = new double[2];
+
+		void update(int tachoL, int tachoR) {
+			double distL = Math.PI * RingChallenge.L_WHEEL_RAD * tachoL / 180;
+			double distR = Math.PI * RingChallenge.R_WHEEL_RAD * tachoR / 180;
+			double turn = (distL - distR) / RingChallenge.TRACK;
+			IntegrationScheme.EXACT_ARC.displacement(heading, (distL + distR) / 2, turn, dxy);
+			x += dxy[0];
+			y += dxy[1];
+			heading += turn;
+		}
+	}
+
+	/**
+	 * Odometry with FixedPoint, as in Odometer.stepFixed
+	 */
+	private static class FixedOdometry {
+		int x, y;	//Q16.16
+		long heading;	//binary angle, not wrapped
+		private final long leftScale = Math.round(Math.PI * RingChallenge.L_WHEEL_RAD / 180 * 4294967296.0);
+		private final long rightScale = Math.round(Math.PI * RingChallenge.R_WHEEL_RAD / 180 * 4294967296.0);
+		private final long turnScale = Math.round(4294967296.0 / (2 * Math.PI * RingChallenge.TRACK));
+		private final int[] dxy = new int[2];
+
+		void update(int tachoL, int tachoR) {
+			long distL = leftScale * tachoL;
+			long distR = rightScale * tachoR;
+			int turn = (int) (((distL - distR) * turnScale) >> 32);
+			IntegrationScheme.EXACT_ARC.displacement((int) heading, (int) ((distL + distR) >> 17), turn, dxy);
+			x += dxy[0];
+			y += dxy[1];
+			heading += turn;
+		}
+
+		double getHeading() {
+			return heading * (2 * Math.PI / 4294967296.0);
+		}
+	}
+
+	/**
+	 * Reports the largest errors of the fixed-point versions over random inputs
+	 */
+	private static void accuracy(Random random) {
+		double heading = 0, distance = 0, crossingAngle = 0, crossingDistance = 0, normalized = 0;
+		for (int i = 0; i < SAMPLES; i++) {
+			double dx = (random.nextDouble() - 0.5) * 2 * ARENA, dy = (random.nextDouble() - 0.5) * 2 * ARENA;
+			double error = Math.abs(Arithmetic.FIXED_POINT.heading(dx, dy) - Arithmetic.DOUBLE.heading(dx, dy));
+			heading = Math.max(heading, Math.min(error, 360 - error));
+			distance = Math.max(distance,
+					Math.abs(Arithmetic.FIXED_POINT.length(dx, dy) - Arithmetic.DOUBLE.length(dx, dy)));
+
+			double crossing = (random.nextDouble() - 0.5) * 2 * MAX_CROSSING;
+			double[] fixed = crossing(Arithmetic.FIXED_POINT, crossing), exact = crossing(Arithmetic.DOUBLE, crossing);
+			crossingAngle = Math.max(crossingAngle, Math.abs(fixed[0] - exact[0]));
+			crossingDistance = Math.max(crossingDistance, Math.abs(fixed[1] - exact[1]));
+
+			double r = random.nextDouble() * 0.3, g = random.nextDouble() * 0.3, b = random.nextDouble() * 0.3;
+			double scale = Arithmetic.FIXED_POINT.inverseNorm(r, g, b) - Arithmetic.DOUBLE.inverseNorm(r, g, b);
+			normalized = Math.max(normalized, Math.abs(scale) * Math.max(r, Math.max(g, b)));
+		}
+		System.out.println(String.format("heading to point    max error %.5f deg", heading));
+		System.out.println(String.format("distance to point   max error %.5f cm", distance));
+		System.out.println(String.format("line crossing       max error %.5f deg, %.5f cm", crossingAngle,
+				crossingDistance));
+		System.out.println(String.format("color normalization max error %.7f of a normalized component", normalized));
+
+		//odometry drifts apart over courses of random wheel motions
+		double position = 0, turn = 0;
+		for (int c = 0; c < COURSES; c++) {
+			DoubleOdometry exact = new DoubleOdometry();
+			FixedOdometry fixed = new FixedOdometry();
+			int speedL = 0, speedR = 0;	//tacho degrees per update
+			for (int i = 0; i < COURSE_UPDATES; i++) {
+				if (i % 40 == 0) {	//new leg: straight, turn or arc
+					int max = RingChallenge.MOTOR_SPEED * RingChallenge.ODOMETER_PERIOD / 1000;
+					speedL = random.nextInt(2 * max + 1) - max;
+					speedR = random.nextBoolean() ? speedL : random.nextInt(2 * max + 1) - max;
+				}
+				int tachoL = speedL + random.nextInt(3) - 1, tachoR = speedR + random.nextInt(3) - 1;
+				exact.update(tachoL, tachoR);
+				fixed.update(tachoL, tachoR);
+				position = Math.max(position, Math.hypot(FixedPoint.toDouble(fixed.x) - exact.x,
+						FixedPoint.toDouble(fixed.y) - exact.y));
+				turn = Math.max(turn, Math.abs(Math.toDegrees(fixed.getHeading() - exact.heading)));
+			}
+		}
+		System.out.println(String.format("odometer update     max drift %.5f cm, %.6f deg over %d minutes", position,
+				turn, COURSES));
+	}
+
+	/**
+	 * Computes the line crossing geometry of OdometryCorrection.correctOdometer
+	 *
+	 * @return the heading error in degrees and the distance of the centre of rotation from the line in cm
+	 */
+	private static double[] crossing(Arithmetic arithmetic, double distance) {
+		double[] angle = new double[2];
+		arithmetic.atanCos(distance / RingChallenge.LS_WIDTH, angle);
+		double perpDistance = (RingChallenge.LS_L_DISTANCE + distance / 2) * angle[1];
+		return new double[] { Math.toDegrees(angle[0]), perpDistance };
+	}
+
+	/**
+	 * Times a kernel
+	 *
+	 * @return operations per second
+	 */
+	private static double time(int kernel, Arithmetic arithmetic, double[] inputs) {
+		DoubleOdometry doubleOdometry = new DoubleOdometry();
+		FixedOdometry fixedOdometry = new FixedOdometry();
+		int mask = inputs.length - 1;
+		double[] pair = new double[2];
+		double sum = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			double a = inputs[i & mask], b = inputs[(i + 1) & mask];
+			switch (kernel) {
+			case 0:
+				if (arithmetic == Arithmetic.DOUBLE)
+					doubleOdometry.update((int) (a * 10), (int) (b * 10));
+				else
+					fixedOdometry.update((int) (a * 10), (int) (b * 10));
+				break;
+			case 1:
+				sum += arithmetic.heading(a * ARENA, b * ARENA);
+				break;
+			case 2:
+				sum += arithmetic.length(a * ARENA, b * ARENA);
+				break;
+			case 3:
+				arithmetic.atanCos(a * MAX_CROSSING / RingChallenge.LS_WIDTH, pair);
+				sum += pair[1] + pair[0];
+				break;
+			default:
+				sum += arithmetic.inverseNorm(Math.abs(a) * 0.3, Math.abs(b) * 0.3, 0.1);
+				break;
+			}
+		}
+		long time = System.nanoTime() - start;
+		sum += doubleOdometry.x + fixedOdometry.x;
+		if (sum == 0.5)	//keeps the results alive
+			System.out.print("");
+		return ITERATIONS * 1e9 / time;
+	}
+
+	/**
+	 * Runs the benchmark
+	 *
+	 * @param args ignored
+	 */
+	public static void main(String[] args) {
+		Random random = new Random(211);
+		accuracy(random);
+
+		double[] inputs = new double[1024];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = random.nextDouble() * 2 - 1;
+		}
+		Arithmetic[] arithmetics = Arithmetic.values();
+		double[][] rates = new double[KERNELS.length][arithmetics.length];
+		for (int round = 0; round < 2; round++) {	//the first round warms up the JIT
+			for (int k = 0; k < KERNELS.length; k++) {
+				for (int a = 0; a < arithmetics.length; a++) {
+					rates[k][a] = time(k, arithmetics[a], inputs);
+				}
+			}
+		}
+		System.out.println(String.format("%-20s %14s %14s %8s", "ops/s", "double", "fixed point", "speedup"));
+		for (int k = 0; k < KERNELS.length; k++) {
+			System.out.println(String.format("%-20s %14.0f %14.0f %7.2fx", KERNELS[k], rates[k][0], rates[k][1],
+					rates[k][1] / rates[k][0]));
+		}
+	}
+}
@@ -0,0 +1,243 @@
+package ca.mcgill.ecse211.testing;
+
+import java.util.Random;
+
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.odometry.IntegrationScheme;
+
+/**
+ * This class measures how far the odometer drifts from the integration alone, for each IntegrationScheme and update
+ * period, so that the longest ODOMETER_PERIOD within a drift budget can be chosen in RingChallenge. The wheels
+ * follow random courses made of the motions of a game: straight legs, turns in place, arcs and line following
+ * wiggles, with speed ramps in between. The true pose is integrated every 0.1 ms from the exact wheel angles, and
+ * the odometer reads the tacho counts, rounded to degrees, once per period. The wheel radii and track are those of
+ * RingChallenge on both sides, so the error only comes from the integration and the rounding of the counts.
+ * <p>
+ * The time taken by one update of each scheme is also measured, to show what the longer periods save.
+ *
+ * @author Matthew
+ *
+ */
+public class OdometryStudy {
+
+	private static final int COURSES = 20;
+	private static final double COURSE_TIME = 60;	//s
+	private static final double BUDGET = 1.0;	//cm, largest position error allowed on a course
+	private static final int[] PERIODS = { 10, 25, 50, 75, 100, 125, 150, 200, 250, 300 };	//ms
+
+	private static final double TRUE_STEP = 0.0001;	//s
+	private static final double ACCELERATION = 3000;	//deg/s^2, as set on the drive motors
+	private static final double SPEED = RingChallenge.MOTOR_SPEED;	//deg/s
+	private static final double TURN_SPEED = 150;	//deg/s
+	private static final double ARC_RADIUS = 10;	//cm, radius of the arcs joining continuous paths
+	private static final int ITERATIONS = 10000000;
+
+	/**
+	 * A leg of a course: wheel speeds held for some time
+	 */
+	private static class Leg {
+		final double left;	//deg/s
+		final double right;
+		final double duration;	//s
+		final double wiggle;	//deg/s, amplitude of the difference of speeds while following a line
+
+		Leg(double left, double right, double duration, double wiggle) {
+			this.left = left;
+			this.right = right;
+			this.duration = duration;
+			this.wiggle = wiggle;
+		}
+	}
+
+	/**
+	 * Draws a random course lasting COURSE_TIME
+	 */
+	private static Leg[] course(Random random) {
+		Leg[] legs = new Leg[256];
+		int count = 0;
+		double time = 0;
+		while (time < COURSE_TIME && count < legs.length) {
+			Leg leg;
+			double sign = random.nextBoolean() ? 1 : -1;
+			switch (random.nextInt(4)) {
+			case 0:
+				leg = new Leg(SPEED, SPEED, 1 + 3 * random.nextDouble(), 0);
+				break;
+			case 1:
+				leg = new Leg(sign * TURN_SPEED, -sign * TURN_SPEED, 0.3 + 0.9 * random.nextDouble(), 0);
+				break;
+			case 2:
+				double ratio = RingChallenge.TRACK / 2 / ARC_RADIUS;
+				leg = new Leg(SPEED * (1 + sign * ratio), SPEED * (1 - sign * ratio), 0.5 + random.nextDouble(), 0);
+				break;
+			default:
+				leg = new Leg(SPEED, SPEED, 1 + 3 * random.nextDouble(), 15);
+				break;
+			}
+			legs[count++] = leg;
+			time += leg.duration;
+		}
+		Leg[] result = new Leg[count];
+		System.arraycopy(legs, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Drives a course, integrating the true pose and the odometer of each scheme at each period
+	 *
+	 * @param legs
+	 * @param maxError receives the largest position error in cm, per scheme and period
+	 * @param endHeading receives the heading error at the end of the course in degrees, per scheme and period
+	 */
+	private static void drive(Leg[] legs, double[][] maxError, double[][] endHeading) {
+		IntegrationScheme[] schemes = IntegrationScheme.values();
+		double cmPerDegL = Math.PI * RingChallenge.L_WHEEL_RAD / 180;
+		double cmPerDegR = Math.PI * RingChallenge.R_WHEEL_RAD / 180;
+		double[] dxy = new double[2];
+
+		//true state
+		double angleL = 0, angleR = 0, speedL = 0, speedR = 0;
+		double x = 0, y = 0, heading = 0;
+		//odometer state per scheme and period
+		int n = PERIODS.length;
+		double[][] ox = new double[schemes.length][n], oy = new double[schemes.length][n],
+				oh = new double[schemes.length][n];
+		int[] lastL = new int[n], lastR = new int[n];
+
+		long tick = 0;	//units of TRUE_STEP
+		double phase = 0;
+		for (Leg leg : legs) {
+			long end = tick + Math.round(leg.duration / TRUE_STEP);
+			for (; tick < end; tick++) {
+				//speeds ramp towards the leg, with a wiggle while following a line
+				phase += TRUE_STEP * 2 * Math.PI;
+				double wiggle = leg.wiggle * Math.sin(phase);
+				speedL = ramp(speedL, leg.left + wiggle);
+				speedR = ramp(speedR, leg.right - wiggle);
+				double distL = speedL * TRUE_STEP * cmPerDegL;
+				double distR = speedR * TRUE_STEP * cmPerDegR;
+				angleL += speedL * TRUE_STEP;
+				angleR += speedR * TRUE_STEP;
+				IntegrationScheme.EXACT_ARC.displacement(heading, (distL + distR) / 2,
+						(distL - distR) / RingChallenge.TRACK, dxy);
+				x += dxy[0];
+				y += dxy[1];
+				heading += (distL - distR) / RingChallenge.TRACK;
+
+				long elapsed = tick + 1;	//in units of TRUE_STEP, 10 per ms
+				for (int p = 0; p < n; p++) {
+					if (elapsed % (PERIODS[p] * 10) != 0)
+						continue;
+					int tachoL = (int) Math.round(angleL), tachoR = (int) Math.round(angleR);
+					double dL = cmPerDegL * (tachoL - lastL[p]), dR = cmPerDegR * (tachoR - lastR[p]);
+					lastL[p] = tachoL;
+					lastR[p] = tachoR;
+					double turn = (dL - dR) / RingChallenge.TRACK;
+					for (int s = 0; s < schemes.length; s++) {
+						schemes[s].displacement(oh[s][p], (dL + dR) / 2, turn, dxy);
+						ox[s][p] += dxy[0];
+						oy[s][p] += dxy[1];
+						oh[s][p] += turn;
+						maxError[s][p] = Math.max(maxError[s][p], Math.hypot(ox[s][p] - x, oy[s][p] - y));
+					}
+				}
+			}
+		}
+		for (int s = 0; s < schemes.length; s++) {
+			for (int p = 0; p < n; p++) {
+				endHeading[s][p] = Math.toDegrees(oh[s][p] - heading);
+			}
+		}
+	}
+
+	/**
+	 * Moves a wheel speed towards its target, no faster than ACCELERATION
+	 */
+	private static double ramp(double speed, double target) {
+		double step = ACCELERATION * TRUE_STEP;
+		if (target > speed + step)
+			return speed + step;
+		if (target < speed - step)
+			return speed - step;
+		return target;
+	}
+
+	/**
+	 * Times one update of each scheme
+	 */
+	private static void time() {
+		Random random = new Random(211);
+		double[] turns = new double[1024];
+		for (int i = 0; i < turns.length; i++) {
+			turns[i] = (random.nextDouble() - 0.5) * 0.2;
+		}
+		double[] dxy = new double[2];
+		for (int round = 0; round < 2; round++) {	//the first round warms up the JIT
+			for (IntegrationScheme scheme : IntegrationScheme.values()) {
+				double heading = 0, x = 0;
+				long start = System.nanoTime();
+				for (int i = 0; i < ITERATIONS; i++) {
+					double turn = turns[i & 1023];
+					scheme.displacement(heading, 1, turn, dxy);
+					x += dxy[0];
+					heading += turn;
+				}
+				long time = System.nanoTime() - start;
+				if (round == 1)
+					System.out.println(String.format("%-10s %5.1f ns per update (%.0f)", scheme,
+							(double) time / ITERATIONS, x));
+			}
+		}
+	}
+
+	/**
+	 * Runs the study
+	 *
+	 * @param args [courses] [drift budget cm]
+	 */
+	public static void main(String[] args) {
+		int courses = args.length > 0 ? Integer.parseInt(args[0]) : COURSES;
+		double budget = args.length > 1 ? Double.parseDouble(args[1]) : BUDGET;
+		IntegrationScheme[] schemes = IntegrationScheme.values();
+		int n = PERIODS.length;
+
+		Random random = new Random(211);
+		double[][] worst = new double[schemes.length][n];
+		double[][] meanMax = new double[schemes.length][n];
+		double[][] headingSquares = new double[schemes.length][n];
+		for (int c = 0; c < courses; c++) {
+			double[][] maxError = new double[schemes.length][n];
+			double[][] endHeading = new double[schemes.length][n];
+			drive(course(random), maxError, endHeading);
+			for (int s = 0; s < schemes.length; s++) {
+				for (int p = 0; p < n; p++) {
+					worst[s][p] = Math.max(worst[s][p], maxError[s][p]);
+					meanMax[s][p] += maxError[s][p] / courses;
+					headingSquares[s][p] += endHeading[s][p] * endHeading[s][p];
+				}
+			}
+		}
+
+		System.out.println(courses + " courses of " + COURSE_TIME + " s, budget " + budget
+				+ " cm of largest position error");
+		System.out.println("period ms  scheme     mean max cm  worst cm  rms end heading deg");
+		for (int p = 0; p < n; p++) {
+			for (int s = 0; s < schemes.length; s++) {
+				System.out.println(String.format("%9d  %-10s %11.3f %9.3f %20.4f", PERIODS[p], schemes[s],
+						meanMax[s][p], worst[s][p], Math.sqrt(headingSquares[s][p] / courses)));
+			}
+		}
+		for (int s = 0; s < schemes.length; s++) {
+			int longest = -1;
+			for (int p = 0; p < n && worst[s][p] <= budget; p++) {
+				longest = PERIODS[p];
+			}
+			if (longest < 0)
+				System.out.println(String.format("%-10s no period within budget", schemes[s]));
+			else
+				System.out.println(String.format("%-10s longest period within budget %d ms (%.0f updates/s)",
+						schemes[s], longest, 1000.0 / longest));
+		}
+		time();
+	}
+}
@@ -0,0 +1,169 @@
+package ca.mcgill.ecse211.testing;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+import ca.mcgill.ecse211.game.GameController;
+import ca.mcgill.ecse211.game.GameState;
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.game.WiFi;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.localization.ParticleFilter;
+import ca.mcgill.ecse211.localization.ParticleLocalizer;
+import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.odometry.OdometerExceptions;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.SensorBus;
+import ca.mcgill.ecse211.sensor.SensorController;
+import ca.mcgill.ecse211.sensor.SensorExceptions;
+import ca.mcgill.ecse211.simulation.Scenario;
+import ca.mcgill.ecse211.simulation.SimulatedWorld;
+import ca.mcgill.ecse211.simulation.Simulator;
+
+/**
+ * This class measures the accuracy and the speed of particle filters of several sizes, single-threaded and in a
+ * fork-join pool, on simulated games played by a robot whose true wheel radii and track differ from those in
+ * RingChallenge (like PoseBenchmark). The filters only watch the game. They are started from the odometer, with a
+ * spread larger than the error of a light localization, each time the game finishes a localization, and their
+ * errors to the true pose are measured every tick until the next one. The speed is the number of particles moved or
+ * weighted per second of wall time spent in the filter.
+ *
+ * @author Matthew
+ *
+ */
+public class ParticleBenchmark {
+
+	private static final int GAMES = 5;
+	private static final int[] SIZES = { 64, 256, 1024, 4096 };
+	private static final double RADIUS_ERROR = 0.5;	//%
+	private static final double TRACK_ERROR = 2;	//%
+	private static final double START_SIGMA_XY = 5;	//cm, spread of the particles when they are started
+	private static final double START_SIGMA_THETA = 5;	//deg
+
+	private final Odometer odometer;
+	private final SensorController sensorController;
+	private final SimulatedWorld world;
+	private final ParticleLocalizer[] localizers;
+
+	private final double[] truePose = new double[3];
+	private final double[] pose = new double[3];
+	private boolean tracking = false;
+
+	//per filter: sum of squared position errors, sum of squared heading errors, ticks with a converged filter
+	private final double[] positionSquares;
+	private final double[] headingSquares;
+	private final long[] converged;
+	private long samples = 0;
+
+	private ParticleBenchmark(Simulator simulator) throws OdometerExceptions, SensorExceptions {
+		odometer = Odometer.getOdometer();
+		sensorController = SensorController.getSensorController();
+		world = simulator.getWorld();
+		Hardware hardware = simulator.getHardware();
+		SensorBus bus = sensorController.getSensorBus();
+		int mask = GameState.NAVIGATION.mask() | GameState.TOWERSEARCH.mask();
+		int threads = Math.max(2, Runtime.getRuntime().availableProcessors());	//at least 2 to use the pool
+
+		localizers = new ParticleLocalizer[SIZES.length * 2];
+		for (int i = 0; i < localizers.length; i++) {
+			ParticleFilter filter = new ParticleFilter(SIZES[i / 2], i % 2 == 0 ? 1 : threads, RingChallenge.TRACK,
+					WiFi.getArena().getWalls(), i);
+			localizers[i] = new ParticleLocalizer(filter, hardware.leftMotor, hardware.rightMotor);
+			simulator.addTask(localizers[i].getTask(), RingChallenge.ODOMETER_DIVISOR);
+			bus.subscribeLight(localizers[i], mask);
+			bus.subscribeUltrasonic(localizers[i], mask);
+		}
+		positionSquares = new double[localizers.length];
+		headingSquares = new double[localizers.length];
+		converged = new long[localizers.length];
+
+		PeriodicTask task = TaskScheduler.createTask("particle benchmark", RingChallenge.EXECUTIVE_PERIOD,
+				OverrunPolicy.CATCH_UP, false, new Runnable() {
+					public void run() {
+						measure();
+					}
+				});
+		simulator.addTask(task, 1);
+	}
+
+	/**
+	 * Starts the filters when a localization is over, and measures their errors while the robot navigates
+	 */
+	private void measure() {
+		GameState state = GameController.state;
+		boolean navigating = state == GameState.NAVIGATION || state == GameState.TUNNEL
+				|| state == GameState.TOWERSEARCH;
+		if (navigating && !tracking) {
+			odometer.getXYT(pose);
+			for (ParticleLocalizer localizer : localizers) {
+				localizer.reset(pose[0], pose[1], pose[2], START_SIGMA_XY, START_SIGMA_THETA);
+			}
+		}
+		tracking = navigating;
+		if (!tracking)
+			return;
+		sensorController.unpauseUltrasonicPoller();
+
+		world.getXYT(truePose);
+		for (int i = 0; i < localizers.length; i++) {
+			if (localizers[i].getXYT(pose))
+				converged[i]++;
+			double dx = pose[0] - truePose[0], dy = pose[1] - truePose[1];
+			double heading = (pose[2] - truePose[2]) % 360;
+			if (heading > 180)
+				heading -= 360;
+			else if (heading < -180)
+				heading += 360;
+			positionSquares[i] += dx * dx + dy * dy;
+			headingSquares[i] += heading * heading;
+		}
+		samples++;
+	}
+
+	private void print(PrintStream out) {
+		out.println("particles  threads  particles/s  rms position  rms heading  converged");
+		for (int i = 0; i < localizers.length; i++) {
+			ParticleFilter filter = localizers[i].getFilter();
+			out.println(String.format("%9d  %7s  %11.3g  %9.2f cm  %7.2f deg  %8.0f%%", filter.getSize(),
+					filter.isParallel() ? "pool" : "1", filter.getUpdates() * 1e9 / filter.getWorkTime(),
+					Math.sqrt(positionSquares[i] / samples), Math.sqrt(headingSquares[i] / samples),
+					100.0 * converged[i] / samples));
+		}
+	}
+
+	/**
+	 * Runs the benchmark
+	 *
+	 * @param args [games] [wheel radius error %] [track error %]
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 */
+	public static void main(String[] args) throws OdometerExceptions, SensorExceptions {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : GAMES;
+		double radiusError = (args.length > 1 ? Double.parseDouble(args[1]) : RADIUS_ERROR) / 100;
+		double trackError = (args.length > 2 ? Double.parseDouble(args[2]) : TRACK_ERROR) / 100;
+
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+		Simulator simulator = new Simulator(Scenario.createDefault(), RingChallenge.L_WHEEL_RAD * (1 + radiusError),
+				RingChallenge.R_WHEEL_RAD * (1 - radiusError), RingChallenge.TRACK * (1 + trackError));
+		ParticleBenchmark benchmark = new ParticleBenchmark(simulator);
+		int completed = 0;
+		for (int i = 0; i < games; i++) {
+			if (simulator.play().isDone())
+				completed++;
+		}
+		System.setOut(out);
+
+		out.println(games + " games (" + completed + " completed), wheel radii off by " + radiusError * 100
+				+ "%, track off by " + trackError * 100 + "%, " + Runtime.getRuntime().availableProcessors()
+				+ " processors");
+		benchmark.print(out);
+		System.exit(0);
+	}
+}
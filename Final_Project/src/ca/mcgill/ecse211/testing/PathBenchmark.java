@@ -0,0 +1,200 @@
+package ca.mcgill.ecse211.testing;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import ca.mcgill.ecse211.game.GameNavigation;
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.game.WiFi;
+import ca.mcgill.ecse211.planning.GridMap;
+import ca.mcgill.ecse211.planning.PathPlanner;
+
+/**
+ * This class compares the depth-first search of GameNavigation.getShortestPath with the PathPlanner on random
+ * islands: the time taken by each search, and the time the robot would take to follow the paths they return.
+ * It also checks that A* and Dijkstra find paths of the same cost. Queries with an unreachable destination are only
+ * given to the planner, as the depth-first search tries every path of the island before giving up on them. It runs on
+ * the brick or on a computer.
+ *
+ * @author Matthew
+ *
+ */
+public class PathBenchmark {
+
+	private static final int LAYOUTS = 2000;
+	private static final int QUERIES = 10;	//per layout
+	private static final int OBSTACLES = 6;	//like getIslandObstacles
+	private static final int ROUNDS = 5;
+
+	/**
+	 * Runs the benchmark
+	 * @param args [obstacles per island]
+	 */
+	public static void main(String[] args) {
+		int obstacleCount = args.length > 0 ? Integer.parseInt(args[0]) : OBSTACLES;
+		Random random = new Random(211);
+		PathPlanner planner = PathPlanner.createDefault();
+
+		//random islands, each with random obstacles and queries between free intersections
+		int[][] islands = new int[LAYOUTS][4];
+		int[][][] obstacles = new int[LAYOUTS][obstacleCount][2];
+		GridMap[] maps = new GridMap[LAYOUTS];
+		int[][] queries = new int[LAYOUTS * QUERIES][];
+		int queryCount = 0;
+		for (int l = 0; l < LAYOUTS; l++) {
+			int w = 4 + random.nextInt(RingChallenge.GAME_GRID_X - 3), h = 4 + random.nextInt(RingChallenge.GAME_GRID_Y - 3);
+			int llX = random.nextInt(RingChallenge.GAME_GRID_X - w + 1), llY = random.nextInt(RingChallenge.GAME_GRID_Y - h + 1);
+			islands[l] = new int[] { llX, llY, llX + w, llY + h };
+			for (int o = 0; o < obstacleCount; o++) {
+				obstacles[l][o][0] = llX + 1 + random.nextInt(w - 1);
+				obstacles[l][o][1] = llY + 1 + random.nextInt(h - 1);
+			}
+			maps[l] = getIslandMap(islands[l], obstacles[l]);
+			for (int q = 0; q < QUERIES; q++) {
+				int[] start = randomFreePoint(random, maps[l], islands[l]);
+				int[] end = randomFreePoint(random, maps[l], islands[l]);
+				if (start != null && end != null)
+					queries[queryCount++] = new int[] { l, start[0], start[1], end[0], end[1], random.nextInt(4), 1 };
+			}
+		}
+
+		//costs and agreement
+		int unreachable = 0, worse = 0, inconsistent = 0, found = 0;
+		long dfsCost = 0, plannerCost = 0;
+		for (int i = 0; i < queryCount; i++) {
+			int[] q = queries[i];
+			planner.setHeuristic(false);
+			planner.plan(maps[q[0]], q[1], q[2], q[5], q[3], q[4]);
+			int dijkstraCost = planner.getLastCost();
+			planner.setHeuristic(true);
+			int[] path = planner.plan(maps[q[0]], q[1], q[2], q[5], q[3], q[4]);
+			if (planner.getLastCost() != dijkstraCost)
+				inconsistent++;
+			if (path == null) {
+				q[6] = 0;
+				unreachable++;
+				continue;
+			}
+			setIsland(islands[q[0]]);
+			ArrayList<int[]> dfsPath = GameNavigation.getShortestPath(q[1], q[2], q[3], q[4], obstacles[q[0]], null);
+			int[] packed = new int[dfsPath.size()];
+			for (int k = 0; k < packed.length; k++) {
+				packed[k] = PathPlanner.pack(dfsPath.get(k)[0], dfsPath.get(k)[1]);
+			}
+			int cost = planner.getCost(q[1], q[2], q[5], packed);
+			if (planner.getLastCost() < cost)
+				worse++;
+			dfsCost += cost;
+			plannerCost += planner.getLastCost();
+			found++;
+		}
+
+		//timing
+		long dfsTime = 0, astarTime = 0, dijkstraTime = 0, expanded = 0;
+		int checksum = 0;
+		for (int round = 0; round < ROUNDS + 1; round++) {
+			long start = System.nanoTime();
+			checksum += runDfs(queries, queryCount, islands, obstacles);
+			long dfs = System.nanoTime() - start;
+			planner.setHeuristic(true);
+			start = System.nanoTime();
+			checksum += runPlanner(planner, queries, queryCount, maps);
+			long astar = System.nanoTime() - start;
+			planner.setHeuristic(false);
+			start = System.nanoTime();
+			checksum += runPlanner(planner, queries, queryCount, maps);
+			long dijkstra = System.nanoTime() - start;
+			if (round > 0) {	//first round is the warm up
+				dfsTime += dfs;
+				astarTime += astar;
+				dijkstraTime += dijkstra;
+			}
+		}
+		planner.setHeuristic(true);
+		for (int i = 0; i < queryCount; i++) {
+			int[] q = queries[i];
+			planner.plan(maps[q[0]], q[1], q[2], q[5], q[3], q[4]);
+			expanded += planner.getLastExpanded();
+		}
+
+		double count = (double) queryCount * ROUNDS;
+		double dfsCount = (double) found * ROUNDS;
+		System.out.println(queryCount + " queries on " + LAYOUTS + " islands with " + obstacleCount + " obstacles: "
+				+ found + " paths, " + unreachable + " unreachable (planner only)");
+		System.out.println("DFS:      " + dfsTime / dfsCount / 1000 + " us/query, mean path time "
+				+ String.format("%.2f", dfsCost / 1000.0 / found) + " s");
+		System.out.println("A*:       " + astarTime / count / 1000 + " us/query, mean path time "
+				+ String.format("%.2f", plannerCost / 1000.0 / found) + " s, " + expanded / queryCount
+				+ " states expanded/query");
+		System.out.println("Dijkstra: " + dijkstraTime / count / 1000 + " us/query");
+		System.out.println("DFS path slower on " + 100.0 * worse / found + "% of queries; A*/Dijkstra cost mismatches: "
+				+ inconsistent);
+		System.out.println("(checksum " + checksum + ")");
+	}
+
+	/**
+	 * Sets the island of WiFi, which getShortestPath reads
+	 */
+	private static void setIsland(int[] island) {
+		WiFi.Island_LL_x = island[0];
+		WiFi.Island_LL_y = island[1];
+		WiFi.Island_UR_x = island[2];
+		WiFi.Island_UR_y = island[3];
+	}
+
+	/**
+	 * @return a map where only the intersections inside the island without an obstacle are free, like
+	 *         GameNavigation.hasObstacle
+	 */
+	private static GridMap getIslandMap(int[] island, int[][] obstacles) {
+		GridMap map = new GridMap(RingChallenge.GAME_GRID_X + 1, RingChallenge.GAME_GRID_Y + 1);
+		map.setBlocked(0, 0, RingChallenge.GAME_GRID_X, RingChallenge.GAME_GRID_Y, true);
+		map.setBlocked(island[0] + 1, island[1] + 1, island[2] - 1, island[3] - 1, false);
+		for (int[] obstacle : obstacles) {
+			map.setBlocked(obstacle[0], obstacle[1], true);
+		}
+		return map;
+	}
+
+	/**
+	 * @return a random free intersection of the island, or null if none was found
+	 */
+	private static int[] randomFreePoint(Random random, GridMap map, int[] island) {
+		for (int tries = 0; tries < 100; tries++) {
+			int x = island[0] + 1 + random.nextInt(island[2] - island[0] - 1);
+			int y = island[1] + 1 + random.nextInt(island[3] - island[1] - 1);
+			if (!map.isBlocked(x, y))
+				return new int[] { x, y };
+		}
+		return null;
+	}
+
+	/**
+	 * Answers all queries with a reachable destination with the depth-first search
+	 */
+	private static int runDfs(int[][] queries, int count, int[][] islands, int[][][] obstacles) {
+		int sum = 0;
+		for (int i = 0; i < count; i++) {
+			int[] q = queries[i];
+			if (q[6] == 0)
+				continue;
+			setIsland(islands[q[0]]);
+			ArrayList<int[]> path = GameNavigation.getShortestPath(q[1], q[2], q[3], q[4], obstacles[q[0]], null);
+			sum += path == null ? -1 : path.size();
+		}
+		return sum;
+	}
+
+	/**
+	 * Answers all queries with the planner
+	 */
+	private static int runPlanner(PathPlanner planner, int[][] queries, int count, GridMap[] maps) {
+		int sum = 0;
+		for (int i = 0; i < count; i++) {
+			int[] q = queries[i];
+			int[] path = planner.plan(maps[q[0]], q[1], q[2], q[5], q[3], q[4]);
+			sum += path == null ? -1 : path.length;
+		}
+		return sum;
+	}
+}
@@ -0,0 +1,207 @@
+package ca.mcgill.ecse211.testing;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+import ca.mcgill.ecse211.game.GameController;
+import ca.mcgill.ecse211.game.GameState;
+import ca.mcgill.ecse211.game.RingChallenge;
+import ca.mcgill.ecse211.hardware.Hardware;
+import ca.mcgill.ecse211.odometry.Odometer;
+import ca.mcgill.ecse211.odometry.OdometerExceptions;
+import ca.mcgill.ecse211.odometry.PoseEstimator;
+import ca.mcgill.ecse211.odometry.PoseFusion;
+import ca.mcgill.ecse211.scheduling.OverrunPolicy;
+import ca.mcgill.ecse211.scheduling.PeriodicTask;
+import ca.mcgill.ecse211.scheduling.TaskScheduler;
+import ca.mcgill.ecse211.sensor.SensorBus;
+import ca.mcgill.ecse211.sensor.SensorController;
+import ca.mcgill.ecse211.sensor.SensorExceptions;
+import ca.mcgill.ecse211.simulation.Scenario;
+import ca.mcgill.ecse211.simulation.SimulatedWorld;
+import ca.mcgill.ecse211.simulation.Simulator;
+
+/**
+ * This class compares the pose of the odometer, corrected by OdometryCorrection, with the pose of a PoseEstimator
+ * fed by PoseFusion, on simulated games played by a robot whose true wheel radii and track differ from those in
+ * RingChallenge. A second PoseFusion without observations shows how far dead reckoning alone drifts. The estimators
+ * only watch: the game is driven by the odometer as usual. Both estimators are started from the odometer each time
+ * the game finishes a localization, and the errors to the true pose are measured every tick until the next one.
+ * The ultrasonic poller is kept running during navigation, so the estimator also sees the walls.
+ * <p>
+ * It then times the estimator alone, which runs on the brick or on a computer.
+ *
+ * @author Matthew
+ *
+ */
+public class PoseBenchmark {
+
+	private static final int GAMES = 10;
+	private static final double RADIUS_ERROR = 0.5;	//%, left wheel larger and right wheel smaller than calibrated
+	private static final double TRACK_ERROR = 2;	//%, track larger than calibrated
+	private static final double START_SIGMA_XY = 1;	//cm, uncertainty after localization
+	private static final double START_SIGMA_THETA = 2;	//deg
+	private static final int ITERATIONS = 1000000;
+
+	private static final String[] NAMES = { "snap correction", "estimator", "dead reckoning" };
+
+	private final Odometer odometer;
+	private final SensorController sensorController;
+	private final SimulatedWorld world;
+	private final PoseFusion[] fusions = new PoseFusion[2];	//with and without observations
+
+	private final double[] truePose = new double[3];
+	private final double[] pose = new double[3];
+	private boolean tracking = false;
+
+	//per estimate: sum of squared position errors, largest position error, sum of squared heading errors
+	private final double[] positionSquares = new double[NAMES.length];
+	private final double[] positionMax = new double[NAMES.length];
+	private final double[] headingSquares = new double[NAMES.length];
+	private long samples = 0;
+
+	private PoseBenchmark(Simulator simulator) throws OdometerExceptions, SensorExceptions {
+		odometer = Odometer.getOdometer();
+		sensorController = SensorController.getSensorController();
+		world = simulator.getWorld();
+		Hardware hardware = simulator.getHardware();
+		for (int i = 0; i < fusions.length; i++) {
+			fusions[i] = new PoseFusion(hardware.leftMotor, hardware.rightMotor, RingChallenge.TRACK,
+					RingChallenge.L_WHEEL_RAD, RingChallenge.R_WHEEL_RAD);
+			simulator.addTask(fusions[i].getTask(), RingChallenge.ODOMETER_DIVISOR);
+		}
+		fusions[1].setObserving(false);
+		SensorBus bus = sensorController.getSensorBus();
+		int all = 0;
+		for (GameState state : GameState.values()) {
+			all |= state.mask();
+		}
+		bus.subscribeLight(fusions[0], all);
+		bus.subscribeUltrasonic(fusions[0], all);
+
+		PeriodicTask task = TaskScheduler.createTask("pose benchmark", RingChallenge.EXECUTIVE_PERIOD,
+				OverrunPolicy.CATCH_UP, false, new Runnable() {
+					public void run() {
+						measure();
+					}
+				});
+		simulator.addTask(task, 1);
+	}
+
+	/**
+	 * Starts the estimators when a localization is over, and measures the errors while the robot navigates
+	 */
+	private void measure() {
+		GameState state = GameController.state;
+		boolean navigating = state == GameState.NAVIGATION || state == GameState.TUNNEL
+				|| state == GameState.TOWERSEARCH;
+		if (navigating && !tracking) {
+			odometer.getXYT(pose);
+			for (PoseFusion fusion : fusions) {
+				fusion.reset(pose[0], pose[1], pose[2], START_SIGMA_XY, START_SIGMA_THETA);
+			}
+		}
+		tracking = navigating;
+		if (!tracking)
+			return;
+		sensorController.unpauseUltrasonicPoller();
+
+		world.getXYT(truePose);
+		for (int i = 0; i < NAMES.length; i++) {
+			if (i == 0)
+				odometer.getXYT(pose);
+			else
+				fusions[i - 1].getXYT(pose);
+			double dx = pose[0] - truePose[0], dy = pose[1] - truePose[1];
+			double position = dx * dx + dy * dy;
+			double heading = (pose[2] - truePose[2]) % 360;
+			if (heading > 180)
+				heading -= 360;
+			else if (heading < -180)
+				heading += 360;
+			positionSquares[i] += position;
+			positionMax[i] = Math.max(positionMax[i], Math.sqrt(position));
+			headingSquares[i] += heading * heading;
+		}
+		samples++;
+	}
+
+	private void print(PrintStream out) {
+		for (int i = 0; i < NAMES.length; i++) {
+			out.println(String.format("%-16s rms position %6.2f cm, max %6.2f cm, rms heading %5.2f deg", NAMES[i],
+					Math.sqrt(positionSquares[i] / samples), positionMax[i], Math.sqrt(headingSquares[i] / samples)));
+		}
+		PoseEstimator estimator = fusions[0].getEstimator();
+		out.println("lines fused " + estimator.getLineUpdates() + ", rejected " + estimator.getLineRejections()
+				+ "; ranges fused " + estimator.getRangeUpdates() + ", rejected " + estimator.getRangeRejections());
+	}
+
+	/**
+	 * Times the estimator with random motion and observations
+	 */
+	private static void time(PrintStream out) {
+		Random random = new Random(211);
+		PoseEstimator estimator = new PoseEstimator(RingChallenge.TRACK);
+		double[] distances = new double[1024];
+		for (int i = 0; i < distances.length; i++) {
+			distances[i] = random.nextDouble() * 0.4;
+		}
+		double[] xyt = new double[3];
+		for (int round = 0; round < 2; round++) {	//the first round warms up the JIT
+			estimator.reset(3 * RingChallenge.TILE_SIZE, 3 * RingChallenge.TILE_SIZE, 0, 1, 2);
+			long start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				estimator.predict(distances[i & 1023], distances[(i + 1) & 1023]);
+			}
+			long predict = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				estimator.updateLine(-RingChallenge.LS_L_DISTANCE, (i & 1) == 0 ? 6 : -6);
+			}
+			long line = System.nanoTime() - start;
+			start = System.nanoTime();
+			for (int i = 0; i < ITERATIONS; i++) {
+				estimator.updateRange(60 + (i & 7), 7.0);
+			}
+			long range = System.nanoTime() - start;
+			estimator.getXYT(xyt);
+			if (round == 1)
+				out.println(String.format("predict %.0f ns, line update %.0f ns, range update %.0f ns",
+						(double) predict / ITERATIONS, (double) line / ITERATIONS, (double) range / ITERATIONS));
+		}
+	}
+
+	/**
+	 * Runs the benchmark
+	 *
+	 * @param args [games] [wheel radius error %] [track error %]
+	 * @throws OdometerExceptions
+	 * @throws SensorExceptions
+	 */
+	public static void main(String[] args) throws OdometerExceptions, SensorExceptions {
+		int games = args.length > 0 ? Integer.parseInt(args[0]) : GAMES;
+		double radiusError = (args.length > 1 ? Double.parseDouble(args[1]) : RADIUS_ERROR) / 100;
+		double trackError = (args.length > 2 ? Double.parseDouble(args[2]) : TRACK_ERROR) / 100;
+
+		PrintStream out = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			public void write(int b) {
+			}
+		}));
+		Simulator simulator = new Simulator(Scenario.createDefault(), RingChallenge.L_WHEEL_RAD * (1 + radiusError),
+				RingChallenge.R_WHEEL_RAD * (1 - radiusError), RingChallenge.TRACK * (1 + trackError));
+		PoseBenchmark benchmark = new PoseBenchmark(simulator);
+		int completed = 0;
+		for (int i = 0; i < games; i++) {
+			if (simulator.play().isDone())
+				completed++;
+		}
+		System.setOut(out);
+
+		out.println(games + " games (" + completed + " completed), wheel radii off by " + radiusError * 100
+				+ "%, track off by " + trackError * 100 + "%");
+		benchmark.print(out);
+		time(out);
+	}
+}